@@ -0,0 +1,1131 @@
+package io.github.ageofwar.telejam.processor;
+
+import com.sun.source.tree.AssignmentTree;
+import com.sun.source.tree.BinaryTree;
+import com.sun.source.tree.ConditionalExpressionTree;
+import com.sun.source.tree.ExpressionStatementTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.ParenthesizedTree;
+import com.sun.source.tree.ReturnTree;
+import com.sun.source.tree.StatementTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.Trees;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Annotation processor that generates a reflection-free Gson adapter for every
+ * Telegram object whose fields are set directly by one of its constructors.
+ * <p>
+ * A class maps directly when a constructor only assigns its parameters to the serialized
+ * fields, possibly checking them with <code>Objects.requireNonNull</code>, passing the other parameters unchanged to a superclass constructor that does
+ * the same, and when every serialized field is returned, unchanged or wrapped in an
+ * optional, by a getter. The generated adapters read the fields in a single pass and
+ * call that constructor, and write the fields through the getters, producing the same Json
+ * as the reflective adapter of Gson. A field checked by the constructor that is missing
+ * in the Json is reported as a {@code JsonSyntaxException}. The classes that do not map directly, with the reason,
+ * are listed in the documentation of the generated factory, and keep using reflection.
+ * <p>
+ * No adapter is generated for the classes serialized by hand-written adapters: the messages
+ * and the users, the most frequent objects in the updates, with their subclasses, and the
+ * classes that declare their own adapter with <code>@JsonAdapter</code>.
+ *
+ * @author Michi Palazzo
+ */
+@SupportedAnnotationTypes({
+    JsonAdapterProcessor.SERIALIZED_NAME, JsonAdapterProcessor.EXPOSE, JsonAdapterProcessor.JSON_ADAPTER
+})
+public final class JsonAdapterProcessor extends AbstractProcessor {
+  
+  static final String SERIALIZED_NAME = "com.google.gson.annotations.SerializedName";
+  static final String EXPOSE = "com.google.gson.annotations.Expose";
+  static final String JSON_ADAPTER = "com.google.gson.annotations.JsonAdapter";
+  private static final String TELEGRAM_OBJECT = "io.github.ageofwar.telejam.TelegramObject";
+  private static final String FACTORY_PACKAGE = "io.github.ageofwar.telejam.json";
+  private static final String FACTORY_NAME = "GeneratedAdapterFactory";
+  private static final String BASE_ADAPTER = FACTORY_PACKAGE + ".GeneratedTypeAdapter";
+  private static final String ADAPTER_SUFFIX = "JsonAdapter";
+  private static final Map<String, String> HAND_WRITTEN = new LinkedHashMap<>();
+  private static final Set<String> RESERVED_NAMES = new HashSet<>(
+      Arrays.asList("in", "out", "value", "e", "read", "gson")
+  );
+  
+  static {
+    HAND_WRITTEN.put("io.github.ageofwar.telejam.messages.Message", "io.github.ageofwar.telejam.messages.MessageAdapter");
+    HAND_WRITTEN.put("io.github.ageofwar.telejam.users.User", "io.github.ageofwar.telejam.users.UserAdapter");
+  }
+  
+  private Types types;
+  private Elements elements;
+  private Trees trees;
+  private boolean generated;
+  
+  @Override
+  public synchronized void init(ProcessingEnvironment processingEnv) {
+    super.init(processingEnv);
+    types = processingEnv.getTypeUtils();
+    elements = processingEnv.getElementUtils();
+    trees = Trees.instance(processingEnv);
+  }
+  
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+  
+  /**
+   * Generates the adapters in the first round that contains Telegram objects. The Gson
+   * annotations are always claimed, since they are only read by Gson at run time.
+   */
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    if (!generated && !roundEnv.processingOver()) {
+      generate(roundEnv);
+    }
+    return true;
+  }
+  
+  private void generate(RoundEnvironment roundEnv) {
+    TypeElement telegramObject = elements.getTypeElement(TELEGRAM_OBJECT);
+    if (telegramObject == null) {
+      return;
+    }
+    Set<TypeElement> candidates = new TreeSet<>(Comparator.comparing(type -> type.getQualifiedName().toString()));
+    for (Element element : roundEnv.getRootElements()) {
+      collectCandidates(element, telegramObject, candidates);
+    }
+    if (candidates.isEmpty()) {
+      return;
+    }
+    generated = true;
+    Map<TypeElement, Model> models = new LinkedHashMap<>();
+    Map<TypeElement, String> exceptions = new TreeMap<>(Comparator.comparing(type -> type.getQualifiedName().toString()));
+    Map<TypeElement, String> handWritten = new TreeMap<>(Comparator.comparing(type -> type.getQualifiedName().toString()));
+    for (TypeElement type : candidates) {
+      String adapter = handWrittenAdapter(type);
+      if (adapter != null) {
+        handWritten.put(type, adapter);
+        continue;
+      }
+      try {
+        models.put(type, analyze(type));
+      } catch (UnsupportedClassException e) {
+        exceptions.put(type, e.getMessage());
+      }
+    }
+    excludeSuperclassesOfExceptions(models, exceptions);
+    try {
+      for (Model model : models.values()) {
+        writeAdapter(model);
+      }
+      writeFactory(models.keySet(), handWritten, exceptions);
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Cannot write the Json adapters: " + e);
+    }
+  }
+  
+  private void collectCandidates(Element element, TypeElement telegramObject, Set<TypeElement> candidates) {
+    if (!element.getKind().isClass() && !element.getKind().isInterface()) {
+      return;
+    }
+    TypeElement type = (TypeElement) element;
+    if (type.getKind() == ElementKind.CLASS &&
+        !type.getModifiers().contains(Modifier.ABSTRACT) &&
+        types.isAssignable(types.erasure(type.asType()), types.erasure(telegramObject.asType())) &&
+        hasSerializedNames(type)) {
+      candidates.add(type);
+    }
+    for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements())) {
+      collectCandidates(nested, telegramObject, candidates);
+    }
+  }
+  
+  private boolean hasSerializedNames(TypeElement type) {
+    for (TypeElement t = type; t != null && !isJdkClass(t); t = superclass(t)) {
+      for (VariableElement field : ElementFilter.fieldsIn(t.getEnclosedElements())) {
+        if (annotation(field, SERIALIZED_NAME) != null) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+  
+  /**
+   * Returns the name of the hand-written adapter of the specified class, either declared
+   * with <code>@JsonAdapter</code> or registered for one of its superclasses,
+   * or <code>null</code> if the class has no hand-written adapter.
+   */
+  private String handWrittenAdapter(TypeElement type) {
+    AnnotationMirror jsonAdapter = annotation(type, JSON_ADAPTER);
+    if (jsonAdapter != null) {
+      for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+          jsonAdapter.getElementValues().entrySet()) {
+        if (entry.getKey().getSimpleName().contentEquals("value")) {
+          return types.erasure((TypeMirror) entry.getValue().getValue()).toString();
+        }
+      }
+    }
+    for (Map.Entry<String, String> handWritten : HAND_WRITTEN.entrySet()) {
+      TypeElement root = elements.getTypeElement(handWritten.getKey());
+      if (root != null && types.isSubtype(types.erasure(type.asType()), types.erasure(root.asType()))) {
+        return handWritten.getValue();
+      }
+    }
+    return null;
+  }
+  
+  /**
+   * Removes the adapters of the classes that have a subclass serialized with reflection.
+   * When a field declares such a class and contains an instance of the subclass, Gson
+   * prefers the declared adapter to a reflective one, so it would write only the fields
+   * of the superclass.
+   */
+  private void excludeSuperclassesOfExceptions(Map<TypeElement, Model> models, Map<TypeElement, String> exceptions) {
+    boolean changed;
+    do {
+      changed = false;
+      for (TypeElement type : new ArrayList<>(models.keySet())) {
+        for (TypeElement exception : new ArrayList<>(exceptions.keySet())) {
+          if (types.isSubtype(types.erasure(exception.asType()), types.erasure(type.asType()))) {
+            models.remove(type);
+            exceptions.put(type, "its subclass " + exception.getSimpleName() + " is serialized with reflection");
+            changed = true;
+            break;
+          }
+        }
+      }
+    } while (changed);
+  }
+  
+  private Model analyze(TypeElement type) throws UnsupportedClassException {
+    if (!type.getTypeParameters().isEmpty()) {
+      throw new UnsupportedClassException("it is generic");
+    }
+    for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) {
+      if (e.getModifiers().contains(Modifier.PRIVATE)) {
+        throw new UnsupportedClassException("it is private");
+      }
+      if (((TypeElement) e).getNestingKind() == NestingKind.MEMBER && !e.getModifiers().contains(Modifier.STATIC)) {
+        throw new UnsupportedClassException("it is an inner class");
+      }
+    }
+    List<Property> properties = properties(type);
+    List<Property> fields = new ArrayList<>();
+    for (Property property : properties) {
+      if (!property.isConstant()) {
+        fields.add(property);
+      }
+    }
+    ExecutableElement constructor = constructor(type, fields);
+    for (Property property : fields) {
+      property.getter = getter(type, property);
+    }
+    return new Model(type, properties, constructor);
+  }
+  
+  /**
+   * Returns the properties serialized by Gson, in the same order: the fields of the class
+   * come first, then the ones of its superclasses.
+   */
+  private List<Property> properties(TypeElement type) throws UnsupportedClassException {
+    PackageElement typePackage = elements.getPackageOf(type);
+    List<Property> properties = new ArrayList<>();
+    Set<String> names = new HashSet<>();
+    for (TypeElement t = type; t != null && !isJdkClass(t); t = superclass(t)) {
+      for (VariableElement field : ElementFilter.fieldsIn(t.getEnclosedElements())) {
+        Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.TRANSIENT) ||
+            modifiers.contains(Modifier.STATIC) && annotation(field, EXPOSE) == null) {
+          continue;
+        }
+        String name = field.getSimpleName().toString();
+        if (annotation(field, JSON_ADAPTER) != null) {
+          throw new UnsupportedClassException("field " + name + " declares its own adapter with @JsonAdapter");
+        }
+        if (modifiers.contains(Modifier.STATIC) && field.getConstantValue() == null) {
+          throw new UnsupportedClassException("static field " + name + " is not a constant");
+        }
+        if (!modifiers.contains(Modifier.STATIC)) {
+          if (containsTypeVariable(field.asType())) {
+            throw new UnsupportedClassException("field " + name + " has a generic type");
+          }
+          if (!isAccessible(field.asType(), typePackage)) {
+            throw new UnsupportedClassException("the type of field " + name + " is not accessible");
+          }
+        }
+        List<String> jsonNames = jsonNames(field);
+        for (String jsonName : jsonNames) {
+          if (!names.add(jsonName)) {
+            throw new UnsupportedClassException("it declares more than one field named " + jsonName);
+          }
+        }
+        properties.add(new Property(field, jsonNames.get(0), jsonNames.subList(1, jsonNames.size())));
+      }
+    }
+    return properties;
+  }
+  
+  private List<String> jsonNames(VariableElement field) {
+    List<String> names = new ArrayList<>();
+    AnnotationMirror serializedName = annotation(field, SERIALIZED_NAME);
+    if (serializedName == null) {
+      names.add(field.getSimpleName().toString());
+      return names;
+    }
+    for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+        elements.getElementValuesWithDefaults(serializedName).entrySet()) {
+      String key = entry.getKey().getSimpleName().toString();
+      if (key.equals("value")) {
+        names.add(0, (String) entry.getValue().getValue());
+      } else if (key.equals("alternate")) {
+        for (Object alternate : (List<?>) entry.getValue().getValue()) {
+          names.add((String) ((AnnotationValue) alternate).getValue());
+        }
+      }
+    }
+    return names;
+  }
+  
+  /**
+   * Returns the constructor of the class that sets every field directly from its parameters.
+   */
+  private ExecutableElement constructor(TypeElement type, List<Property> fields) throws UnsupportedClassException {
+    String reason = "it has no constructors";
+    int reasonParameters = -1;
+    for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+      int parameters = constructor.getParameters().size();
+      try {
+        if (constructor.getModifiers().contains(Modifier.PRIVATE)) {
+          throw new UnsupportedClassException("the constructor is private");
+        }
+        Set<VariableElement> required = new HashSet<>();
+        Map<VariableElement, Integer> assignments = assignments(constructor, required);
+        checkAssignments(constructor, fields, assignments);
+        for (Property field : fields) {
+          field.parameter = assignments.get(field.field);
+          field.required = required.contains(field.field);
+        }
+        return constructor;
+      } catch (UnsupportedClassException e) {
+        if (parameters > reasonParameters) {
+          reason = e.getMessage();
+          reasonParameters = parameters;
+        }
+      }
+    }
+    throw new UnsupportedClassException(reason);
+  }
+  
+  private void checkAssignments(ExecutableElement constructor, List<Property> fields,
+                                Map<VariableElement, Integer> assignments) throws UnsupportedClassException {
+    List<? extends VariableElement> parameters = constructor.getParameters();
+    Set<Integer> usedParameters = new HashSet<>();
+    for (Property property : fields) {
+      Integer parameter = assignments.get(property.field);
+      if (parameter == null) {
+        throw new UnsupportedClassException("the constructor does not set field " + property.field.getSimpleName());
+      }
+      VariableElement variable = parameters.get(parameter);
+      if (!types.isSameType(variable.asType(), property.field.asType())) {
+        throw new UnsupportedClassException("field " + property.field.getSimpleName() + " of type " +
+            property.field.asType() + " is set from parameter " + variable.getSimpleName() + " of type " + variable.asType());
+      }
+      if (!usedParameters.add(parameter)) {
+        throw new UnsupportedClassException("parameter " + variable.getSimpleName() + " sets more than one field");
+      }
+    }
+    for (int i = 0; i < parameters.size(); i++) {
+      if (!usedParameters.contains(i)) {
+        throw new UnsupportedClassException("parameter " + parameters.get(i).getSimpleName() + " does not set a field");
+      }
+    }
+  }
+  
+  /**
+   * Returns the fields set by the specified constructor, mapped to the index of the parameter
+   * whose value they are set to. The constructor may only call another constructor passing its
+   * parameters unchanged, and assign its parameters to the fields of its class, optionally
+   * checked with <code>Objects.requireNonNull</code>; the checked fields are added to <code>required</code>.
+   */
+  private Map<VariableElement, Integer> assignments(ExecutableElement constructor, Set<VariableElement> required)
+      throws UnsupportedClassException {
+    TypeElement owner = (TypeElement) constructor.getEnclosingElement();
+    MethodTree tree = trees.getTree(constructor);
+    if (tree == null || tree.getBody() == null) {
+      throw new UnsupportedClassException("the source of the constructor of " + owner.getSimpleName() + " is not available");
+    }
+    List<? extends VariableElement> parameters = constructor.getParameters();
+    Map<String, Integer> parameterIndexes = new HashMap<>();
+    for (int i = 0; i < parameters.size(); i++) {
+      parameterIndexes.put(parameters.get(i).getSimpleName().toString(), i);
+    }
+    Map<VariableElement, Integer> assignments = new HashMap<>();
+    List<? extends StatementTree> statements = tree.getBody().getStatements();
+    int first = 0;
+    MethodInvocationTree call = constructorCall(statements.isEmpty() ? null : statements.get(0));
+    if (call != null) {
+      first = 1;
+      boolean isThis = ((IdentifierTree) call.getMethodSelect()).getName().contentEquals("this");
+      TypeElement target = isThis ? owner : superclass(owner);
+      List<Integer> arguments = new ArrayList<>();
+      for (ExpressionTree argument : call.getArguments()) {
+        Integer index = argument instanceof IdentifierTree ?
+            parameterIndexes.get(((IdentifierTree) argument).getName().toString()) : null;
+        if (index == null) {
+          throw new UnsupportedClassException("the constructor of " + owner.getSimpleName() + " passes " +
+              argument + " to " + (isThis ? "another constructor" : "the superclass"));
+        }
+        arguments.add(index);
+      }
+      if (target != null && !isJdkClass(target)) {
+        ExecutableElement targetConstructor = resolveConstructor(target, arguments, parameters);
+        for (Map.Entry<VariableElement, Integer> assignment : assignments(targetConstructor, required).entrySet()) {
+          assignments.put(assignment.getKey(), arguments.get(assignment.getValue()));
+        }
+      } else if (!arguments.isEmpty()) {
+        throw new UnsupportedClassException("the constructor of " + owner.getSimpleName() + " passes arguments to " + target);
+      }
+    } else {
+      TypeElement superclass = superclass(owner);
+      if (superclass != null && !isJdkClass(superclass)) {
+        ExecutableElement superConstructor = resolveConstructor(superclass, Collections.emptyList(), parameters);
+        assignments.putAll(assignments(superConstructor, required));
+      }
+    }
+    for (StatementTree statement : statements.subList(first, statements.size())) {
+      VariableElement field = null;
+      Integer parameter = null;
+      if (statement instanceof ExpressionStatementTree &&
+          ((ExpressionStatementTree) statement).getExpression().getKind() == Tree.Kind.ASSIGNMENT) {
+        AssignmentTree assignment = (AssignmentTree) ((ExpressionStatementTree) statement).getExpression();
+        String fieldName = assignedField(assignment.getVariable(), parameterIndexes.keySet());
+        field = fieldName != null ? instanceField(owner, fieldName) : null;
+        ExpressionTree value = assignment.getExpression();
+        ExpressionTree checked = requireNonNullArgument(value);
+        if (checked != null && field != null) {
+          required.add(field);
+          value = checked;
+        }
+        if (value instanceof IdentifierTree) {
+          parameter = parameterIndexes.get(((IdentifierTree) value).getName().toString());
+        }
+      }
+      if (field == null || parameter == null) {
+        throw new UnsupportedClassException("the constructor of " + owner.getSimpleName() + " contains " + statement.toString().trim());
+      }
+      if (assignments.put(field, parameter) != null) {
+        throw new UnsupportedClassException("the constructor of " + owner.getSimpleName() + " sets field " + field.getSimpleName() + " twice");
+      }
+    }
+    return assignments;
+  }
+  
+  /**
+   * Returns the argument of a call to <code>Objects.requireNonNull</code> without a message,
+   * or <code>null</code> if the expression is not such a call.
+   */
+  private static ExpressionTree requireNonNullArgument(ExpressionTree expression) {
+    if (!(expression instanceof MethodInvocationTree)) {
+      return null;
+    }
+    MethodInvocationTree call = (MethodInvocationTree) expression;
+    ExpressionTree select = call.getMethodSelect();
+    if (!(select instanceof MemberSelectTree) || call.getArguments().size() != 1) {
+      return null;
+    }
+    MemberSelectTree member = (MemberSelectTree) select;
+    String owner = member.getExpression().toString();
+    if (!member.getIdentifier().contentEquals("requireNonNull") ||
+        !owner.equals("Objects") && !owner.equals("java.util.Objects")) {
+      return null;
+    }
+    return call.getArguments().get(0);
+  }
+  
+  private static MethodInvocationTree constructorCall(StatementTree statement) {
+    if (!(statement instanceof ExpressionStatementTree)) {
+      return null;
+    }
+    ExpressionTree expression = ((ExpressionStatementTree) statement).getExpression();
+    if (!(expression instanceof MethodInvocationTree)) {
+      return null;
+    }
+    MethodInvocationTree call = (MethodInvocationTree) expression;
+    ExpressionTree select = call.getMethodSelect();
+    if (select instanceof IdentifierTree) {
+      String name = ((IdentifierTree) select).getName().toString();
+      if (name.equals("super") || name.equals("this")) {
+        return call;
+      }
+    }
+    return null;
+  }
+  
+  private ExecutableElement resolveConstructor(TypeElement type, List<Integer> arguments,
+                                               List<? extends VariableElement> parameters) throws UnsupportedClassException {
+    ExecutableElement found = null;
+    for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+      List<? extends VariableElement> targetParameters = constructor.getParameters();
+      if (targetParameters.size() != arguments.size()) {
+        continue;
+      }
+      boolean matches = true;
+      for (int i = 0; i < arguments.size() && matches; i++) {
+        matches = types.isSameType(parameters.get(arguments.get(i)).asType(), targetParameters.get(i).asType());
+      }
+      if (matches) {
+        if (found != null) {
+          throw new UnsupportedClassException("the constructor called in " + type.getSimpleName() + " is ambiguous");
+        }
+        found = constructor;
+      }
+    }
+    if (found == null) {
+      throw new UnsupportedClassException("the constructor of " + type.getSimpleName() + " is called with converted arguments");
+    }
+    return found;
+  }
+  
+  private static String assignedField(ExpressionTree variable, Set<String> parameters) {
+    if (variable instanceof MemberSelectTree) {
+      MemberSelectTree select = (MemberSelectTree) variable;
+      if (select.getExpression() instanceof IdentifierTree &&
+          ((IdentifierTree) select.getExpression()).getName().contentEquals("this")) {
+        return select.getIdentifier().toString();
+      }
+    } else if (variable instanceof IdentifierTree) {
+      String name = ((IdentifierTree) variable).getName().toString();
+      if (!parameters.contains(name)) {
+        return name;
+      }
+    }
+    return null;
+  }
+  
+  private static VariableElement instanceField(TypeElement type, String name) {
+    for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+      if (field.getSimpleName().contentEquals(name) && !field.getModifiers().contains(Modifier.STATIC)) {
+        return field;
+      }
+    }
+    return null;
+  }
+  
+  /**
+   * Returns the getter that returns the value of the specified field. The getters named after
+   * the field are preferred; otherwise any method without parameters returning the field is used.
+   */
+  private Getter getter(TypeElement type, Property property) throws UnsupportedClassException {
+    String fieldName = property.field.getSimpleName().toString();
+    String capitalized = Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
+    List<String> names = Arrays.asList("get" + capitalized, "is" + capitalized, fieldName);
+    PackageElement typePackage = elements.getPackageOf(type);
+    for (TypeElement t = type; t != null && !isJdkClass(t); t = superclass(t)) {
+      for (ExecutableElement method : ElementFilter.methodsIn(t.getEnclosedElements())) {
+        Set<Modifier> modifiers = method.getModifiers();
+        if (!names.contains(method.getSimpleName().toString()) || !method.getParameters().isEmpty() ||
+            modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.PRIVATE)) {
+          continue;
+        }
+        if (!modifiers.contains(Modifier.PUBLIC) && !elements.getPackageOf(t).equals(typePackage)) {
+          continue;
+        }
+        return new Getter(method.getSimpleName().toString(), accessorKind(method, property.field));
+      }
+    }
+    for (TypeElement t = type; t != null && !isJdkClass(t); t = superclass(t)) {
+      for (ExecutableElement method : ElementFilter.methodsIn(t.getEnclosedElements())) {
+        Set<Modifier> modifiers = method.getModifiers();
+        if (!method.getParameters().isEmpty() || modifiers.contains(Modifier.STATIC) ||
+            modifiers.contains(Modifier.PRIVATE) || !modifiers.contains(Modifier.PUBLIC) && !elements.getPackageOf(t).equals(typePackage)) {
+          continue;
+        }
+        try {
+          return new Getter(method.getSimpleName().toString(), accessorKind(method, property.field));
+        } catch (UnsupportedClassException e) {
+          // not a getter of this field
+        }
+      }
+    }
+    throw new UnsupportedClassException("no getter returns field " + fieldName);
+  }
+  
+  /**
+   * Returns how the specified getter returns the value of the field. The getter may call
+   * methods of the object without arguments before returning the field, unchanged or
+   * wrapped in an optional.
+   */
+  private AccessorKind accessorKind(ExecutableElement getter, VariableElement field) throws UnsupportedClassException {
+    MethodTree tree = trees.getTree(getter);
+    String fieldName = field.getSimpleName().toString();
+    String unsupported = "getter " + getter.getSimpleName() + "() does not return field " + fieldName + " unchanged";
+    if (tree == null || tree.getBody() == null) {
+      throw new UnsupportedClassException(unsupported);
+    }
+    List<? extends StatementTree> statements = tree.getBody().getStatements();
+    if (statements.isEmpty() || !(statements.get(statements.size() - 1) instanceof ReturnTree)) {
+      throw new UnsupportedClassException(unsupported);
+    }
+    for (StatementTree statement : statements.subList(0, statements.size() - 1)) {
+      if (!isCallWithoutArguments(statement)) {
+        throw new UnsupportedClassException(unsupported);
+      }
+    }
+    ExpressionTree expression = unwrap(((ReturnTree) statements.get(statements.size() - 1)).getExpression());
+    TypeMirror returnType = getter.getReturnType();
+    TypeMirror fieldType = field.asType();
+    if (isField(expression, fieldName) && types.isSameType(returnType, fieldType)) {
+      return AccessorKind.DIRECT;
+    }
+    if (isOptionalCall(expression, "ofNullable", fieldName) && isOptionalOf(returnType, fieldType)) {
+      return AccessorKind.OPTIONAL;
+    }
+    if (expression instanceof ConditionalExpressionTree) {
+      ConditionalExpressionTree conditional = (ConditionalExpressionTree) expression;
+      Boolean isNull = nullCheck(unwrap(conditional.getCondition()), fieldName);
+      if (isNull != null) {
+        ExpressionTree ifNull = unwrap(isNull ? conditional.getTrueExpression() : conditional.getFalseExpression());
+        ExpressionTree ifNotNull = unwrap(isNull ? conditional.getFalseExpression() : conditional.getTrueExpression());
+        if (isOptionalCall(ifNull, "empty", null) && isOptionalCall(ifNotNull, "of", fieldName)) {
+          if (isOptionalOf(returnType, fieldType)) {
+            return AccessorKind.OPTIONAL;
+          }
+          for (AccessorKind kind : AccessorKind.values()) {
+            if (kind.optionalType != null && isClass(returnType, kind.optionalType) && isClass(fieldType, kind.boxedType)) {
+              return kind;
+            }
+          }
+        }
+      }
+    }
+    throw new UnsupportedClassException(unsupported);
+  }
+  
+  private static boolean isCallWithoutArguments(StatementTree statement) {
+    if (!(statement instanceof ExpressionStatementTree)) {
+      return false;
+    }
+    ExpressionTree expression = ((ExpressionStatementTree) statement).getExpression();
+    return expression instanceof MethodInvocationTree &&
+        ((MethodInvocationTree) expression).getMethodSelect() instanceof IdentifierTree &&
+        ((MethodInvocationTree) expression).getArguments().isEmpty();
+  }
+  
+  private static ExpressionTree unwrap(ExpressionTree expression) {
+    while (expression instanceof ParenthesizedTree) {
+      expression = ((ParenthesizedTree) expression).getExpression();
+    }
+    return expression;
+  }
+  
+  private static boolean isField(ExpressionTree expression, String fieldName) {
+    expression = unwrap(expression);
+    if (expression instanceof IdentifierTree) {
+      return ((IdentifierTree) expression).getName().contentEquals(fieldName);
+    }
+    return assignedField(expression, Collections.emptySet()) != null &&
+        ((MemberSelectTree) expression).getIdentifier().contentEquals(fieldName);
+  }
+  
+  /**
+   * Returns whether the expression is a call to a static method of an optional class,
+   * with the specified field as argument, or without arguments if the field is <code>null</code>.
+   */
+  private static boolean isOptionalCall(ExpressionTree expression, String method, String fieldName) {
+    if (!(expression instanceof MethodInvocationTree)) {
+      return false;
+    }
+    MethodInvocationTree call = (MethodInvocationTree) expression;
+    if (!(call.getMethodSelect() instanceof MemberSelectTree)) {
+      return false;
+    }
+    MemberSelectTree select = (MemberSelectTree) call.getMethodSelect();
+    String owner = select.getExpression().toString();
+    if (!owner.matches("(java\\.util\\.)?Optional(Long|Int|Double)?") || !select.getIdentifier().contentEquals(method)) {
+      return false;
+    }
+    if (fieldName == null) {
+      return call.getArguments().isEmpty();
+    }
+    return call.getArguments().size() == 1 && isField(call.getArguments().get(0), fieldName);
+  }
+  
+  /**
+   * Returns <code>true</code> if the expression checks that the field is null,
+   * <code>false</code> if it checks that the field is not null, or <code>null</code> otherwise.
+   */
+  private static Boolean nullCheck(ExpressionTree expression, String fieldName) {
+    if (expression.getKind() != Tree.Kind.EQUAL_TO && expression.getKind() != Tree.Kind.NOT_EQUAL_TO) {
+      return null;
+    }
+    BinaryTree binary = (BinaryTree) expression;
+    boolean checksField = isField(binary.getLeftOperand(), fieldName) && binary.getRightOperand().getKind() == Tree.Kind.NULL_LITERAL ||
+        isField(binary.getRightOperand(), fieldName) && binary.getLeftOperand().getKind() == Tree.Kind.NULL_LITERAL;
+    if (!checksField) {
+      return null;
+    }
+    return expression.getKind() == Tree.Kind.EQUAL_TO;
+  }
+  
+  private boolean isOptionalOf(TypeMirror type, TypeMirror valueType) {
+    if (!isClass(type, "java.util.Optional")) {
+      return false;
+    }
+    List<? extends TypeMirror> arguments = ((DeclaredType) type).getTypeArguments();
+    return arguments.size() == 1 && types.isSameType(arguments.get(0), valueType);
+  }
+  
+  private static boolean isClass(TypeMirror type, String name) {
+    return type.getKind() == TypeKind.DECLARED &&
+        ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().contentEquals(name);
+  }
+  
+  private boolean containsTypeVariable(TypeMirror type) {
+    switch (type.getKind()) {
+      case TYPEVAR:
+        return true;
+      case ARRAY:
+        return containsTypeVariable(((ArrayType) type).getComponentType());
+      case WILDCARD:
+        WildcardType wildcard = (WildcardType) type;
+        return wildcard.getExtendsBound() != null && containsTypeVariable(wildcard.getExtendsBound()) ||
+            wildcard.getSuperBound() != null && containsTypeVariable(wildcard.getSuperBound());
+      case DECLARED:
+        for (TypeMirror argument : ((DeclaredType) type).getTypeArguments()) {
+          if (containsTypeVariable(argument)) {
+            return true;
+          }
+        }
+        return false;
+      default:
+        return false;
+    }
+  }
+  
+  private boolean isAccessible(TypeMirror type, PackageElement fromPackage) {
+    switch (type.getKind()) {
+      case ARRAY:
+        return isAccessible(((ArrayType) type).getComponentType(), fromPackage);
+      case WILDCARD:
+        WildcardType wildcard = (WildcardType) type;
+        return (wildcard.getExtendsBound() == null || isAccessible(wildcard.getExtendsBound(), fromPackage)) &&
+            (wildcard.getSuperBound() == null || isAccessible(wildcard.getSuperBound(), fromPackage));
+      case DECLARED:
+        for (Element e = ((DeclaredType) type).asElement(); e instanceof TypeElement; e = e.getEnclosingElement()) {
+          Set<Modifier> modifiers = e.getModifiers();
+          if (modifiers.contains(Modifier.PRIVATE) ||
+              !modifiers.contains(Modifier.PUBLIC) && !elements.getPackageOf(e).equals(fromPackage)) {
+            return false;
+          }
+        }
+        for (TypeMirror argument : ((DeclaredType) type).getTypeArguments()) {
+          if (!isAccessible(argument, fromPackage)) {
+            return false;
+          }
+        }
+        return true;
+      default:
+        return true;
+    }
+  }
+  
+  private TypeElement superclass(TypeElement type) {
+    TypeMirror superclass = type.getSuperclass();
+    return superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+  }
+  
+  private static boolean isJdkClass(TypeElement type) {
+    String name = type.getQualifiedName().toString();
+    return name.startsWith("java.") || name.startsWith("javax.");
+  }
+  
+  private static AnnotationMirror annotation(Element element, String name) {
+    for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+      if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(name)) {
+        return annotation;
+      }
+    }
+    return null;
+  }
+  
+  private void writeAdapter(Model model) throws IOException {
+    TypeElement type = model.type;
+    String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+    String adapterName = adapterName(type);
+    String typeName = type.getQualifiedName().toString();
+    List<? extends VariableElement> parameters = model.constructor.getParameters();
+    Map<Property, String> variables = new HashMap<>();
+    for (Property property : model.properties) {
+      if (!property.isConstant()) {
+        String name = parameters.get(property.parameter).getSimpleName().toString();
+        variables.put(property, RESERVED_NAMES.contains(name) ? name + "_" : name);
+      }
+    }
+    try (PrintWriter out = new PrintWriter(processingEnv.getFiler()
+        .createSourceFile(packageName + "." + adapterName, type).openWriter())) {
+      out.println("package " + packageName + ";");
+      out.println();
+      out.println("import com.google.gson.Gson;");
+      out.println("import com.google.gson.TypeAdapter;");
+      out.println("import com.google.gson.stream.JsonReader;");
+      out.println("import com.google.gson.stream.JsonToken;");
+      out.println("import com.google.gson.stream.JsonWriter;");
+      out.println("import " + BASE_ADAPTER + ";");
+      out.println();
+      out.println("import java.io.IOException;");
+      out.println();
+      out.println("/**");
+      out.println(" * Json adapter for class {@link " + typeName + "},");
+      out.println(" * generated by {@code " + JsonAdapterProcessor.class.getName() + "}.");
+      out.println(" */");
+      out.println("public final class " + adapterName + " extends GeneratedTypeAdapter<" + typeName + "> {");
+      out.println("  ");
+      for (Property property : model.properties) {
+        if (!property.isConstant()) {
+          out.println("  private final TypeAdapter<" + boxedName(property.field.asType()) + "> " + variables.get(property) + "Adapter;");
+        }
+      }
+      out.println("  ");
+      out.println("  public " + adapterName + "(Gson gson) {");
+      out.println("    super(gson);");
+      for (Property property : model.properties) {
+        if (!property.isConstant()) {
+          out.println("    " + variables.get(property) + "Adapter = gson.getAdapter(" + typeToken(property.field.asType()) + ");");
+        }
+      }
+      out.println("  }");
+      out.println("  ");
+      out.println("  @Override");
+      out.println("  public " + typeName + " read(JsonReader in) throws IOException {");
+      out.println("    if (in.peek() == JsonToken.NULL) {");
+      out.println("      in.nextNull();");
+      out.println("      return null;");
+      out.println("    }");
+      for (Property property : model.properties) {
+        if (!property.isConstant()) {
+          TypeMirror fieldType = property.field.asType();
+          String initialValue = fieldType.getKind() == TypeKind.BOOLEAN ? "false" : fieldType.getKind().isPrimitive() ? "0" : "null";
+          out.println("    " + fieldType + " " + variables.get(property) + " = " + initialValue + ";");
+        }
+      }
+      out.println("    try {");
+      out.println("      in.beginObject();");
+      out.println("      while (in.hasNext()) {");
+      out.println("        switch (in.nextName()) {");
+      for (Property property : model.properties) {
+        if (property.isConstant()) {
+          continue;
+        }
+        String variable = variables.get(property);
+        out.println("          case " + stringLiteral(property.name) + ":");
+        for (String alternate : property.alternates) {
+          out.println("          case " + stringLiteral(alternate) + ":");
+        }
+        if (property.field.asType().getKind().isPrimitive()) {
+          out.println("          {");
+          out.println("            " + boxedName(property.field.asType()) + " read = " + variable + "Adapter.read(in);");
+          out.println("            if (read != null) {");
+          out.println("              " + variable + " = read;");
+          out.println("            }");
+          out.println("            break;");
+          out.println("          }");
+        } else {
+          out.println("            " + variable + " = " + variable + "Adapter.read(in);");
+          out.println("            break;");
+        }
+      }
+      out.println("          default:");
+      out.println("            in.skipValue();");
+      out.println("        }");
+      out.println("      }");
+      out.println("      in.endObject();");
+      out.println("    } catch (IllegalStateException e) {");
+      out.println("      throw new com.google.gson.JsonSyntaxException(e);");
+      out.println("    }");
+      for (Property property : model.properties) {
+        if (!property.isConstant() && property.required && !property.field.asType().getKind().isPrimitive()) {
+          out.println("    if (" + variables.get(property) + " == null) {");
+          out.println("      throw new com.google.gson.JsonSyntaxException(" + stringLiteral("Missing field " + property.name) + ");");
+          out.println("    }");
+        }
+      }
+      StringBuilder arguments = new StringBuilder();
+      for (int i = 0; i < parameters.size(); i++) {
+        for (Property property : model.properties) {
+          if (!property.isConstant() && property.parameter == i) {
+            arguments.append(i > 0 ? ", " : "").append(variables.get(property));
+          }
+        }
+      }
+      out.println("    return new " + typeName + "(" + arguments + ");");
+      out.println("  }");
+      out.println("  ");
+      out.println("  @Override");
+      out.println("  public void write(JsonWriter out, " + typeName + " value) throws IOException {");
+      out.println("    if (value == null) {");
+      out.println("      out.nullValue();");
+      out.println("      return;");
+      out.println("    }");
+      out.println("    out.beginObject();");
+      for (Property property : model.properties) {
+        if (property.isConstant()) {
+          Object constant = property.field.getConstantValue();
+          String literal = constant instanceof String || constant instanceof Character ?
+              stringLiteral(constant.toString()) : constant instanceof Boolean ? constant.toString() :
+              elements.getConstantExpression(constant);
+          out.println("    out.name(" + stringLiteral(property.name) + ").value(" + literal + ");");
+          continue;
+        }
+        String variable = variables.get(property);
+        TypeMirror fieldType = property.field.asType();
+        String value = "value." + property.getter.method + "()";
+        switch (property.getter.kind) {
+          case OPTIONAL:
+            value = value + ".orElse(null)";
+            break;
+          case OPTIONAL_LONG:
+          case OPTIONAL_INT:
+          case OPTIONAL_DOUBLE:
+            out.println("    " + property.getter.kind.optionalType + " " + variable + " = " + value + ";");
+            value = variable + ".isPresent() ? " + property.getter.kind.boxedType + ".valueOf(" + variable + "." +
+                property.getter.kind.getter + "()) : null";
+            break;
+          default:
+            break;
+        }
+        String declaredType = fieldType.getKind() == TypeKind.DECLARED &&
+            !((DeclaredType) fieldType).getTypeArguments().isEmpty() ? "null" : types.erasure(fieldType) + ".class";
+        out.println("    writeField(out, " + stringLiteral(property.name) + ", " + variable + "Adapter, " +
+            declaredType + ", " + value + ");");
+      }
+      out.println("    out.endObject();");
+      out.println("  }");
+      out.println("  ");
+      out.println("}");
+    }
+  }
+  
+  private void writeFactory(Set<TypeElement> adapters, Map<TypeElement, String> handWritten,
+                            Map<TypeElement, String> exceptions) throws IOException {
+    Element[] originatingElements = adapters.toArray(new Element[0]);
+    try (PrintWriter out = new PrintWriter(processingEnv.getFiler()
+        .createSourceFile(FACTORY_PACKAGE + "." + FACTORY_NAME, originatingElements).openWriter())) {
+      out.println("package " + FACTORY_PACKAGE + ";");
+      out.println();
+      out.println("import com.google.gson.Gson;");
+      out.println("import com.google.gson.TypeAdapter;");
+      out.println("import com.google.gson.TypeAdapterFactory;");
+      out.println("import com.google.gson.reflect.TypeToken;");
+      out.println();
+      out.println("import java.util.Collections;");
+      out.println("import java.util.HashMap;");
+      out.println("import java.util.Map;");
+      out.println("import java.util.Set;");
+      out.println("import java.util.function.Function;");
+      out.println();
+      out.println("/**");
+      out.println(" * Factory of the Json adapters generated by {@code " + JsonAdapterProcessor.class.getName() + "}");
+      out.println(" * for the " + adapters.size() + " Telegram objects whose fields are set directly by a constructor.");
+      out.println(" * <p>");
+      out.println(" * The following " + handWritten.size() + " classes are serialized by hand-written adapters:");
+      out.println(" * <ul>");
+      for (Map.Entry<TypeElement, String> type : handWritten.entrySet()) {
+        out.println(" *   <li>{@link " + type.getKey().getQualifiedName() + "}: {@link " + type.getValue() + "}</li>");
+      }
+      out.println(" * </ul>");
+      out.println(" * <p>");
+      out.println(" * The following " + exceptions.size() + " classes are serialized with reflection:");
+      out.println(" * <ul>");
+      for (Map.Entry<TypeElement, String> exception : exceptions.entrySet()) {
+        out.println(" *   <li>{@link " + exception.getKey().getQualifiedName() + "}: " + escapeHtml(exception.getValue()) + "</li>");
+      }
+      out.println(" * </ul>");
+      out.println(" */");
+      out.println("final class " + FACTORY_NAME + " implements TypeAdapterFactory {");
+      out.println("  ");
+      out.println("  static final " + FACTORY_NAME + " INSTANCE = new " + FACTORY_NAME + "();");
+      out.println("  ");
+      out.println("  private static final Map<Class<?>, Function<Gson, TypeAdapter<?>>> ADAPTERS = new HashMap<>();");
+      out.println("  ");
+      out.println("  static {");
+      for (TypeElement type : adapters) {
+        String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+        out.println("    ADAPTERS.put(" + type.getQualifiedName() + ".class, " + packageName + "." + adapterName(type) + "::new);");
+      }
+      out.println("  }");
+      out.println("  ");
+      out.println("  private " + FACTORY_NAME + "() {");
+      out.println("  }");
+      out.println("  ");
+      out.println("  /**");
+      out.println("   * Returns the classes that have a generated adapter.");
+      out.println("   *");
+      out.println("   * @return the classes that have a generated adapter");
+      out.println("   */");
+      out.println("  static Set<Class<?>> getTypes() {");
+      out.println("    return Collections.unmodifiableSet(ADAPTERS.keySet());");
+      out.println("  }");
+      out.println("  ");
+      out.println("  @Override");
+      out.println("  @SuppressWarnings(\"unchecked\")");
+      out.println("  public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {");
+      out.println("    Function<Gson, TypeAdapter<?>> adapter = ADAPTERS.get(type.getRawType());");
+      out.println("    return adapter != null ? (TypeAdapter<T>) adapter.apply(gson) : null;");
+      out.println("  }");
+      out.println("  ");
+      out.println("}");
+    }
+  }
+  
+  private static String adapterName(TypeElement type) {
+    StringBuilder name = new StringBuilder(type.getSimpleName());
+    for (Element e = type.getEnclosingElement(); e instanceof TypeElement; e = e.getEnclosingElement()) {
+      name.insert(0, e.getSimpleName() + "_");
+    }
+    return name.append(ADAPTER_SUFFIX).toString();
+  }
+  
+  private String boxedName(TypeMirror type) {
+    if (type.getKind().isPrimitive()) {
+      return types.boxedClass((PrimitiveType) type).getQualifiedName().toString();
+    }
+    return type.toString();
+  }
+  
+  private String typeToken(TypeMirror type) {
+    if (type.getKind() == TypeKind.DECLARED && !((DeclaredType) type).getTypeArguments().isEmpty()) {
+      return "new com.google.gson.reflect.TypeToken<" + type + ">() {}";
+    }
+    return boxedName(type) + ".class";
+  }
+  
+  private String stringLiteral(String value) {
+    return elements.getConstantExpression(value).toString();
+  }
+  
+  private static String escapeHtml(String text) {
+    return text.replaceAll("\\s+", " ").replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;")
+        .replace("@", "&#64;").replace("*/", "*&#47;").replace("{", "&#123;").replace("}", "&#125;");
+  }
+  
+  private static final class Model {
+    
+    private final TypeElement type;
+    private final List<Property> properties;
+    private final ExecutableElement constructor;
+    
+    private Model(TypeElement type, List<Property> properties, ExecutableElement constructor) {
+      this.type = type;
+      this.properties = properties;
+      this.constructor = constructor;
+    }
+  
+  }
+  
+  private static final class Property {
+    
+    private final VariableElement field;
+    private final String name;
+    private final List<String> alternates;
+    private int parameter;
+    private boolean required;
+    private Getter getter;
+    
+    private Property(VariableElement field, String name, List<String> alternates) {
+      this.field = field;
+      this.name = name;
+      this.alternates = alternates;
+    }
+    
+    private boolean isConstant() {
+      return field.getModifiers().contains(Modifier.STATIC);
+    }
+  
+  }
+  
+  private static final class Getter {
+    
+    private final String method;
+    private final AccessorKind kind;
+    
+    private Getter(String method, AccessorKind kind) {
+      this.method = method;
+      this.kind = kind;
+    }
+  
+  }
+  
+  private enum AccessorKind {
+    
+    DIRECT(null, null, null),
+    OPTIONAL(null, null, null),
+    OPTIONAL_LONG("java.util.OptionalLong", "java.lang.Long", "getAsLong"),
+    OPTIONAL_INT("java.util.OptionalInt", "java.lang.Integer", "getAsInt"),
+    OPTIONAL_DOUBLE("java.util.OptionalDouble", "java.lang.Double", "getAsDouble");
+    
+    private final String optionalType;
+    private final String boxedType;
+    private final String getter;
+    
+    AccessorKind(String optionalType, String boxedType, String getter) {
+      this.optionalType = optionalType;
+      this.boxedType = boxedType;
+      this.getter = getter;
+    }
+  
+  }
+  
+  private static final class UnsupportedClassException extends Exception {
+    
+    private static final long serialVersionUID = 0;
+    
+    private UnsupportedClassException(String message) {
+      super(message);
+    }
+  
+  }
+  
+}
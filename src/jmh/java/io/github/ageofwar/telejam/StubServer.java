@@ -0,0 +1,138 @@
+package io.github.ageofwar.telejam;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.ageofwar.telejam.connection.Transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local HTTP/1.1 server that imitates the Telegram API in the benchmarks.
+ * Every method returns <code>true</code>, unless a different responder is registered for it.
+ */
+public final class StubServer implements Closeable {
+  
+  private static final String GET_ME = "{\"ok\":true,\"result\":{\"id\":1,\"first_name\":\"Bot\",\"username\":\"bot\",\"is_bot\":true}}";
+  private static final String TRUE = "{\"ok\":true,\"result\":true}";
+  
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final Map<String, Responder> responders;
+  private final long latencyMillis;
+  
+  private StubServer(long latencyMillis) throws IOException {
+    this.latencyMillis = latencyMillis;
+    responders = new ConcurrentHashMap<>();
+    responders.put("getMe", body -> GET_ME);
+    executor = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "stub-server");
+      thread.setDaemon(true);
+      return thread;
+    });
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+    server.setExecutor(executor);
+    server.createContext("/", this::handle);
+    server.start();
+  }
+  
+  /**
+   * Starts a server.
+   *
+   * @param latencyMillis the time waited before responding to every request, in milliseconds
+   * @return the started server
+   * @throws IOException if the server cannot be started
+   */
+  public static StubServer start(long latencyMillis) throws IOException {
+    return new StubServer(latencyMillis);
+  }
+  
+  /**
+   * Registers the responder of a method.
+   *
+   * @param methodName the name of the method
+   * @param responder  the responder
+   * @return this server
+   */
+  public StubServer on(String methodName, Responder responder) {
+    responders.put(methodName, responder);
+    return this;
+  }
+  
+  /**
+   * Creates a bot that sends its requests to this server.
+   *
+   * @param transport the transport of the bot
+   * @return the created bot
+   * @throws IOException if an I/O error occurs
+   */
+  public Bot newBot(Transport transport) throws IOException {
+    String url = "http://127.0.0.1:" + server.getAddress().getPort();
+    return Bot.fromApiUrl(url + "/bot", url + "/file", transport);
+  }
+  
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+  
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      String path = exchange.getRequestURI().getPath();
+      String methodName = path.substring(path.lastIndexOf('/') + 1);
+      String body = read(exchange.getRequestBody());
+      if (latencyMillis > 0) {
+        Thread.sleep(latencyMillis);
+      }
+      String response = responders.getOrDefault(methodName, request -> TRUE).respond(body);
+      byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, bytes.length);
+      try (OutputStream output = exchange.getResponseBody()) {
+        output.write(bytes);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      exchange.close();
+    }
+  }
+  
+  private static String read(InputStream input) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int read;
+    while ((read = input.read(buffer)) != -1) {
+      output.write(buffer, 0, read);
+    }
+    return new String(output.toByteArray(), StandardCharsets.UTF_8);
+  }
+  
+  /**
+   * Computes the response of a method.
+   */
+  @FunctionalInterface
+  public interface Responder {
+    
+    /**
+     * Returns the JSON response of a request, blocking if needed.
+     *
+     * @param requestBody the body of the request
+     * @return the response
+     * @throws InterruptedException if the server is stopped while waiting
+     */
+    String respond(String requestBody) throws InterruptedException;
+    
+  }
+  
+}
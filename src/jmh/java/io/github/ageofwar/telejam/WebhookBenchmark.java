@@ -0,0 +1,104 @@
+package io.github.ageofwar.telejam;
+
+import io.github.ageofwar.telejam.updates.Update;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput of a {@link WebhookBot} that receives updates from 40 concurrent connections,
+ * the maximum allowed by Telegram.
+ * <p>
+ * The updates are text messages sent to 1000 different chats. When the handler is slow,
+ * the throughput is limited by the threads that handle the updates, not by the
+ * connections, because the server responds before handling the update.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Dsun.net.httpserver.nodelay=true", "-Dhttp.maxConnections=40"})
+@Threads(40)
+public class WebhookBenchmark {
+  
+  private static final String GET_ME = "{\"ok\":true,\"result\":{\"id\":1,\"first_name\":\"Bot\",\"username\":\"bot\",\"is_bot\":true}}";
+  private static final int CHATS = 1000;
+  private static final int MAX_CONNECTIONS = 40;
+  private static final String SECRET_TOKEN = "secret";
+  
+  /**
+   * Time spent by the handler on every update, in milliseconds.
+   */
+  @Param({"0", "10"})
+  public long handlerMillis;
+  
+  private WebhookBot webhookBot;
+  private URL url;
+  private byte[][] updates;
+  private AtomicInteger nextUpdate;
+  
+  @Setup
+  public void start() throws IOException {
+    Bot bot = Bot.fromApiUrl("http://localhost/bot", "http://localhost/file",
+        (url, method) -> new ByteArrayInputStream(GET_ME.getBytes(StandardCharsets.UTF_8)));
+    InetSocketAddress address = new InetSocketAddress("127.0.0.1", 0);
+    webhookBot = new WebhookBot(bot, address, "/webhook", SECRET_TOKEN, MAX_CONNECTIONS, null) {
+      @Override
+      public void onUpdate(Update update) throws InterruptedException {
+        if (handlerMillis > 0) {
+          Thread.sleep(handlerMillis);
+        }
+      }
+    };
+    Thread thread = new Thread(webhookBot, "webhook-bot");
+    thread.setDaemon(true);
+    thread.start();
+    url = new URL("http", "127.0.0.1", webhookBot.getAddress().getPort(), "/webhook");
+    updates = new byte[CHATS][];
+    for (int i = 0; i < CHATS; i++) {
+      updates[i] = ("{\"update_id\":" + i + ",\"message\":{\"message_id\":" + i + ",\"date\":1546300800," +
+          "\"from\":{\"id\":" + (i + 1) + ",\"is_bot\":false,\"first_name\":\"User\",\"language_code\":\"en\"}," +
+          "\"chat\":{\"id\":" + (i + 1) + ",\"first_name\":\"User\",\"type\":\"private\"}," +
+          "\"text\":\"/start hello\",\"entities\":[{\"offset\":0,\"length\":6,\"type\":\"bot_command\"}]}}")
+          .getBytes(StandardCharsets.UTF_8);
+    }
+    nextUpdate = new AtomicInteger();
+  }
+  
+  @TearDown
+  public void stop() {
+    webhookBot.close();
+  }
+  
+  @Benchmark
+  public int post() throws IOException {
+    byte[] update = updates[Math.floorMod(nextUpdate.getAndIncrement(), CHATS)];
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setRequestMethod("POST");
+    connection.setDoOutput(true);
+    connection.setFixedLengthStreamingMode(update.length);
+    connection.setRequestProperty("Content-Type", "application/json");
+    connection.setRequestProperty(WebhookBot.SECRET_TOKEN_HEADER, SECRET_TOKEN);
+    try (OutputStream output = connection.getOutputStream()) {
+      output.write(update);
+    }
+    int responseCode = connection.getResponseCode();
+    try (InputStream input = connection.getInputStream()) {
+      while (input.read() != -1) {
+        // drain the response, so that the connection is reused
+      }
+    }
+    return responseCode;
+  }
+  
+}
@@ -0,0 +1,107 @@
+package io.github.ageofwar.telejam.connection;
+
+import io.github.ageofwar.telejam.Bot;
+import io.github.ageofwar.telejam.StubServer;
+import io.github.ageofwar.telejam.methods.SendChatAction;
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of concurrent method invocations with every transport.
+ * <p>
+ * The HTTP/1.1 transports, and {@link Http2Transport} with its HTTP/1.1 fallback
+ * (<code>http2-fallback</code>), send the requests to a {@link StubServer}.
+ * {@link Http2Transport} with HTTP/2 (<code>http2</code>) multiplexes them on a single
+ * connection to a MockWebServer that speaks HTTP/2 without TLS: the client uses
+ * prior knowledge, because HTTP/2 is negotiated only with TLS.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+@Threads(32)
+public class TransportBenchmark {
+  
+  private static final String GET_ME = "{\"ok\":true,\"result\":{\"id\":1,\"first_name\":\"Bot\",\"username\":\"bot\",\"is_bot\":true}}";
+  private static final String TRUE = "{\"ok\":true,\"result\":true}";
+  
+  @Param({"url-connection", "pooled", "http2-fallback", "http2"})
+  public String transport;
+  
+  /**
+   * Time spent by the server on every request, in milliseconds.
+   */
+  @Param({"5"})
+  public long latency;
+  
+  private StubServer server;
+  private MockWebServer http2Server;
+  private Bot bot;
+  
+  @Setup
+  public void start() throws IOException {
+    if (transport.equals("http2")) {
+      http2Server = new MockWebServer();
+      http2Server.setProtocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+      http2Server.setDispatcher(new Dispatcher() {
+        @Override
+        public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+          if (request.getPath().endsWith("/getMe")) {
+            return new MockResponse().setHeader("Content-Type", "application/json").setBody(GET_ME);
+          }
+          Thread.sleep(latency);
+          return new MockResponse().setHeader("Content-Type", "application/json").setBody(TRUE);
+        }
+      });
+      http2Server.start();
+      String url = "http://127.0.0.1:" + http2Server.getPort();
+      Http2Transport http2Transport = new Http2Transport(32, Duration.ofSeconds(10), Duration.ofSeconds(60),
+          builder -> builder.protocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE)));
+      bot = Bot.fromApiUrl(url + "/bot", url + "/file", http2Transport);
+    } else {
+      server = StubServer.start(latency);
+      bot = server.newBot(newTransport(transport));
+    }
+  }
+  
+  @TearDown
+  public void stop() throws IOException {
+    bot.getTransport().close();
+    if (server != null) {
+      server.close();
+    }
+    if (http2Server != null) {
+      http2Server.shutdown();
+    }
+  }
+  
+  @Benchmark
+  public Boolean execute() throws IOException {
+    return bot.execute(new SendChatAction().chat(1L).action("typing"));
+  }
+  
+  private static Transport newTransport(String name) {
+    switch (name) {
+      case "url-connection":
+        return new UrlConnectionTransport();
+      case "pooled":
+        return new PooledTransport(32, 30, TimeUnit.SECONDS);
+      case "http2-fallback":
+        return new Http2Transport(32);
+      default:
+        throw new IllegalArgumentException(name);
+    }
+  }
+  
+}
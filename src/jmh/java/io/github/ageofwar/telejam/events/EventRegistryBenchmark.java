@@ -0,0 +1,71 @@
+package io.github.ageofwar.telejam.events;
+
+import io.github.ageofwar.telejam.Bot;
+import io.github.ageofwar.telejam.callbacks.CallbackQueryHandler;
+import io.github.ageofwar.telejam.json.Json;
+import io.github.ageofwar.telejam.messages.TextMessageHandler;
+import io.github.ageofwar.telejam.updates.CallbackQueryUpdate;
+import io.github.ageofwar.telejam.updates.Update;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of dispatching a text message as the number of registered handlers grows.
+ * <p>
+ * Only one of the handlers consumes text messages, the others consume callback queries.
+ * Typed handlers implement {@link CallbackQueryHandler}, so the registry routes the message
+ * only to the text message handler; untyped handlers are plain update handlers that
+ * check the type of the update themselves, so every one of them is invoked.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventRegistryBenchmark {
+  
+  private static final String GET_ME = "{\"ok\":true,\"result\":{\"id\":1,\"first_name\":\"Bot\",\"username\":\"bot\",\"is_bot\":true}}";
+  private static final String UPDATE = "{\"update_id\":1,\"message\":{\"message_id\":1,\"date\":0,\"text\":\"hi\"," +
+      "\"chat\":{\"id\":3,\"first_name\":\"User\",\"type\":\"private\"}}}";
+  
+  @Param({"1", "10", "100", "1000"})
+  public int handlers;
+  
+  @Param({"typed", "untyped"})
+  public String handlerType;
+  
+  private EventRegistry events;
+  private Update update;
+  
+  @Setup
+  public void register(Blackhole blackhole) throws IOException {
+    Bot bot = Bot.fromApiUrl("http://localhost/bot", "http://localhost/file",
+        (url, method) -> new ByteArrayInputStream(GET_ME.getBytes(StandardCharsets.UTF_8)));
+    events = new EventRegistry(bot);
+    for (int i = 1; i < handlers; i++) {
+      if (handlerType.equals("typed")) {
+        events.registerUpdateHandler((CallbackQueryHandler) blackhole::consume);
+      } else {
+        events.registerUpdateHandler(update -> {
+          if (update instanceof CallbackQueryUpdate) {
+            blackhole.consume(((CallbackQueryUpdate) update).getCallbackQuery());
+          }
+        });
+      }
+    }
+    events.registerUpdateHandler((TextMessageHandler) blackhole::consume);
+    update = Json.fromJson(UPDATE, Update.class);
+  }
+  
+  @Benchmark
+  public void dispatch() throws Throwable {
+    events.onUpdate(update);
+  }
+  
+}
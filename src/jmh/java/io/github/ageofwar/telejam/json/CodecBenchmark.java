@@ -0,0 +1,109 @@
+package io.github.ageofwar.telejam.json;
+
+import io.github.ageofwar.telejam.inline.CallbackDataInlineKeyboardButton;
+import io.github.ageofwar.telejam.methods.SendMessage;
+import io.github.ageofwar.telejam.replymarkups.InlineKeyboardMarkup;
+import io.github.ageofwar.telejam.text.Text;
+import io.github.ageofwar.telejam.updates.Update;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the two hot paths of a {@link JsonCodec}: decoding the updates returned by getUpdates
+ * and encoding the parameters of a sendMessage.
+ * <p>
+ * The parameters are encoded both through {@link JsonOutput}, as the request bodies do,
+ * and by serializing the map returned by {@link SendMessage#getParameters()}.
+ * Every benchmark runs both with the adapters generated at compile time and with
+ * the reflective adapters of Gson, the only backend shipped with the library;
+ * another backend is compared by creating it in {@link #setUp()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+  
+  private static final Type PARAMETERS_TYPE = Json.genericTypeOf(Map.class, String.class, Object.class);
+  
+  /**
+   * Whether the codec uses the generated adapters.
+   */
+  @Param({"true", "false"})
+  public boolean generatedAdapters;
+  
+  private JsonCodec codec;
+  private SendMessage sendMessage;
+  private StringWriter output;
+  
+  @Setup
+  public void setUp() {
+    codec = new GsonCodec(false, 0, generatedAdapters);
+    sendMessage = new SendMessage()
+        .chat(123456789L)
+        .text(Text.parseHtml("<b>Hello</b> &lt;world&gt;"))
+        .replyToMessage(42L)
+        .replyMarkup(new InlineKeyboardMarkup(new CallbackDataInlineKeyboardButton("Press", "pressed")))
+        .disableNotification();
+    output = new StringWriter();
+  }
+  
+  @Benchmark
+  public Update[] decodeUpdates(Updates updates) {
+    return codec.fromJson(updates.json, 0, updates.json.length, Update[].class);
+  }
+  
+  @Benchmark
+  public int encodeSendMessage() throws IOException {
+    output.getBuffer().setLength(0);
+    JsonOutput json = codec.newOutput(output);
+    sendMessage.writeParameters(json);
+    json.flush();
+    return output.getBuffer().length();
+  }
+  
+  @Benchmark
+  public int encodeSendMessageParameters() throws IOException {
+    output.getBuffer().setLength(0);
+    codec.toJson(sendMessage.getParameters(), PARAMETERS_TYPE, output, false);
+    return output.getBuffer().length();
+  }
+  
+  /**
+   * The Json of an array of text messages sent to different chats.
+   */
+  @State(Scope.Benchmark)
+  public static class Updates {
+    
+    /**
+     * Number of updates in the array.
+     */
+    @Param({"1", "100"})
+    public int count;
+    
+    private byte[] json;
+    
+    @Setup
+    public void setUp() {
+      StringBuilder json = new StringBuilder("[");
+      for (int i = 0; i < count; i++) {
+        json.append(i > 0 ? "," : "").append("{\"update_id\":").append(i).append(",\"message\":{\"message_id\":")
+            .append(i).append(",\"date\":1546300800,")
+            .append("\"from\":{\"id\":").append(i + 1).append(",\"is_bot\":false,\"first_name\":\"User\",\"language_code\":\"en\"},")
+            .append("\"chat\":{\"id\":").append(i + 1).append(",\"first_name\":\"User\",\"type\":\"private\"},")
+            .append("\"text\":\"/start hello\",\"entities\":[{\"offset\":0,\"length\":6,\"type\":\"bot_command\"}]}}");
+      }
+      this.json = json.append("]").toString().getBytes(StandardCharsets.UTF_8);
+    }
+    
+  }
+  
+}
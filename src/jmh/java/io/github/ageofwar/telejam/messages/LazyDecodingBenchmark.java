@@ -0,0 +1,66 @@
+package io.github.ageofwar.telejam.messages;
+
+import io.github.ageofwar.telejam.json.GsonCodec;
+import io.github.ageofwar.telejam.updates.Update;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of decoding an update whose message replies to a large message, when the
+ * replied message is never accessed.
+ * <p>
+ * The replied message is a photo with several sizes and a long caption with entities.
+ * Run with <code>-prof gc</code> to compare the bytes allocated per update
+ * (<code>gc.alloc.rate.norm</code>) by the eager and the lazy codec.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LazyDecodingBenchmark {
+  
+  private static final String CHAT = "{\"id\":-1001234567890,\"title\":\"Group\",\"type\":\"supergroup\"}";
+  private static final String USER = "{\"id\":123456789,\"is_bot\":false,\"first_name\":\"User\",\"language_code\":\"en\"}";
+  
+  @Param({"false", "true"})
+  public boolean lazyDecoding;
+  
+  private GsonCodec codec;
+  private byte[] update;
+  
+  @Setup
+  public void setUp() {
+    codec = new GsonCodec(lazyDecoding);
+    StringBuilder photo = new StringBuilder();
+    for (int i = 0; i < 4; i++) {
+      photo.append(i > 0 ? "," : "").append("{\"file_id\":\"AgADBAADq6cxG-photo-").append(i)
+          .append("\",\"file_unique_id\":\"AQADq6cxGw").append(i).append("\",\"file_size\":")
+          .append(1000 * (i + 1)).append(",\"width\":").append(90 * (i + 1)).append(",\"height\":")
+          .append(60 * (i + 1)).append("}");
+    }
+    StringBuilder caption = new StringBuilder();
+    StringBuilder entities = new StringBuilder();
+    for (int i = 0; i < 20; i++) {
+      entities.append(i > 0 ? "," : "").append("{\"type\":\"bold\",\"offset\":")
+          .append(caption.length()).append(",\"length\":4}");
+      caption.append("word").append(i).append(' ');
+    }
+    String replyToMessage = "{\"message_id\":1,\"from\":" + USER + ",\"chat\":" + CHAT + ",\"date\":1546300800," +
+        "\"photo\":[" + photo + "],\"caption\":\"" + caption + "\",\"caption_entities\":[" + entities + "]," +
+        "\"reply_markup\":{\"inline_keyboard\":[[{\"text\":\"Like\",\"callback_data\":\"like\"}," +
+        "{\"text\":\"Share\",\"url\":\"https://t.me/share\"}]]}}";
+    update = ("{\"update_id\":1,\"message\":{\"message_id\":2,\"from\":" + USER + ",\"chat\":" + CHAT + "," +
+        "\"date\":1546300860,\"text\":\"nice\",\"reply_to_message\":" + replyToMessage + "}}")
+        .getBytes(StandardCharsets.UTF_8);
+  }
+  
+  @Benchmark
+  public Update decode() {
+    return codec.fromJson(update, 0, update.length, Update.class);
+  }
+  
+}
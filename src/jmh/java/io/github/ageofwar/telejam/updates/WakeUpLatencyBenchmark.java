@@ -0,0 +1,76 @@
+package io.github.ageofwar.telejam.updates;
+
+import io.github.ageofwar.telejam.Bot;
+import io.github.ageofwar.telejam.StubServer;
+import io.github.ageofwar.telejam.connection.UrlConnectionTransport;
+import io.github.ageofwar.telejam.methods.GetUpdates;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time needed by an idle {@link UpdateReader} to return an update.
+ * <p>
+ * Every invocation starts reading when there are no updates, and the stub server receives
+ * an update 50 milliseconds later, so the wake-up latency is the score minus 50 milliseconds.
+ * With long polling the server holds the request open and answers it as soon as the update
+ * is received; with short polling, that is a timeout of zero, the reader finds the update
+ * only after the back off of 500 milliseconds that follows an empty response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.nodelay=true")
+public class WakeUpLatencyBenchmark {
+  
+  private static final long ARRIVAL_DELAY = 50;
+  
+  /**
+   * Long polling timeout, in seconds.
+   */
+  @Param({"0", "30"})
+  public int timeout;
+  
+  private StubServer server;
+  private UpdateReader reader;
+  private BlockingQueue<String> received;
+  private ScheduledExecutorService telegram;
+  private long nextUpdateId;
+  
+  @Setup
+  public void start() throws IOException {
+    received = new LinkedBlockingQueue<>();
+    server = StubServer.start(0).on(GetUpdates.NAME, body -> {
+      String update = received.poll(timeout, TimeUnit.SECONDS);
+      return "{\"ok\":true,\"result\":[" + (update != null ? update : "") + "]}";
+    });
+    Bot bot = server.newBot(new UrlConnectionTransport());
+    reader = new UpdateReader(bot, timeout, UpdateReader.DEFAULT_LIMIT, attempts -> 500L);
+    telegram = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "stub-telegram");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+  
+  @TearDown
+  public void stop() throws IOException {
+    telegram.shutdownNow();
+    server.close();
+  }
+  
+  @Benchmark
+  public Update read() throws IOException, InterruptedException {
+    String update = "{\"update_id\":" + nextUpdateId++ + "}";
+    telegram.schedule(() -> received.add(update), ARRIVAL_DELAY, TimeUnit.MILLISECONDS);
+    return reader.read();
+  }
+  
+}
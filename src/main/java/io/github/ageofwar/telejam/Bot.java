@@ -1,10 +1,12 @@
 package io.github.ageofwar.telejam;
 
-import com.google.gson.JsonParseException;
-import io.github.ageofwar.telejam.connection.Http;
 import io.github.ageofwar.telejam.connection.InputFile;
+import io.github.ageofwar.telejam.connection.RequestTimeoutException;
 import io.github.ageofwar.telejam.connection.Result;
-import io.github.ageofwar.telejam.connection.UploadFile;
+import io.github.ageofwar.telejam.connection.Scheduler;
+import io.github.ageofwar.telejam.connection.Transport;
+import io.github.ageofwar.telejam.connection.UrlConnectionTransport;
+import io.github.ageofwar.telejam.json.JsonSyntaxException;
 import io.github.ageofwar.telejam.methods.GetFile;
 import io.github.ageofwar.telejam.methods.GetMe;
 import io.github.ageofwar.telejam.methods.TelegramMethod;
@@ -12,10 +14,24 @@ import io.github.ageofwar.telejam.users.User;
 
 import java.io.*;
 import java.lang.reflect.Type;
+import java.net.SocketTimeoutException;
 import java.net.URL;
-import java.util.Map;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static io.github.ageofwar.telejam.json.Json.*;
 
@@ -36,6 +52,33 @@ public final class Bot {
    */
   private static final String API_FILE_URL = "https://api.telegram.org/file/bot";
   
+  /**
+   * Maximum number of threads used by default by transports that block
+   * while waiting the response of an asynchronous method invocation.
+   */
+  private static final int MAX_ASYNC_THREADS = 64;
+  
+  /**
+   * Executor used by default for asynchronous method invocations.
+   * Invocations exceeding the number of threads are queued.
+   */
+  private static final ExecutorService ASYNC_EXECUTOR = newAsyncExecutor();
+  
+  /**
+   * Buffers used to read the responses of the Telegram API, reused by every thread.
+   */
+  private static final ThreadLocal<byte[]> RESPONSE_BUFFERS = ThreadLocal.withInitial(() -> new byte[8192]);
+  
+  /**
+   * Maximum size of a response buffer kept for reuse.
+   */
+  private static final int MAX_RETAINED_BUFFER_SIZE = 1 << 20;
+  
+  /**
+   * Types of the results of the methods, by return type of the methods.
+   */
+  private static final ConcurrentMap<Type, Type> RESULT_TYPES = new ConcurrentHashMap<>();
+  
   /**
    * The unique identifier of the bot.
    */
@@ -56,6 +99,31 @@ public final class Bot {
    */
   private final String apiFileUrl;
   
+  /**
+   * Transport used to send requests to the Telegram API.
+   */
+  private final Transport transport;
+  
+  /**
+   * Policy used to retry the method invocations, or <code>null</code> to never retry them.
+   */
+  private volatile RetryPolicy retryPolicy;
+  
+  /**
+   * Listener notified of the time spent by every method invocation, or <code>null</code>.
+   */
+  private volatile InvocationListener invocationListener;
+  
+  /**
+   * Number of results decoded.
+   */
+  private final AtomicLong decodedResults = new AtomicLong();
+  
+  /**
+   * Total time spent decoding results, in nanoseconds.
+   */
+  private final AtomicLong decodeNanos = new AtomicLong();
+  
   
   /**
    * Constructs and returns a Telegram Bot with a
@@ -67,7 +135,21 @@ public final class Bot {
    * @throws TelegramException if the token is invalid
    */
   public static Bot fromToken(String token) throws IOException {
-    return fromApiUrl(API_URL + token, API_FILE_URL + token);
+    return fromToken(token, new UrlConnectionTransport());
+  }
+  
+  /**
+   * Constructs and returns a Telegram Bot with a
+   * token and ensures that it is a valid bot.
+   *
+   * @param token     the token used for the connection to the Telegram API
+   * @param transport the transport used to send requests to the Telegram API
+   * @return the created bot
+   * @throws IOException       if an I/O Exception occurs
+   * @throws TelegramException if the token is invalid
+   */
+  public static Bot fromToken(String token, Transport transport) throws IOException {
+    return fromApiUrl(API_URL + token, API_FILE_URL + token, transport);
   }
   
   /**
@@ -81,13 +163,29 @@ public final class Bot {
    * @throws TelegramException if the token is invalid
    */
   public static Bot fromApiUrl(String apiUrl, String apiFileUrl) throws IOException {
-    return new Bot(apiUrl, apiFileUrl);
+    return fromApiUrl(apiUrl, apiFileUrl, new UrlConnectionTransport());
+  }
+  
+  /**
+   * Constructs and returns a Telegram Bot with the API url
+   * and ensures that it is a valid bot.
+   *
+   * @param apiUrl     the API url
+   * @param apiFileUrl the API file url
+   * @param transport  the transport used to send requests to the Telegram API
+   * @return the created bot
+   * @throws IOException       if an I/O Exception occurs
+   * @throws TelegramException if the token is invalid
+   */
+  public static Bot fromApiUrl(String apiUrl, String apiFileUrl, Transport transport) throws IOException {
+    return new Bot(apiUrl, apiFileUrl, transport);
   }
   
   
-  private Bot(String apiUrl, String apiFileUrl) throws IOException {
+  private Bot(String apiUrl, String apiFileUrl, Transport transport) throws IOException {
     this.apiUrl = apiUrl;
     this.apiFileUrl = apiFileUrl;
+    this.transport = Objects.requireNonNull(transport, "transport cannot be null!");
     User thisBot = execute(GetMe.INSTANCE);
     username = thisBot.getUsername().orElseThrow(AssertionError::new);
     id = thisBot.getId();
@@ -96,33 +194,257 @@ public final class Bot {
   
   /**
    * Invokes a method of the Telegram Bot API.
+   * If a retry policy is set, the invocations that fail because of flood control
+   * are retried after waiting in the current thread.
    *
    * @param method     the method to execute
    * @param <T>        the return type of the method
    * @return the result of the method invocation
-   * @throws IOException       if an I/O error occurs
-   * @throws TelegramException if the method invocation returns an error
+   * @throws IOException             if an I/O error occurs
+   * @throws TelegramException       if the method invocation returns an error
+   * @throws RequestTimeoutException if the method invocation times out
    */
   public <T extends Serializable> T execute(TelegramMethod<T> method) throws IOException {
+    RetryPolicy retryPolicy = this.retryPolicy;
+    if (retryPolicy == null) {
+      return executeOnce(method);
+    }
+    for (int attempt = 0; ; attempt++) {
+      TelegramMethod<T> invokedMethod = retryPolicy.rewrite(method);
+      try {
+        return executeOnce(invokedMethod);
+      } catch (TelegramException e) {
+        long delay = retryPolicy.delayOf(invokedMethod, e, attempt);
+        if (delay < 0) {
+          throw e;
+        }
+        try {
+          Thread.sleep(delay);
+        } catch (InterruptedException interruptedException) {
+          Thread.currentThread().interrupt();
+          InterruptedIOException exception = new InterruptedIOException("Interrupted while waiting to retry");
+          exception.addSuppressed(e);
+          throw exception;
+        }
+      }
+    }
+  }
+  
+  /**
+   * Asynchronously invokes a method of the Telegram Bot API.
+   * The returned future completes exceptionally with a {@link TelegramException}
+   * if the method invocation returns an error, with a {@link RequestTimeoutException}
+   * if the method invocation times out, or with an {@link IOException}
+   * if an I/O error occurs.
+   * <p>
+   * This method is a thread-pool wrapper around the blocking transports, not a
+   * non-blocking client: none of the transports of this library uses non-blocking I/O,
+   * so every invocation in progress holds a thread until its response arrives, and the
+   * number of invocations in flight is bounded by the number of threads.
+   * The default transport, like any transport that does not override {@link Transport#postAsync},
+   * sends the requests on a shared pool of 64 threads, so at most 64 invocations are in progress
+   * at the same time and the others wait in an unbounded queue;
+   * {@link io.github.ageofwar.telejam.connection.Http2Transport} uses the threads of OkHttp,
+   * one for every concurrent stream.
+   * Use this method to avoid blocking the caller, not to keep thousands of invocations in flight.
+   *
+   * @param method the method to execute
+   * @param <T>    the return type of the method
+   * @return a future that completes with the result of the method invocation
+   */
+  public <T extends Serializable> CompletableFuture<T> executeAsync(TelegramMethod<T> method) {
+    return executeAsync(method, ASYNC_EXECUTOR);
+  }
+  
+  /**
+   * Asynchronously invokes a method of the Telegram Bot API.
+   * The returned future completes exceptionally with a {@link TelegramException}
+   * if the method invocation returns an error, with a {@link RequestTimeoutException}
+   * if the method invocation times out, or with an {@link IOException}
+   * if an I/O error occurs.
+   * If a retry policy is set, the invocations that fail because of flood control
+   * are rescheduled without blocking any thread.
+   * <p>
+   * Like {@link #executeAsync(TelegramMethod)}, this is a wrapper around a blocking transport:
+   * every invocation in progress holds a thread of the specified executor, or of the transport,
+   * until its response arrives.
+   *
+   * @param method   the method to execute
+   * @param executor the executor used by transports that block while waiting the response
+   * @param <T>      the return type of the method
+   * @return a future that completes with the result of the method invocation
+   */
+  public <T extends Serializable> CompletableFuture<T> executeAsync(TelegramMethod<T> method, Executor executor) {
+    RetryPolicy retryPolicy = this.retryPolicy;
+    if (retryPolicy == null) {
+      return executeAsyncOnce(method, executor);
+    }
+    CompletableFuture<T> result = new CompletableFuture<>();
+    executeAsync(method, executor, retryPolicy, 0, result);
+    return result;
+  }
+  
+  /**
+   * Sets the policy used to retry the method invocations that fail because of
+   * flood control or because the target group has been migrated to a supergroup.
+   *
+   * @param retryPolicy the retry policy, or <code>null</code> to never retry method invocations
+   */
+  public void setRetryPolicy(RetryPolicy retryPolicy) {
+    this.retryPolicy = retryPolicy;
+  }
+  
+  /**
+   * Returns the policy used to retry the method invocations.
+   *
+   * @return the retry policy, or an empty optional if method invocations are never retried
+   */
+  public Optional<RetryPolicy> getRetryPolicy() {
+    return Optional.ofNullable(retryPolicy);
+  }
+  
+  /**
+   * Sets the listener notified of the time spent receiving and decoding the response
+   * of every method invocation, to tell the cost of decoding an invocation apart from
+   * the cost of the network.
+   *
+   * @param invocationListener the listener, or <code>null</code> to remove it
+   */
+  public void setInvocationListener(InvocationListener invocationListener) {
+    this.invocationListener = invocationListener;
+  }
+  
+  /**
+   * Returns the listener notified of the time spent by every method invocation.
+   *
+   * @return the invocation listener, or an empty optional if no listener is set
+   */
+  public Optional<InvocationListener> getInvocationListener() {
+    return Optional.ofNullable(invocationListener);
+  }
+  
+  private <T extends Serializable> T executeOnce(TelegramMethod<T> method) throws IOException {
+    String url = apiUrl + '/' + method.getName();
+    long start = System.nanoTime();
+    try {
+      InputStream inputStream = transport.post(url, method);
+      return parseResult(inputStream, method, start);
+    } catch (SocketTimeoutException e) {
+      throw toTimeoutException(method, e);
+    }
+  }
+  
+  private <T extends Serializable> CompletableFuture<T> executeAsyncOnce(TelegramMethod<T> method, Executor executor) {
     String url = apiUrl + '/' + method.getName();
-    Map<String, Object> parameters = method.getParameters();
-    Map<String, UploadFile> files = method.getFiles();
-    InputStream inputStream = Http.post(url, parameters, files);
-    return parseResult(inputStream, method.getReturnType());
-  }
-  
-  private static <T extends Serializable> T parseResult(InputStream inputStream, Type returnType)
-      throws IOException {
-    try (BufferedReader json = new BufferedReader(new InputStreamReader(inputStream))) {
-      Result<T> result = fromJson(json, genericTypeOf(Result.class, returnType));
-      if (!result.ok()) {
-        throw result.toException();
+    CompletableFuture<T> result = new CompletableFuture<>();
+    long start = System.nanoTime();
+    transport.postAsync(url, method, executor).whenComplete((inputStream, error) -> {
+      try {
+        if (error != null) {
+          throw error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        }
+        result.complete(parseResult(inputStream, method, start));
+      } catch (SocketTimeoutException e) {
+        result.completeExceptionally(toTimeoutException(method, e));
+      } catch (Throwable e) {
+        result.completeExceptionally(e);
+      }
+    });
+    return result;
+  }
+  
+  private <T extends Serializable> void executeAsync(TelegramMethod<T> method,
+                                                    Executor executor,
+                                                    RetryPolicy retryPolicy,
+                                                    int attempt,
+                                                    CompletableFuture<T> result) {
+    TelegramMethod<T> invokedMethod = retryPolicy.rewrite(method);
+    executeAsyncOnce(invokedMethod, executor).whenComplete((value, error) -> {
+      if (error == null) {
+        result.complete(value);
+        return;
+      }
+      long delay = retryPolicy.delayOf(invokedMethod, error, attempt);
+      if (delay < 0) {
+        result.completeExceptionally(error);
+      } else if (delay == 0) {
+        executeAsync(method, executor, retryPolicy, attempt + 1, result);
+      } else {
+        Scheduler.schedule(
+            () -> executeAsync(method, executor, retryPolicy, attempt + 1, result),
+            delay,
+            TimeUnit.MILLISECONDS
+        );
+      }
+    });
+  }
+  
+  private static ExecutorService newAsyncExecutor() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+        MAX_ASYNC_THREADS, MAX_ASYNC_THREADS,
+        60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(),
+        new ThreadFactory() {
+          private final AtomicInteger count = new AtomicInteger();
+          
+          @Override
+          public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "telejam-async-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        }
+    );
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+  
+  private static RequestTimeoutException toTimeoutException(TelegramMethod<?> method, SocketTimeoutException e) {
+    if (e instanceof RequestTimeoutException) {
+      return (RequestTimeoutException) e;
+    }
+    return new RequestTimeoutException(method.getName(), e);
+  }
+  
+  private <T extends Serializable> T parseResult(InputStream inputStream,
+                                                 TelegramMethod<T> method,
+                                                 long start) throws IOException {
+    byte[] buffer = RESPONSE_BUFFERS.get();
+    int length = 0;
+    try (InputStream in = inputStream) {
+      int read;
+      while ((read = in.read(buffer, length, buffer.length - length)) != -1) {
+        length += read;
+        if (length == buffer.length) {
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
       }
-      return result.get();
-    } catch (JsonParseException e) {
+    }
+    if (buffer.length <= MAX_RETAINED_BUFFER_SIZE) {
+      RESPONSE_BUFFERS.set(buffer);
+    }
+    Type resultType = RESULT_TYPES.computeIfAbsent(method.getReturnType(), type -> genericTypeOf(Result.class, type));
+    long received = System.nanoTime();
+    Result<T> result;
+    try {
+      result = fromJson(buffer, 0, length, resultType);
+    } catch (JsonSyntaxException e) {
       throw new IOException(e);
+    } finally {
+      long decodeTime = System.nanoTime() - received;
+      decodeNanos.addAndGet(decodeTime);
+      decodedResults.incrementAndGet();
+      InvocationListener invocationListener = this.invocationListener;
+      if (invocationListener != null) {
+        invocationListener.onInvocation(method, Duration.ofNanos(received - start), Duration.ofNanos(decodeTime));
+      }
     }
+    if (!result.ok()) {
+      throw result.toException();
+    }
+    return result.get();
   }
+
   
   /**
    * Returns the file with the specified id.
@@ -157,6 +479,45 @@ public final class Bot {
     return username;
   }
   
+  /**
+   * Returns the transport used to send requests to the Telegram API.
+   *
+   * @return the transport of the bot
+   */
+  public Transport getTransport() {
+    return transport;
+  }
+  
+  /**
+   * Returns the number of results of method invocations decoded by this bot.
+   * The time spent by a single invocation is reported to the {@link InvocationListener}.
+   *
+   * @return the number of decoded results
+   */
+  public long getDecodedResults() {
+    return decodedResults.get();
+  }
+  
+  /**
+   * Returns the total time spent decoding the results of method invocations.
+   * The time spent receiving the responses is not included.
+   *
+   * @return the total decode time
+   */
+  public Duration getDecodeTime() {
+    return Duration.ofNanos(decodeNanos.get());
+  }
+  
+  /**
+   * Returns the average time spent decoding the result of a method invocation.
+   *
+   * @return the average decode time
+   */
+  public Duration getAverageDecodeTime() {
+    long results = decodedResults.get();
+    return results == 0 ? Duration.ZERO : Duration.ofNanos(decodeNanos.get() / results);
+  }
+  
   /**
    * Returns the id of the bot.
    *
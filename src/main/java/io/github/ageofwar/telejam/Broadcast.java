@@ -0,0 +1,467 @@
+package io.github.ageofwar.telejam;
+
+import io.github.ageofwar.telejam.connection.Scheduler;
+import io.github.ageofwar.telejam.methods.TelegramMethod;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalInt;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+/**
+ * Sends a message to many chats at a constant rate.
+ * <p>
+ * The identifiers of the chats are kept in a primitive array. Chats that blocked the bot
+ * are skipped, and invocations that fail because of flood control are retried after the
+ * time requested by Telegram, pausing the broadcast. The progress is saved periodically to
+ * a checkpoint file, so that an interrupted broadcast can be resumed by running it again
+ * with the same chats and the same checkpoint file: chats whose message has been
+ * confirmed are not sent the message again.
+ * <p>
+ * Only the chats that received the message or that failed because of a permanent error
+ * of the chat, like a chat that does not exist, are saved to the checkpoint. Chats that failed
+ * because of a transient error, like an I/O error, a server error or a flood control that
+ * lasted too long, are sent the message again when the broadcast is resumed.
+ * <p>
+ * Client errors unrelated to the chat, like an invalid token or an invalid message,
+ * would be returned for every chat, so they stop the broadcast.
+ *
+ * @author Michi Palazzo
+ */
+public final class Broadcast {
+  
+  /**
+   * Default number of messages sent per second.
+   */
+  public static final int DEFAULT_MESSAGES_PER_SECOND = 30;
+  
+  private static final String CHECKPOINT_HEADER = "telejam-broadcast";
+  private static final long CHECKPOINT_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+  private static final int MAX_ATTEMPTS = 5;
+  private static final int BAD_REQUEST = 400;
+  private static final int FORBIDDEN = 403;
+  private static final int TOO_MANY_REQUESTS = 429;
+  private static final String[] CHAT_ERRORS = {"chat not found", "user is deactivated", "peer_id_invalid"};
+  
+  private final Bot bot;
+  private final long[] chatIds;
+  private final LongFunction<? extends TelegramMethod<?>> message;
+  private final Path checkpoint;
+  private final int messagesPerSecond;
+  private final BitSet completed;
+  private final Map<Integer, ScheduledFuture<?>> pendingRetries;
+  private boolean stopping;
+  private TelegramException error;
+  private int completedPrefix;
+  private long sent;
+  private long blocked;
+  private long failed;
+  private volatile long pausedUntil;
+  private long startTime;
+  private long endTime;
+  
+  /**
+   * Constructs a broadcast.
+   *
+   * @param bot               the bot that sends the messages
+   * @param chatIds           the identifiers of the chats
+   * @param message           function that returns the method that sends the message to a chat,
+   *                          given the identifier of the chat
+   * @param checkpoint        the file where the progress is saved, or <code>null</code>
+   *                          to not save the progress
+   * @param messagesPerSecond the number of messages sent per second
+   */
+  public Broadcast(Bot bot,
+                   long[] chatIds,
+                   LongFunction<? extends TelegramMethod<?>> message,
+                   Path checkpoint,
+                   int messagesPerSecond) {
+    if (messagesPerSecond <= 0) {
+      throw new IllegalArgumentException("messagesPerSecond must be positive");
+    }
+    this.bot = Objects.requireNonNull(bot);
+    this.chatIds = Objects.requireNonNull(chatIds);
+    this.message = Objects.requireNonNull(message);
+    this.checkpoint = checkpoint;
+    this.messagesPerSecond = messagesPerSecond;
+    completed = new BitSet(chatIds.length);
+    pendingRetries = new HashMap<>();
+  }
+  
+  /**
+   * Constructs a broadcast that sends 30 messages per second.
+   *
+   * @param bot        the bot that sends the messages
+   * @param chatIds    the identifiers of the chats
+   * @param message    function that returns the method that sends the message to a chat,
+   *                   given the identifier of the chat
+   * @param checkpoint the file where the progress is saved, or <code>null</code>
+   *                   to not save the progress
+   */
+  public Broadcast(Bot bot, long[] chatIds, LongFunction<? extends TelegramMethod<?>> message, Path checkpoint) {
+    this(bot, chatIds, message, checkpoint, DEFAULT_MESSAGES_PER_SECOND);
+  }
+  
+  /**
+   * Reads the identifiers of the chats from a text file that contains one identifier per line.
+   * Empty lines are ignored.
+   *
+   * @param file the file to read
+   * @return the identifiers of the chats
+   * @throws IOException if an I/O error occurs
+   */
+  public static long[] readChatIds(Path file) throws IOException {
+    long[] chatIds = new long[1024];
+    int size = 0;
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (line.isEmpty()) {
+          continue;
+        }
+        if (size == chatIds.length) {
+          chatIds = Arrays.copyOf(chatIds, size * 2);
+        }
+        try {
+          chatIds[size++] = Long.parseLong(line);
+        } catch (NumberFormatException e) {
+          throw new IOException("Invalid chat id: " + line, e);
+        }
+      }
+    }
+    return Arrays.copyOf(chatIds, size);
+  }
+  
+  /**
+   * Sends the message to all the chats that have not received it yet,
+   * blocking until all the invocations are completed.
+   * If the current thread is interrupted, no more messages are sent, and the
+   * progress is saved after the invocations already sent are completed.
+   *
+   * @throws TelegramException    if an invocation fails because of a client error unrelated to the chat;
+   *                              the chats that did not receive the message are not saved to the checkpoint
+   * @throws IOException          if the checkpoint file cannot be read or written
+   * @throws InterruptedException if the current thread is interrupted
+   */
+  public void run() throws IOException, InterruptedException {
+    readCheckpoint();
+    Semaphore inFlight = new Semaphore(messagesPerSecond);
+    long interval = TimeUnit.SECONDS.toNanos(1) / messagesPerSecond;
+    synchronized (this) {
+      startTime = System.nanoTime();
+      endTime = 0;
+      stopping = false;
+      error = null;
+    }
+    long nextSend = System.nanoTime();
+    long nextCheckpoint = nextSend + CHECKPOINT_INTERVAL;
+    try {
+      for (int i = completedPrefix(); i < chatIds.length; i++) {
+        if (isCompleted(i)) {
+          continue;
+        }
+        inFlight.acquire();
+        TelegramException failure = getError();
+        if (failure != null) {
+          inFlight.release();
+          throw failure;
+        }
+        nextSend = Math.max(nextSend, pausedUntil);
+        long now = System.nanoTime();
+        if (nextSend > now) {
+          try {
+            TimeUnit.NANOSECONDS.sleep(nextSend - now);
+          } catch (InterruptedException e) {
+            // the message has not been sent, so the permit would never be released
+            inFlight.release();
+            throw e;
+          }
+          now = nextSend;
+        }
+        nextSend = Math.max(nextSend, now - interval) + interval;
+        send(i, 1, inFlight);
+        if (now >= nextCheckpoint) {
+          writeCheckpoint();
+          nextCheckpoint = now + CHECKPOINT_INTERVAL;
+        }
+      }
+      inFlight.acquire(messagesPerSecond);
+      inFlight.release(messagesPerSecond);
+      TelegramException failure = getError();
+      if (failure != null) {
+        throw failure;
+      }
+    } finally {
+      stop(inFlight);
+      writeCheckpoint();
+    }
+  }
+  
+  /**
+   * Returns the number of chats.
+   *
+   * @return the number of chats
+   */
+  public int getTotal() {
+    return chatIds.length;
+  }
+  
+  /**
+   * Returns the number of chats that received the message or that have been skipped
+   * because they blocked the bot or because of a permanent error,
+   * including the chats completed before the broadcast was resumed.
+   *
+   * @return the number of completed chats
+   */
+  public synchronized int getCompleted() {
+    return completed.cardinality();
+  }
+  
+  /**
+   * Returns the number of messages sent since the broadcast was started or resumed.
+   *
+   * @return the number of sent messages
+   */
+  public synchronized long getSent() {
+    return sent;
+  }
+  
+  /**
+   * Returns the number of chats skipped because they blocked the bot.
+   *
+   * @return the number of blocked chats
+   */
+  public synchronized long getBlocked() {
+    return blocked;
+  }
+  
+  /**
+   * Returns the number of chats skipped because of an error,
+   * including the chats that will be sent the message again when the broadcast is resumed.
+   *
+   * @return the number of failed chats
+   */
+  public synchronized long getFailed() {
+    return failed;
+  }
+  
+  /**
+   * Returns the number of messages sent per second since the broadcast was started or resumed.
+   *
+   * @return the throughput of the broadcast
+   */
+  public synchronized double getThroughput() {
+    if (startTime == 0) {
+      return 0;
+    }
+    long elapsed = (endTime != 0 ? endTime : System.nanoTime()) - startTime;
+    return elapsed > 0 ? sent * (double) TimeUnit.SECONDS.toNanos(1) / elapsed : 0;
+  }
+  
+  private void send(int index, int attempt, Semaphore inFlight) {
+    CompletableFuture<?> invocation;
+    try {
+      invocation = bot.executeAsync(message.apply(chatIds[index]));
+    } catch (RuntimeException e) {
+      inFlight.release();
+      throw e;
+    }
+    invocation.whenComplete((result, error) -> {
+      if (error == null) {
+        complete(index, Outcome.SENT);
+        inFlight.release();
+        return;
+      }
+      if (error instanceof TelegramException) {
+        TelegramException e = (TelegramException) error;
+        if (e.getErrorCode() == FORBIDDEN) {
+          complete(index, Outcome.BLOCKED);
+          inFlight.release();
+          return;
+        }
+        OptionalInt retryAfter = e.getResponseParameters()
+            .map(parameters -> parameters.getRetryAfter())
+            .orElse(OptionalInt.empty());
+        if (e.getErrorCode() == TOO_MANY_REQUESTS && retryAfter.isPresent() && attempt < MAX_ATTEMPTS) {
+          long delay = TimeUnit.SECONDS.toNanos(retryAfter.getAsInt());
+          pausedUntil = Math.max(pausedUntil, System.nanoTime() + delay);
+          retry(index, attempt + 1, inFlight, delay);
+          return;
+        }
+        if (isChatError(e)) {
+          complete(index, Outcome.FAILED);
+          inFlight.release();
+          return;
+        }
+        if (isClientError(e)) {
+          fail(e);
+        }
+      }
+      complete(index, Outcome.FAILED_TEMPORARILY);
+      inFlight.release();
+    });
+  }
+  
+  private void retry(int index, int attempt, Semaphore inFlight, long delay) {
+    synchronized (this) {
+      if (!stopping) {
+        pendingRetries.put(index, Scheduler.schedule(() -> {
+          synchronized (this) {
+            pendingRetries.remove(index);
+            if (stopping) {
+              inFlight.release();
+              return;
+            }
+          }
+          send(index, attempt, inFlight);
+        }, delay, TimeUnit.NANOSECONDS));
+        return;
+      }
+    }
+    inFlight.release();
+  }
+  
+  /**
+   * Cancels the retries not sent yet and waits for the invocations in flight,
+   * so that the chats that received the message are saved to the checkpoint.
+   */
+  private void stop(Semaphore inFlight) {
+    synchronized (this) {
+      stopping = true;
+      for (ScheduledFuture<?> pendingRetry : pendingRetries.values()) {
+        if (pendingRetry.cancel(false)) {
+          inFlight.release();
+        }
+      }
+      pendingRetries.clear();
+    }
+    inFlight.acquireUninterruptibly(messagesPerSecond);
+    inFlight.release(messagesPerSecond);
+    synchronized (this) {
+      endTime = System.nanoTime();
+    }
+  }
+  
+  private synchronized void fail(TelegramException e) {
+    if (error == null) {
+      error = e;
+    }
+  }
+  
+  private synchronized TelegramException getError() {
+    return error;
+  }
+  
+  private static boolean isChatError(TelegramException e) {
+    if (e.getErrorCode() != BAD_REQUEST || e.getMessage() == null) {
+      return false;
+    }
+    String description = e.getMessage().toLowerCase(Locale.ROOT);
+    for (String chatError : CHAT_ERRORS) {
+      if (description.contains(chatError)) {
+        return true;
+      }
+    }
+    return false;
+  }
+  
+  private static boolean isClientError(TelegramException e) {
+    // unlike server errors, client errors are returned again if the message is sent again
+    int errorCode = e.getErrorCode();
+    return errorCode >= 400 && errorCode < 500 && errorCode != TOO_MANY_REQUESTS;
+  }
+  
+  private synchronized void complete(int index, Outcome outcome) {
+    if (outcome != Outcome.FAILED_TEMPORARILY) {
+      completed.set(index);
+    }
+    switch (outcome) {
+      case SENT:
+        sent++;
+        break;
+      case BLOCKED:
+        blocked++;
+        break;
+      default:
+        failed++;
+    }
+  }
+  
+  private synchronized boolean isCompleted(int index) {
+    return completed.get(index);
+  }
+  
+  private synchronized int completedPrefix() {
+    completedPrefix = completed.nextClearBit(completedPrefix);
+    return completedPrefix;
+  }
+  
+  private void readCheckpoint() throws IOException {
+    if (checkpoint == null || !Files.exists(checkpoint)) {
+      return;
+    }
+    try (BufferedReader reader = Files.newBufferedReader(checkpoint, StandardCharsets.UTF_8)) {
+      String header = reader.readLine();
+      if (header == null || !header.equals(CHECKPOINT_HEADER + " " + chatIds.length)) {
+        throw new IOException("The checkpoint does not belong to this broadcast: " + checkpoint);
+      }
+      String prefix = reader.readLine();
+      synchronized (this) {
+        completed.clear();
+        completed.set(0, Math.min(Integer.parseInt(prefix), chatIds.length));
+        String line;
+        while ((line = reader.readLine()) != null) {
+          completed.set(Integer.parseInt(line));
+        }
+        completedPrefix = 0;
+      }
+    } catch (NumberFormatException | IndexOutOfBoundsException e) {
+      throw new IOException("Invalid checkpoint: " + checkpoint, e);
+    }
+  }
+  
+  private void writeCheckpoint() throws IOException {
+    if (checkpoint == null) {
+      return;
+    }
+    BitSet snapshot;
+    int prefix;
+    synchronized (this) {
+      snapshot = (BitSet) completed.clone();
+      prefix = completedPrefix();
+    }
+    Path temporary = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+    try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+      writer.write(CHECKPOINT_HEADER + " " + chatIds.length);
+      writer.newLine();
+      writer.write(Integer.toString(prefix));
+      writer.newLine();
+      for (int i = snapshot.nextSetBit(prefix); i >= 0; i = snapshot.nextSetBit(i + 1)) {
+        writer.write(Integer.toString(i));
+        writer.newLine();
+      }
+    }
+    Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+  
+  private enum Outcome {
+    SENT, BLOCKED, FAILED, FAILED_TEMPORARILY
+  }
+  
+}
@@ -0,0 +1,103 @@
+package io.github.ageofwar.telejam;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ToLongFunction;
+
+/**
+ * Bounded table of canonical objects identified by a <code>long</code> key,
+ * used to share the objects that recur in many updates, like users and chats.
+ * <p>
+ * The table is a fixed array of slots: every key can be stored in two slots, chosen
+ * by its hash. When both slots are taken by other keys, one of them is evicted.
+ * The key of an object is extracted from the object itself, so keys are never boxed.
+ * The table can be used by multiple threads without locking.
+ *
+ * @param <T> the type of the objects
+ * @author Michi Palazzo
+ */
+public final class InternTable<T> {
+  
+  private final AtomicReferenceArray<T> slots;
+  private final int mask;
+  private final ToLongFunction<? super T> keyOf;
+  
+  /**
+   * Constructs an intern table.
+   *
+   * @param capacity maximum number of objects in the table, rounded up to a power of two
+   * @param keyOf    function that returns the key of an object
+   */
+  public InternTable(int capacity, ToLongFunction<? super T> keyOf) {
+    if (capacity <= 0 || capacity > 1 << 30) {
+      throw new IllegalArgumentException("capacity must be positive and at most 2^30");
+    }
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    slots = new AtomicReferenceArray<>(Math.max(size, 2));
+    mask = slots.length() - 1;
+    this.keyOf = Objects.requireNonNull(keyOf);
+  }
+  
+  /**
+   * Returns the object with the specified key.
+   *
+   * @param key the key of the object
+   * @return the object with the specified key, or <code>null</code> if it is not in the table
+   */
+  public T get(long key) {
+    int index = indexOf(key);
+    T value = slots.get(index);
+    if (value != null && keyOf.applyAsLong(value) == key) {
+      return value;
+    }
+    value = slots.get((index + 1) & mask);
+    if (value != null && keyOf.applyAsLong(value) == key) {
+      return value;
+    }
+    return null;
+  }
+  
+  /**
+   * Stores an object in the table, replacing the object with the same key.
+   *
+   * @param value the object to store
+   */
+  public void put(T value) {
+    long key = keyOf.applyAsLong(value);
+    int index = indexOf(key);
+    int next = (index + 1) & mask;
+    T current = slots.get(index);
+    if (current != null && keyOf.applyAsLong(current) != key) {
+      T other = slots.get(next);
+      if (other == null || keyOf.applyAsLong(other) == key) {
+        index = next;
+      } else if ((key & 1) != 0) {
+        index = next;
+      }
+    } else {
+      T other = slots.get(next);
+      if (other != null && keyOf.applyAsLong(other) == key) {
+        slots.compareAndSet(next, other, null);
+      }
+    }
+    slots.set(index, value);
+  }
+  
+  /**
+   * Returns the maximum number of objects in this table.
+   *
+   * @return the capacity of this table
+   */
+  public int getCapacity() {
+    return slots.length();
+  }
+  
+  private int indexOf(long key) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+  
+}
@@ -0,0 +1,34 @@
+package io.github.ageofwar.telejam;
+
+import io.github.ageofwar.telejam.methods.TelegramMethod;
+
+import java.time.Duration;
+
+/**
+ * Listener notified by a bot every time it receives the response of a method invocation,
+ * with the time spent waiting for the response and the time spent decoding it.
+ * <p>
+ * The listener is invoked by the thread that decoded the response, before the
+ * result is returned to the caller, so it must be fast and must not throw.
+ *
+ * @author Michi Palazzo
+ * @see Bot#setInvocationListener(InvocationListener)
+ */
+@FunctionalInterface
+public interface InvocationListener {
+  
+  /**
+   * Invoked when the response of a method invocation has been decoded,
+   * whether it contains a result or an error.
+   * Invocations retried by the {@link RetryPolicy} notify the listener once for every attempt,
+   * while invocations that fail before receiving a response do not notify it.
+   *
+   * @param method       the invoked method
+   * @param transferTime the time from the moment the request was sent to the moment
+   *                     the whole response was received; for asynchronous invocations,
+   *                     it includes the time spent waiting for a thread
+   * @param decodeTime   the time spent decoding the response
+   */
+  void onInvocation(TelegramMethod<?> method, Duration transferTime, Duration decodeTime);
+  
+}
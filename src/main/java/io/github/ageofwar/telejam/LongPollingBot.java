@@ -5,6 +5,8 @@ import io.github.ageofwar.telejam.updates.Update;
 import io.github.ageofwar.telejam.updates.UpdateReader;
 
 import java.io.IOException;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.function.LongUnaryOperator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -20,6 +22,57 @@ public abstract class LongPollingBot extends TelegramBot implements AutoCloseabl
   
   private final Logger logger;
   private final UpdateReader updateReader;
+  private final UpdateDispatcher dispatcher;
+  
+  /**
+   * Constructs a long polling bot that receives updates from the specified reader
+   * and handles them using the specified number of threads.
+   * The reader receives only the types of the updates returned by {@link #getAllowedUpdates()}.
+   * Updates of the same chat are handled in order, see {@link UpdateDispatcher}.
+   * If the parallelism is greater than one, {@link #onUpdate(Update)} and
+   * {@link #onError(Throwable)} are invoked concurrently by many threads.
+   *
+   * @param bot          the bot used by the reader
+   * @param updateReader the reader of the updates of the bot
+   * @param parallelism  the number of threads that handle the updates
+   * @param logger       optional logger
+   */
+  public LongPollingBot(Bot bot, UpdateReader updateReader, int parallelism, Logger logger) {
+    super(bot);
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("parallelism must be positive");
+    }
+    this.logger = logger != null ? logger : emptyLogger();
+    this.updateReader = Objects.requireNonNull(updateReader);
+    updateReader.setAllowedUpdates(this::getAllowedUpdates);
+    dispatcher = parallelism > 1 ?
+        new UpdateDispatcher(this::onUpdate, this::handleError, parallelism, UpdateDispatcher.DEFAULT_QUEUE_CAPACITY) :
+        null;
+  }
+  
+  /**
+   * Constructs a long polling bot that receives updates from the specified reader.
+   *
+   * @param bot          the bot used by the reader
+   * @param updateReader the reader of the updates of the bot
+   * @param logger       optional logger
+   */
+  public LongPollingBot(Bot bot, UpdateReader updateReader, Logger logger) {
+    this(bot, updateReader, 1, logger);
+  }
+  
+  /**
+   * Constructs a long polling bot.
+   *
+   * @param bot     the bot used by the reader
+   * @param timeout timeout in seconds for long polling, or zero to use short polling
+   * @param limit   maximum number of updates retrieved with one request, between 1 and 100
+   * @param backOff back off to be used when long polling fails
+   * @param logger  optional logger
+   */
+  public LongPollingBot(Bot bot, int timeout, int limit, LongUnaryOperator backOff, Logger logger) {
+    this(bot, new UpdateReader(bot, timeout, limit, backOff), logger);
+  }
   
   /**
    * Constructs a long polling bot.
@@ -29,9 +82,7 @@ public abstract class LongPollingBot extends TelegramBot implements AutoCloseabl
    * @param logger  optional logger
    */
   public LongPollingBot(Bot bot, LongUnaryOperator backOff, Logger logger) {
-    super(bot);
-    this.logger = logger != null ? logger : emptyLogger();
-    updateReader = new UpdateReader(bot, backOff);
+    this(bot, new UpdateReader(bot, backOff), logger);
   }
   
   /**
@@ -78,17 +129,30 @@ public abstract class LongPollingBot extends TelegramBot implements AutoCloseabl
       try {
         Update update = updateReader.read();
         logger.finer(() -> "New update: " + Json.toJson(update));
-        onUpdate(update);
+        if (dispatcher != null) {
+          dispatcher.onUpdate(update);
+        } else {
+          onUpdate(update);
+        }
       } catch (InterruptedException e) {
         logger.info(() -> "Stopping " + bot.getUsername() + "...");
         Thread.currentThread().interrupt();
       } catch (Throwable e) {
-        logger.log(Level.WARNING, e.getLocalizedMessage(), e);
-        onError(e);
+        handleError(e);
       }
     }
   }
   
+  /**
+   * Returns the dispatcher that handles the updates in parallel,
+   * if the parallelism of this bot is greater than one.
+   *
+   * @return the dispatcher of this bot
+   */
+  public Optional<UpdateDispatcher> getDispatcher() {
+    return Optional.ofNullable(dispatcher);
+  }
+  
   /**
    * Handles an exception occurred while receiving or handling updates.
    *
@@ -103,7 +167,16 @@ public abstract class LongPollingBot extends TelegramBot implements AutoCloseabl
       updateReader.close();
     } catch (IOException e) {
       throw new IOException("Unable to close LongPollingBot", e);
+    } finally {
+      if (dispatcher != null) {
+        dispatcher.close();
+      }
     }
   }
   
+  private void handleError(Throwable e) {
+    logger.log(Level.WARNING, e.getLocalizedMessage(), e);
+    onError(e);
+  }
+  
 }
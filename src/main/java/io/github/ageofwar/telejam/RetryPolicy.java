@@ -0,0 +1,272 @@
+package io.github.ageofwar.telejam;
+
+import io.github.ageofwar.telejam.connection.ResponseParameters;
+import io.github.ageofwar.telejam.connection.UploadFile;
+import io.github.ageofwar.telejam.methods.TelegramMethod;
+
+import java.io.Serializable;
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Policy used by a bot to retry the method invocations that fail because of flood control
+ * or because the target group has been migrated to a supergroup.
+ * <p>
+ * When Telegram returns an error with a <code>retry_after</code> parameter, the method is invoked
+ * again after the specified time, increased by a random jitter; asynchronous invocations are
+ * rescheduled without blocking any thread. When Telegram returns an error with a
+ * <code>migrate_to_chat_id</code> parameter, the method is immediately invoked again on the new chat,
+ * and the new identifier of the chat is remembered, so that subsequent invocations on the
+ * old chat are sent to the new one.
+ * <p>
+ * Methods that upload files are never retried, because the content of the files is consumed
+ * by the first invocation: they fail with the error returned by Telegram, but the new identifier
+ * of a migrated chat is remembered anyway.
+ *
+ * @author Michi Palazzo
+ * @see Bot#setRetryPolicy(RetryPolicy)
+ */
+public final class RetryPolicy {
+  
+  /**
+   * Default maximum number of retries of a method invocation.
+   */
+  public static final int DEFAULT_MAX_RETRIES = 3;
+  
+  /**
+   * Default maximum time to wait before retrying a method invocation.
+   */
+  public static final Duration DEFAULT_MAX_DELAY = Duration.ofMinutes(1);
+  
+  /**
+   * Default maximum jitter, as a fraction of the time to wait.
+   */
+  public static final double DEFAULT_JITTER = 0.1;
+  
+  /**
+   * Default maximum number of migrated chats remembered.
+   */
+  public static final int DEFAULT_MIGRATION_CACHE_SIZE = 1024;
+  
+  private final int maxRetries;
+  private final long maxDelayMillis;
+  private final double jitter;
+  private final Map<String, Long> migrations;
+  private final AtomicLong retries;
+  private final AtomicLong migratedInvocations;
+  private final AtomicLong exhaustedRetries;
+  
+  /**
+   * Constructs a retry policy.
+   *
+   * @param maxRetries         maximum number of retries of a method invocation
+   * @param maxDelay           maximum time to wait before retrying: invocations that must wait
+   *                           longer fail immediately
+   * @param jitter             maximum random time added to the time to wait, as a fraction of it
+   * @param migrationCacheSize maximum number of migrated chats remembered
+   */
+  public RetryPolicy(int maxRetries, Duration maxDelay, double jitter, int migrationCacheSize) {
+    if (maxRetries < 0) {
+      throw new IllegalArgumentException("maxRetries must not be negative");
+    }
+    if (jitter < 0) {
+      throw new IllegalArgumentException("jitter must not be negative");
+    }
+    if (migrationCacheSize <= 0) {
+      throw new IllegalArgumentException("migrationCacheSize must be positive");
+    }
+    this.maxRetries = maxRetries;
+    maxDelayMillis = maxDelay.toMillis();
+    this.jitter = jitter;
+    migrations = Collections.synchronizedMap(new LinkedHashMap<String, Long>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+        return size() > migrationCacheSize;
+      }
+    });
+    retries = new AtomicLong();
+    migratedInvocations = new AtomicLong();
+    exhaustedRetries = new AtomicLong();
+  }
+  
+  /**
+   * Constructs a retry policy that retries a method invocation up to 3 times,
+   * waiting at most one minute before every retry.
+   */
+  public RetryPolicy() {
+    this(DEFAULT_MAX_RETRIES, DEFAULT_MAX_DELAY, DEFAULT_JITTER, DEFAULT_MIGRATION_CACHE_SIZE);
+  }
+  
+  /**
+   * Returns the new identifier of the specified chat, if it has been migrated to a supergroup.
+   *
+   * @param chatId the identifier of the chat
+   * @return the new identifier of the chat, or an empty optional if the
+   * chat has not been migrated or it has been forgotten
+   */
+  public OptionalLong getMigratedChatId(String chatId) {
+    Long migratedChatId = migrations.get(chatId);
+    return migratedChatId != null ? OptionalLong.of(migratedChatId) : OptionalLong.empty();
+  }
+  
+  /**
+   * Returns the number of method invocations retried after waiting.
+   *
+   * @return the number of retries
+   */
+  public long getRetries() {
+    return retries.get();
+  }
+  
+  /**
+   * Returns the number of method invocations sent to a migrated chat.
+   *
+   * @return the number of migrated invocations
+   */
+  public long getMigratedInvocations() {
+    return migratedInvocations.get();
+  }
+  
+  /**
+   * Returns the number of method invocations that failed because
+   * the maximum number of retries or the maximum delay was exceeded.
+   *
+   * @return the number of exhausted retries
+   */
+  public long getExhaustedRetries() {
+    return exhaustedRetries.get();
+  }
+  
+  /**
+   * Returns the method to invoke in place of the specified one: if the chat of the method
+   * has been migrated, a copy of the method that acts on the new chat.
+   *
+   * @param method the method to invoke
+   * @param <T>    the return type of the method
+   * @return the method to invoke
+   */
+  <T extends Serializable> TelegramMethod<T> rewrite(TelegramMethod<T> method) {
+    if (migrations.isEmpty()) {
+      return method;
+    }
+    Optional<String> chatId = method.getChatId();
+    if (!chatId.isPresent()) {
+      return method;
+    }
+    Long migratedChatId = migrations.get(chatId.get());
+    if (migratedChatId == null) {
+      return method;
+    }
+    migratedInvocations.incrementAndGet();
+    return new MigratedMethod<>(method, migratedChatId);
+  }
+  
+  /**
+   * Returns the time to wait before retrying a method invocation that failed.
+   * If the chat of the method has been migrated, the new identifier is remembered.
+   *
+   * @param method  the method that failed
+   * @param error   the error occurred
+   * @param attempt the number of retries already done
+   * @return the time to wait in milliseconds, or a negative number if the invocation must not be retried
+   */
+  long delayOf(TelegramMethod<?> method, Throwable error, int attempt) {
+    if (!(error instanceof TelegramException)) {
+      return -1;
+    }
+    Optional<ResponseParameters> parameters = ((TelegramException) error).getResponseParameters();
+    if (!parameters.isPresent()) {
+      return -1;
+    }
+    OptionalLong migrateToChatId = parameters.get().getMigrateToChatId();
+    if (migrateToChatId.isPresent()) {
+      Optional<String> chatId = method.getChatId();
+      if (!chatId.isPresent()) {
+        return -1;
+      }
+      migrations.put(chatId.get(), migrateToChatId.getAsLong());
+      if (!isRepeatable(method)) {
+        return -1;
+      }
+      return isExhausted(attempt, 0) ? -1 : 0;
+    }
+    OptionalInt retryAfter = parameters.get().getRetryAfter();
+    if (!retryAfter.isPresent() || !isRepeatable(method)) {
+      return -1;
+    }
+    long delay = retryAfter.getAsInt() * 1000L;
+    if (isExhausted(attempt, delay)) {
+      return -1;
+    }
+    delay += (long) (delay * jitter * ThreadLocalRandom.current().nextDouble());
+    retries.incrementAndGet();
+    return delay;
+  }
+  
+  /**
+   * Returns whether a retryable invocation has used up its retries,
+   * counting it in the exhausted retries.
+   */
+  private boolean isExhausted(int attempt, long delay) {
+    if (attempt >= maxRetries || delay > maxDelayMillis) {
+      exhaustedRetries.incrementAndGet();
+      return true;
+    }
+    return false;
+  }
+  
+  private static boolean isRepeatable(TelegramMethod<?> method) {
+    // the streams of the uploaded files cannot be read again
+    return method.getFiles().isEmpty();
+  }
+  
+  private static final class MigratedMethod<T extends Serializable> implements TelegramMethod<T> {
+    
+    private static final String CHAT_ID_FIELD = "chat_id";
+    
+    private final TelegramMethod<T> method;
+    private final long chatId;
+    
+    private MigratedMethod(TelegramMethod<T> method, long chatId) {
+      this.method = method;
+      this.chatId = chatId;
+    }
+    
+    @Override
+    public String getName() {
+      return method.getName();
+    }
+    
+    @Override
+    public Map<String, Object> getParameters() {
+      Map<String, Object> parameters = new LinkedHashMap<>(method.getParameters());
+      parameters.put(CHAT_ID_FIELD, chatId);
+      return parameters;
+    }
+    
+    @Override
+    public Type getReturnType() {
+      return method.getReturnType();
+    }
+    
+    @Override
+    public Map<String, UploadFile> getFiles() {
+      return method.getFiles();
+    }
+    
+    @Override
+    public Optional<Duration> getRequestTimeout() {
+      return method.getRequestTimeout();
+    }
+    
+    @Override
+    public Optional<String> getChatId() {
+      return Optional.of(Long.toString(chatId));
+    }
+  
+  }
+  
+}
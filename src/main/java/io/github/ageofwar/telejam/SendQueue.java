@@ -0,0 +1,326 @@
+package io.github.ageofwar.telejam;
+
+import io.github.ageofwar.telejam.methods.AnswerCallbackQuery;
+import io.github.ageofwar.telejam.methods.AnswerInlineQuery;
+import io.github.ageofwar.telejam.methods.TelegramMethod;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Queue of method invocations that are sent by a fixed number of threads,
+ * in order of priority and fairly across chats.
+ * <p>
+ * Invocations of a higher priority are always sent before the invocations of a lower priority.
+ * Invocations of the same priority are grouped by the chat they act on: chats take turns,
+ * so that a chat with many pending invocations cannot delay the invocations of the other chats.
+ * Invocations of the same priority and chat are sent one at a time, in the order they are submitted.
+ * Invocations that do not act on a chat are not ordered.
+ *
+ * @author Michi Palazzo
+ */
+public final class SendQueue implements AutoCloseable {
+  
+  /**
+   * Priority of a method invocation.
+   */
+  public enum Priority {
+    
+    /**
+     * Answers to callback queries and inline queries, that users are waiting for.
+     */
+    INTERACTIVE,
+    
+    /**
+     * Replies and other messages sent in response to users.
+     */
+    REPLY,
+    
+    /**
+     * Notifications and broadcasts.
+     */
+    BULK
+    
+  }
+  
+  private static final Priority[] PRIORITIES = Priority.values();
+  
+  private final Bot bot;
+  private final Object lock;
+  private final List<ArrayDeque<ChatQueue>> ready;
+  private final List<Map<String, ChatQueue>> chats;
+  private final int[] queueLengths;
+  private final long[] sentInvocations;
+  private final long[] latencyNanos;
+  private final Thread[] workers;
+  private boolean closed;
+  
+  /**
+   * Constructs a send queue.
+   *
+   * @param bot         the bot that invokes the methods
+   * @param parallelism maximum number of methods invoked at the same time
+   */
+  public SendQueue(Bot bot, int parallelism) {
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("parallelism must be positive");
+    }
+    this.bot = Objects.requireNonNull(bot);
+    lock = new Object();
+    ready = new ArrayList<>(PRIORITIES.length);
+    chats = new ArrayList<>(PRIORITIES.length);
+    for (int i = 0; i < PRIORITIES.length; i++) {
+      ready.add(new ArrayDeque<>());
+      chats.add(new HashMap<>());
+    }
+    queueLengths = new int[PRIORITIES.length];
+    sentInvocations = new long[PRIORITIES.length];
+    latencyNanos = new long[PRIORITIES.length];
+    workers = new Thread[parallelism];
+    for (int i = 0; i < parallelism; i++) {
+      workers[i] = new Thread(this::work, "telejam-send-queue-" + (i + 1));
+      workers[i].setDaemon(true);
+      workers[i].start();
+    }
+  }
+  
+  /**
+   * Returns the default priority of the specified method: {@link Priority#INTERACTIVE}
+   * for answers to callback queries and inline queries, {@link Priority#REPLY} otherwise.
+   *
+   * @param method the method
+   * @return the priority of the method
+   */
+  public static Priority priorityOf(TelegramMethod<?> method) {
+    String name = method.getName();
+    if (name.equals(AnswerCallbackQuery.NAME) || name.equals(AnswerInlineQuery.NAME)) {
+      return Priority.INTERACTIVE;
+    }
+    return Priority.REPLY;
+  }
+  
+  /**
+   * Submits a method invocation with the specified priority.
+   *
+   * @param method   the method to invoke
+   * @param priority the priority of the invocation
+   * @param <T>      the return type of the method
+   * @return a future that completes with the result of the method invocation
+   */
+  public <T extends Serializable> CompletableFuture<T> submit(TelegramMethod<T> method, Priority priority) {
+    Objects.requireNonNull(priority);
+    Task<T> task = new Task<>(method);
+    Optional<String> chatId = method.getChatId();
+    synchronized (lock) {
+      if (closed) {
+        throw new IllegalStateException("The send queue is closed");
+      }
+      int index = priority.ordinal();
+      ChatQueue queue;
+      if (chatId.isPresent()) {
+        queue = chats.get(index).computeIfAbsent(chatId.get(), key -> new ChatQueue(key, priority));
+      } else {
+        queue = new ChatQueue(null, priority);
+      }
+      queue.tasks.add(task);
+      queueLengths[index]++;
+      if (!queue.running && queue.tasks.size() == 1) {
+        ready.get(index).add(queue);
+        lock.notify();
+      }
+    }
+    return task.result;
+  }
+  
+  /**
+   * Submits a method invocation with its default priority.
+   *
+   * @param method the method to invoke
+   * @param <T>    the return type of the method
+   * @return a future that completes with the result of the method invocation
+   * @see #priorityOf(TelegramMethod)
+   */
+  public <T extends Serializable> CompletableFuture<T> submit(TelegramMethod<T> method) {
+    return submit(method, priorityOf(method));
+  }
+  
+  /**
+   * Returns the number of invocations of the specified priority waiting to be sent.
+   *
+   * @param priority the priority
+   * @return the length of the queue of the priority
+   */
+  public int getQueueLength(Priority priority) {
+    synchronized (lock) {
+      return queueLengths[priority.ordinal()];
+    }
+  }
+  
+  /**
+   * Returns the number of invocations of the specified priority already sent.
+   *
+   * @param priority the priority
+   * @return the number of sent invocations
+   */
+  public long getSentInvocations(Priority priority) {
+    synchronized (lock) {
+      return sentInvocations[priority.ordinal()];
+    }
+  }
+  
+  /**
+   * Returns the average time elapsed between the submission and the completion
+   * of the invocations of the specified priority.
+   *
+   * @param priority the priority
+   * @return the average latency of the invocations
+   */
+  public Duration getAverageLatency(Priority priority) {
+    synchronized (lock) {
+      int index = priority.ordinal();
+      return sentInvocations[index] == 0 ?
+          Duration.ZERO :
+          Duration.ofNanos(latencyNanos[index] / sentInvocations[index]);
+    }
+  }
+  
+  /**
+   * Stops the threads of this queue.
+   * Invocations not yet sent are cancelled.
+   */
+  @Override
+  public void close() {
+    List<Task<?>> cancelled = new ArrayList<>();
+    synchronized (lock) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      Arrays.fill(queueLengths, 0);
+      for (ArrayDeque<ChatQueue> queues : ready) {
+        for (ChatQueue queue : queues) {
+          cancelled.addAll(queue.tasks);
+          queue.tasks.clear();
+        }
+        queues.clear();
+      }
+      for (Map<String, ChatQueue> queues : chats) {
+        for (ChatQueue queue : queues.values()) {
+          cancelled.addAll(queue.tasks);
+          queue.tasks.clear();
+        }
+      }
+      lock.notifyAll();
+    }
+    for (Thread worker : workers) {
+      worker.interrupt();
+    }
+    for (Task<?> task : cancelled) {
+      task.result.completeExceptionally(new CancellationException("The send queue is closed"));
+    }
+  }
+  
+  private void work() {
+    try {
+      while (true) {
+        ChatQueue queue;
+        Task<?> task;
+        synchronized (lock) {
+          while ((queue = nextQueue()) == null) {
+            if (closed) {
+              return;
+            }
+            lock.wait();
+          }
+          task = queue.tasks.remove();
+          queue.running = true;
+          queueLengths[queue.priority.ordinal()]--;
+        }
+        task.execute(bot);
+        synchronized (lock) {
+          int index = queue.priority.ordinal();
+          sentInvocations[index]++;
+          latencyNanos[index] += System.nanoTime() - task.submissionTime;
+          queue.running = false;
+          if (!queue.tasks.isEmpty()) {
+            ready.get(index).add(queue);
+            lock.notify();
+          } else if (queue.chatId != null) {
+            chats.get(index).remove(queue.chatId);
+          }
+        }
+        task.complete();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+  
+  private ChatQueue nextQueue() {
+    for (ArrayDeque<ChatQueue> queues : ready) {
+      ChatQueue queue = queues.poll();
+      if (queue != null) {
+        return queue;
+      }
+    }
+    return null;
+  }
+  
+  private static final class ChatQueue {
+    
+    private final String chatId;
+    private final Priority priority;
+    private final ArrayDeque<Task<?>> tasks;
+    private boolean running;
+    
+    private ChatQueue(String chatId, Priority priority) {
+      this.chatId = chatId;
+      this.priority = priority;
+      tasks = new ArrayDeque<>();
+    }
+    
+  }
+  
+  private static final class Task<T extends Serializable> {
+    
+    private final TelegramMethod<T> method;
+    private final CompletableFuture<T> result;
+    private final long submissionTime;
+    private T value;
+    private Throwable error;
+    
+    private Task(TelegramMethod<T> method) {
+      this.method = Objects.requireNonNull(method);
+      result = new CompletableFuture<>();
+      submissionTime = System.nanoTime();
+    }
+    
+    private void execute(Bot bot) {
+      try {
+        value = bot.execute(method);
+      } catch (Throwable e) {
+        error = e;
+      }
+    }
+    
+    private void complete() {
+      if (error != null) {
+        result.completeExceptionally(error);
+      } else {
+        result.complete(value);
+      }
+    }
+    
+  }
+  
+}
@@ -29,4 +29,24 @@ public abstract class TelegramBot implements Runnable, UpdateHandler {
     events.onUpdate(update);
   }
   
+  /**
+   * Returns the names of the types of the updates handled by this bot,
+   * derived from the handlers registered in {@link #events}.
+   * If {@link #onUpdate(Update)} is overridden, returns an empty array,
+   * that makes Telegram send updates of all types.
+   *
+   * @return the allowed updates
+   * @see EventRegistry#getAllowedUpdates()
+   */
+  public String[] getAllowedUpdates() {
+    try {
+      if (getClass().getMethod("onUpdate", Update.class).getDeclaringClass() != TelegramBot.class) {
+        return new String[0];
+      }
+    } catch (NoSuchMethodException e) {
+      throw new AssertionError(e);
+    }
+    return events.getAllowedUpdates();
+  }
+  
 }
@@ -0,0 +1,396 @@
+package io.github.ageofwar.telejam;
+
+import io.github.ageofwar.telejam.messages.Message;
+import io.github.ageofwar.telejam.updates.*;
+import io.github.ageofwar.telejam.users.User;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Update handler that handles updates in parallel, preserving the order of the
+ * updates of the same chat.
+ * Updates are grouped by the identifier of their chat or, if they are not sent in a chat
+ * (for example inline queries and callback queries), by the identifier of their sender.
+ * Updates of the same group are handled one at a time in the order they are received,
+ * while updates of different groups are handled concurrently.
+ * Updates that do not belong to any chat nor user are handled without any ordering guarantee.
+ * <p>
+ * Every group has a bounded queue: when the queue is full, {@link #onUpdate(Update)}
+ * blocks until an update of the group is handled.
+ *
+ * @author Michi Palazzo
+ */
+public final class UpdateDispatcher implements UpdateHandler, AutoCloseable {
+  
+  /**
+   * Default maximum number of updates waiting to be handled for each chat.
+   */
+  public static final int DEFAULT_QUEUE_CAPACITY = 64;
+  
+  private final UpdateHandler handler;
+  private final Consumer<? super Throwable> errorHandler;
+  private final Executor executor;
+  private final boolean ownsExecutor;
+  private final int queueCapacity;
+  private final Object lock;
+  private final Map<Long, KeyQueue> queues;
+  private final ThreadLocal<Boolean> handling;
+  private int queuedUpdates;
+  private int pendingUpdates;
+  private long blockedDispatches;
+  private boolean closed;
+  
+  /**
+   * Constructs an update dispatcher that handles updates using the specified executor.
+   * The executor is not shut down when the dispatcher is closed.
+   *
+   * @param handler       the handler of the updates
+   * @param errorHandler  the handler of the exceptions thrown by the update handler
+   * @param executor      the executor that runs the update handler
+   * @param queueCapacity maximum number of updates waiting to be handled for each chat
+   */
+  public UpdateDispatcher(UpdateHandler handler,
+                          Consumer<? super Throwable> errorHandler,
+                          Executor executor,
+                          int queueCapacity) {
+    this(handler, errorHandler, executor, false, queueCapacity);
+  }
+  
+  /**
+   * Constructs an update dispatcher that handles updates using a pool of threads.
+   *
+   * @param handler       the handler of the updates
+   * @param errorHandler  the handler of the exceptions thrown by the update handler
+   * @param parallelism   the number of threads of the pool
+   * @param queueCapacity maximum number of updates waiting to be handled for each chat
+   */
+  public UpdateDispatcher(UpdateHandler handler,
+                          Consumer<? super Throwable> errorHandler,
+                          int parallelism,
+                          int queueCapacity) {
+    this(handler, errorHandler, newThreadPool(parallelism), true, queueCapacity);
+  }
+  
+  private UpdateDispatcher(UpdateHandler handler,
+                           Consumer<? super Throwable> errorHandler,
+                           Executor executor,
+                           boolean ownsExecutor,
+                           int queueCapacity) {
+    if (queueCapacity <= 0) {
+      throw new IllegalArgumentException("queueCapacity must be positive");
+    }
+    this.handler = Objects.requireNonNull(handler);
+    this.errorHandler = Objects.requireNonNull(errorHandler);
+    this.executor = Objects.requireNonNull(executor);
+    this.ownsExecutor = ownsExecutor;
+    this.queueCapacity = queueCapacity;
+    lock = new Object();
+    queues = new HashMap<>();
+    handling = new ThreadLocal<>();
+  }
+  
+  /**
+   * Returns an executor that starts a new virtual thread for each task, if the
+   * running Java Virtual Machine supports virtual threads.
+   * Virtual threads are well suited for handlers that spend most of their time
+   * waiting for the responses of the Telegram Bot API.
+   *
+   * @return a virtual thread executor, or an empty optional if virtual threads are not supported
+   */
+  public static Optional<ExecutorService> newVirtualThreadExecutor() {
+    try {
+      Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return Optional.of((ExecutorService) method.invoke(null));
+    } catch (ReflectiveOperationException e) {
+      return Optional.empty();
+    }
+  }
+  
+  /**
+   * Returns the key used to order the specified update: the identifier of the
+   * chat of the update or, if absent, the identifier of its sender.
+   *
+   * @param update the update
+   * @return the key of the update, or an empty optional if the update
+   * does not belong to any chat nor user
+   */
+  public static OptionalLong keyOf(Update update) {
+    Message message = null;
+    User sender = null;
+    if (update instanceof MessageUpdate) {
+      message = ((MessageUpdate) update).getMessage();
+    } else if (update instanceof EditedMessageUpdate) {
+      message = ((EditedMessageUpdate) update).getMessage();
+    } else if (update instanceof ChannelPostUpdate) {
+      message = ((ChannelPostUpdate) update).getChannelPost();
+    } else if (update instanceof EditedChannelPostUpdate) {
+      message = ((EditedChannelPostUpdate) update).getEditedChannelPost();
+    } else if (update instanceof CallbackQueryUpdate) {
+      sender = ((CallbackQueryUpdate) update).getCallbackQuery().getSender();
+    } else if (update instanceof InlineQueryUpdate) {
+      sender = ((InlineQueryUpdate) update).getInlineQuery().getSender();
+    } else if (update instanceof ChosenInlineResultUpdate) {
+      sender = ((ChosenInlineResultUpdate) update).getChosenInlineResult().getSender();
+    } else if (update instanceof ShippingQueryUpdate) {
+      sender = ((ShippingQueryUpdate) update).getShippingQuery().getSender();
+    } else if (update instanceof PreCheckoutQueryUpdate) {
+      sender = ((PreCheckoutQueryUpdate) update).getPreCheckoutQuery().getSender();
+    } else if (update instanceof PollAnswerUpdate) {
+      sender = ((PollAnswerUpdate) update).getPollAnswer().getUser();
+    }
+    if (message != null && message.getChat() != null) {
+      return OptionalLong.of(message.getChat().getId());
+    } else if (sender != null) {
+      return OptionalLong.of(sender.getId());
+    }
+    return OptionalLong.empty();
+  }
+  
+  /**
+   * Schedules the specified update to be handled.
+   * Blocks while the queue of the chat of the update is full.
+   *
+   * @param update the update to handle
+   * @throws InterruptedException       if the current thread is interrupted while waiting
+   * @throws RejectedExecutionException if the dispatcher is closed or the executor rejects the update
+   */
+  @Override
+  public void onUpdate(Update update) throws InterruptedException {
+    OptionalLong key = keyOf(update);
+    if (!key.isPresent()) {
+      synchronized (lock) {
+        checkOpen();
+        pendingUpdates++;
+      }
+      try {
+        executor.execute(() -> {
+          handle(update);
+          finished(1);
+        });
+      } catch (RejectedExecutionException e) {
+        finished(1);
+        throw e;
+      }
+      return;
+    }
+    long id = key.getAsLong();
+    KeyQueue queue;
+    boolean schedule;
+    synchronized (lock) {
+      queue = queues.computeIfAbsent(id, KeyQueue::new);
+      if (queue.updates.size() >= queueCapacity) {
+        blockedDispatches++;
+        do {
+          lock.wait();
+          queue = queues.computeIfAbsent(id, KeyQueue::new);
+        } while (queue.updates.size() >= queueCapacity);
+      }
+      checkOpen();
+      queue.updates.add(update);
+      queuedUpdates++;
+      pendingUpdates++;
+      schedule = !queue.running;
+      queue.running = true;
+    }
+    if (schedule) {
+      execute(queue);
+    }
+  }
+  
+  /**
+   * Returns the number of updates waiting to be handled.
+   *
+   * @return the number of queued updates
+   */
+  public int getQueuedUpdates() {
+    synchronized (lock) {
+      return queuedUpdates;
+    }
+  }
+  
+  /**
+   * Returns the number of updates of the specified chat or user waiting to be handled.
+   *
+   * @param key the identifier of the chat or user
+   * @return the number of queued updates of the chat or user
+   */
+  public int getQueueDepth(long key) {
+    synchronized (lock) {
+      KeyQueue queue = queues.get(key);
+      return queue != null ? queue.updates.size() : 0;
+    }
+  }
+  
+  /**
+   * Returns the number of chats and users whose updates are being handled or are waiting to be handled.
+   *
+   * @return the number of active chats and users
+   */
+  public int getActiveKeys() {
+    synchronized (lock) {
+      return queues.size();
+    }
+  }
+  
+  /**
+   * Returns the number of times that {@link #onUpdate(Update)} blocked because a queue was full.
+   *
+   * @return the number of blocked dispatches
+   */
+  public long getBlockedDispatches() {
+    synchronized (lock) {
+      return blockedDispatches;
+    }
+  }
+  
+  /**
+   * Waits until every scheduled update has been handled, or the timeout expires.
+   * When invoked by the handler of the updates, the update being handled is not waited for.
+   *
+   * @param timeout the maximum time to wait
+   * @param unit    the time unit of the timeout
+   * @return <code>true</code> if every scheduled update has been handled,
+   * <code>false</code> if the timeout expired
+   * @throws InterruptedException if the current thread is interrupted while waiting
+   */
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    int self = handling.get() != null ? 1 : 0;
+    synchronized (lock) {
+      while (pendingUpdates > self) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          return false;
+        }
+        TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+      }
+      return true;
+    }
+  }
+  
+  /**
+   * Stops accepting updates and shuts down the thread pool, if it was created by this dispatcher,
+   * once the updates already scheduled have been handled.
+   * Updates already scheduled are still handled.
+   *
+   * @see #awaitTermination(long, TimeUnit)
+   */
+  @Override
+  public void close() {
+    boolean shutdown;
+    synchronized (lock) {
+      shutdown = !closed && pendingUpdates == 0;
+      closed = true;
+    }
+    if (shutdown && ownsExecutor) {
+      ((ExecutorService) executor).shutdown();
+    }
+  }
+  
+  private void checkOpen() {
+    if (closed) {
+      throw new RejectedExecutionException("The dispatcher is closed");
+    }
+  }
+  
+  private void finished(int updates) {
+    boolean shutdown;
+    synchronized (lock) {
+      pendingUpdates -= updates;
+      shutdown = closed && pendingUpdates == 0;
+      lock.notifyAll();
+    }
+    if (shutdown && ownsExecutor) {
+      ((ExecutorService) executor).shutdown();
+    }
+  }
+  
+  private void execute(KeyQueue queue) {
+    try {
+      executor.execute(() -> drain(queue));
+    } catch (RejectedExecutionException e) {
+      synchronized (lock) {
+        pendingUpdates -= queue.updates.size();
+        queuedUpdates -= queue.updates.size();
+        queue.updates.clear();
+        queue.running = false;
+        queues.remove(queue.key);
+        lock.notifyAll();
+      }
+      throw e;
+    }
+  }
+  
+  private void drain(KeyQueue queue) {
+    while (true) {
+      Update update;
+      synchronized (lock) {
+        update = queue.updates.poll();
+        if (update == null) {
+          queue.running = false;
+          queues.remove(queue.key);
+          return;
+        }
+        queuedUpdates--;
+        lock.notifyAll();
+      }
+      handle(update);
+      finished(1);
+    }
+  }
+  
+  private void handle(Update update) {
+    handling.set(Boolean.TRUE);
+    try {
+      handler.onUpdate(update);
+    } catch (Throwable e) {
+      errorHandler.accept(e);
+    } finally {
+      handling.remove();
+    }
+  }
+  
+  private static ExecutorService newThreadPool(int parallelism) {
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("parallelism must be positive");
+    }
+    return Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+      
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "telejam-dispatcher-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+  
+  private static final class KeyQueue {
+    
+    private final long key;
+    private final ArrayDeque<Update> updates;
+    private boolean running;
+    
+    private KeyQueue(long key) {
+      this.key = key;
+      updates = new ArrayDeque<>();
+    }
+    
+  }
+  
+}
@@ -0,0 +1,294 @@
+package io.github.ageofwar.telejam;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.ageofwar.telejam.json.Json;
+import io.github.ageofwar.telejam.methods.SetWebhook;
+import io.github.ageofwar.telejam.updates.Update;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static io.github.ageofwar.telejam.loggers.Loggers.emptyLogger;
+import static io.github.ageofwar.telejam.loggers.Loggers.newLogger;
+
+/**
+ * Runnable that receives updates of a bot from an embedded HTTP server,
+ * as an alternative to {@link LongPollingBot}.
+ * The webhook must be set with {@link io.github.ageofwar.telejam.methods.SetWebhook},
+ * using the same secret token and at most the same number of connections of this bot.
+ * Since Telegram sends updates only using HTTPS, the server should be an
+ * {@link com.sun.net.httpserver.HttpsServer} or should be behind a reverse proxy.
+ * <p>
+ * The server responds to Telegram as soon as the update is scheduled: updates are handled
+ * by an {@link UpdateDispatcher}, so {@link #onUpdate(Update)} and {@link #onError(Throwable)}
+ * are invoked concurrently by many threads, preserving the order of the updates of the same chat.
+ * Updates that cannot be scheduled, because the bot is closing, are answered with
+ * <code>503</code>, so that Telegram sends them again.
+ *
+ * @author Michi Palazzo
+ */
+public abstract class WebhookBot extends TelegramBot implements AutoCloseable {
+  
+  /**
+   * The header that contains the secret token of the webhook.
+   */
+  public static final String SECRET_TOKEN_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+  
+  /**
+   * Default maximum number of simultaneous connections to the webhook.
+   */
+  public static final int DEFAULT_MAX_CONNECTIONS = 40;
+  
+  private final Logger logger;
+  private final HttpServer server;
+  private final String path;
+  private final byte[] secretToken;
+  private final int maxConnections;
+  private final ExecutorService connections;
+  private final UpdateDispatcher dispatcher;
+  private final CountDownLatch closed;
+  
+  /**
+   * Constructs a webhook bot that receives updates from the specified server.
+   * The server must not be started.
+   *
+   * @param bot            the bot that receives the updates
+   * @param server         the server that receives the updates
+   * @param path           the secret path of the webhook
+   * @param secretToken    the secret token of the webhook, or <code>null</code>
+   *                       to accept requests without a secret token
+   * @param maxConnections maximum number of simultaneous connections to the webhook
+   * @param parallelism    the number of threads that handle the updates
+   * @param logger         optional logger
+   */
+  public WebhookBot(Bot bot,
+                    HttpServer server,
+                    String path,
+                    String secretToken,
+                    int maxConnections,
+                    int parallelism,
+                    Logger logger) {
+    super(bot);
+    if (maxConnections <= 0) {
+      throw new IllegalArgumentException("maxConnections must be positive");
+    }
+    this.logger = logger != null ? logger : emptyLogger();
+    this.server = Objects.requireNonNull(server);
+    this.path = Objects.requireNonNull(path);
+    this.secretToken = secretToken != null ? secretToken.getBytes(StandardCharsets.UTF_8) : null;
+    this.maxConnections = maxConnections;
+    connections = newThreadPool(maxConnections);
+    dispatcher = new UpdateDispatcher(
+        this::onUpdate, this::handleError, parallelism, UpdateDispatcher.DEFAULT_QUEUE_CAPACITY
+    );
+    closed = new CountDownLatch(1);
+    server.setExecutor(connections);
+    server.createContext(path, this::handle);
+  }
+  
+  /**
+   * Constructs a webhook bot that listens on the specified address.
+   *
+   * @param bot            the bot that receives the updates
+   * @param address        the address of the server
+   * @param path           the secret path of the webhook
+   * @param secretToken    the secret token of the webhook, or <code>null</code>
+   *                       to accept requests without a secret token
+   * @param maxConnections maximum number of simultaneous connections to the webhook
+   * @param logger         optional logger
+   * @throws IOException if the server cannot be created
+   */
+  public WebhookBot(Bot bot,
+                    InetSocketAddress address,
+                    String path,
+                    String secretToken,
+                    int maxConnections,
+                    Logger logger) throws IOException {
+    this(bot, HttpServer.create(address, 0), path, secretToken, maxConnections, maxConnections, logger);
+  }
+  
+  /**
+   * Constructs a webhook bot that listens on the specified port
+   * and accepts up to 40 simultaneous connections.
+   *
+   * @param bot         the bot that receives the updates
+   * @param port        the port of the server
+   * @param path        the secret path of the webhook
+   * @param secretToken the secret token of the webhook, or <code>null</code>
+   *                    to accept requests without a secret token
+   * @throws IOException if the server cannot be created
+   */
+  public WebhookBot(Bot bot, int port, String path, String secretToken) throws IOException {
+    this(bot, new InetSocketAddress(port), path, secretToken, DEFAULT_MAX_CONNECTIONS, newLogger());
+  }
+  
+  /**
+   * Starts the server and waits until this bot is closed.
+   */
+  @Override
+  public void run() {
+    logger.info(() -> "Starting " + bot.getUsername() + "...");
+    server.start();
+    logger.info(() -> "Waiting for updates on " + server.getAddress() + path + "...");
+    try {
+      closed.await();
+    } catch (InterruptedException e) {
+      logger.info(() -> "Stopping " + bot.getUsername() + "...");
+      Thread.currentThread().interrupt();
+    }
+  }
+  
+  /**
+   * Sets the webhook of the bot to the specified url, using the secret token
+   * and the maximum number of connections of this bot.
+   * Only the types of the updates returned by {@link #getAllowedUpdates()} are sent
+   * to the webhook, so this method should be invoked again after changing the
+   * registered handlers.
+   *
+   * @param url the HTTPS url of the webhook, that must end with the path of this bot
+   * @throws IOException if an I/O Exception occurs
+   */
+  public void setWebhook(String url) throws IOException {
+    SetWebhook setWebhook = new SetWebhook()
+        .url(url)
+        .maxConnections(maxConnections)
+        .setAllowedUpdates(getAllowedUpdates());
+    if (secretToken != null) {
+      setWebhook.secretToken(new String(secretToken, StandardCharsets.UTF_8));
+    }
+    bot.execute(setWebhook);
+  }
+  
+  /**
+   * Handles an exception occurred while receiving or handling updates.
+   *
+   * @param t the exception to handle
+   */
+  public void onError(Throwable t) {
+  }
+  
+  /**
+   * Returns the maximum number of simultaneous connections to the webhook.
+   *
+   * @return the maximum number of connections
+   */
+  public int getMaxConnections() {
+    return maxConnections;
+  }
+  
+  /**
+   * Returns the dispatcher that handles the updates.
+   *
+   * @return the dispatcher of this bot
+   */
+  public UpdateDispatcher getDispatcher() {
+    return dispatcher;
+  }
+  
+  /**
+   * Returns the address the server is listening on.
+   *
+   * @return the address of the server
+   */
+  public InetSocketAddress getAddress() {
+    return server.getAddress();
+  }
+  
+  /**
+   * Stops the server and waits until the updates already received have been handled.
+   */
+  @Override
+  public void close() {
+    server.stop(0);
+    connections.shutdown();
+    dispatcher.close();
+    try {
+      dispatcher.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      closed.countDown();
+    }
+  }
+  
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      if (!path.equals(exchange.getRequestURI().getPath())) {
+        exchange.sendResponseHeaders(404, -1);
+        return;
+      }
+      if (!"POST".equals(exchange.getRequestMethod())) {
+        exchange.sendResponseHeaders(405, -1);
+        return;
+      }
+      if (!isAuthorized(exchange)) {
+        logger.warning(() -> "Rejected webhook request from " + exchange.getRemoteAddress());
+        exchange.sendResponseHeaders(403, -1);
+        return;
+      }
+      Update update;
+      try (Reader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+        update = Json.fromJson(reader, Update.class);
+      } catch (IOException | RuntimeException e) {
+        handleError(e);
+        exchange.sendResponseHeaders(400, -1);
+        return;
+      }
+      logger.finer(() -> "New update: " + Json.toJson(update));
+      try {
+        dispatcher.onUpdate(update);
+      } catch (RejectedExecutionException e) {
+        exchange.sendResponseHeaders(503, -1);
+        return;
+      }
+      exchange.sendResponseHeaders(200, -1);
+    } catch (InterruptedException e) {
+      exchange.sendResponseHeaders(503, -1);
+      Thread.currentThread().interrupt();
+    } finally {
+      exchange.close();
+    }
+  }
+  
+  private boolean isAuthorized(HttpExchange exchange) {
+    if (secretToken == null) {
+      return true;
+    }
+    String token = exchange.getRequestHeaders().getFirst(SECRET_TOKEN_HEADER);
+    return token != null && MessageDigest.isEqual(secretToken, token.getBytes(StandardCharsets.UTF_8));
+  }
+  
+  private void handleError(Throwable e) {
+    logger.log(Level.WARNING, e.getLocalizedMessage(), e);
+    onError(e);
+  }
+  
+  private static ExecutorService newThreadPool(int maxConnections) {
+    return Executors.newFixedThreadPool(maxConnections, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+      
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "telejam-webhook-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+  
+}
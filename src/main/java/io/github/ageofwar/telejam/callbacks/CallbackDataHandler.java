@@ -21,10 +21,9 @@ public interface CallbackDataHandler extends CallbackQueryHandler {
   @Override
   default void onCallbackQuery(CallbackQuery callbackQuery) throws Throwable {
     if (callbackQuery.getData().isPresent()) {
-      String[] data = callbackQuery.getData().get().split("\\s+", 2);
-      String name = data[0];
-      String args = data.length > 1 ? data[1] : "";
-      onCallbackData(callbackQuery, name, args);
+      String data = callbackQuery.getData().get();
+      int nameEnd = CallbackRouter.nameEnd(data);
+      onCallbackData(callbackQuery, data.substring(0, nameEnd), CallbackRouter.args(data, nameEnd));
     }
   }
   
@@ -0,0 +1,85 @@
+package io.github.ageofwar.telejam.callbacks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Utility class that packs numeric arguments in compact callback data.
+ * The arguments are encoded as variable-length integers in URL-safe base64,
+ * after the name of the callback and a space, so that the data can be
+ * handled by a {@link CallbackDataHandler} or a {@link CallbackRouter}.
+ */
+public final class CallbackPayload {
+  
+  /**
+   * Maximum length of the callback data, in bytes.
+   */
+  public static final int MAX_LENGTH = 64;
+  
+  private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+  private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+  
+  private CallbackPayload() {
+    throw new AssertionError();
+  }
+  
+  /**
+   * Returns callback data with the specified name and arguments.
+   *
+   * @param name the name of the callback, that must not contain whitespaces
+   * @param args the arguments of the callback
+   * @return the callback data
+   * @throws IllegalArgumentException if the name contains whitespaces or the data is longer than 64 bytes
+   */
+  public static String encode(String name, long... args) {
+    if (CallbackRouter.nameEnd(name) != name.length()) {
+      throw new IllegalArgumentException("Callback name contains whitespaces: " + name);
+    }
+    byte[] bytes = new byte[args.length * 10];
+    int length = 0;
+    for (long arg : args) {
+      long value = (arg << 1) ^ (arg >> 63);
+      while ((value & ~0x7FL) != 0) {
+        bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      bytes[length++] = (byte) value;
+    }
+    String data = args.length > 0 ? name + ' ' + ENCODER.encodeToString(Arrays.copyOf(bytes, length)) : name;
+    if (data.getBytes(StandardCharsets.UTF_8).length > MAX_LENGTH) {
+      throw new IllegalArgumentException("Callback data longer than " + MAX_LENGTH + " bytes: " + data);
+    }
+    return data;
+  }
+  
+  /**
+   * Returns the arguments encoded with {@link #encode(String, long...)}.
+   *
+   * @param args the arguments of the callback, without the name
+   * @return the decoded arguments
+   * @throws IllegalArgumentException if the arguments are not valid
+   */
+  public static long[] decode(String args) {
+    byte[] bytes = DECODER.decode(args);
+    long[] values = new long[bytes.length];
+    int count = 0;
+    int i = 0;
+    while (i < bytes.length) {
+      long value = 0;
+      int shift = 0;
+      byte b;
+      do {
+        if (i == bytes.length || shift > 63) {
+          throw new IllegalArgumentException("Malformed callback arguments: " + args);
+        }
+        b = bytes[i++];
+        value |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      values[count++] = (value >>> 1) ^ -(value & 1);
+    }
+    return Arrays.copyOf(values, count);
+  }
+  
+}
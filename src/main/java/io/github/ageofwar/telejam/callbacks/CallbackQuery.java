@@ -65,27 +65,33 @@ public class CallbackQuery implements TelegramObject {
    * available if the message is too old.</p>
    */
   @SerializedName(MESSAGE_FIELD)
-  private Message message;
+  private final Message message;
   /**
    * Identifier of the message sent via the bot in inline mode, that originated the query.
    */
   @SerializedName(INLINE_MESSAGE_ID_FIELD)
-  private String inlineMessageId;
+  private final String inlineMessageId;
   
   
   public CallbackQuery(String id, User sender, Message message, String chatInstance, String data, String gameShortName) {
-    this.id = Objects.requireNonNull(id);
-    this.sender = Objects.requireNonNull(sender);
-    this.message = Objects.requireNonNull(message);
-    this.chatInstance = Objects.requireNonNull(chatInstance);
-    this.data = data;
-    this.gameShortName = gameShortName;
+    this(id, sender, Objects.requireNonNull(message), null, chatInstance, data, gameShortName);
   }
   
   public CallbackQuery(String id, User sender, String inlineMessageId, String chatInstance, String data, String gameShortName) {
+    this(id, sender, null, Objects.requireNonNull(inlineMessageId), chatInstance, data, gameShortName);
+  }
+  
+  CallbackQuery(String id,
+                User sender,
+                Message message,
+                String inlineMessageId,
+                String chatInstance,
+                String data,
+                String gameShortName) {
     this.id = Objects.requireNonNull(id);
     this.sender = Objects.requireNonNull(sender);
-    this.inlineMessageId = Objects.requireNonNull(inlineMessageId);
+    this.message = message;
+    this.inlineMessageId = inlineMessageId;
     this.chatInstance = Objects.requireNonNull(chatInstance);
     this.data = data;
     this.gameShortName = gameShortName;
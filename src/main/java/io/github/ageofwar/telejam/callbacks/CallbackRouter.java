@@ -0,0 +1,152 @@
+package io.github.ageofwar.telejam.callbacks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Callback query handler that dispatches callback data to the handlers
+ * registered with its name.
+ * The data of a callback query is split in name and arguments only once,
+ * and its handlers are found with a single lookup, regardless of the number
+ * of registered handlers.
+ * <p>
+ * Handlers can be registered and removed while callback queries are being dispatched:
+ * every change replaces the map of the handlers with an updated copy,
+ * so that a callback query being dispatched never sees a partially updated map.
+ */
+public final class CallbackRouter implements CallbackQueryHandler {
+  
+  private volatile Map<String, CallbackDataHandler[]> handlers;
+  
+  /**
+   * Constructs a callback router.
+   */
+  public CallbackRouter() {
+    handlers = Collections.emptyMap();
+  }
+  
+  /**
+   * Registers a handler of the callback data with the specified name.
+   *
+   * @param handler the handler to register
+   * @param name    the name of the callbacks to handle
+   * @return this instance
+   */
+  public synchronized CallbackRouter register(CallbackDataHandler handler, String name) {
+    Objects.requireNonNull(handler);
+    Map<String, CallbackDataHandler[]> handlers = new HashMap<>(this.handlers);
+    CallbackDataHandler[] callbackHandlers = handlers.get(name);
+    if (callbackHandlers == null) {
+      handlers.put(name, new CallbackDataHandler[]{handler});
+    } else {
+      CallbackDataHandler[] newHandlers = Arrays.copyOf(callbackHandlers, callbackHandlers.length + 1);
+      newHandlers[callbackHandlers.length] = handler;
+      handlers.put(name, newHandlers);
+    }
+    this.handlers = Collections.unmodifiableMap(handlers);
+    return this;
+  }
+  
+  /**
+   * Removes a handler from all the names it has been registered with.
+   *
+   * @param handler the handler to remove
+   * @return <code>true</code> if the handler was registered
+   */
+  public synchronized boolean unregister(CallbackDataHandler handler) {
+    Map<String, CallbackDataHandler[]> handlers = new HashMap<>();
+    boolean removed = false;
+    for (Map.Entry<String, CallbackDataHandler[]> entry : this.handlers.entrySet()) {
+      CallbackDataHandler[] callbackHandlers = remove(entry.getValue(), handler);
+      removed |= callbackHandlers.length < entry.getValue().length;
+      if (callbackHandlers.length > 0) {
+        handlers.put(entry.getKey(), callbackHandlers);
+      }
+    }
+    if (removed) {
+      this.handlers = Collections.unmodifiableMap(handlers);
+    }
+    return removed;
+  }
+  
+  /**
+   * Returns whether no handler is registered.
+   *
+   * @return <code>true</code> if no handler is registered
+   */
+  public boolean isEmpty() {
+    return handlers.isEmpty();
+  }
+  
+  @Override
+  public void onCallbackQuery(CallbackQuery callbackQuery) throws Throwable {
+    if (!callbackQuery.getData().isPresent()) {
+      return;
+    }
+    String data = callbackQuery.getData().get();
+    int nameEnd = nameEnd(data);
+    String name = data.substring(0, nameEnd);
+    CallbackDataHandler[] callbackHandlers = handlers.get(name);
+    if (callbackHandlers == null) {
+      return;
+    }
+    String args = args(data, nameEnd);
+    for (CallbackDataHandler handler : callbackHandlers) {
+      handler.onCallbackData(callbackQuery, name, args);
+    }
+  }
+  
+  /**
+   * Returns the index of the first whitespace of the specified callback data,
+   * or its length if it does not contain whitespaces.
+   *
+   * @param data the callback data
+   * @return the end of the name of the callback
+   */
+  static int nameEnd(String data) {
+    int length = data.length();
+    for (int i = 0; i < length; i++) {
+      if (isWhitespace(data.charAt(i))) {
+        return i;
+      }
+    }
+    return length;
+  }
+  
+  /**
+   * Returns the arguments of the specified callback data, that follow
+   * the whitespaces after the name of the callback.
+   *
+   * @param data    the callback data
+   * @param nameEnd the end of the name of the callback
+   * @return the arguments of the callback
+   */
+  static String args(String data, int nameEnd) {
+    int length = data.length();
+    int start = nameEnd;
+    while (start < length && isWhitespace(data.charAt(start))) {
+      start++;
+    }
+    return data.substring(start);
+  }
+  
+  private static CallbackDataHandler[] remove(CallbackDataHandler[] handlers, CallbackDataHandler handler) {
+    List<CallbackDataHandler> remaining = new ArrayList<>(handlers.length);
+    for (CallbackDataHandler callbackHandler : handlers) {
+      if (!callbackHandler.equals(handler)) {
+        remaining.add(callbackHandler);
+      }
+    }
+    return remaining.toArray(new CallbackDataHandler[0]);
+  }
+  
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+  
+}
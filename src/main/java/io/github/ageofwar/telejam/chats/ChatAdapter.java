@@ -1,55 +1,188 @@
 package io.github.ageofwar.telejam.chats;
 
-import com.google.gson.*;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import io.github.ageofwar.telejam.InternTable;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.util.Objects;
 
 /**
  * JSON Adapter for class {@link Chat}.
+ * Chats are decoded in a single pass, without building an intermediate tree,
+ * because their type may appear after the other fields.
+ * <p>
+ * When interning is enabled, decoded private chats, groups, supergroups and channels
+ * are kept in an {@link InternTable}: a chat whose fields are equal to the ones of the chat
+ * with the same id in the table is not allocated again, and the chat in the table is returned.
  *
  * @author Michi Palazzo
  */
-public final class ChatAdapter implements JsonDeserializer<Chat>, JsonSerializer<Chat> {
+public final class ChatAdapter implements TypeAdapterFactory {
   
-  public static final ChatAdapter INSTANCE = new ChatAdapter();
+  public static final ChatAdapter INSTANCE = new ChatAdapter(0);
   
-  private ChatAdapter() {
+  private final InternTable<Chat> internTable;
+  
+  /**
+   * Constructs a ChatAdapter.
+   *
+   * @param internCapacity maximum number of chats kept, or <code>0</code> to disable interning
+   */
+  public ChatAdapter(int internCapacity) {
+    internTable = internCapacity > 0 ? new InternTable<>(internCapacity, Chat::getId) : null;
   }
   
   @Override
-  public Chat deserialize(JsonElement src, Type type, JsonDeserializationContext context)
-      throws JsonParseException {
-    JsonObject object = src.getAsJsonObject();
-    String chatType = object.getAsJsonPrimitive(Chat.TYPE_FIELD).getAsString();
-    switch (chatType) {
-      case PrivateChat.TYPE:
-        return context.deserialize(src, PrivateChat.class);
-      case Group.TYPE:
-        return context.deserialize(src, Group.class);
-      case SuperGroup.TYPE:
-        return context.deserialize(src, SuperGroup.class);
-      case Channel.TYPE:
-        return context.deserialize(src, Channel.class);
-      default:
-        return new Chat(
-            context.deserialize(object.get(Chat.ID_FIELD), Long.class)
-        ) {
-          @Override
-          public String toUrl() {
-            return "https://t.me/c/" + getId();
-          }
-  
-          @Override
-          public String getTitle() {
-            return Long.toString(getId());
-          }
-        };
+  @SuppressWarnings("unchecked")
+  public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+    if (type.getRawType() != Chat.class) {
+      return null;
     }
+    return (TypeAdapter<T>) new Adapter(gson, internTable);
   }
   
-  @Override
-  public JsonElement serialize(Chat chat, Type type, JsonSerializationContext context) {
-    return context.serialize(chat, chat.getClass());
+  private static final class Adapter extends TypeAdapter<Chat> {
+    
+    private final Gson gson;
+    private final InternTable<Chat> internTable;
+    
+    private Adapter(Gson gson, InternTable<Chat> internTable) {
+      this.gson = gson;
+      this.internTable = internTable;
+    }
+    
+    @Override
+    public Chat read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      long id = 0;
+      String chatType = null;
+      String title = null;
+      String username = null;
+      String firstName = null;
+      String lastName = null;
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        if (in.peek() == JsonToken.NULL) {
+          in.nextNull();
+          continue;
+        }
+        switch (name) {
+          case Chat.ID_FIELD:
+            id = in.nextLong();
+            break;
+          case Chat.TYPE_FIELD:
+            chatType = in.nextString();
+            break;
+          case SuperGroup.TITLE_FIELD:
+            title = in.nextString();
+            break;
+          case SuperGroup.USERNAME_FIELD:
+            username = in.nextString();
+            break;
+          case PrivateChat.FIRST_NAME_FIELD:
+            firstName = in.nextString();
+            break;
+          case PrivateChat.LAST_NAME_FIELD:
+            lastName = in.nextString();
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      if (chatType == null) {
+        throw new JsonParseException("Missing field " + Chat.TYPE_FIELD);
+      }
+      if (internTable != null) {
+        Chat chat = internTable.get(id);
+        if (chat != null && hasFields(chat, chatType, title, username, firstName, lastName)) {
+          return chat;
+        }
+      }
+      Chat chat = newChat(id, chatType, title, username, firstName, lastName);
+      if (internTable != null && !chat.getClass().isAnonymousClass()) {
+        internTable.put(chat);
+      }
+      return chat;
+    }
+    
+    private static Chat newChat(long id, String chatType, String title, String username, String firstName, String lastName) {
+      switch (chatType) {
+        case PrivateChat.TYPE:
+          return new PrivateChat(id, username, requireField(firstName, PrivateChat.FIRST_NAME_FIELD), lastName);
+        case Group.TYPE:
+          return new Group(id, requireField(title, Group.TITLE_FIELD));
+        case SuperGroup.TYPE:
+          return new SuperGroup(id, requireField(title, SuperGroup.TITLE_FIELD), username);
+        case Channel.TYPE:
+          return new Channel(id, requireField(title, Channel.TITLE_FIELD), username);
+        default:
+          return new Chat(id) {
+            @Override
+            public String toUrl() {
+              return "https://t.me/c/" + getId();
+            }
+          
+            @Override
+            public String getTitle() {
+              return Long.toString(getId());
+            }
+          };
+      }
+    }
+    
+    private static boolean hasFields(Chat chat, String chatType, String title, String username, String firstName, String lastName) {
+      switch (chatType) {
+        case PrivateChat.TYPE:
+          if (chat.getClass() != PrivateChat.class) {
+            return false;
+          }
+          PrivateChat privateChat = (PrivateChat) chat;
+          return privateChat.getFirstName().equals(firstName) &&
+              Objects.equals(privateChat.getLastName().orElse(null), lastName) &&
+              Objects.equals(privateChat.getUsername().orElse(null), username);
+        case Group.TYPE:
+          return chat.getClass() == Group.class && chat.getTitle().equals(title);
+        case SuperGroup.TYPE:
+          return chat.getClass() == SuperGroup.class && chat.getTitle().equals(title) &&
+              Objects.equals(((SuperGroup) chat).getUsername().orElse(null), username);
+        case Channel.TYPE:
+          return chat.getClass() == Channel.class && chat.getTitle().equals(title) &&
+              Objects.equals(((Channel) chat).getUsername().orElse(null), username);
+        default:
+          return false;
+      }
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public void write(JsonWriter out, Chat chat) throws IOException {
+      if (chat == null) {
+        out.nullValue();
+        return;
+      }
+      TypeAdapter<Chat> adapter = (TypeAdapter<Chat>) gson.getAdapter(chat.getClass());
+      adapter.write(out, chat);
+    }
+    
+    private static String requireField(String value, String name) {
+      if (value == null) {
+        throw new JsonParseException("Missing field " + name);
+      }
+      return value;
+    }
+    
   }
   
 }
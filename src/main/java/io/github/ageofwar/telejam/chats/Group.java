@@ -25,11 +25,15 @@ public class Group extends Chat {
   private final String title;
   
   
-  public Group(long id, String title, boolean allAdmins) {
+  public Group(long id, String title) {
     super(id);
     this.title = Objects.requireNonNull(title);
   }
   
+  public Group(long id, String title, boolean allAdmins) {
+    this(id, title);
+  }
+  
   
   @Override
   public String toUrl() {
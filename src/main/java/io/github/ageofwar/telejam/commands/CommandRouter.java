@@ -0,0 +1,128 @@
+package io.github.ageofwar.telejam.commands;
+
+import io.github.ageofwar.telejam.messages.TextMessage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Command handler that dispatches commands to the handlers registered
+ * with their name or with one of their aliases.
+ * The command of a message is parsed only once, and its handlers
+ * are found with a single lookup, regardless of the number of registered commands.
+ * <p>
+ * Handlers can be registered and removed while commands are being dispatched:
+ * every change replaces the map of the handlers with an updated copy,
+ * so that a command being dispatched never sees a partially updated map.
+ */
+public final class CommandRouter implements CommandHandler {
+  
+  private final String suffix;
+  private volatile Map<String, CommandHandler[]> handlers;
+  
+  /**
+   * Constructs a command router.
+   *
+   * @param botUsername the username of the bot, that is removed from the name of the
+   *                    commands sent in the form <code>/command@botUsername</code>
+   */
+  public CommandRouter(String botUsername) {
+    suffix = "@" + Objects.requireNonNull(botUsername);
+    handlers = Collections.emptyMap();
+  }
+  
+  /**
+   * Registers a handler of the commands with the specified name or aliases.
+   *
+   * @param handler the handler to register
+   * @param name    the name of the commands to handle
+   * @param aliases the aliases of the commands to handle
+   * @return this instance
+   */
+  public synchronized CommandRouter register(CommandHandler handler, String name, String... aliases) {
+    Objects.requireNonNull(handler);
+    Map<String, CommandHandler[]> handlers = new HashMap<>(this.handlers);
+    add(handlers, name, handler);
+    for (String alias : aliases) {
+      if (!alias.equals(name)) {
+        add(handlers, alias, handler);
+      }
+    }
+    this.handlers = Collections.unmodifiableMap(handlers);
+    return this;
+  }
+  
+  /**
+   * Removes a handler from all the commands it has been registered with.
+   *
+   * @param handler the handler to remove
+   * @return <code>true</code> if the handler was registered
+   */
+  public synchronized boolean unregister(CommandHandler handler) {
+    Map<String, CommandHandler[]> handlers = new HashMap<>();
+    boolean removed = false;
+    for (Map.Entry<String, CommandHandler[]> entry : this.handlers.entrySet()) {
+      CommandHandler[] commandHandlers = remove(entry.getValue(), handler);
+      removed |= commandHandlers.length < entry.getValue().length;
+      if (commandHandlers.length > 0) {
+        handlers.put(entry.getKey(), commandHandlers);
+      }
+    }
+    if (removed) {
+      this.handlers = Collections.unmodifiableMap(handlers);
+    }
+    return removed;
+  }
+  
+  /**
+   * Returns whether no handler is registered.
+   *
+   * @return <code>true</code> if no handler is registered
+   */
+  public boolean isEmpty() {
+    return handlers.isEmpty();
+  }
+  
+  @Override
+  public void onCommand(Command command, TextMessage message) throws Throwable {
+    String name = command.getName();
+    if (name.endsWith(suffix)) {
+      name = name.substring(0, name.length() - suffix.length());
+    }
+    CommandHandler[] commandHandlers = handlers.get(name);
+    if (commandHandlers == null) {
+      return;
+    }
+    Command routed = new Command(name, command.getArgs());
+    for (CommandHandler handler : commandHandlers) {
+      handler.onCommand(routed, message);
+    }
+  }
+  
+  private static void add(Map<String, CommandHandler[]> handlers, String name, CommandHandler handler) {
+    CommandHandler[] commandHandlers = handlers.get(name);
+    if (commandHandlers == null) {
+      handlers.put(name, new CommandHandler[]{handler});
+    } else {
+      CommandHandler[] newHandlers = Arrays.copyOf(commandHandlers, commandHandlers.length + 1);
+      newHandlers[commandHandlers.length] = handler;
+      handlers.put(name, newHandlers);
+    }
+  }
+  
+  private static CommandHandler[] remove(CommandHandler[] handlers, CommandHandler handler) {
+    List<CommandHandler> remaining = new ArrayList<>(handlers.length);
+    for (CommandHandler commandHandler : handlers) {
+      if (!commandHandler.equals(handler)) {
+        remaining.add(commandHandler);
+      }
+    }
+    return remaining.toArray(new CommandHandler[0]);
+  }
+  
+}
@@ -0,0 +1,139 @@
+package io.github.ageofwar.telejam.connection;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Maximum time to wait for the whole response of a request.
+ * Unlike a socket read timeout, that is reset by every byte received, a deadline
+ * also expires when the server sends the response slowly: the connection is aborted,
+ * and the I/O errors caused by the abort are reported as a {@link SocketTimeoutException}.
+ *
+ * @author Michi Palazzo
+ */
+final class Deadline {
+  
+  private static final int PENDING = 0;
+  private static final int CANCELLED = 1;
+  private static final int EXPIRED = 2;
+  
+  private final int timeout;
+  private final AtomicInteger state;
+  private volatile ScheduledFuture<?> expiration;
+  
+  private Deadline(int timeout) {
+    this.timeout = timeout;
+    state = new AtomicInteger();
+  }
+  
+  /**
+   * Starts a deadline.
+   *
+   * @param timeout the timeout in milliseconds, or zero for no deadline
+   * @param abort   the action that aborts the request, invoked when the deadline expires
+   * @return the started deadline
+   */
+  static Deadline start(int timeout, Runnable abort) {
+    Deadline deadline = new Deadline(timeout);
+    if (timeout > 0) {
+      deadline.expiration = Scheduler.schedule(() -> {
+        if (deadline.state.compareAndSet(PENDING, EXPIRED)) {
+          abort.run();
+        }
+      }, timeout, TimeUnit.MILLISECONDS);
+    }
+    return deadline;
+  }
+  
+  /**
+   * Cancels this deadline.
+   *
+   * @return <code>true</code> if the request has not been aborted, <code>false</code> otherwise
+   */
+  boolean cancel() {
+    if (state.compareAndSet(PENDING, CANCELLED)) {
+      ScheduledFuture<?> expiration = this.expiration;
+      if (expiration != null) {
+        expiration.cancel(false);
+      }
+      return true;
+    }
+    return state.get() != EXPIRED;
+  }
+  
+  /**
+   * Returns whether this deadline expired and the request has been aborted.
+   *
+   * @return <code>true</code> if the deadline expired, <code>false</code> otherwise
+   */
+  boolean isExpired() {
+    return state.get() == EXPIRED;
+  }
+  
+  /**
+   * Returns the exception to throw in place of an I/O error of the request.
+   *
+   * @param e the I/O error
+   * @return a {@link SocketTimeoutException} if the deadline expired, the specified exception otherwise
+   */
+  IOException translate(IOException e) {
+    if (!isExpired() || e instanceof SocketTimeoutException) {
+      return e;
+    }
+    SocketTimeoutException timeoutException = new SocketTimeoutException(
+        "No complete response within " + timeout + " ms"
+    );
+    timeoutException.initCause(e);
+    return timeoutException;
+  }
+  
+  /**
+   * Returns a stream that reads the response of the request,
+   * and that cancels this deadline when closed.
+   *
+   * @param response the response of the request
+   * @return the response bounded by this deadline
+   */
+  InputStream bound(InputStream response) {
+    return new FilterInputStream(response) {
+      @Override
+      public int read() throws IOException {
+        try {
+          return checkEnd(in.read());
+        } catch (IOException e) {
+          throw translate(e);
+        }
+      }
+      
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        try {
+          return checkEnd(in.read(b, off, len));
+        } catch (IOException e) {
+          throw translate(e);
+        }
+      }
+      
+      private int checkEnd(int read) throws IOException {
+        // an aborted connection can look like the end of the response
+        if (read == -1 && isExpired()) {
+          throw new EOFException("Connection aborted");
+        }
+        return read;
+      }
+      
+      @Override
+      public void close() throws IOException {
+        cancel();
+        in.close();
+      }
+    };
+  }
+  
+}
@@ -3,89 +3,83 @@ package io.github.ageofwar.telejam.connection;
 import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.time.Duration;
 import java.util.Map;
-import java.util.UUID;
-
-import static java.net.URLConnection.guessContentTypeFromStream;
-import static io.github.ageofwar.telejam.json.Json.genericTypeOf;
-import static io.github.ageofwar.telejam.json.Json.toJson;
 
 public final class Http {
   
   private static final int CONNECTION_TIMEOUT = 0;
   private static final int READ_TIMEOUT = 0;
-  private static final String CHARSET = "UTF-8";
-  private static final int BUFFER_SIZE = 4096;
+  private static final int CHUNK_SIZE = 8192;
+  
+  static final Duration DEFAULT_CONNECTION_TIMEOUT = Duration.ofSeconds(10);
+  static final Duration DEFAULT_READ_TIMEOUT = Duration.ofSeconds(60);
+  
+  private static final Duration MAX_TIMEOUT = Duration.ofMillis(Integer.MAX_VALUE);
   
   public static InputStream post(String url, Map<String, Object> parameters, Map<String, UploadFile> files)
       throws IOException {
+    return post(url, parameters, files, CONNECTION_TIMEOUT, READ_TIMEOUT);
+  }
+  
+  public static InputStream post(String url,
+                                 Map<String, Object> parameters,
+                                 Map<String, UploadFile> files,
+                                 int connectionTimeout,
+                                 int readTimeout) throws IOException {
+    return post(url, RequestBody.of(parameters, files), connectionTimeout, readTimeout);
+  }
+  
+  /**
+   * Sends a request with the specified body.
+   * The read timeout is also the maximum time to wait for the whole response,
+   * after the request has been sent.
+   */
+  static InputStream post(String url, RequestBody body, int connectionTimeout, int readTimeout)
+      throws IOException {
     HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
     connection.setUseCaches(false);
     connection.setDoInput(true);
     connection.setDoOutput(true);
-    connection.setConnectTimeout(CONNECTION_TIMEOUT);
-    connection.setReadTimeout(READ_TIMEOUT);
-    if (files.isEmpty()) {
-      connection.setRequestProperty("Content-Type", "application/json");
-      try (Writer writer = new OutputStreamWriter(connection.getOutputStream(), CHARSET)) {
-        toJson(parameters, genericTypeOf(Map.class, String.class, Object.class), writer);
-      }
+    connection.setConnectTimeout(connectionTimeout);
+    connection.setReadTimeout(readTimeout);
+    connection.setRequestProperty("Content-Type", body.getContentType());
+    long contentLength = body.getContentLength();
+    if (contentLength >= 0) {
+      connection.setFixedLengthStreamingMode(contentLength);
     } else {
-      String boundary = generateBoundary();
-      connection.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
-      try (PrintWriter output = new PrintWriter(new OutputStreamWriter(connection.getOutputStream(), CHARSET))) {
-        for (Map.Entry<String, Object> entry : parameters.entrySet()) {
-          String key = entry.getKey();
-          Object value = entry.getValue();
-          output.append("--").append(boundary);
-          output.append("\r\n");
-          output.append("Content-Disposition: form-data; name=\"").append(key).append('"');
-          output.append("\r\n");
-          output.append("Content-Type: application/json; charset=").append(CHARSET);
-          output.append("\r\n");
-          output.append("\r\n");
-          output.append(value instanceof String ? (String) value : toJson(value));
-          output.append("\r\n");
-          output.flush();
-        }
-        for (Map.Entry<String, UploadFile> entry : files.entrySet()) {
-          String key = entry.getKey();
-          UploadFile value = entry.getValue();
-          output.append("--").append(boundary);
-          output.append("\r\n");
-          output.append("Content-Disposition: form-data; name=\"").append(key).append("\"; ");
-          output.append("filename=\"").append(value.getFileName()).append(String.valueOf('"'));
-          output.append("\r\n");
-          String contentType = guessContentTypeFromStream(value.getInputStream());
-          if (contentType != null) {
-            output.append("Content-Type: ").append(contentType);
-            output.append("\r\n");
-          }
-          output.append("Content-Transfer-Encoding: binary");
-          output.append("\r\n");
-          output.append("\r\n");
-          output.flush();
-  
-          byte[] buffer = new byte[BUFFER_SIZE];
-          int bytesRead;
-          while ((bytesRead = value.getInputStream().read(buffer)) != -1) {
-            connection.getOutputStream().write(buffer, 0, bytesRead);
-          }
-          output.flush();
-          value.getInputStream().close();
-
-          output.append("\r\n");
-          output.flush();
-        }
-        output.append("--").append(boundary).append("--");
-        output.append("\r\n");
-      }
+      // otherwise HttpURLConnection buffers the whole body to compute its length
+      connection.setChunkedStreamingMode(CHUNK_SIZE);
+    }
+    try (OutputStream output = connection.getOutputStream()) {
+      body.writeTo(output);
+    }
+    Deadline deadline = Deadline.start(readTimeout, connection::disconnect);
+    try {
+      return deadline.bound(getInputOrErrorStream(connection));
+    } catch (IOException e) {
+      deadline.cancel();
+      throw deadline.translate(e);
     }
-    return getInputOrErrorStream(connection);
   }
   
-  private static String generateBoundary() {
-    return "-=-" + UUID.randomUUID() + "-=-";
+  /**
+   * Converts a timeout to milliseconds, where zero means an infinite timeout.
+   * Non-zero timeouts shorter than a millisecond are rounded up, so that
+   * they do not become infinite, and too long timeouts are clamped.
+   */
+  static int toMillis(Duration timeout) {
+    if (timeout.isNegative()) {
+      throw new IllegalArgumentException("timeout cannot be negative");
+    }
+    if (timeout.isZero()) {
+      return 0;
+    }
+    if (timeout.compareTo(MAX_TIMEOUT) >= 0) {
+      return Integer.MAX_VALUE;
+    }
+    long millis = timeout.toMillis();
+    return (int) (timeout.equals(Duration.ofMillis(millis)) ? millis : millis + 1);
   }
   
   private static InputStream getInputOrErrorStream(HttpURLConnection connection) throws IOException {
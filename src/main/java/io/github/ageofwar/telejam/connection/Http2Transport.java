@@ -0,0 +1,377 @@
+package io.github.ageofwar.telejam.connection;
+
+import io.github.ageofwar.telejam.methods.TelegramMethod;
+import okhttp3.*;
+import okio.BufferedSink;
+
+import javax.net.SocketFactory;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Transport that multiplexes concurrent requests over a single HTTP/2 connection.
+ * If the server does not support HTTP/2, requests are sent using HTTP/1.1,
+ * on up to one connection for every concurrent stream.
+ * The number of concurrent streams is limited, for synchronous and asynchronous
+ * requests together: when all the streams are busy, synchronous requests wait
+ * until one of them is released and asynchronous requests are queued.
+ * <p>
+ * This transport requires <a href="https://square.github.io/okhttp/">OkHttp</a>
+ * 3.x in the classpath.
+ *
+ * @author Michi Palazzo
+ */
+public final class Http2Transport implements Transport {
+  
+  private static final int DEFAULT_MAX_CONCURRENT_STREAMS = 100;
+  private static final long KEEP_ALIVE_MINUTES = 5;
+  
+  private final OkHttpClient client;
+  private final ConcurrentMap<Integer, OkHttpClient> clientsByTimeout;
+  private final StreamLimiter streams;
+  
+  /**
+   * Constructs an Http2Transport.
+   * A zero timeout is interpreted as an infinite timeout.
+   *
+   * @param maxConcurrentStreams the maximum number of concurrent requests
+   * @param connectionTimeout    the maximum time to wait for a connection
+   * @param readTimeout          the maximum time to wait for the whole response after the
+   *                             request has been sent, if the method does not specify its own timeout
+   */
+  public Http2Transport(int maxConcurrentStreams, Duration connectionTimeout, Duration readTimeout) {
+    this(maxConcurrentStreams, connectionTimeout, readTimeout, builder -> {
+    });
+  }
+  
+  /**
+   * Constructs an Http2Transport whose client is further configured by the specified function,
+   * for example to speak HTTP/2 without TLS or to trust a test certificate.
+   *
+   * @param maxConcurrentStreams the maximum number of concurrent requests
+   * @param connectionTimeout    the maximum time to wait for a connection
+   * @param readTimeout          the maximum time to wait for the whole response after the
+   *                             request has been sent, if the method does not specify its own timeout
+   * @param configuration        the function that configures the client
+   */
+  Http2Transport(int maxConcurrentStreams,
+                 Duration connectionTimeout,
+                 Duration readTimeout,
+                 Consumer<OkHttpClient.Builder> configuration) {
+    if (maxConcurrentStreams <= 0) {
+      throw new IllegalArgumentException("maxConcurrentStreams must be positive");
+    }
+    Dispatcher dispatcher = new Dispatcher();
+    dispatcher.setMaxRequests(maxConcurrentStreams);
+    dispatcher.setMaxRequestsPerHost(maxConcurrentStreams);
+    // HTTP/2 needs a single connection, but the HTTP/1.1 fallback needs one for every concurrent stream
+    OkHttpClient.Builder builder = new OkHttpClient.Builder()
+        .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+        .connectionPool(new ConnectionPool(maxConcurrentStreams, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+        .dispatcher(dispatcher)
+        .socketFactory(new NoDelaySocketFactory())
+        .connectTimeout(Http.toMillis(connectionTimeout), TimeUnit.MILLISECONDS)
+        .readTimeout(Http.toMillis(readTimeout), TimeUnit.MILLISECONDS);
+    configuration.accept(builder);
+    client = builder.build();
+    clientsByTimeout = new ConcurrentHashMap<>();
+    streams = new StreamLimiter(maxConcurrentStreams);
+  }
+  
+  /**
+   * Constructs an Http2Transport with 10 seconds of connection
+   * timeout and 60 seconds of read timeout.
+   *
+   * @param maxConcurrentStreams the maximum number of concurrent requests
+   */
+  public Http2Transport(int maxConcurrentStreams) {
+    this(maxConcurrentStreams, Http.DEFAULT_CONNECTION_TIMEOUT, Http.DEFAULT_READ_TIMEOUT);
+  }
+  
+  /**
+   * Constructs an Http2Transport that allows at most 100 concurrent requests.
+   */
+  public Http2Transport() {
+    this(DEFAULT_MAX_CONCURRENT_STREAMS);
+  }
+  
+  @Override
+  public InputStream post(String url, TelegramMethod<?> method) throws IOException {
+    streams.acquire();
+    try {
+      Call call = newCall(url, method);
+      OkHttpRequestBody body = (OkHttpRequestBody) call.request().body();
+      try {
+        return new ResponseInputStream(call.execute(), streams, body.deadline);
+      } catch (IOException e) {
+        body.deadline.cancel();
+        throw body.deadline.translate(e);
+      }
+    } catch (Throwable e) {
+      streams.release();
+      throw e;
+    }
+  }
+  
+  /**
+   * {@inheritDoc}
+   * <p>
+   * The executor is not used: the requests are sent by the threads of OkHttp, and every
+   * request in progress holds one of them until its response arrives, so the number
+   * of asynchronous requests in progress is bounded by the maximum number of concurrent streams.
+   */
+  @Override
+  public CompletableFuture<InputStream> postAsync(String url, TelegramMethod<?> method, Executor executor) {
+    CompletableFuture<InputStream> future = new CompletableFuture<>();
+    streams.acquire(() -> {
+      try {
+        newCall(url, method).enqueue(new Callback() {
+          @Override
+          public void onFailure(Call call, IOException e) {
+            Deadline deadline = ((OkHttpRequestBody) call.request().body()).deadline;
+            deadline.cancel();
+            streams.release();
+            future.completeExceptionally(deadline.translate(e));
+          }
+          
+          @Override
+          public void onResponse(Call call, Response response) {
+            Deadline deadline = ((OkHttpRequestBody) call.request().body()).deadline;
+            future.complete(new ResponseInputStream(response, streams, deadline));
+          }
+        });
+      } catch (Throwable e) {
+        streams.release();
+        future.completeExceptionally(e);
+      }
+    });
+    return future;
+  }
+  
+  /**
+   * Returns the number of connections currently opened by this transport.
+   *
+   * @return the number of opened connections
+   */
+  public int getConnectionCount() {
+    return client.connectionPool().connectionCount();
+  }
+  
+  @Override
+  public void close() {
+    client.dispatcher().executorService().shutdown();
+    client.connectionPool().evictAll();
+  }
+  
+  private Call newCall(String url, TelegramMethod<?> method) {
+    OkHttpClient client = method.getRequestTimeout()
+        .map(timeout -> clientsByTimeout.computeIfAbsent(Http.toMillis(timeout), this::withReadTimeout))
+        .orElse(this.client);
+    OkHttpRequestBody body = new OkHttpRequestBody(RequestBody.of(method), client.readTimeoutMillis());
+    Request request = new Request.Builder()
+        .url(url)
+        .post(body)
+        .build();
+    Call call = client.newCall(request);
+    body.call = call;
+    return call;
+  }
+  
+  private OkHttpClient withReadTimeout(int readTimeout) {
+    // the derived clients share the connection pool and the dispatcher of the transport
+    return client.newBuilder().readTimeout(readTimeout, TimeUnit.MILLISECONDS).build();
+  }
+  
+  /**
+   * Creates sockets that send small writes immediately: without it, the HTTP/1.1
+   * fallback waits for the delayed acknowledgement of the server before sending the body.
+   */
+  private static final class NoDelaySocketFactory extends SocketFactory {
+    
+    private final SocketFactory factory = SocketFactory.getDefault();
+    
+    @Override
+    public Socket createSocket() throws IOException {
+      return noDelay(factory.createSocket());
+    }
+    
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+      return noDelay(factory.createSocket(host, port));
+    }
+    
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+      return noDelay(factory.createSocket(host, port, localHost, localPort));
+    }
+    
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+      return noDelay(factory.createSocket(host, port));
+    }
+    
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort)
+        throws IOException {
+      return noDelay(factory.createSocket(address, port, localAddress, localPort));
+    }
+    
+    private static Socket noDelay(Socket socket) throws IOException {
+      socket.setTcpNoDelay(true);
+      return socket;
+    }
+    
+  }
+  
+  /**
+   * Body of a call, that starts the deadline of the call once it has been sent.
+   */
+  private static final class OkHttpRequestBody extends okhttp3.RequestBody {
+    
+    private final RequestBody body;
+    private final int timeout;
+    private volatile Call call;
+    private volatile Deadline deadline;
+    
+    private OkHttpRequestBody(RequestBody body, int timeout) {
+      this.body = body;
+      this.timeout = timeout;
+      deadline = Deadline.start(0, null);
+    }
+    
+    @Override
+    public MediaType contentType() {
+      return MediaType.get(body.getContentType());
+    }
+    
+    @Override
+    public long contentLength() {
+      return body.getContentLength();
+    }
+    
+    @Override
+    public boolean isOneShot() {
+      return !body.isRepeatable();
+    }
+    
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+      body.writeTo(sink.outputStream());
+      // a body sent again after a failure restarts the deadline
+      deadline.cancel();
+      deadline = Deadline.start(timeout, call::cancel);
+    }
+    
+  }
+  
+  private static final class ResponseInputStream extends FilterInputStream {
+    
+    private final Response response;
+    private final StreamLimiter streams;
+    private final Deadline deadline;
+    private boolean closed;
+    
+    private ResponseInputStream(Response response, StreamLimiter streams, Deadline deadline) {
+      super(deadline.bound(response.body().byteStream()));
+      this.response = response;
+      this.streams = streams;
+      this.deadline = deadline;
+    }
+    
+    @Override
+    public void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        deadline.cancel();
+        response.close();
+      } finally {
+        streams.release();
+      }
+    }
+    
+  }
+  
+  /**
+   * Limits the number of concurrent streams. Waiting synchronous and
+   * asynchronous requests obtain the released streams in arrival order.
+   */
+  private static final class StreamLimiter {
+    
+    private final Deque<Runnable> waiters;
+    private int available;
+    
+    private StreamLimiter(int maxStreams) {
+      waiters = new ArrayDeque<>();
+      available = maxStreams;
+    }
+    
+    private void acquire() throws InterruptedIOException {
+      CountDownLatch granted = new CountDownLatch(1);
+      Runnable waiter = granted::countDown;
+      if (tryAcquireOrWait(waiter)) {
+        return;
+      }
+      try {
+        granted.await();
+      } catch (InterruptedException e) {
+        boolean waiting;
+        synchronized (this) {
+          waiting = waiters.remove(waiter);
+        }
+        if (!waiting) {
+          // the stream has been granted in the meantime
+          release();
+        }
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for a stream");
+      }
+    }
+    
+    private void acquire(Runnable onAcquire) {
+      if (tryAcquireOrWait(onAcquire)) {
+        onAcquire.run();
+      }
+    }
+    
+    private synchronized boolean tryAcquireOrWait(Runnable waiter) {
+      if (available > 0) {
+        available--;
+        return true;
+      }
+      waiters.addLast(waiter);
+      return false;
+    }
+    
+    private void release() {
+      Runnable waiter;
+      synchronized (this) {
+        waiter = waiters.pollFirst();
+        if (waiter == null) {
+          available++;
+          return;
+        }
+      }
+      waiter.run();
+    }
+    
+  }
+  
+}
@@ -0,0 +1,59 @@
+package io.github.ageofwar.telejam.connection;
+
+import io.github.ageofwar.telejam.json.JsonOutput;
+import io.github.ageofwar.telejam.methods.TelegramMethod;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.Map;
+
+import static io.github.ageofwar.telejam.json.Json.genericTypeOf;
+import static io.github.ageofwar.telejam.json.Json.newOutput;
+
+/**
+ * Request body that contains the parameters as a JSON object.
+ * The parameters of a method are written with {@link TelegramMethod#writeParameters(JsonOutput)},
+ * directly encoded as UTF-8 into the output stream.
+ *
+ * @author Michi Palazzo
+ */
+final class JsonBody extends RequestBody {
+  
+  private static final String CHARSET = "UTF-8";
+  
+  private final TelegramMethod<?> method;
+  private final Map<String, Object> parameters;
+  
+  JsonBody(TelegramMethod<?> method) {
+    this.method = method;
+    parameters = null;
+  }
+  
+  JsonBody(Map<String, Object> parameters) {
+    method = null;
+    this.parameters = parameters;
+  }
+  
+  @Override
+  public String getContentType() {
+    return "application/json";
+  }
+  
+  @Override
+  public boolean isRepeatable() {
+    return true;
+  }
+  
+  @Override
+  public void writeTo(OutputStream output) throws IOException {
+    JsonOutput writer = newOutput(new OutputStreamWriter(output, CHARSET));
+    if (method != null) {
+      method.writeParameters(writer);
+    } else {
+      writer.value(parameters, genericTypeOf(Map.class, String.class, Object.class));
+    }
+    writer.flush();
+  }
+  
+}
@@ -0,0 +1,280 @@
+package io.github.ageofwar.telejam.connection;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static io.github.ageofwar.telejam.json.Json.toJson;
+import static java.net.URLConnection.guessContentTypeFromName;
+import static java.net.URLConnection.guessContentTypeFromStream;
+
+/**
+ * Request body that contains the parameters and the files as multipart form data.
+ * The headers of the parts are encoded in advance, so that the length of the body
+ * is known when the length of every file is known.
+ * Files read from a {@link FileInputStream} are transferred with
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)}.
+ *
+ * @author Michi Palazzo
+ */
+final class MultipartBody extends RequestBody {
+  
+  private static final String CHARSET = "UTF-8";
+  private static final int BUFFER_SIZE = 8192;
+  private static final byte[] CRLF = {'\r', '\n'};
+  
+  private final String boundary;
+  private final List<Part> parts;
+  private final byte[] closeDelimiter;
+  private final long contentLength;
+  
+  MultipartBody(Map<String, Object> parameters, Map<String, UploadFile> files) {
+    boundary = generateBoundary();
+    parts = new ArrayList<>(parameters.size() + files.size());
+    for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+      String key = entry.getKey();
+      Object value = entry.getValue();
+      String header = "--" + boundary + "\r\n" +
+          "Content-Disposition: form-data; name=\"" + key + "\"\r\n" +
+          "Content-Type: application/json; charset=" + CHARSET + "\r\n" +
+          "\r\n";
+      String content = value instanceof String ? (String) value : toJson(value);
+      parts.add(new BytesPart(encode(header), encode(content)));
+    }
+    for (Map.Entry<String, UploadFile> entry : files.entrySet()) {
+      String key = entry.getKey();
+      UploadFile value = entry.getValue();
+      StringBuilder header = new StringBuilder()
+          .append("--").append(boundary).append("\r\n")
+          .append("Content-Disposition: form-data; name=\"").append(key).append("\"; ")
+          .append("filename=\"").append(value.getFileName()).append('"').append("\r\n");
+      String contentType = guessContentType(value);
+      if (contentType != null) {
+        header.append("Content-Type: ").append(contentType).append("\r\n");
+      }
+      header.append("Content-Transfer-Encoding: binary").append("\r\n");
+      header.append("\r\n");
+      parts.add(newFilePart(encode(header.toString()), value.getInputStream()));
+    }
+    closeDelimiter = encode("--" + boundary + "--\r\n");
+    contentLength = computeContentLength();
+  }
+  
+  @Override
+  public String getContentType() {
+    return "multipart/form-data; boundary=" + boundary;
+  }
+  
+  @Override
+  public long getContentLength() {
+    return contentLength;
+  }
+  
+  @Override
+  public void writeTo(OutputStream output) throws IOException {
+    byte[] buffer = null;
+    for (Part part : parts) {
+      output.write(part.header);
+      if (part instanceof StreamPart && buffer == null) {
+        buffer = new byte[BUFFER_SIZE];
+      }
+      part.writeTo(output, buffer);
+      output.write(CRLF);
+    }
+    output.write(closeDelimiter);
+    output.flush();
+  }
+  
+  @Override
+  public void writeTo(WritableByteChannel channel) throws IOException {
+    for (Part part : parts) {
+      writeFully(channel, part.header);
+      part.writeTo(channel);
+      writeFully(channel, CRLF);
+    }
+    writeFully(channel, closeDelimiter);
+  }
+  
+  private long computeContentLength() {
+    long length = closeDelimiter.length;
+    for (Part part : parts) {
+      long partLength = part.length();
+      if (partLength < 0) {
+        return -1;
+      }
+      length += part.header.length + partLength + CRLF.length;
+    }
+    return length;
+  }
+  
+  private static Part newFilePart(byte[] header, InputStream inputStream) {
+    if (inputStream instanceof FileInputStream) {
+      FileInputStream fileInputStream = (FileInputStream) inputStream;
+      try {
+        FileChannel channel = fileInputStream.getChannel();
+        long position = channel.position();
+        return new FilePart(header, fileInputStream, position, channel.size() - position);
+      } catch (IOException e) {
+        return new StreamPart(header, inputStream);
+      }
+    }
+    return new StreamPart(header, inputStream);
+  }
+  
+  private static String guessContentType(UploadFile file) {
+    String contentType = guessContentTypeFromName(file.getFileName());
+    InputStream inputStream = file.getInputStream();
+    if (contentType == null && inputStream.markSupported()) {
+      try {
+        contentType = guessContentTypeFromStream(inputStream);
+      } catch (IOException e) {
+        return null;
+      }
+    }
+    return contentType;
+  }
+  
+  private static void writeFully(WritableByteChannel channel, byte[] bytes) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+  
+  private static byte[] encode(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+  
+  private static String generateBoundary() {
+    return "-=-" + UUID.randomUUID() + "-=-";
+  }
+  
+  private abstract static class Part {
+    
+    private final byte[] header;
+    
+    private Part(byte[] header) {
+      this.header = header;
+    }
+    
+    abstract long length();
+    
+    abstract void writeTo(OutputStream output, byte[] buffer) throws IOException;
+    
+    abstract void writeTo(WritableByteChannel channel) throws IOException;
+    
+  }
+  
+  private static final class BytesPart extends Part {
+    
+    private final byte[] content;
+    
+    private BytesPart(byte[] header, byte[] content) {
+      super(header);
+      this.content = content;
+    }
+    
+    @Override
+    long length() {
+      return content.length;
+    }
+    
+    @Override
+    void writeTo(OutputStream output, byte[] buffer) throws IOException {
+      output.write(content);
+    }
+    
+    @Override
+    void writeTo(WritableByteChannel channel) throws IOException {
+      writeFully(channel, content);
+    }
+    
+  }
+  
+  private static final class FilePart extends Part {
+    
+    private final FileInputStream inputStream;
+    private final long position;
+    private final long length;
+    
+    private FilePart(byte[] header, FileInputStream inputStream, long position, long length) {
+      super(header);
+      this.inputStream = inputStream;
+      this.position = position;
+      this.length = length;
+    }
+    
+    @Override
+    long length() {
+      return length;
+    }
+    
+    @Override
+    void writeTo(OutputStream output, byte[] buffer) throws IOException {
+      writeTo(Channels.newChannel(output));
+    }
+    
+    @Override
+    void writeTo(WritableByteChannel target) throws IOException {
+      try (FileChannel channel = inputStream.getChannel()) {
+        long position = this.position;
+        long remaining = length;
+        while (remaining > 0) {
+          long transferred = channel.transferTo(position, remaining, target);
+          if (transferred <= 0) {
+            throw new EOFException("File shorter than expected");
+          }
+          position += transferred;
+          remaining -= transferred;
+        }
+      } finally {
+        inputStream.close();
+      }
+    }
+    
+  }
+  
+  private static final class StreamPart extends Part {
+    
+    private final InputStream inputStream;
+    
+    private StreamPart(byte[] header, InputStream inputStream) {
+      super(header);
+      this.inputStream = inputStream;
+    }
+    
+    @Override
+    long length() {
+      if (inputStream instanceof ByteArrayInputStream) {
+        return ((ByteArrayInputStream) inputStream).available();
+      }
+      return -1;
+    }
+    
+    @Override
+    void writeTo(OutputStream output, byte[] buffer) throws IOException {
+      try {
+        int bytesRead;
+        while ((bytesRead = inputStream.read(buffer)) != -1) {
+          output.write(buffer, 0, bytesRead);
+        }
+      } finally {
+        inputStream.close();
+      }
+    }
+    
+    @Override
+    void writeTo(WritableByteChannel channel) throws IOException {
+      writeTo(Channels.newOutputStream(channel), new byte[BUFFER_SIZE]);
+    }
+    
+  }
+  
+}
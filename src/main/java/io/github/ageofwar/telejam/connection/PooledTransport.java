@@ -0,0 +1,762 @@
+package io.github.ageofwar.telejam.connection;
+
+import io.github.ageofwar.telejam.methods.TelegramMethod;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transport that keeps HTTP/1.1 connections alive and reuses them
+ * for subsequent requests to the same host.
+ * The number of connections opened to a host is limited: when all the
+ * connections are busy, a request waits until one of them is released,
+ * for at most the connection timeout.
+ * Connections that stay idle for longer than the keep alive time are closed
+ * in background, until the transport is closed.
+ * Request bodies whose length is not known in advance are streamed
+ * with chunked transfer encoding.
+ *
+ * @author Michi Palazzo
+ */
+public final class PooledTransport implements Transport {
+  
+  private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 5;
+  private static final long DEFAULT_KEEP_ALIVE_SECONDS = 30;
+  private static final int MAX_LINE_LENGTH = 8192;
+  private static final int MAX_DRAIN_LENGTH = 65536;
+  private static final int CHUNK_SIZE = 8192;
+  private static final byte[] CRLF = {'\r', '\n'};
+  private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+  private static final long MIN_EVICTION_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+  
+  private final int maxConnectionsPerHost;
+  private final long keepAliveNanos;
+  private final int connectionTimeout;
+  private final int readTimeout;
+  private final ConcurrentMap<String, HostPool> pools;
+  private final AtomicLong createdConnections;
+  private final AtomicLong reusedConnections;
+  private final AtomicLong evictedConnections;
+  private final ScheduledFuture<?> eviction;
+  private volatile boolean closed;
+  
+  /**
+   * Constructs a PooledTransport.
+   * A zero timeout is interpreted as an infinite timeout.
+   *
+   * @param maxConnectionsPerHost the maximum number of connections opened to the same host
+   * @param keepAlive             the time after that an idle connection is closed
+   * @param unit                  the time unit of the keep alive parameter
+   * @param connectionTimeout     the maximum time to wait for a connection, either
+   *                              from the pool or from the server
+   * @param readTimeout           the maximum time to wait for the whole response after the
+   *                              request has been sent, if the method does not specify its own timeout
+   */
+  public PooledTransport(int maxConnectionsPerHost, long keepAlive, TimeUnit unit,
+                         Duration connectionTimeout, Duration readTimeout) {
+    if (maxConnectionsPerHost <= 0) {
+      throw new IllegalArgumentException("maxConnectionsPerHost must be positive");
+    }
+    if (keepAlive < 0) {
+      throw new IllegalArgumentException("keepAlive cannot be negative");
+    }
+    this.maxConnectionsPerHost = maxConnectionsPerHost;
+    keepAliveNanos = unit.toNanos(keepAlive);
+    this.connectionTimeout = Http.toMillis(connectionTimeout);
+    this.readTimeout = Http.toMillis(readTimeout);
+    pools = new ConcurrentHashMap<>();
+    createdConnections = new AtomicLong();
+    reusedConnections = new AtomicLong();
+    evictedConnections = new AtomicLong();
+    if (keepAliveNanos > 0) {
+      long period = Math.max(keepAliveNanos / 2, MIN_EVICTION_PERIOD_NANOS);
+      eviction = Scheduler.scheduleWithFixedDelay(this::evictIdleConnections, period, period, TimeUnit.NANOSECONDS);
+    } else {
+      eviction = null;
+    }
+  }
+  
+  /**
+   * Constructs a PooledTransport with 10 seconds of connection
+   * timeout and 60 seconds of read timeout.
+   *
+   * @param maxConnectionsPerHost the maximum number of connections opened to the same host
+   * @param keepAlive             the time after that an idle connection is closed
+   * @param unit                  the time unit of the keep alive parameter
+   */
+  public PooledTransport(int maxConnectionsPerHost, long keepAlive, TimeUnit unit) {
+    this(maxConnectionsPerHost, keepAlive, unit, Http.DEFAULT_CONNECTION_TIMEOUT, Http.DEFAULT_READ_TIMEOUT);
+  }
+  
+  /**
+   * Constructs a PooledTransport that opens at most 5 connections
+   * per host and closes them after 30 seconds of inactivity.
+   */
+  public PooledTransport() {
+    this(DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+  }
+  
+  @Override
+  public InputStream post(String url, TelegramMethod<?> method) throws IOException {
+    if (closed) {
+      throw new IOException("Transport closed");
+    }
+    URL target = new URL(url);
+    HostPool pool = pools.computeIfAbsent(keyOf(target), key -> new HostPool(target));
+    pool.acquire();
+    try {
+      RequestBody body = RequestBody.of(method);
+      int timeout = method.getRequestTimeout().map(Http::toMillis).orElse(readTimeout);
+      Connection connection;
+      // a body that cannot be written again is never sent over a connection that may be stale
+      while (body.isRepeatable() && (connection = pool.poll()) != null) {
+        try {
+          return exchange(pool, connection, target, body, timeout);
+        } catch (StaleConnectionException e) {
+          connection.close();
+        }
+      }
+      connection = pool.connect();
+      try {
+        return exchange(pool, connection, target, body, timeout);
+      } catch (StaleConnectionException e) {
+        connection.close();
+        throw new IOException("Connection closed by the server", e);
+      }
+    } catch (Throwable e) {
+      pool.release();
+      throw e;
+    }
+  }
+  
+  private InputStream exchange(HostPool pool, Connection connection, URL target, RequestBody body, int timeout)
+      throws IOException {
+    try {
+      connection.socket.setSoTimeout(timeout);
+      String path = target.getFile().isEmpty() ? "/" : target.getFile();
+      long contentLength = body.getContentLength();
+      String head = "POST " + path + " HTTP/1.1\r\n" +
+          "Host: " + pool.hostHeader + "\r\n" +
+          "Content-Type: " + body.getContentType() + "\r\n" +
+          (contentLength >= 0 ? "Content-Length: " + contentLength : "Transfer-Encoding: chunked") + "\r\n" +
+          "Connection: keep-alive\r\n" +
+          "\r\n";
+      connection.output.write(head.getBytes(StandardCharsets.ISO_8859_1));
+      if (contentLength < 0) {
+        ChunkedOutputStream output = new ChunkedOutputStream(connection.output);
+        body.writeTo(output);
+        output.finish();
+      } else if (connection.channel != null) {
+        connection.output.flush();
+        body.writeTo(connection.channel);
+      } else {
+        body.writeTo(connection.output);
+      }
+      connection.output.flush();
+    } catch (IOException e) {
+      if (connection.reused) {
+        throw new StaleConnectionException(e);
+      }
+      connection.close();
+      throw e;
+    }
+    Deadline deadline = Deadline.start(timeout, connection::close);
+    try {
+      return readResponse(pool, connection, deadline);
+    } catch (StaleConnectionException e) {
+      deadline.cancel();
+      throw e;
+    } catch (IOException e) {
+      deadline.cancel();
+      connection.close();
+      throw deadline.translate(e);
+    }
+  }
+  
+  private InputStream readResponse(HostPool pool, Connection connection, Deadline deadline) throws IOException {
+    String statusLine = readLine(connection.input);
+    if (statusLine == null) {
+      if (connection.reused) {
+        throw new StaleConnectionException(null);
+      }
+      throw new EOFException("Unexpected end of stream");
+    }
+    int status = parseStatus(statusLine);
+    boolean keepAlive = !statusLine.startsWith("HTTP/1.0");
+    long contentLength = -1;
+    boolean chunked = false;
+    String line;
+    while (!(line = requireLine(connection.input)).isEmpty()) {
+      int colon = line.indexOf(':');
+      if (colon <= 0) {
+        continue;
+      }
+      String name = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+      String value = line.substring(colon + 1).trim();
+      switch (name) {
+        case "content-length":
+          contentLength = Long.parseLong(value);
+          break;
+        case "transfer-encoding":
+          chunked = value.toLowerCase(Locale.ROOT).contains("chunked");
+          break;
+        case "connection":
+          keepAlive = !value.equalsIgnoreCase("close");
+          break;
+        default:
+      }
+    }
+    if (status / 100 == 1) {
+      return readResponse(pool, connection, deadline);
+    }
+    InputStream body;
+    if (chunked) {
+      body = new ChunkedInputStream(connection.input);
+    } else if (contentLength >= 0) {
+      body = new FixedLengthInputStream(connection.input, contentLength);
+    } else {
+      body = connection.input;
+      keepAlive = false;
+    }
+    return new ResponseInputStream(body, pool, connection, deadline, keepAlive);
+  }
+  
+  /**
+   * Closes the idle connections that exceeded the keep alive time.
+   * This method is invoked periodically until the transport is closed.
+   */
+  public void evictIdleConnections() {
+    long now = System.nanoTime();
+    for (HostPool pool : pools.values()) {
+      pool.evictExpired(now);
+    }
+  }
+  
+  /**
+   * Returns the number of connections opened by this transport.
+   *
+   * @return the number of connections opened by this transport
+   */
+  public long getCreatedConnections() {
+    return createdConnections.get();
+  }
+  
+  /**
+   * Returns the number of requests sent over an already opened connection.
+   *
+   * @return the number of requests sent over an already opened connection
+   */
+  public long getReusedConnections() {
+    return reusedConnections.get();
+  }
+  
+  /**
+   * Returns the number of connections closed because they exceeded the keep alive time.
+   *
+   * @return the number of connections closed because idle
+   */
+  public long getEvictedConnections() {
+    return evictedConnections.get();
+  }
+  
+  /**
+   * Returns the number of connections currently idle in the pool.
+   *
+   * @return the number of idle connections
+   */
+  public int getIdleConnections() {
+    int idle = 0;
+    for (HostPool pool : pools.values()) {
+      idle += pool.idleCount();
+    }
+    return idle;
+  }
+  
+  @Override
+  public void close() {
+    closed = true;
+    if (eviction != null) {
+      eviction.cancel(false);
+    }
+    for (HostPool pool : pools.values()) {
+      pool.clear();
+    }
+  }
+  
+  private static String keyOf(URL url) {
+    int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+    return url.getProtocol() + "://" + url.getHost() + ":" + port;
+  }
+  
+  private static int parseStatus(String statusLine) throws IOException {
+    String[] parts = statusLine.split(" ", 3);
+    if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+      throw new IOException("Invalid status line: " + statusLine);
+    }
+    try {
+      return Integer.parseInt(parts[1]);
+    } catch (NumberFormatException e) {
+      throw new IOException("Invalid status line: " + statusLine, e);
+    }
+  }
+  
+  private static String requireLine(InputStream input) throws IOException {
+    String line = readLine(input);
+    if (line == null) {
+      throw new EOFException("Unexpected end of stream");
+    }
+    return line;
+  }
+  
+  private static String readLine(InputStream input) throws IOException {
+    StringBuilder line = new StringBuilder();
+    int c;
+    while ((c = input.read()) != '\n') {
+      if (c == -1) {
+        if (line.length() == 0) {
+          return null;
+        }
+        throw new EOFException("Unexpected end of stream");
+      }
+      if (line.length() >= MAX_LINE_LENGTH) {
+        throw new IOException("Line too long");
+      }
+      line.append((char) c);
+    }
+    int length = line.length();
+    if (length > 0 && line.charAt(length - 1) == '\r') {
+      line.setLength(length - 1);
+    }
+    return line.toString();
+  }
+  
+  private final class HostPool {
+    
+    private final String host;
+    private final int port;
+    private final boolean secure;
+    private final String hostHeader;
+    private final Semaphore permits;
+    private final Deque<Connection> idle;
+    
+    private HostPool(URL url) {
+      host = url.getHost();
+      port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+      secure = url.getProtocol().equalsIgnoreCase("https");
+      hostHeader = url.getPort() != -1 ? host + ":" + port : host;
+      permits = new Semaphore(maxConnectionsPerHost, true);
+      idle = new ArrayDeque<>();
+    }
+    
+    private void acquire() throws IOException {
+      try {
+        if (connectionTimeout == 0) {
+          permits.acquire();
+        } else if (!permits.tryAcquire(connectionTimeout, TimeUnit.MILLISECONDS)) {
+          throw new SocketTimeoutException(
+              "Timed out waiting for one of the " + maxConnectionsPerHost + " connections to " + hostHeader
+          );
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for a connection");
+      }
+    }
+    
+    private void release() {
+      permits.release();
+    }
+    
+    private Connection poll() {
+      Connection connection;
+      synchronized (idle) {
+        evictExpired(System.nanoTime());
+        connection = idle.pollFirst();
+      }
+      if (connection != null) {
+        reusedConnections.incrementAndGet();
+      }
+      return connection;
+    }
+    
+    private void recycle(Connection connection) {
+      if (closed) {
+        connection.close();
+        return;
+      }
+      if (keepAliveNanos == 0) {
+        connection.close();
+        evictedConnections.incrementAndGet();
+        return;
+      }
+      connection.reused = true;
+      connection.idleSince = System.nanoTime();
+      synchronized (idle) {
+        idle.addFirst(connection);
+      }
+    }
+    
+    private void evictExpired(long now) {
+      synchronized (idle) {
+        Connection connection;
+        while ((connection = idle.peekLast()) != null && now - connection.idleSince >= keepAliveNanos) {
+          idle.removeLast();
+          connection.close();
+          evictedConnections.incrementAndGet();
+        }
+      }
+    }
+    
+    private int idleCount() {
+      synchronized (idle) {
+        return idle.size();
+      }
+    }
+    
+    private void clear() {
+      synchronized (idle) {
+        Connection connection;
+        while ((connection = idle.pollFirst()) != null) {
+          connection.close();
+        }
+      }
+    }
+    
+    private Connection connect() throws IOException {
+      SocketChannel channel = secure ? null : SocketChannel.open();
+      Socket socket = channel != null ? channel.socket() : new Socket();
+      try {
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout(connectionTimeout);
+        socket.connect(new InetSocketAddress(host, port), connectionTimeout);
+        if (secure) {
+          SSLSocketFactory factory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+          SSLSocket sslSocket = (SSLSocket) factory.createSocket(socket, host, port, true);
+          SSLParameters parameters = sslSocket.getSSLParameters();
+          parameters.setEndpointIdentificationAlgorithm("HTTPS");
+          sslSocket.setSSLParameters(parameters);
+          sslSocket.startHandshake();
+          socket = sslSocket;
+        }
+        createdConnections.incrementAndGet();
+        return new Connection(socket, channel);
+      } catch (IOException e) {
+        socket.close();
+        throw e;
+      }
+    }
+    
+  }
+  
+  private static final class Connection {
+    
+    private final Socket socket;
+    private final SocketChannel channel;
+    private final InputStream input;
+    private final OutputStream output;
+    private boolean reused;
+    private long idleSince;
+    
+    private Connection(Socket socket, SocketChannel channel) throws IOException {
+      this.socket = socket;
+      this.channel = channel;
+      input = new BufferedInputStream(socket.getInputStream());
+      output = new BufferedOutputStream(socket.getOutputStream());
+    }
+    
+    private void close() {
+      try {
+        socket.close();
+      } catch (IOException ignored) {
+      }
+    }
+    
+  }
+  
+  private static final class ResponseInputStream extends FilterInputStream {
+    
+    private final HostPool pool;
+    private final Connection connection;
+    private final Deadline deadline;
+    private final boolean keepAlive;
+    private boolean closed;
+    
+    private ResponseInputStream(InputStream body,
+                                HostPool pool,
+                                Connection connection,
+                                Deadline deadline,
+                                boolean keepAlive) {
+      super(body);
+      this.pool = pool;
+      this.connection = connection;
+      this.deadline = deadline;
+      this.keepAlive = keepAlive;
+    }
+    
+    @Override
+    public int read() throws IOException {
+      try {
+        return super.read();
+      } catch (IOException e) {
+        throw deadline.translate(e);
+      }
+    }
+    
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      try {
+        return super.read(b, off, len);
+      } catch (IOException e) {
+        throw deadline.translate(e);
+      }
+    }
+    
+    @Override
+    public void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        // an aborted connection is already closed
+        if (deadline.cancel() && keepAlive && drain()) {
+          pool.recycle(connection);
+        } else {
+          connection.close();
+        }
+      } finally {
+        pool.release();
+      }
+    }
+    
+    private boolean drain() {
+      try {
+        byte[] buffer = new byte[1024];
+        long drained = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          drained += read;
+          if (drained > MAX_DRAIN_LENGTH) {
+            return false;
+          }
+        }
+        return true;
+      } catch (IOException e) {
+        return false;
+      }
+    }
+    
+  }
+  
+  private static final class FixedLengthInputStream extends FilterInputStream {
+    
+    private long remaining;
+    
+    private FixedLengthInputStream(InputStream in, long length) {
+      super(in);
+      remaining = length;
+    }
+    
+    @Override
+    public int read() throws IOException {
+      if (remaining == 0) {
+        return -1;
+      }
+      int b = in.read();
+      if (b == -1) {
+        throw new EOFException("Unexpected end of stream");
+      }
+      remaining--;
+      return b;
+    }
+    
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (remaining == 0) {
+        return -1;
+      }
+      int read = in.read(b, off, (int) Math.min(len, remaining));
+      if (read == -1) {
+        throw new EOFException("Unexpected end of stream");
+      }
+      remaining -= read;
+      return read;
+    }
+    
+    @Override
+    public int available() throws IOException {
+      return (int) Math.min(in.available(), remaining);
+    }
+    
+    @Override
+    public void close() {
+    }
+    
+  }
+  
+  private static final class ChunkedInputStream extends FilterInputStream {
+    
+    private long remaining;
+    private boolean started;
+    private boolean finished;
+    
+    private ChunkedInputStream(InputStream in) {
+      super(in);
+    }
+    
+    @Override
+    public int read() throws IOException {
+      if (!nextChunk()) {
+        return -1;
+      }
+      int b = in.read();
+      if (b == -1) {
+        throw new EOFException("Unexpected end of stream");
+      }
+      remaining--;
+      return b;
+    }
+    
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (!nextChunk()) {
+        return -1;
+      }
+      int read = in.read(b, off, (int) Math.min(len, remaining));
+      if (read == -1) {
+        throw new EOFException("Unexpected end of stream");
+      }
+      remaining -= read;
+      return read;
+    }
+    
+    private boolean nextChunk() throws IOException {
+      if (finished) {
+        return false;
+      }
+      if (remaining > 0) {
+        return true;
+      }
+      if (started) {
+        requireLine(in);
+      }
+      started = true;
+      String size = requireLine(in);
+      int extension = size.indexOf(';');
+      try {
+        remaining = Long.parseLong((extension != -1 ? size.substring(0, extension) : size).trim(), 16);
+      } catch (NumberFormatException e) {
+        throw new IOException("Invalid chunk size: " + size, e);
+      }
+      if (remaining == 0) {
+        while (!requireLine(in).isEmpty()) {
+          // skip trailers
+        }
+        finished = true;
+        return false;
+      }
+      return true;
+    }
+    
+    @Override
+    public int available() throws IOException {
+      return finished ? 0 : (int) Math.min(in.available(), remaining);
+    }
+    
+    @Override
+    public void close() {
+    }
+    
+  }
+  
+  private static final class ChunkedOutputStream extends FilterOutputStream {
+    
+    private final byte[] buffer;
+    private int count;
+    
+    private ChunkedOutputStream(OutputStream out) {
+      super(out);
+      buffer = new byte[CHUNK_SIZE];
+    }
+    
+    @Override
+    public void write(int b) throws IOException {
+      if (count == buffer.length) {
+        writeBuffer();
+      }
+      buffer[count++] = (byte) b;
+    }
+    
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (len >= buffer.length) {
+        // large writes become chunks on their own, without being copied
+        writeBuffer();
+        writeChunk(b, off, len);
+      } else {
+        if (len > buffer.length - count) {
+          writeBuffer();
+        }
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+      }
+    }
+    
+    @Override
+    public void flush() throws IOException {
+      writeBuffer();
+      out.flush();
+    }
+    
+    private void finish() throws IOException {
+      writeBuffer();
+      out.write(LAST_CHUNK);
+    }
+    
+    @Override
+    public void close() {
+    }
+    
+    private void writeBuffer() throws IOException {
+      writeChunk(buffer, 0, count);
+      count = 0;
+    }
+    
+    private void writeChunk(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return;
+      }
+      out.write((Integer.toHexString(len) + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+      out.write(b, off, len);
+      out.write(CRLF);
+    }
+    
+  }
+  
+  private static final class StaleConnectionException extends IOException {
+    
+    private StaleConnectionException(Throwable cause) {
+      super("Connection closed by the server", cause);
+    }
+    
+  }
+  
+}
@@ -0,0 +1,334 @@
+package io.github.ageofwar.telejam.connection;
+
+import io.github.ageofwar.telejam.TelegramException;
+import io.github.ageofwar.telejam.methods.TelegramMethod;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transport that limits the rate of the messages sent by a bot, in order to respect
+ * the limits of Telegram: by default, 30 messages per second overall, one message
+ * per second in the same private chat and 20 messages per minute in the same group.
+ * <p>
+ * Only the methods that send or edit messages are limited, that is the methods acting on a chat
+ * whose name starts with <code>send</code>, <code>forward</code>, <code>copy</code> or
+ * <code>edit</code>. Every limit is a token bucket, implemented with the generic cell rate
+ * algorithm: the state of a bucket is a single atomic value, updated without locks.
+ * <p>
+ * When a limit is exceeded, the request either waits for its turn or fails immediately
+ * with a {@link TelegramException} with error code 429, whose response parameters contain
+ * the number of seconds to wait before retrying, as if it was returned by Telegram.
+ *
+ * @author Michi Palazzo
+ */
+public final class RateLimitedTransport implements Transport {
+  
+  /**
+   * Default maximum number of messages sent per second.
+   */
+  public static final int DEFAULT_MESSAGES_PER_SECOND = 30;
+  
+  /**
+   * Default maximum number of messages sent per second in the same private chat.
+   */
+  public static final int DEFAULT_PRIVATE_CHAT_MESSAGES_PER_SECOND = 1;
+  
+  /**
+   * Default maximum number of messages sent per minute in the same group.
+   */
+  public static final int DEFAULT_GROUP_MESSAGES_PER_MINUTE = 20;
+  
+  private static final int SWEEP_INTERVAL = 1024;
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+  private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+  
+  /**
+   * What to do with a request that exceeds a limit.
+   */
+  public enum Mode {
+    
+    /**
+     * Waits until the request can be sent.
+     */
+    QUEUE,
+    
+    /**
+     * Throws a {@link TelegramException} with error code 429.
+     */
+    FAIL_FAST
+    
+  }
+  
+  private final Transport transport;
+  private final Mode mode;
+  private final Bucket global;
+  private final int privateChatMessagesPerSecond;
+  private final int groupMessagesPerMinute;
+  private final ConcurrentMap<String, Bucket> chats;
+  private final AtomicLong requests;
+  private final AtomicLong queuedRequests;
+  private final AtomicLong rejectedRequests;
+  private final AtomicLong waitNanos;
+  
+  /**
+   * Constructs a RateLimitedTransport.
+   *
+   * @param transport                    the transport that sends the requests
+   * @param mode                         what to do with a request that exceeds a limit
+   * @param messagesPerSecond            maximum number of messages sent per second
+   * @param privateChatMessagesPerSecond maximum number of messages sent per second in the same private chat
+   * @param groupMessagesPerMinute       maximum number of messages sent per minute in the same group
+   */
+  public RateLimitedTransport(Transport transport,
+                              Mode mode,
+                              int messagesPerSecond,
+                              int privateChatMessagesPerSecond,
+                              int groupMessagesPerMinute) {
+    if (messagesPerSecond <= 0 || privateChatMessagesPerSecond <= 0 || groupMessagesPerMinute <= 0) {
+      throw new IllegalArgumentException("Rates must be positive");
+    }
+    this.transport = Objects.requireNonNull(transport);
+    this.mode = Objects.requireNonNull(mode);
+    global = new Bucket(messagesPerSecond, SECOND);
+    this.privateChatMessagesPerSecond = privateChatMessagesPerSecond;
+    this.groupMessagesPerMinute = groupMessagesPerMinute;
+    chats = new ConcurrentHashMap<>();
+    requests = new AtomicLong();
+    queuedRequests = new AtomicLong();
+    rejectedRequests = new AtomicLong();
+    waitNanos = new AtomicLong();
+  }
+  
+  /**
+   * Constructs a RateLimitedTransport that respects the default limits of Telegram.
+   *
+   * @param transport the transport that sends the requests
+   * @param mode      what to do with a request that exceeds a limit
+   */
+  public RateLimitedTransport(Transport transport, Mode mode) {
+    this(
+        transport,
+        mode,
+        DEFAULT_MESSAGES_PER_SECOND,
+        DEFAULT_PRIVATE_CHAT_MESSAGES_PER_SECOND,
+        DEFAULT_GROUP_MESSAGES_PER_MINUTE
+    );
+  }
+  
+  @Override
+  public InputStream post(String url, TelegramMethod<?> method) throws IOException {
+    long wait = acquire(method);
+    if (wait > 0) {
+      try {
+        TimeUnit.NANOSECONDS.sleep(wait);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for the rate limit");
+      }
+    }
+    return transport.post(url, method);
+  }
+  
+  @Override
+  public CompletableFuture<InputStream> postAsync(String url, TelegramMethod<?> method, Executor executor) {
+    long wait;
+    try {
+      wait = acquire(method);
+    } catch (IOException e) {
+      CompletableFuture<InputStream> future = new CompletableFuture<>();
+      future.completeExceptionally(e);
+      return future;
+    }
+    if (wait <= 0) {
+      return transport.postAsync(url, method, executor);
+    }
+    CompletableFuture<InputStream> future = new CompletableFuture<>();
+    Scheduler.schedule(() -> {
+      transport.postAsync(url, method, executor).whenComplete((inputStream, error) -> {
+        if (error != null) {
+          future.completeExceptionally(error);
+        } else {
+          future.complete(inputStream);
+        }
+      });
+    }, wait, TimeUnit.NANOSECONDS);
+    return future;
+  }
+  
+  /**
+   * Returns the number of requests that waited because a limit was exceeded.
+   *
+   * @return the number of queued requests
+   */
+  public long getQueuedRequests() {
+    return queuedRequests.get();
+  }
+  
+  /**
+   * Returns the number of requests that failed because a limit was exceeded.
+   *
+   * @return the number of rejected requests
+   */
+  public long getRejectedRequests() {
+    return rejectedRequests.get();
+  }
+  
+  /**
+   * Returns the total time spent by the requests waiting for their turn.
+   *
+   * @return the total queue wait time
+   */
+  public Duration getQueueWaitTime() {
+    return Duration.ofNanos(waitNanos.get());
+  }
+  
+  /**
+   * Returns the number of chats whose limit is being tracked.
+   *
+   * @return the number of tracked chats
+   */
+  public int getTrackedChats() {
+    return chats.size();
+  }
+  
+  @Override
+  public void close() throws IOException {
+    transport.close();
+  }
+  
+  private long acquire(TelegramMethod<?> method) throws TelegramException {
+    if (!isLimited(method.getName())) {
+      return 0;
+    }
+    Optional<String> chatId = method.getChatId();
+    if (!chatId.isPresent()) {
+      return 0;
+    }
+    long now = System.nanoTime();
+    if (requests.incrementAndGet() % SWEEP_INTERVAL == 0) {
+      sweep(now);
+    }
+    boolean queue = mode == Mode.QUEUE;
+    Bucket chat;
+    long chatWait;
+    do {
+      // a retired bucket is being removed by a sweep, so it is replaced by a new one
+      chat = chats.computeIfAbsent(chatId.get(), this::newChatBucket);
+      chatWait = chat.reserve(now, queue);
+    } while (chatWait == Bucket.RETIRED);
+    if (chatWait < 0) {
+      throw reject(-chatWait);
+    }
+    long globalWait = global.reserve(now + chatWait, queue);
+    if (globalWait < 0) {
+      chat.cancel();
+      throw reject(-globalWait);
+    }
+    long wait = chatWait + globalWait;
+    if (wait > 0) {
+      queuedRequests.incrementAndGet();
+      waitNanos.addAndGet(wait);
+    }
+    return wait;
+  }
+  
+  /**
+   * Removes the buckets of the chats that have no tokens reserved.
+   * A bucket is retired before being removed, so that a request that already got
+   * the bucket from the map cannot reserve a token in it after it has been removed.
+   */
+  private void sweep(long time) {
+    for (Map.Entry<String, Bucket> entry : chats.entrySet()) {
+      Bucket bucket = entry.getValue();
+      if (bucket.retire(time)) {
+        chats.remove(entry.getKey(), bucket);
+      }
+    }
+  }
+  
+  private Bucket newChatBucket(String chatId) {
+    boolean group = chatId.startsWith("-") || chatId.startsWith("@");
+    return group ? new Bucket(groupMessagesPerMinute, MINUTE) : new Bucket(privateChatMessagesPerSecond, SECOND);
+  }
+  
+  private TelegramException reject(long wait) {
+    rejectedRequests.incrementAndGet();
+    int retryAfter = (int) Math.max(1, (wait + SECOND - 1) / SECOND);
+    return new TelegramException(
+        429,
+        "Too Many Requests: retry after " + retryAfter,
+        new ResponseParameters(retryAfter)
+    );
+  }
+  
+  private static boolean isLimited(String methodName) {
+    return methodName.startsWith("send") || methodName.startsWith("forward") ||
+        methodName.startsWith("copy") || methodName.startsWith("edit");
+  }
+  
+  private static final class Bucket {
+    
+    private static final long RETIRED = Long.MIN_VALUE;
+    
+    private final long interval;
+    private final long tolerance;
+    private final AtomicLong theoreticalArrivalTime;
+    
+    private Bucket(int capacity, long period) {
+      interval = period / capacity;
+      tolerance = interval * (capacity - 1);
+      theoreticalArrivalTime = new AtomicLong(System.nanoTime() - period);
+    }
+    
+    /**
+     * Reserves a token available at the specified time.
+     *
+     * @param time  the time when the token is needed
+     * @param force whether to reserve the token even if it is not yet available
+     * @return the time to wait for the token, or its opposite if the token is not available
+     * and it has not been reserved, or {@link #RETIRED} if the bucket has been retired
+     */
+    private long reserve(long time, boolean force) {
+      while (true) {
+        long current = theoreticalArrivalTime.get();
+        if (current == RETIRED) {
+          return RETIRED;
+        }
+        long start = Math.max(current, time);
+        long wait = Math.max(0, start - time - tolerance);
+        if (wait > 0 && !force) {
+          return -wait;
+        }
+        if (theoreticalArrivalTime.compareAndSet(current, start + interval)) {
+          return wait;
+        }
+      }
+    }
+    
+    private void cancel() {
+      theoreticalArrivalTime.getAndUpdate(current -> current == RETIRED ? RETIRED : current - interval);
+    }
+    
+    /**
+     * Retires this bucket if it has no tokens reserved at the specified time.
+     * A retired bucket cannot reserve tokens anymore.
+     *
+     * @param time the current time
+     * @return <code>true</code> if the bucket has been retired
+     */
+    private boolean retire(long time) {
+      long current = theoreticalArrivalTime.get();
+      return current != RETIRED && current <= time && theoreticalArrivalTime.compareAndSet(current, RETIRED);
+    }
+    
+  }
+  
+}
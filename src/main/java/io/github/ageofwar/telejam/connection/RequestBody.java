@@ -0,0 +1,95 @@
+package io.github.ageofwar.telejam.connection;
+
+import io.github.ageofwar.telejam.methods.TelegramMethod;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Map;
+
+/**
+ * The encoded body of a request to the Telegram API.
+ *
+ * @author Michi Palazzo
+ */
+public abstract class RequestBody {
+  
+  /**
+   * Returns the body of the request that invokes the specified method.
+   *
+   * @param method the method to invoke
+   * @return the body of the request
+   */
+  public static RequestBody of(TelegramMethod<?> method) {
+    Map<String, UploadFile> files = method.getFiles();
+    if (files.isEmpty()) {
+      return new JsonBody(method);
+    } else {
+      return new MultipartBody(method.getParameters(), files);
+    }
+  }
+  
+  /**
+   * Returns the body of a request with the specified parameters and files.
+   *
+   * @param parameters the parameters of the request
+   * @param files      the files of the request
+   * @return the body of the request
+   */
+  public static RequestBody of(Map<String, Object> parameters, Map<String, UploadFile> files) {
+    if (files.isEmpty()) {
+      return new JsonBody(parameters);
+    } else {
+      return new MultipartBody(parameters, files);
+    }
+  }
+  
+  /**
+   * Returns the value of the Content-Type header of this body.
+   *
+   * @return the content type of this body
+   */
+  public abstract String getContentType();
+  
+  /**
+   * Returns the number of bytes written by {@link #writeTo(OutputStream)},
+   * or -1 if it is not known in advance.
+   *
+   * @return the length of this body, or -1 if unknown
+   */
+  public long getContentLength() {
+    return -1;
+  }
+  
+  /**
+   * Returns whether this body can be written more than once.
+   *
+   * @return <code>true</code> if this body can be written more than once,
+   * <code>false</code> otherwise
+   */
+  public boolean isRepeatable() {
+    return false;
+  }
+  
+  /**
+   * Writes this body to the specified output stream.
+   * The output stream is not closed.
+   *
+   * @param output the output stream
+   * @throws IOException if an I/O error occurs
+   */
+  public abstract void writeTo(OutputStream output) throws IOException;
+  
+  /**
+   * Writes this body to the specified channel.
+   * The channel is not closed.
+   *
+   * @param channel the channel
+   * @throws IOException if an I/O error occurs
+   */
+  public void writeTo(WritableByteChannel channel) throws IOException {
+    writeTo(Channels.newOutputStream(channel));
+  }
+  
+}
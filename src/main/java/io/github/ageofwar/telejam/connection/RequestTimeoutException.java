@@ -0,0 +1,36 @@
+package io.github.ageofwar.telejam.connection;
+
+import java.net.SocketTimeoutException;
+
+/**
+ * Exception thrown when a request to the Telegram API times out.
+ * The request can be retried, but note that it may have been
+ * processed by the Telegram API anyway.
+ *
+ * @author Michi Palazzo
+ */
+public class RequestTimeoutException extends SocketTimeoutException {
+  
+  /**
+   * Name of the method whose invocation timed out.
+   */
+  private final String methodName;
+  
+  
+  public RequestTimeoutException(String methodName, Throwable cause) {
+    super(methodName + " timed out");
+    this.methodName = methodName;
+    initCause(cause);
+  }
+  
+  
+  /**
+   * Getter for property {@link #methodName}.
+   *
+   * @return value for property {@link #methodName}
+   */
+  public String getMethodName() {
+    return methodName;
+  }
+  
+}
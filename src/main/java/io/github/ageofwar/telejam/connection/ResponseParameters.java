@@ -38,6 +38,11 @@ public class ResponseParameters implements TelegramObject {
     this.retryAfter = retryAfter;
   }
   
+  ResponseParameters(Long migrateToChatId, Integer retryAfter) {
+    this.migrateToChatId = migrateToChatId;
+    this.retryAfter = retryAfter;
+  }
+  
   
   /**
    * Getter for property {@link #migrateToChatId}.
@@ -0,0 +1,53 @@
+package io.github.ageofwar.telejam.connection;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timer shared by the whole library, used for request deadlines, delayed retries,
+ * rate-limited requests and the eviction of idle connections.
+ * All the tasks run on a single daemon thread, so they must be short and must never block.
+ *
+ * @author Michi Palazzo
+ */
+public final class Scheduler {
+  
+  private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "telejam-scheduler");
+    thread.setDaemon(true);
+    return thread;
+  });
+  
+  private Scheduler() {
+    throw new AssertionError();
+  }
+  
+  /**
+   * Runs a task after the specified delay.
+   *
+   * @param task  the task to run
+   * @param delay the time to wait before running the task
+   * @param unit  the time unit of the delay
+   * @return the future of the task, that can be used to cancel it
+   */
+  public static ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+    return SCHEDULER.schedule(task, delay, unit);
+  }
+  
+  /**
+   * Runs a task periodically, waiting the specified delay between the end of a run
+   * and the start of the next one.
+   *
+   * @param task         the task to run
+   * @param initialDelay the time to wait before the first run
+   * @param delay        the time to wait between two runs
+   * @param unit         the time unit of the delays
+   * @return the future of the task, that can be used to cancel it
+   */
+  public static ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long initialDelay, long delay, TimeUnit unit) {
+    return SCHEDULER.scheduleWithFixedDelay(task, initialDelay, delay, unit);
+  }
+  
+}
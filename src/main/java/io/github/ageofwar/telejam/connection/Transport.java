@@ -0,0 +1,69 @@
+package io.github.ageofwar.telejam.connection;
+
+import io.github.ageofwar.telejam.methods.TelegramMethod;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Strategy used by a bot to send requests to the Telegram API.
+ *
+ * @author Michi Palazzo
+ */
+public interface Transport extends Closeable {
+  
+  /**
+   * Sends a request that invokes the specified method and returns the body of the response.
+   * The caller must close the returned stream.
+   *
+   * @param url    the url of the method
+   * @param method the method to invoke
+   * @return the body of the response, even if the response has an error status
+   * @throws IOException if an I/O error occurs
+   */
+  InputStream post(String url, TelegramMethod<?> method) throws IOException;
+  
+  /**
+   * Asynchronously sends a request that invokes the specified method.
+   * The returned future completes with the body of the response, or exceptionally
+   * with the {@link IOException} that occurred.
+   * <p>
+   * The default implementation invokes {@link #post(String, TelegramMethod)}
+   * on the specified executor, so the request holds a thread of the executor until the
+   * response arrives; transports that support non-blocking I/O should override this method.
+   *
+   * @param url      the url of the method
+   * @param method   the method to invoke
+   * @param executor the executor used to send the request
+   * @return a future that completes with the body of the response
+   */
+  default CompletableFuture<InputStream> postAsync(String url, TelegramMethod<?> method, Executor executor) {
+    CompletableFuture<InputStream> future = new CompletableFuture<>();
+    try {
+      executor.execute(() -> {
+        try {
+          future.complete(post(url, method));
+        } catch (Throwable e) {
+          future.completeExceptionally(e);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+  
+  /**
+   * Releases the resources held by this transport.
+   *
+   * @throws IOException if an I/O error occurs
+   */
+  @Override
+  default void close() throws IOException {
+  }
+  
+}
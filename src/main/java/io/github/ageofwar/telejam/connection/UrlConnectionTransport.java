@@ -0,0 +1,46 @@
+package io.github.ageofwar.telejam.connection;
+
+import io.github.ageofwar.telejam.methods.TelegramMethod;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+
+/**
+ * Transport that opens a new {@link java.net.HttpURLConnection} for every request.
+ *
+ * @author Michi Palazzo
+ */
+public final class UrlConnectionTransport implements Transport {
+  
+  private final int connectionTimeout;
+  private final int readTimeout;
+  
+  /**
+   * Constructs an UrlConnectionTransport.
+   * A zero timeout is interpreted as an infinite timeout.
+   *
+   * @param connectionTimeout the maximum time to wait for a connection
+   * @param readTimeout       the maximum time to wait for the whole response after the
+   *                          request has been sent, if the method does not specify its own timeout
+   */
+  public UrlConnectionTransport(Duration connectionTimeout, Duration readTimeout) {
+    this.connectionTimeout = Http.toMillis(connectionTimeout);
+    this.readTimeout = Http.toMillis(readTimeout);
+  }
+  
+  /**
+   * Constructs an UrlConnectionTransport with 10 seconds of connection
+   * timeout and 60 seconds of read timeout.
+   */
+  public UrlConnectionTransport() {
+    this(Http.DEFAULT_CONNECTION_TIMEOUT, Http.DEFAULT_READ_TIMEOUT);
+  }
+  
+  @Override
+  public InputStream post(String url, TelegramMethod<?> method) throws IOException {
+    int timeout = method.getRequestTimeout().map(Http::toMillis).orElse(readTimeout);
+    return Http.post(url, RequestBody.of(method), connectionTimeout, timeout);
+  }
+  
+}
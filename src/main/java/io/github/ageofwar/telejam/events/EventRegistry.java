@@ -2,35 +2,68 @@ package io.github.ageofwar.telejam.events;
 
 import io.github.ageofwar.telejam.Bot;
 import io.github.ageofwar.telejam.callbacks.CallbackDataHandler;
-import io.github.ageofwar.telejam.commands.Command;
+import io.github.ageofwar.telejam.callbacks.CallbackQueryHandler;
+import io.github.ageofwar.telejam.callbacks.CallbackRouter;
 import io.github.ageofwar.telejam.commands.CommandHandler;
-import io.github.ageofwar.telejam.messages.NewChatMemberHandler;
-import io.github.ageofwar.telejam.updates.Update;
-import io.github.ageofwar.telejam.updates.UpdateHandler;
+import io.github.ageofwar.telejam.commands.CommandRouter;
+import io.github.ageofwar.telejam.inline.InlineQueryHandler;
+import io.github.ageofwar.telejam.messages.*;
+import io.github.ageofwar.telejam.payments.ShippingQueryHandler;
+import io.github.ageofwar.telejam.updates.*;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Utility class that handles events.
  * The order of execution of registered events depends on the order of
  * registration of the event.
+ * <p>
+ * Handlers are classified when they are registered by the type of the updates
+ * and of the messages they consume, so that every update is passed only to the
+ * handlers that can handle it. The handlers that implement one of the handler
+ * interfaces of this library without overriding its default methods are
+ * classified, while other handlers receive every update.
+ * <p>
+ * Handlers can be registered and removed while updates are being handled: every change
+ * replaces the routes with new ones computed from a snapshot of the registered handlers,
+ * so that an update being handled never sees a partially updated registry.
  */
 public class EventRegistry implements UpdateHandler {
   
+  private static final Map<Class<?>, List<Class<? extends Update>>> UPDATE_TYPES = new HashMap<>();
+  private static final Map<Class<?>, Class<? extends Message>> MESSAGE_TYPES = new HashMap<>();
+  
+  static {
+    UPDATE_TYPES.put(MessageHandler.class, Collections.singletonList(MessageUpdate.class));
+    UPDATE_TYPES.put(MessageEditHandler.class, Collections.singletonList(EditedMessageUpdate.class));
+    UPDATE_TYPES.put(ChannelPostHandler.class, Collections.singletonList(ChannelPostUpdate.class));
+    UPDATE_TYPES.put(ChannelPostEditHandler.class, Collections.singletonList(EditedChannelPostUpdate.class));
+    UPDATE_TYPES.put(PollHandler.class, Collections.singletonList(PollUpdate.class));
+    UPDATE_TYPES.put(CallbackQueryHandler.class, Collections.singletonList(CallbackQueryUpdate.class));
+    UPDATE_TYPES.put(InlineQueryHandler.class, Arrays.asList(InlineQueryUpdate.class, ChosenInlineResultUpdate.class));
+    UPDATE_TYPES.put(ShippingQueryHandler.class, Arrays.asList(ShippingQueryUpdate.class, PreCheckoutQueryUpdate.class));
+    MESSAGE_TYPES.put(TextMessageHandler.class, TextMessage.class);
+    MESSAGE_TYPES.put(NewChatMemberHandler.class, NewChatMembersMessage.class);
+  }
+  
   private final Bot bot;
-  private final List<UpdateHandler> updateHandlers;
+  private final List<Registration> updateHandlers;
+  private volatile Routes routes;
+  private volatile CommandRouter commands;
+  private volatile CallbackRouter callbacks;
   
   public EventRegistry(Bot bot) {
     this.bot = bot;
-    updateHandlers = new ArrayList<>();
+    updateHandlers = new CopyOnWriteArrayList<>();
+    routes = new Routes(new Registration[0]);
   }
   
   @Override
   public void onUpdate(Update update) throws Throwable {
-    for (UpdateHandler handler : updateHandlers) {
+    for (UpdateHandler handler : routes.get(update)) {
       handler.onUpdate(update);
     }
   }
@@ -42,7 +75,8 @@ public class EventRegistry implements UpdateHandler {
    * @return the registered handler
    */
   public <T extends UpdateHandler> T registerUpdateHandler(T handler) {
-    updateHandlers.add(handler);
+    updateHandlers.add(new Registration(handler));
+    invalidate();
     return handler;
   }
   
@@ -52,7 +86,10 @@ public class EventRegistry implements UpdateHandler {
    * @param handlers handlers to register
    */
   public void registerUpdateHandlers(UpdateHandler... handlers) {
-    Collections.addAll(updateHandlers, handlers);
+    for (UpdateHandler handler : handlers) {
+      updateHandlers.add(new Registration(handler));
+    }
+    invalidate();
   }
   
   /**
@@ -61,12 +98,49 @@ public class EventRegistry implements UpdateHandler {
    * @param handler the handler
    */
   public void unregisterUpdateHandler(UpdateHandler handler) {
-    updateHandlers.remove(handler);
+    if (commands != null && handler instanceof CommandHandler && commands.unregister((CommandHandler) handler)) {
+      invalidate();
+      return;
+    }
+    if (callbacks != null && handler instanceof CallbackDataHandler && callbacks.unregister((CallbackDataHandler) handler)) {
+      invalidate();
+      return;
+    }
+    for (Registration registration : updateHandlers) {
+      if (registration.handler.equals(handler)) {
+        updateHandlers.remove(registration);
+        invalidate();
+        return;
+      }
+    }
+  }
+  
+  /**
+   * Returns the names of the types of the updates consumed by the registered handlers,
+   * to be used as allowed updates of {@link io.github.ageofwar.telejam.methods.GetUpdates}
+   * and {@link io.github.ageofwar.telejam.methods.SetWebhook}.
+   * If a handler can consume any update, returns an empty array,
+   * that makes Telegram send updates of all types.
+   * The command and callback routers are ignored while no handler is registered to them.
+   *
+   * @return the allowed updates
+   */
+  public String[] getAllowedUpdates() {
+    return routes.getAllowedUpdates().clone();
+  }
+  
+  private void invalidate() {
+    // the snapshot is taken under the lock, so the routes of the last change include all the previous ones
+    synchronized (updateHandlers) {
+      routes = new Routes(updateHandlers.toArray(new Registration[0]));
+    }
   }
   
   /**
    * Registers a CommandHandler that filters command with the specified
    * name or aliases.
+   * Commands are dispatched by a single {@link CommandRouter}, that handles
+   * them at the position of the first registered command.
    *
    * @param handler the handler to register
    * @param name    the name of the commands to handle
@@ -74,29 +148,53 @@ public class EventRegistry implements UpdateHandler {
    * @return the registered handler
    */
   public CommandHandler registerCommand(CommandHandler handler, String name, String... aliases) {
-    CommandHandler commandHandler = (command, message) -> {
-      String commandName = removeSuffix(command.getName(), "@" + bot.getUsername());
-      if (commandName.equals(name) || Arrays.asList(aliases).contains(commandName)) {
-        handler.onCommand(new Command(commandName, command.getArgs()), message);
-      }
-    };
-    return registerUpdateHandler(commandHandler);
+    commandRouter().register(handler, name, aliases);
+    invalidate();
+    return handler;
   }
   
-  private String removeSuffix(String s, String suffix) {
-    return s.endsWith(suffix) ? s.substring(0, s.length() - suffix.length()) : s;
+  private CommandRouter commandRouter() {
+    CommandRouter commands = this.commands;
+    if (commands == null) {
+      synchronized (updateHandlers) {
+        commands = this.commands;
+        if (commands == null) {
+          commands = registerUpdateHandler(new CommandRouter(bot.getUsername()));
+          this.commands = commands;
+        }
+      }
+    }
+    return commands;
   }
   
   /**
    * Registers a CallbackDataHandler that filters callbacks with the specified
    * name.
+   * Callbacks are dispatched by a single {@link CallbackRouter}, that handles
+   * them at the position of the first registered callback handler.
    *
    * @param handler the handler to register
    * @param name    the name of the commands to handle
    * @return the registered handler
    */
   public CallbackDataHandler registerCallbackDataHandler(CallbackDataHandler handler, String name) {
-    return registerUpdateHandler(handler.withName(name));
+    callbackRouter().register(handler, name);
+    invalidate();
+    return handler;
+  }
+  
+  private CallbackRouter callbackRouter() {
+    CallbackRouter callbacks = this.callbacks;
+    if (callbacks == null) {
+      synchronized (updateHandlers) {
+        callbacks = this.callbacks;
+        if (callbacks == null) {
+          callbacks = registerUpdateHandler(new CallbackRouter());
+          this.callbacks = callbacks;
+        }
+      }
+    }
+    return callbacks;
   }
   
   /**
@@ -114,4 +212,108 @@ public class EventRegistry implements UpdateHandler {
     return registerUpdateHandler(newChatMemberHandler);
   }
   
+  /**
+   * Routes of the updates computed from a snapshot of the registered handlers.
+   * The handlers of each type of update are computed when the first update of that type is handled.
+   */
+  private static final class Routes {
+    
+    private final Registration[] registrations;
+    private final ConcurrentMap<Class<?>, UpdateHandler[]> handlers;
+    private volatile String[] allowedUpdates;
+    
+    private Routes(Registration[] registrations) {
+      this.registrations = registrations;
+      handlers = new ConcurrentHashMap<>();
+    }
+    
+    private UpdateHandler[] get(Update update) {
+      Class<?> type = update instanceof MessageUpdate ?
+          ((MessageUpdate) update).getMessage().getClass() :
+          update.getClass();
+      UpdateHandler[] handlers = this.handlers.get(type);
+      if (handlers == null) {
+        handlers = route(update);
+        this.handlers.put(type, handlers);
+      }
+      return handlers;
+    }
+    
+    private UpdateHandler[] route(Update update) {
+      List<UpdateHandler> handlers = new ArrayList<>();
+      for (Registration registration : registrations) {
+        if (!registration.isEmptyRouter() && registration.accepts(update)) {
+          handlers.add(registration.handler);
+        }
+      }
+      return handlers.toArray(new UpdateHandler[0]);
+    }
+    
+    private String[] getAllowedUpdates() {
+      String[] allowedUpdates = this.allowedUpdates;
+      if (allowedUpdates == null) {
+        Set<String> fields = new LinkedHashSet<>();
+        for (Registration registration : registrations) {
+          if (registration.isEmptyRouter()) {
+            continue;
+          }
+          if (registration.updateTypes == null) {
+            fields.clear();
+            break;
+          }
+          for (Class<? extends Update> updateType : registration.updateTypes) {
+            UpdateAdapter.getField(updateType).ifPresent(fields::add);
+          }
+        }
+        allowedUpdates = fields.toArray(new String[0]);
+        this.allowedUpdates = allowedUpdates;
+      }
+      return allowedUpdates;
+    }
+  
+  }
+  
+  private static final class Registration {
+    
+    private final UpdateHandler handler;
+    private final List<Class<? extends Update>> updateTypes;
+    private final Class<? extends Message> messageType;
+    
+    private Registration(UpdateHandler handler) {
+      this.handler = Objects.requireNonNull(handler);
+      Class<?> updateHandler = declaringClass(handler, "onUpdate", Update.class);
+      updateTypes = UPDATE_TYPES.get(updateHandler);
+      messageType = updateHandler == MessageHandler.class ?
+          MESSAGE_TYPES.get(declaringClass(handler, "onMessage", Message.class)) :
+          null;
+    }
+    
+    private boolean isEmptyRouter() {
+      // the routes are computed again after every change of a router
+      return handler instanceof CommandRouter && ((CommandRouter) handler).isEmpty() ||
+          handler instanceof CallbackRouter && ((CallbackRouter) handler).isEmpty();
+    }
+    
+    private boolean accepts(Update update) {
+      if (updateTypes == null) {
+        return true;
+      }
+      for (Class<? extends Update> updateType : updateTypes) {
+        if (updateType.isInstance(update)) {
+          return messageType == null || messageType.isInstance(((MessageUpdate) update).getMessage());
+        }
+      }
+      return false;
+    }
+    
+    private static Class<?> declaringClass(UpdateHandler handler, String name, Class<?> parameterType) {
+      try {
+        return handler.getClass().getMethod(name, parameterType).getDeclaringClass();
+      } catch (NoSuchMethodException e) {
+        return null;
+      }
+    }
+  
+  }
+  
 }
@@ -0,0 +1,62 @@
+package io.github.ageofwar.telejam.json;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.internal.bind.ReflectiveTypeAdapterFactory;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Superclass of the Json adapters generated at compile time for the Telegram objects
+ * that can be serialized without reflection.
+ * This class is public only because the generated adapters live in the packages
+ * of their Telegram objects; it is not meant to be extended by hand.
+ *
+ * @param <T> the type of the Telegram object
+ * @author Michi Palazzo
+ */
+public abstract class GeneratedTypeAdapter<T> extends TypeAdapter<T> {
+  
+  private final Gson gson;
+  
+  protected GeneratedTypeAdapter(Gson gson) {
+    this.gson = gson;
+  }
+  
+  /**
+   * Writes a field of a Telegram object. Like the reflective adapters of Gson, the value
+   * is written by the adapter of its runtime class when the declared class is less specific,
+   * unless only the adapter of the declared class has been registered explicitly.
+   *
+   * @param out          the writer
+   * @param name         the name of the field
+   * @param adapter      the adapter of the declared type of the field
+   * @param declaredType the declared class of the field, or <code>null</code> if the type is parameterized
+   * @param value        the value of the field
+   * @param <V>          the declared type of the field
+   * @throws IOException if an I/O error occurs
+   */
+  @SuppressWarnings("unchecked")
+  protected final <V> void writeField(JsonWriter out, String name, TypeAdapter<V> adapter, Type declaredType, V value)
+      throws IOException {
+    out.name(name);
+    if (value != null && declaredType != null && value.getClass() != declaredType) {
+      TypeAdapter<V> runtimeAdapter = (TypeAdapter<V>) gson.getAdapter(value.getClass());
+      if (!isReflective(runtimeAdapter) || isReflective(adapter)) {
+        adapter = runtimeAdapter;
+      }
+    }
+    adapter.write(out, value);
+  }
+  
+  /**
+   * Returns whether the specified adapter serializes the fields of a class, either with
+   * reflection or with a generated adapter, rather than being registered for the class.
+   */
+  private static boolean isReflective(TypeAdapter<?> adapter) {
+    return adapter instanceof ReflectiveTypeAdapterFactory.Adapter || adapter instanceof GeneratedTypeAdapter;
+  }
+  
+}
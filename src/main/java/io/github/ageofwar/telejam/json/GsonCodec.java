@@ -0,0 +1,275 @@
+package io.github.ageofwar.telejam.json;
+
+import com.google.gson.*;
+import com.google.gson.annotations.Expose;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+import io.github.ageofwar.telejam.chats.ChatAdapter;
+import io.github.ageofwar.telejam.inline.*;
+import io.github.ageofwar.telejam.keyboards.KeyboardButton;
+import io.github.ageofwar.telejam.keyboards.KeyboardButtonAdapter;
+import io.github.ageofwar.telejam.media.InputMedia;
+import io.github.ageofwar.telejam.media.InputMediaAdapter;
+import io.github.ageofwar.telejam.messages.MessageAdapter;
+import io.github.ageofwar.telejam.replymarkups.ReplyMarkup;
+import io.github.ageofwar.telejam.replymarkups.ReplyMarkupAdapter;
+import io.github.ageofwar.telejam.updates.UpdateAdapter;
+import io.github.ageofwar.telejam.users.UserAdapter;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Default {@link JsonCodec}, backed by Gson.
+ * The adapter used to deserialize each type is cached.
+ * <p>
+ * The Telegram objects that have no custom adapter are serialized by adapters generated
+ * at compile time, when their fields are set directly by a constructor, and with reflection otherwise.
+ * <p>
+ * The shared {@link #INSTANCE} decodes every message eagerly and does not intern users
+ * and chats; a codec with other options can be created and installed
+ * with {@link Json#setCodec(JsonCodec)}.
+ *
+ * @author Michi Palazzo
+ */
+public final class GsonCodec implements JsonCodec {
+  
+  public static final GsonCodec INSTANCE = new GsonCodec(false);
+  
+  private final Gson gson;
+  private final Gson prettyPrintingGson;
+  private final ConcurrentMap<Type, TypeAdapter<?>> adapters;
+  
+  /**
+   * Constructs a GsonCodec that does not intern users and chats.
+   *
+   * @param lazyDecoding whether to decode lazily the replied message and the reply markup of messages
+   * @see MessageAdapter
+   */
+  public GsonCodec(boolean lazyDecoding) {
+    this(lazyDecoding, 0);
+  }
+  
+  /**
+   * Constructs a GsonCodec.
+   *
+   * @param lazyDecoding   whether to decode lazily the replied message and the reply markup of messages
+   * @param internCapacity maximum number of users and of chats interned by the codec,
+   *                       or <code>0</code> to disable interning
+   * @see MessageAdapter
+   * @see UserAdapter
+   * @see ChatAdapter
+   */
+  public GsonCodec(boolean lazyDecoding, int internCapacity) {
+    this(lazyDecoding, internCapacity, true);
+  }
+  
+  /**
+   * Constructs a GsonCodec.
+   *
+   * @param lazyDecoding      whether to decode lazily the replied message and the reply markup of messages
+   * @param internCapacity    maximum number of users and of chats interned by the codec,
+   *                          or <code>0</code> to disable interning
+   * @param generatedAdapters whether to use the adapters generated at compile time,
+   *                          or to serialize every object that has no custom adapter with reflection
+   */
+  GsonCodec(boolean lazyDecoding, int internCapacity, boolean generatedAdapters) {
+    ExclusionStrategy serializationExclusionStrategy = new ExclusionStrategy() {
+      @Override
+      public boolean shouldSkipField(FieldAttributes f) {
+        return f.hasModifier(Modifier.STATIC) && f.getAnnotation(Expose.class) == null;
+      }
+      
+      @Override
+      public boolean shouldSkipClass(Class<?> clazz) {
+        return false;
+      }
+    };
+    ExclusionStrategy deserializationExclusionStrategy = new ExclusionStrategy() {
+      @Override
+      public boolean shouldSkipField(FieldAttributes f) {
+        return f.hasModifier(Modifier.STATIC);
+      }
+      
+      @Override
+      public boolean shouldSkipClass(Class<?> clazz) {
+        return false;
+      }
+    };
+    GsonBuilder builder = new GsonBuilder();
+    if (generatedAdapters) {
+      // registered first, so that every other adapter takes precedence
+      builder.registerTypeAdapterFactory(GeneratedAdapterFactory.INSTANCE);
+    }
+    builder.excludeFieldsWithModifiers(Modifier.TRANSIENT)
+        .addSerializationExclusionStrategy(serializationExclusionStrategy)
+        .addDeserializationExclusionStrategy(deserializationExclusionStrategy)
+        .registerTypeAdapter(Locale.class, LocaleTypeAdapter.INSTANCE)
+        .registerTypeAdapterFactory(UpdateAdapter.INSTANCE)
+        .registerTypeAdapterFactory(new ChatAdapter(internCapacity))
+        .registerTypeAdapterFactory(new MessageAdapter(lazyDecoding))
+        .registerTypeAdapterFactory(new UserAdapter(internCapacity))
+        .registerTypeAdapter(KeyboardButton.class, KeyboardButtonAdapter.INSTANCE)
+        .registerTypeAdapter(InlineKeyboardButton.class, InlineKeyboardButtonAdapter.INSTANCE)
+        .registerTypeAdapter(InlineQueryResult.class, InlineQueryResultAdapter.INSTANCE)
+        .registerTypeAdapter(InputMessageContent.class, InputMessageContentAdapter.INSTANCE)
+        .registerTypeAdapter(InputMedia.class, InputMediaAdapter.INSTANCE)
+        .registerTypeAdapter(ReplyMarkup.class, ReplyMarkupAdapter.INSTANCE)
+        .disableHtmlEscaping();
+    gson = builder.create();
+    builder.setPrettyPrinting();
+    prettyPrintingGson = builder.create();
+    adapters = new ConcurrentHashMap<>();
+  }
+  
+  @Override
+  public void toJson(Object src, Type typeOfSrc, Appendable writer, boolean prettyPrinting) throws IOException {
+    try {
+      (prettyPrinting ? prettyPrintingGson : gson).toJson(src, typeOfSrc, writer);
+    } catch (JsonIOException e) {
+      throw new IOException(e);
+    }
+  }
+  
+  @Override
+  public JsonOutput newOutput(Writer writer) {
+    return new Output(gson, writer);
+  }
+  
+  @Override
+  public <T> T fromJson(String json, Type typeOfT) throws JsonSyntaxException {
+    try {
+      return fromJson(new StringReader(json), typeOfT);
+    } catch (JsonSyntaxException e) {
+      throw e;
+    } catch (IOException e) {
+      throw new JsonSyntaxException(e);
+    }
+  }
+  
+  @Override
+  public <T> T fromJson(Reader json, Type typeOfT) throws IOException, JsonSyntaxException {
+    TypeAdapter<T> adapter = adapter(typeOfT);
+    try {
+      return adapter.fromJson(json);
+    } catch (JsonIOException e) {
+      throw new IOException(e);
+    } catch (MalformedJsonException | EOFException | IllegalStateException | JsonParseException e) {
+      throw new JsonSyntaxException(e);
+    }
+  }
+  
+  @Override
+  public <T> T fromJson(byte[] json, int offset, int length, Type typeOfT) throws JsonSyntaxException {
+    TypeAdapter<T> adapter = adapter(typeOfT);
+    try {
+      return adapter.fromJson(new Utf8Reader(json, offset, length));
+    } catch (IOException | IllegalStateException | JsonParseException e) {
+      throw new JsonSyntaxException(e);
+    }
+  }
+  
+  @SuppressWarnings("unchecked")
+  private <T> TypeAdapter<T> adapter(Type type) {
+    return (TypeAdapter<T>) adapters.computeIfAbsent(type, key -> gson.getAdapter(TypeToken.get(key)));
+  }
+  
+  /**
+   * Output that writes to a Gson {@link JsonWriter}.
+   */
+  private static final class Output implements JsonOutput {
+    
+    private final Gson gson;
+    private final JsonWriter writer;
+    
+    private Output(Gson gson, Writer writer) {
+      this.gson = gson;
+      this.writer = new JsonWriter(writer);
+    }
+    
+    @Override
+    public JsonOutput beginObject() throws IOException {
+      writer.beginObject();
+      return this;
+    }
+    
+    @Override
+    public JsonOutput endObject() throws IOException {
+      writer.endObject();
+      return this;
+    }
+    
+    @Override
+    public JsonOutput beginArray() throws IOException {
+      writer.beginArray();
+      return this;
+    }
+    
+    @Override
+    public JsonOutput endArray() throws IOException {
+      writer.endArray();
+      return this;
+    }
+    
+    @Override
+    public JsonOutput name(String name) throws IOException {
+      writer.name(name);
+      return this;
+    }
+    
+    @Override
+    public JsonOutput value(String value) throws IOException {
+      writer.value(value);
+      return this;
+    }
+    
+    @Override
+    public JsonOutput value(Number value) throws IOException {
+      writer.value(value);
+      return this;
+    }
+    
+    @Override
+    public JsonOutput value(boolean value) throws IOException {
+      writer.value(value);
+      return this;
+    }
+    
+    @Override
+    public JsonOutput nullValue() throws IOException {
+      writer.nullValue();
+      return this;
+    }
+    
+    @Override
+    public JsonOutput value(Object src, Type typeOfSrc) throws IOException {
+      try {
+        gson.toJson(src, typeOfSrc, writer);
+      } catch (JsonIOException e) {
+        throw new IOException(e);
+      }
+      return this;
+    }
+    
+    @Override
+    public void flush() throws IOException {
+      writer.flush();
+    }
+    
+    @Override
+    public void close() throws IOException {
+      writer.close();
+    }
+  
+  }
+  
+}
@@ -1,84 +1,44 @@
 package io.github.ageofwar.telejam.json;
 
-import com.google.gson.*;
-import com.google.gson.annotations.Expose;
 import com.google.gson.internal.$Gson$Types;
-import com.google.gson.reflect.TypeToken;
-import io.github.ageofwar.telejam.inline.*;
-import io.github.ageofwar.telejam.keyboards.KeyboardButton;
-import io.github.ageofwar.telejam.keyboards.KeyboardButtonAdapter;
-import io.github.ageofwar.telejam.media.InputMedia;
-import io.github.ageofwar.telejam.media.InputMediaAdapter;
-import io.github.ageofwar.telejam.messages.*;
-import io.github.ageofwar.telejam.chats.Chat;
-import io.github.ageofwar.telejam.chats.ChatAdapter;
-import io.github.ageofwar.telejam.replymarkups.ReplyMarkup;
-import io.github.ageofwar.telejam.replymarkups.ReplyMarkupAdapter;
-import io.github.ageofwar.telejam.updates.Update;
-import io.github.ageofwar.telejam.updates.UpdateAdapter;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.lang.reflect.Modifier;
+import java.io.Writer;
 import java.lang.reflect.Type;
-import java.util.Locale;
+import java.util.Objects;
 
 /**
  * Utility class for JSON serialization and deserialization.
+ * The work is delegated to a {@link JsonCodec}, that is {@link GsonCodec} by default
+ * and can be replaced with {@link #setCodec(JsonCodec)}.
  */
 public final class Json {
   
-  private static final Gson gson;
-  private static final Gson prettyPrintingGson;
-  
-  static {
-    ExclusionStrategy serializationExclusionStrategy = new ExclusionStrategy() {
-      @Override
-      public boolean shouldSkipField(FieldAttributes f) {
-        return f.hasModifier(Modifier.STATIC) && f.getAnnotation(Expose.class) == null;
-      }
-      
-      @Override
-      public boolean shouldSkipClass(Class<?> clazz) {
-        return false;
-      }
-    };
-    ExclusionStrategy deserializationExclusionStrategy = new ExclusionStrategy() {
-      @Override
-      public boolean shouldSkipField(FieldAttributes f) {
-        return f.hasModifier(Modifier.STATIC);
-      }
-      
-      @Override
-      public boolean shouldSkipClass(Class<?> clazz) {
-        return false;
-      }
-    };
-    GsonBuilder builder = new GsonBuilder()
-        .excludeFieldsWithModifiers(Modifier.TRANSIENT)
-        .addSerializationExclusionStrategy(serializationExclusionStrategy)
-        .addDeserializationExclusionStrategy(deserializationExclusionStrategy)
-        .registerTypeAdapter(Locale.class, LocaleTypeAdapter.INSTANCE)
-        .registerTypeAdapter(Update.class, UpdateAdapter.INSTANCE)
-        .registerTypeAdapter(Chat.class, ChatAdapter.INSTANCE)
-        .registerTypeAdapter(Message.class, MessageAdapter.INSTANCE)
-        .registerTypeAdapter(Forward.class, ForwardMessageAdapter.INSTANCE)
-        .registerTypeAdapter(KeyboardButton.class, KeyboardButtonAdapter.INSTANCE)
-        .registerTypeAdapter(InlineKeyboardButton.class, InlineKeyboardButtonAdapter.INSTANCE)
-        .registerTypeAdapter(InlineQueryResult.class, InlineQueryResultAdapter.INSTANCE)
-        .registerTypeAdapter(InputMessageContent.class, InputMessageContentAdapter.INSTANCE)
-        .registerTypeAdapter(InputMedia.class, InputMediaAdapter.INSTANCE)
-        .registerTypeAdapter(ReplyMarkup.class, ReplyMarkupAdapter.INSTANCE)
-        .disableHtmlEscaping();
-    gson = builder.create();
-    builder.setPrettyPrinting();
-    prettyPrintingGson = builder.create();
-  }
+  private static volatile JsonCodec codec = GsonCodec.INSTANCE;
   
   private Json() {
     throw new AssertionError();
   }
   
+  /**
+   * Sets the codec used to serialize and deserialize objects.
+   *
+   * @param codec the new codec
+   */
+  public static void setCodec(JsonCodec codec) {
+    Json.codec = Objects.requireNonNull(codec);
+  }
+  
+  /**
+   * Returns the codec used to serialize and deserialize objects.
+   *
+   * @return the codec in use
+   */
+  public static JsonCodec getCodec() {
+    return codec;
+  }
+  
   /**
    * This method serializes the specified object into its equivalent Json representation.
    * This method should be used when the specified object is not a generic type. This method uses
@@ -93,7 +53,7 @@ public final class Json {
    * @return Json representation of {@code src}.
    */
   public static String toJson(Object src) {
-    return gson.toJson(src);
+    return toJson(src, typeOf(src));
   }
   
   /**
@@ -112,7 +72,7 @@ public final class Json {
    * @return Json representation of {@code src}
    */
   public static String toJson(Object src, Type typeOfSrc) {
-    return gson.toJson(src, typeOfSrc);
+    return toString(src, typeOfSrc, false);
   }
   
   /**
@@ -129,11 +89,7 @@ public final class Json {
    * @throws IOException if there was a problem writing to the writer
    */
   public static void toJson(Object src, Appendable writer) throws IOException {
-    try {
-      gson.toJson(src, writer);
-    } catch (JsonIOException e) {
-      throw new IOException(e);
-    }
+    codec.toJson(src, typeOf(src), writer, false);
   }
   
   /**
@@ -152,11 +108,18 @@ public final class Json {
    * @throws IOException if there was a problem writing to the writer
    */
   public static void toJson(Object src, Type typeOfSrc, Appendable writer) throws IOException {
-    try {
-      gson.toJson(src, typeOfSrc, writer);
-    } catch (JsonIOException e) {
-      throw new IOException(e);
-    }
+    codec.toJson(src, typeOfSrc, writer, false);
+  }
+  
+  /**
+   * Creates an output that writes a compact Json document to the specified writer,
+   * serializing the objects in the document with the current codec.
+   *
+   * @param writer Writer to which the Json document needs to be written.
+   * @return a new output
+   */
+  public static JsonOutput newOutput(Writer writer) {
+    return codec.newOutput(writer);
   }
   
   /**
@@ -173,7 +136,7 @@ public final class Json {
    * @return Json representation of {@code src}.
    */
   public static String toPrettyJson(Object src) {
-    return prettyPrintingGson.toJson(src);
+    return toString(src, typeOf(src), true);
   }
   
   /**
@@ -192,7 +155,7 @@ public final class Json {
    * @return Json representation of {@code src}
    */
   public static String toPrettyJson(Object src, Type typeOfSrc) {
-    return prettyPrintingGson.toJson(src, typeOfSrc);
+    return toString(src, typeOfSrc, true);
   }
   
   /**
@@ -209,11 +172,7 @@ public final class Json {
    * @throws IOException if there was a problem writing to the writer
    */
   public static void toPrettyJson(Object src, Appendable writer) throws IOException {
-    try {
-      prettyPrintingGson.toJson(src, writer);
-    } catch (JsonIOException e) {
-      throw new IOException(e);
-    }
+    codec.toJson(src, typeOf(src), writer, true);
   }
   
   /**
@@ -232,11 +191,7 @@ public final class Json {
    * @throws IOException if there was a problem writing to the writer
    */
   public static void toPrettyJson(Object src, Type typeOfSrc, Appendable writer) throws IOException {
-    try {
-      prettyPrintingGson.toJson(src, typeOfSrc, writer);
-    } catch (JsonIOException e) {
-      throw new IOException(e);
-    }
+    codec.toJson(src, typeOfSrc, writer, true);
   }
   
   /**
@@ -253,17 +208,11 @@ public final class Json {
    * @param json     the string from which the object is to be deserialized
    * @param classOfT the class of T
    * @return an object of type T from the string.
-   * @throws io.github.ageofwar.telejam.json.JsonSyntaxException if json is not a valid representation for an object of type
+   * @throws JsonSyntaxException if json is not a valid representation for an object of type
    *                                                             classOfT
    */
-  public static <T> T fromJson(String json, Class<T> classOfT) throws io.github.ageofwar.telejam.json.JsonSyntaxException {
-    try {
-      return gson.getAdapter(classOfT).fromJson(json);
-    } catch (IOException e) {
-      throw new AssertionError(e);
-    } catch (com.google.gson.JsonSyntaxException e) {
-      throw new io.github.ageofwar.telejam.json.JsonSyntaxException(e);
-    }
+  public static <T> T fromJson(String json, Class<T> classOfT) throws JsonSyntaxException {
+    return codec.fromJson(json, classOfT);
   }
   
   /**
@@ -281,17 +230,10 @@ public final class Json {
    *                               Type typeOfT = genericTypeOf(Collection.class, Foo.class);
    *                               </pre>
    * @return an object of type T from the string.
-   * @throws io.github.ageofwar.telejam.json.JsonSyntaxException if json is not a valid representation for an object of type
+   * @throws JsonSyntaxException if json is not a valid representation for an object of type
    */
-  @SuppressWarnings("unchecked")
-  public static <T> T fromJson(String json, Type typeOfT) throws io.github.ageofwar.telejam.json.JsonSyntaxException {
-    try {
-      return ((TypeAdapter<T>) gson.getAdapter(TypeToken.get(typeOfT))).fromJson(json);
-    } catch (IOException e) {
-      throw new AssertionError(e);
-    } catch (com.google.gson.JsonSyntaxException e) {
-      throw new io.github.ageofwar.telejam.json.JsonSyntaxException(e);
-    }
+  public static <T> T fromJson(String json, Type typeOfT) throws JsonSyntaxException {
+    return codec.fromJson(json, typeOfT);
   }
   
   /**
@@ -309,16 +251,10 @@ public final class Json {
    * @param classOfT the class of T
    * @return an object of type T from the string.
    * @throws IOException                                         if there was a problem reading from the Reader
-   * @throws io.github.ageofwar.telejam.json.JsonSyntaxException if json is not a valid representation for an object of type
+   * @throws JsonSyntaxException if json is not a valid representation for an object of type
    */
-  public static <T> T fromJson(Reader json, Class<T> classOfT) throws IOException, io.github.ageofwar.telejam.json.JsonSyntaxException {
-    try {
-      return gson.getAdapter(classOfT).fromJson(json);
-    } catch (JsonIOException e) {
-      throw new IOException(e);
-    } catch (com.google.gson.JsonSyntaxException e) {
-      throw new io.github.ageofwar.telejam.json.JsonSyntaxException(e);
-    }
+  public static <T> T fromJson(Reader json, Class<T> classOfT) throws IOException, JsonSyntaxException {
+    return codec.fromJson(json, classOfT);
   }
   
   /**
@@ -337,17 +273,27 @@ public final class Json {
    *                               </pre>
    * @return an object of type T from the json.
    * @throws IOException                                         if there was a problem reading from the Reader
-   * @throws io.github.ageofwar.telejam.json.JsonSyntaxException if json is not a valid representation for an object of type
+   * @throws JsonSyntaxException if json is not a valid representation for an object of type
    */
-  @SuppressWarnings("unchecked")
-  public static <T> T fromJson(Reader json, Type typeOfT) throws IOException, io.github.ageofwar.telejam.json.JsonSyntaxException {
-    try {
-      return ((TypeAdapter<T>) gson.getAdapter(TypeToken.get(typeOfT))).fromJson(json);
-    } catch (JsonIOException e) {
-      throw new IOException(e);
-    } catch (com.google.gson.JsonSyntaxException e) {
-      throw new io.github.ageofwar.telejam.json.JsonSyntaxException(e);
-    }
+  public static <T> T fromJson(Reader json, Type typeOfT) throws IOException, JsonSyntaxException {
+    return codec.fromJson(json, typeOfT);
+  }
+  
+  /**
+   * This method deserializes the UTF-8 encoded Json in the specified range of an array into an
+   * object of the specified type.
+   *
+   * @param <T>     the type of the desired object
+   * @param json    the array containing the Json
+   * @param offset  the index of the first byte of the Json
+   * @param length  the number of bytes of the Json
+   * @param typeOfT The specific genericized type of src. You can obtain this type by using the
+   *                {@link #genericTypeOf(Class, Type...)} method.
+   * @return an object of type T from the json.
+   * @throws JsonSyntaxException if json is not a valid representation for an object of type
+   */
+  public static <T> T fromJson(byte[] json, int offset, int length, Type typeOfT) throws JsonSyntaxException {
+    return codec.fromJson(json, offset, length, typeOfT);
   }
   
   /**
@@ -361,4 +307,19 @@ public final class Json {
     return $Gson$Types.newParameterizedTypeWithOwner(null, rawType, typeArguments);
   }
   
+  
+  private static Type typeOf(Object src) {
+    return src == null ? Object.class : src.getClass();
+  }
+  
+  private static String toString(Object src, Type typeOfSrc, boolean prettyPrinting) {
+    StringBuilder json = new StringBuilder();
+    try {
+      codec.toJson(src, typeOfSrc, json, prettyPrinting);
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+    return json.toString();
+  }
+
 }
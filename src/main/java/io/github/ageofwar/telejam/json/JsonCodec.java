@@ -0,0 +1,80 @@
+package io.github.ageofwar.telejam.json;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+
+/**
+ * Backend used by {@link Json} to serialize and deserialize Telegram objects.
+ * <p>
+ * Implementations must produce and accept the same Json as {@link GsonCodec}, the default backend,
+ * and must be safe for use by multiple threads. Malformed Json and Json that does not represent
+ * an object of the requested type are reported with a {@link JsonSyntaxException}.
+ * <p>
+ * The library ships only the Gson backend; this interface is the extension point for
+ * other backends, that are installed with {@link Json#setCodec(JsonCodec)}.
+ *
+ * @author Michi Palazzo
+ * @see Json#setCodec(JsonCodec)
+ */
+public interface JsonCodec {
+  
+  /**
+   * Serializes the specified object into its equivalent Json representation.
+   *
+   * @param src            the object for which Json representation is to be created
+   * @param typeOfSrc      the specific genericized type of src
+   * @param writer         Writer to which the Json representation of src needs to be written
+   * @param prettyPrinting whether to write the Json in a human readable form
+   * @throws IOException if there was a problem writing to the writer
+   */
+  void toJson(Object src, Type typeOfSrc, Appendable writer, boolean prettyPrinting) throws IOException;
+  
+  /**
+   * Creates an output that writes a compact Json document to the specified writer.
+   * The objects written with {@link JsonOutput#value(Object, Type)} are serialized by this codec.
+   *
+   * @param writer Writer to which the Json document needs to be written
+   * @return a new output
+   */
+  JsonOutput newOutput(Writer writer);
+  
+  /**
+   * Deserializes the specified Json into an object of the specified type.
+   *
+   * @param <T>     the type of the desired object
+   * @param json    the string from which the object is to be deserialized
+   * @param typeOfT the specific genericized type of the object
+   * @return an object of type T from the string
+   * @throws JsonSyntaxException if json is not a valid representation for an object of type typeOfT
+   */
+  <T> T fromJson(String json, Type typeOfT) throws JsonSyntaxException;
+  
+  /**
+   * Deserializes the Json read from the specified reader into an object of the specified type.
+   *
+   * @param <T>     the type of the desired object
+   * @param json    the reader producing the Json from which the object is to be deserialized
+   * @param typeOfT the specific genericized type of the object
+   * @return an object of type T from the json
+   * @throws IOException         if there was a problem reading from the Reader
+   * @throws JsonSyntaxException if json is not a valid representation for an object of type typeOfT
+   */
+  <T> T fromJson(Reader json, Type typeOfT) throws IOException, JsonSyntaxException;
+  
+  /**
+   * Deserializes the UTF-8 encoded Json in the specified range of an array
+   * into an object of the specified type.
+   *
+   * @param <T>     the type of the desired object
+   * @param json    the array containing the Json
+   * @param offset  the index of the first byte of the Json
+   * @param length  the number of bytes of the Json
+   * @param typeOfT the specific genericized type of the object
+   * @return an object of type T from the json
+   * @throws JsonSyntaxException if json is not a valid representation for an object of type typeOfT
+   */
+  <T> T fromJson(byte[] json, int offset, int length, Type typeOfT) throws JsonSyntaxException;
+  
+}
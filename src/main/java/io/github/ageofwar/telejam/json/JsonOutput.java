@@ -0,0 +1,104 @@
+package io.github.ageofwar.telejam.json;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Writes a Json document one token at a time.
+ * Outputs are created by a {@link JsonCodec}, and can write an object
+ * serialized by that codec in the middle of a document written by hand.
+ *
+ * @author Michi Palazzo
+ * @see JsonCodec#newOutput(java.io.Writer)
+ */
+public interface JsonOutput extends Closeable, Flushable {
+  
+  /**
+   * Begins encoding a new object.
+   *
+   * @return this output
+   * @throws IOException if an I/O error occurs
+   */
+  JsonOutput beginObject() throws IOException;
+  
+  /**
+   * Ends encoding the current object.
+   *
+   * @return this output
+   * @throws IOException if an I/O error occurs
+   */
+  JsonOutput endObject() throws IOException;
+  
+  /**
+   * Begins encoding a new array.
+   *
+   * @return this output
+   * @throws IOException if an I/O error occurs
+   */
+  JsonOutput beginArray() throws IOException;
+  
+  /**
+   * Ends encoding the current array.
+   *
+   * @return this output
+   * @throws IOException if an I/O error occurs
+   */
+  JsonOutput endArray() throws IOException;
+  
+  /**
+   * Encodes the name of the next property of the current object.
+   *
+   * @param name the name of the property
+   * @return this output
+   * @throws IOException if an I/O error occurs
+   */
+  JsonOutput name(String name) throws IOException;
+  
+  /**
+   * Encodes the specified string, or <code>null</code>.
+   *
+   * @param value the string to encode
+   * @return this output
+   * @throws IOException if an I/O error occurs
+   */
+  JsonOutput value(String value) throws IOException;
+  
+  /**
+   * Encodes the specified number, or <code>null</code>.
+   *
+   * @param value the number to encode
+   * @return this output
+   * @throws IOException if an I/O error occurs
+   */
+  JsonOutput value(Number value) throws IOException;
+  
+  /**
+   * Encodes the specified boolean.
+   *
+   * @param value the boolean to encode
+   * @return this output
+   * @throws IOException if an I/O error occurs
+   */
+  JsonOutput value(boolean value) throws IOException;
+  
+  /**
+   * Encodes <code>null</code>.
+   *
+   * @return this output
+   * @throws IOException if an I/O error occurs
+   */
+  JsonOutput nullValue() throws IOException;
+  
+  /**
+   * Encodes the specified object with the codec that created this output.
+   *
+   * @param src       the object to encode
+   * @param typeOfSrc the specific genericized type of src
+   * @return this output
+   * @throws IOException if an I/O error occurs
+   */
+  JsonOutput value(Object src, Type typeOfSrc) throws IOException;
+  
+}
@@ -0,0 +1,100 @@
+package io.github.ageofwar.telejam.json;
+
+import java.io.Reader;
+
+/**
+ * Reader that decodes UTF-8 bytes stored in an array, without intermediate buffers.
+ * Malformed sequences are replaced with the replacement character.
+ */
+final class Utf8Reader extends Reader {
+  
+  private static final char REPLACEMENT = '\uFFFD';
+  
+  private final byte[] bytes;
+  private final int limit;
+  private int position;
+  private char pendingLowSurrogate;
+  
+  Utf8Reader(byte[] bytes, int offset, int length) {
+    if (offset < 0 || length < 0 || offset + length > bytes.length) {
+      throw new IndexOutOfBoundsException();
+    }
+    this.bytes = bytes;
+    position = offset;
+    limit = offset + length;
+  }
+  
+  @Override
+  public int read(char[] buffer, int offset, int length) {
+    if (length == 0) {
+      return 0;
+    }
+    int end = offset + length;
+    int index = offset;
+    if (pendingLowSurrogate != 0) {
+      buffer[index++] = pendingLowSurrogate;
+      pendingLowSurrogate = 0;
+    }
+    while (index < end && position < limit) {
+      byte b = bytes[position];
+      if (b >= 0) {
+        buffer[index++] = (char) b;
+        position++;
+        continue;
+      }
+      int codePoint = readMultiByte();
+      if (Character.isBmpCodePoint(codePoint)) {
+        buffer[index++] = (char) codePoint;
+      } else {
+        buffer[index++] = Character.highSurrogate(codePoint);
+        if (index < end) {
+          buffer[index++] = Character.lowSurrogate(codePoint);
+        } else {
+          pendingLowSurrogate = Character.lowSurrogate(codePoint);
+        }
+      }
+    }
+    return index == offset ? -1 : index - offset;
+  }
+  
+  private int readMultiByte() {
+    int first = bytes[position] & 0xFF;
+    int length;
+    int codePoint;
+    int min;
+    if (first >= 0xC2 && first <= 0xDF) {
+      length = 2;
+      codePoint = first & 0x1F;
+      min = 0x80;
+    } else if (first >= 0xE0 && first <= 0xEF) {
+      length = 3;
+      codePoint = first & 0x0F;
+      min = 0x800;
+    } else if (first >= 0xF0 && first <= 0xF4) {
+      length = 4;
+      codePoint = first & 0x07;
+      min = 0x10000;
+    } else {
+      position++;
+      return REPLACEMENT;
+    }
+    for (int i = 1; i < length; i++) {
+      if (position + i >= limit || (bytes[position + i] & 0xC0) != 0x80) {
+        position += i;
+        return REPLACEMENT;
+      }
+      codePoint = (codePoint << 6) | (bytes[position + i] & 0x3F);
+    }
+    position += length;
+    if (codePoint < min || codePoint > Character.MAX_CODE_POINT ||
+        (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+      return REPLACEMENT;
+    }
+    return codePoint;
+  }
+  
+  @Override
+  public void close() {
+  }
+  
+}
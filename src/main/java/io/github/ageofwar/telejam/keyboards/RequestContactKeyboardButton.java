@@ -1,5 +1,6 @@
 package io.github.ageofwar.telejam.keyboards;
 
+import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 
 /**
@@ -14,6 +15,7 @@ public class RequestContactKeyboardButton extends KeyboardButton {
   
   static final String REQUEST_CONTACT_FIELD = "request_contact";
   
+  @Expose
   @SerializedName(REQUEST_CONTACT_FIELD)
   private static final boolean REQUEST_CONTACT = true;
   
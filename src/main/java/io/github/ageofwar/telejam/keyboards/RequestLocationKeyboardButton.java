@@ -1,5 +1,6 @@
 package io.github.ageofwar.telejam.keyboards;
 
+import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
 
 /**
@@ -14,6 +15,7 @@ public class RequestLocationKeyboardButton extends KeyboardButton {
   
   static final String REQUEST_LOCATION_FIELD = "request_location";
   
+  @Expose
   @SerializedName(REQUEST_LOCATION_FIELD)
   private static final boolean REQUEST_LOCATION = true;
   
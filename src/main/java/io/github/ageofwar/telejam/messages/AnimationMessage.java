@@ -56,6 +56,21 @@ public class AnimationMessage extends Message {
     captionEntities = caption != null ? caption.getEntities() : null;
   }
   
+  AnimationMessage(MessageFields fields) {
+    super(fields);
+    animation = fields.animation;
+    caption = fields.caption;
+    captionEntities = fields.captionEntities;
+  }
+  
+  @Override
+  void copyFields(MessageFields fields) {
+    super.copyFields(fields);
+    fields.animation = animation;
+    fields.caption = caption;
+    fields.captionEntities = captionEntities;
+  }
+  
   
   /**
    * Getter for property {@link #animation}.
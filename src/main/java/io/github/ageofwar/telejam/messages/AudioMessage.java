@@ -58,6 +58,21 @@ public class AudioMessage extends Message {
     captionEntities = caption != null ? caption.getEntities() : null;
   }
   
+  AudioMessage(MessageFields fields) {
+    super(fields);
+    audio = fields.audio;
+    caption = fields.caption;
+    captionEntities = fields.captionEntities;
+  }
+  
+  @Override
+  void copyFields(MessageFields fields) {
+    super.copyFields(fields);
+    fields.audio = audio;
+    fields.caption = caption;
+    fields.captionEntities = captionEntities;
+  }
+  
   
   /**
    * Getter for property {@link #audio}.
@@ -1,6 +1,8 @@
 package io.github.ageofwar.telejam.messages;
 
+import io.github.ageofwar.telejam.chats.Channel;
 import io.github.ageofwar.telejam.chats.Chat;
+import io.github.ageofwar.telejam.chats.SuperGroup;
 import io.github.ageofwar.telejam.users.User;
 
 /**
@@ -21,4 +23,20 @@ public class ChatCreatedMessage extends Message {
     super(id, sender, date, chat, null, null, null, null);
   }
   
+  ChatCreatedMessage(MessageFields fields) {
+    super(fields);
+  }
+  
+  @Override
+  void copyFields(MessageFields fields) {
+    super.copyFields(fields);
+    if (getChat() instanceof SuperGroup) {
+      fields.supergroupChatCreated = true;
+    } else if (getChat() instanceof Channel) {
+      fields.channelChatCreated = true;
+    } else {
+      fields.groupChatCreated = true;
+    }
+  }
+  
 }
@@ -35,6 +35,17 @@ public class ConnectedWebsiteMessage extends Message {
     this.connectedWebsite = Objects.requireNonNull(connectedWebsite);
   }
   
+  ConnectedWebsiteMessage(MessageFields fields) {
+    super(fields);
+    connectedWebsite = fields.connectedWebsite;
+  }
+  
+  @Override
+  void copyFields(MessageFields fields) {
+    super.copyFields(fields);
+    fields.connectedWebsite = connectedWebsite;
+  }
+  
   /**
    * Getter for property {@link #connectedWebsite}.
    *
@@ -36,6 +36,17 @@ public class ContactMessage extends Message {
     this.contact = Objects.requireNonNull(contact);
   }
   
+  ContactMessage(MessageFields fields) {
+    super(fields);
+    contact = fields.contact;
+  }
+  
+  @Override
+  void copyFields(MessageFields fields) {
+    super.copyFields(fields);
+    fields.contact = contact;
+  }
+  
   
   /**
    * Getter for property {@link #contact}.
@@ -19,4 +19,14 @@ public class DeleteChatPhotoMessage extends Message {
     super(id, sender, date, chat, null, null, null, null);
   }
   
+  DeleteChatPhotoMessage(MessageFields fields) {
+    super(fields);
+  }
+  
+  @Override
+  void copyFields(MessageFields fields) {
+    super.copyFields(fields);
+    fields.deleteChatPhoto = true;
+  }
+  
 }
@@ -34,6 +34,17 @@ public class DiceMessage extends Message {
     this.dice = Objects.requireNonNull(dice);
   }
   
+  DiceMessage(MessageFields fields) {
+    super(fields);
+    dice = fields.dice;
+  }
+  
+  @Override
+  void copyFields(MessageFields fields) {
+    super.copyFields(fields);
+    fields.dice = dice;
+  }
+  
   /**
    * Getter for property {@link #dice}.
    *
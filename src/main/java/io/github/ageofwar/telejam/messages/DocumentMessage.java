@@ -58,6 +58,21 @@ public class DocumentMessage extends Message {
     captionEntities = caption != null ? caption.getEntities() : null;
   }
   
+  DocumentMessage(MessageFields fields) {
+    super(fields);
+    document = fields.document;
+    caption = fields.caption;
+    captionEntities = fields.captionEntities;
+  }
+  
+  @Override
+  void copyFields(MessageFields fields) {
+    super.copyFields(fields);
+    fields.document = document;
+    fields.caption = caption;
+    fields.captionEntities = captionEntities;
+  }
+  
   
   /**
    * Getter for property {@link #document}.
@@ -37,6 +37,17 @@ public class GameMessage extends Message {
     this.game = Objects.requireNonNull(game);
   }
   
+  GameMessage(MessageFields fields) {
+    super(fields);
+    game = fields.game;
+  }
+  
+  @Override
+  void copyFields(MessageFields fields) {
+    super.copyFields(fields);
+    fields.game = game;
+  }
+  
   
   /**
    * Getter for property {@link #game}.
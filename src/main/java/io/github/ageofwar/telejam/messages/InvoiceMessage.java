@@ -37,6 +37,17 @@ public class InvoiceMessage extends Message {
     this.invoice = Objects.requireNonNull(invoice);
   }
   
+  InvoiceMessage(MessageFields fields) {
+    super(fields);
+    invoice = fields.invoice;
+  }
+  
+  @Override
+  void copyFields(MessageFields fields) {
+    super.copyFields(fields);
+    fields.invoice = invoice;
+  }
+  
   
   /**
    * Getter for property {@link #invoice}.
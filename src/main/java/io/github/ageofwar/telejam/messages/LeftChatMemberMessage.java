@@ -32,6 +32,17 @@ public class LeftChatMemberMessage extends Message {
     this.leftChatMember = Objects.requireNonNull(leftChatMember);
   }
   
+  LeftChatMemberMessage(MessageFields fields) {
+    super(fields);
+    leftChatMember = fields.leftChatMember;
+  }
+  
+  @Override
+  void copyFields(MessageFields fields) {
+    super.copyFields(fields);
+    fields.leftChatMember = leftChatMember;
+  }
+  
   
   /**
    * Getter for property {@link #leftChatMember}.
@@ -36,6 +36,17 @@ public class LocationMessage extends Message {
     this.location = Objects.requireNonNull(location);
   }
   
+  LocationMessage(MessageFields fields) {
+    super(fields);
+    location = fields.location;
+  }
+  
+  @Override
+  void copyFields(MessageFields fields) {
+    super.copyFields(fields);
+    fields.location = location;
+  }
+  
   
   /**
    * Getter for property {@link #location}.
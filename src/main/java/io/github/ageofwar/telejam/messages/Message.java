@@ -1,5 +1,6 @@
 package io.github.ageofwar.telejam.messages;
 
+import com.google.gson.Gson;
 import com.google.gson.annotations.SerializedName;
 import io.github.ageofwar.telejam.TelegramObject;
 import io.github.ageofwar.telejam.chats.Channel;
@@ -8,6 +9,8 @@ import io.github.ageofwar.telejam.chats.SuperGroup;
 import io.github.ageofwar.telejam.replymarkups.InlineKeyboardMarkup;
 import io.github.ageofwar.telejam.users.User;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.OptionalLong;
@@ -59,7 +62,7 @@ public abstract class Message implements TelegramObject {
    * even if it itself is a reply.</p>
    */
   @SerializedName(REPLY_TO_MESSAGE_FIELD)
-  private final Message replyToMessage;
+  private Message replyToMessage;
   
   /**
    * Date the message was last edited in Unix time.
@@ -77,7 +80,23 @@ public abstract class Message implements TelegramObject {
    * Inline keyboard attached to the message.
    */
   @SerializedName(REPLY_MARKUP_FIELD)
-  private final InlineKeyboardMarkup replyMarkup;
+  private InlineKeyboardMarkup replyMarkup;
+  
+  /**
+   * JSON text of the replied message, when the message has been decoded lazily.
+   */
+  private transient String lazyReplyToMessage;
+  
+  /**
+   * JSON text of the reply markup, when the message has been decoded lazily.
+   */
+  private transient String lazyReplyMarkup;
+  
+  /**
+   * Gson instance used to decode the lazy fields,
+   * or <code>null</code> if there are no fields to decode.
+   */
+  private transient volatile Gson lazyGson;
   
   public Message(long id,
                  User sender,
@@ -97,6 +116,34 @@ public abstract class Message implements TelegramObject {
     this.replyMarkup = replyMarkup;
   }
   
+  Message(MessageFields fields) {
+    id = fields.id;
+    sender = fields.sender;
+    date = fields.date;
+    chat = fields.chat;
+    replyToMessage = fields.replyToMessage;
+    editDate = fields.editDate;
+    authorSignature = fields.authorSignature;
+    replyMarkup = fields.replyMarkup;
+  }
+  
+  /**
+   * Copies the fields of this message to the specified object, without decoding the lazy fields.
+   * Every subclass that declares fields copies them too.
+   *
+   * @param fields the object the fields are copied to
+   */
+  void copyFields(MessageFields fields) {
+    fields.id = id;
+    fields.sender = sender;
+    fields.date = date;
+    fields.chat = chat;
+    fields.replyToMessage = replyToMessage;
+    fields.editDate = editDate;
+    fields.authorSignature = authorSignature;
+    fields.replyMarkup = replyMarkup;
+  }
+  
   public String toUrl() {
     return chat.toUrl() + "/" + id;
   }
@@ -143,6 +190,7 @@ public abstract class Message implements TelegramObject {
    * @return optional value for property {@link #replyToMessage}
    */
   public Optional<Message> getReplyToMessage() {
+    decodeLazyFields();
     return Optional.ofNullable(replyToMessage);
   }
   
@@ -164,6 +212,44 @@ public abstract class Message implements TelegramObject {
     return Optional.ofNullable(authorSignature);
   }
   
+  /**
+   * Sets the fields of this message that are decoded the first time they are accessed.
+   *
+   * @param replyToMessage the JSON text of the replied message, or <code>null</code>
+   * @param replyMarkup    the JSON text of the reply markup, or <code>null</code>
+   * @param gson           the Gson instance used to decode the fields
+   */
+  void setLazyFields(String replyToMessage, String replyMarkup, Gson gson) {
+    lazyReplyToMessage = replyToMessage;
+    lazyReplyMarkup = replyMarkup;
+    lazyGson = gson;
+  }
+  
+  /**
+   * Decodes the fields of this message that have not been decoded yet.
+   */
+  void decodeLazyFields() {
+    if (lazyGson == null) {
+      return;
+    }
+    synchronized (this) {
+      Gson gson = lazyGson;
+      if (gson == null) {
+        return;
+      }
+      replyToMessage = gson.fromJson(lazyReplyToMessage, Message.class);
+      replyMarkup = gson.fromJson(lazyReplyMarkup, InlineKeyboardMarkup.class);
+      lazyReplyToMessage = null;
+      lazyReplyMarkup = null;
+      lazyGson = null;
+    }
+  }
+  
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    decodeLazyFields();
+    out.defaultWriteObject();
+  }
+  
   @Override
   public boolean equals(Object obj) {
     if (this == obj) {
@@ -1,102 +1,609 @@
 package io.github.ageofwar.telejam.messages;
 
 import com.google.gson.*;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import io.github.ageofwar.telejam.chats.Chat;
+import io.github.ageofwar.telejam.contacts.Contact;
+import io.github.ageofwar.telejam.games.Game;
+import io.github.ageofwar.telejam.media.*;
+import io.github.ageofwar.telejam.payments.Invoice;
+import io.github.ageofwar.telejam.payments.SuccessfulPayment;
 import io.github.ageofwar.telejam.replymarkups.InlineKeyboardMarkup;
+import io.github.ageofwar.telejam.stickers.Sticker;
 import io.github.ageofwar.telejam.users.User;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 /**
  * JSON Adapter for class {@link Message}.
+ * Messages are decoded in a single pass, without building an intermediate tree:
+ * the fields of every type of message are decoded as soon as they are read, and the type
+ * of the message is chosen at the end of the object.
+ * The type of the message is looked up by the names of its fields: when a message
+ * has more than one of them (for example an animation also has a document), the type
+ * registered first wins. A message with a <code>forward_from</code> or a
+ * <code>forward_sender_name</code> field is a {@link Forward} of the message made of the other fields.
+ * Messages are encoded from their fields in the same way; only the subclasses of {@link Message}
+ * unknown to this adapter are encoded with reflection.
+ * <p>
+ * When lazy decoding is enabled, the replied message and the reply markup of a message
+ * are kept as JSON text and decoded the first time they are accessed, so that the messages
+ * whose replied message is never inspected do not pay for decoding it, nor for building
+ * its JSON tree.
  *
  * @author Michi Palazzo
  */
-public final class MessageAdapter implements JsonDeserializer<Message>, JsonSerializer<Message> {
+public final class MessageAdapter implements TypeAdapterFactory {
   
-  public static final MessageAdapter INSTANCE = new MessageAdapter();
+  public static final MessageAdapter INSTANCE = new MessageAdapter(false);
   
-  private MessageAdapter() {
+  private static final List<Function<MessageFields, Message>> MESSAGE_TYPES = new ArrayList<>();
+  private static final Map<String, Integer> PRIORITIES = new HashMap<>();
+  private static final Map<Class<?>, Integer> TYPE_PRIORITIES = new HashMap<>();
+  
+  static {
+    register(TextMessage.class, TextMessage::new, TextMessage.TEXT_FIELD);
+    register(AudioMessage.class, AudioMessage::new, AudioMessage.AUDIO_FIELD);
+    register(AnimationMessage.class, AnimationMessage::new, AnimationMessage.ANIMATION_FIELD);
+    register(DocumentMessage.class, DocumentMessage::new, DocumentMessage.DOCUMENT_FIELD);
+    register(GameMessage.class, GameMessage::new, GameMessage.GAME_FIELD);
+    register(PhotoMessage.class, PhotoMessage::new, PhotoMessage.PHOTO_FIELD);
+    register(StickerMessage.class, StickerMessage::new, StickerMessage.STICKER_FIELD);
+    register(VideoMessage.class, VideoMessage::new, VideoMessage.VIDEO_FIELD);
+    register(VoiceMessage.class, VoiceMessage::new, VoiceMessage.VOICE_FIELD);
+    register(VideoNoteMessage.class, VideoNoteMessage::new, VideoNoteMessage.VIDEO_NOTE_FIELD);
+    register(NewChatMembersMessage.class, NewChatMembersMessage::new, NewChatMembersMessage.NEW_CHAT_MEMBERS_FIELD);
+    register(ContactMessage.class, ContactMessage::new, ContactMessage.CONTACT_FIELD);
+    register(LocationMessage.class, LocationMessage::new, LocationMessage.LOCATION_FIELD);
+    register(VenueMessage.class, VenueMessage::new, VenueMessage.VENUE_FIELD);
+    register(LeftChatMemberMessage.class, LeftChatMemberMessage::new, LeftChatMemberMessage.LEFT_CHAT_MEMBER_FIELD);
+    register(NewChatTitleMessage.class, NewChatTitleMessage::new, NewChatTitleMessage.NEW_CHAT_TITLE_FIELD);
+    register(NewChatPhotoMessage.class, NewChatPhotoMessage::new, NewChatPhotoMessage.NEW_CHAT_PHOTO_FIELD);
+    register(DeleteChatPhotoMessage.class, DeleteChatPhotoMessage::new, DeleteChatPhotoMessage.DELETE_CHAT_PHOTO_FIELD);
+    register(ChatCreatedMessage.class, ChatCreatedMessage::new,
+        ChatCreatedMessage.GROUP_CHAT_CREATED_FIELD,
+        ChatCreatedMessage.SUPERGROUP_CHAT_CREATED_FIELD,
+        ChatCreatedMessage.CHANNEL_CHAT_CREATED_FIELD);
+    register(MigrateFromChatIdMessage.class, MigrateFromChatIdMessage::new, MigrateFromChatIdMessage.MIGRATE_FROM_CHAT_ID_FIELD);
+    register(MigrateToChatIdMessage.class, MigrateToChatIdMessage::new, MigrateToChatIdMessage.MIGRATE_TO_CHAT_ID_FIELD);
+    register(MessagePinnedMessage.class, MessagePinnedMessage::new, MessagePinnedMessage.PINNED_MESSAGE_FIELD);
+    register(InvoiceMessage.class, InvoiceMessage::new, InvoiceMessage.INVOICE_FIELD);
+    register(SuccessfulPaymentMessage.class, SuccessfulPaymentMessage::new, SuccessfulPaymentMessage.SUCCESSFUL_PAYMENT_FIELD);
+    register(ConnectedWebsiteMessage.class, ConnectedWebsiteMessage::new, ConnectedWebsiteMessage.CONNECTED_WEBSITE_FIELD);
+    register(PollMessage.class, PollMessage::new, PollMessage.POLL_FIELD);
+    register(DiceMessage.class, DiceMessage::new, DiceMessage.DICE_FIELD);
   }
   
-  @Override
-  public Message deserialize(JsonElement src, Type type, JsonDeserializationContext context) throws JsonParseException {
-    JsonObject object = src.getAsJsonObject();
-    if (object.has(Forward.FORWARD_MESSAGE_SENDER_NAME_FIELD) || object.has(Forward.FORWARD_MESSAGE_SENDER_FIELD)) {
-      return context.deserialize(src, Forward.class);
-    } else if (object.has(TextMessage.TEXT_FIELD)) {
-      return context.deserialize(src, TextMessage.class);
-    } else if (object.has(AudioMessage.AUDIO_FIELD)) {
-      return context.deserialize(src, AudioMessage.class);
-    } else if (object.has(AnimationMessage.ANIMATION_FIELD)) {
-      return context.deserialize(src, AnimationMessage.class);
-    } else if (object.has(DocumentMessage.DOCUMENT_FIELD)) {
-      return context.deserialize(src, DocumentMessage.class);
-    } else if (object.has(GameMessage.GAME_FIELD)) {
-      return context.deserialize(src, GameMessage.class);
-    } else if (object.has(PhotoMessage.PHOTO_FIELD)) {
-      return context.deserialize(src, PhotoMessage.class);
-    } else if (object.has(StickerMessage.STICKER_FIELD)) {
-      return context.deserialize(src, StickerMessage.class);
-    } else if (object.has(VideoMessage.VIDEO_FIELD)) {
-      return context.deserialize(src, VideoMessage.class);
-    } else if (object.has(VoiceMessage.VOICE_FIELD)) {
-      return context.deserialize(src, VoiceMessage.class);
-    } else if (object.has(VideoNoteMessage.VIDEO_NOTE_FIELD)) {
-      return context.deserialize(src, VideoMessage.class);
-    } else if (object.has(NewChatMembersMessage.NEW_CHAT_MEMBERS_FIELD)) {
-      return context.deserialize(src, NewChatMembersMessage.class);
-    } else if (object.has(ContactMessage.CONTACT_FIELD)) {
-      return context.deserialize(src, ContactMessage.class);
-    } else if (object.has(LocationMessage.LOCATION_FIELD)) {
-      return context.deserialize(src, LocationMessage.class);
-    } else if (object.has(VenueMessage.VENUE_FIELD)) {
-      return context.deserialize(src, VenueMessage.class);
-    } else if (object.has(LeftChatMemberMessage.LEFT_CHAT_MEMBER_FIELD)) {
-      return context.deserialize(src, LeftChatMemberMessage.class);
-    } else if (object.has(NewChatTitleMessage.NEW_CHAT_TITLE_FIELD)) {
-      return context.deserialize(src, NewChatTitleMessage.class);
-    } else if (object.has(NewChatPhotoMessage.NEW_CHAT_PHOTO_FIELD)) {
-      return context.deserialize(src, NewChatPhotoMessage.class);
-    } else if (object.has(DeleteChatPhotoMessage.DELETE_CHAT_PHOTO_FIELD)) {
-      return context.deserialize(src, DeleteChatPhotoMessage.class);
-    } else if (object.has(ChatCreatedMessage.GROUP_CHAT_CREATED_FIELD) ||
-        object.has(ChatCreatedMessage.SUPERGROUP_CHAT_CREATED_FIELD) ||
-        object.has(ChatCreatedMessage.CHANNEL_CHAT_CREATED_FIELD)) {
-      return context.deserialize(src, ChatCreatedMessage.class);
-    } else if (object.has(MigrateFromChatIdMessage.MIGRATE_FROM_CHAT_ID_FIELD)) {
-      return context.deserialize(src, MigrateFromChatIdMessage.class);
-    } else if (object.has(MigrateToChatIdMessage.MIGRATE_TO_CHAT_ID_FIELD)) {
-      return context.deserialize(src, MigrateToChatIdMessage.class);
-    } else if (object.has(MessagePinnedMessage.PINNED_MESSAGE_FIELD)) {
-      return context.deserialize(src, MessagePinnedMessage.class);
-    } else if (object.has(InvoiceMessage.INVOICE_FIELD)) {
-      return context.deserialize(src, InvoiceMessage.class);
-    } else if (object.has(SuccessfulPaymentMessage.SUCCESSFUL_PAYMENT_FIELD)) {
-      return context.deserialize(src, SuccessfulPaymentMessage.class);
-    } else if (object.has(ConnectedWebsiteMessage.CONNECTED_WEBSITE_FIELD)) {
-      return context.deserialize(src, ConnectedWebsiteMessage.class);
-    } else if (object.has(PollMessage.POLL_FIELD)) {
-      return context.deserialize(src, PollMessage.class);
-    } else if (object.has(DiceMessage.DICE_FIELD)) {
-      return context.deserialize(src, DiceMessage.class);
-    }
-    return new Message(
-        context.deserialize(object.get(Message.ID_FIELD), Long.class),
-        context.deserialize(object.get(Message.SENDER_FIELD), User.class),
-        context.deserialize(object.get(Message.DATE_FIELD), Long.class),
-        context.deserialize(object.get(Message.CHAT_FIELD), Chat.class),
-        context.deserialize(object.get(Message.REPLY_TO_MESSAGE_FIELD), Message.class),
-        context.deserialize(object.get(Message.EDIT_DATE_FIELD), Long.class),
-        context.deserialize(object.get(Message.AUTHOR_SIGNATURE_FIELD), String.class),
-        context.deserialize(object.get(Message.REPLY_MARKUP_FIELD), InlineKeyboardMarkup.class)
-    ) {
-    };
+  private final boolean lazyDecoding;
+  
+  /**
+   * Constructs a MessageAdapter.
+   *
+   * @param lazyDecoding whether to decode lazily the replied message and the reply markup of messages
+   */
+  public MessageAdapter(boolean lazyDecoding) {
+    this.lazyDecoding = lazyDecoding;
+  }
+  
+  /**
+   * Returns whether the replied message and the reply markup of messages are decoded lazily.
+   *
+   * @return whether lazy decoding is enabled
+   */
+  public boolean isLazyDecoding() {
+    return lazyDecoding;
   }
   
   @Override
-  public JsonElement serialize(Message message, Type type, JsonSerializationContext context) {
-    return context.serialize(message, message.getClass());
+  @SuppressWarnings("unchecked")
+  public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+    Class<? super T> rawType = type.getRawType();
+    if (rawType == Message.class) {
+      return (TypeAdapter<T>) new Adapter(gson, lazyDecoding);
+    }
+    if (rawType == Forward.class || TYPE_PRIORITIES.containsKey(rawType)) {
+      return new SubtypeAdapter<>(new Adapter(gson, lazyDecoding), rawType);
+    }
+    if (Message.class.isAssignableFrom(rawType)) {
+      return new DelegateAdapter<>(gson.getDelegateAdapter(this, type));
+    }
+    return null;
+  }
+  
+  private static void register(Class<? extends Message> type, Function<MessageFields, Message> constructor,
+                               String... fields) {
+    int priority = MESSAGE_TYPES.size();
+    MESSAGE_TYPES.add(constructor);
+    TYPE_PRIORITIES.put(type, priority);
+    for (String field : fields) {
+      PRIORITIES.put(field, priority);
+    }
+  }
+  
+  private static final class Adapter extends TypeAdapter<Message> {
+    
+    private final Gson gson;
+    private final boolean lazyDecoding;
+    private final TypeAdapter<User> userAdapter;
+    private final TypeAdapter<Chat> chatAdapter;
+    private final TypeAdapter<InlineKeyboardMarkup> replyMarkupAdapter;
+    private final TypeAdapter<MessageEntity[]> entitiesAdapter;
+    private final TypeAdapter<List<MessageEntity>> captionEntitiesAdapter;
+    private final TypeAdapter<PhotoSize[]> photoAdapter;
+    
+    private Adapter(Gson gson, boolean lazyDecoding) {
+      this.gson = gson;
+      this.lazyDecoding = lazyDecoding;
+      userAdapter = gson.getAdapter(User.class);
+      chatAdapter = gson.getAdapter(Chat.class);
+      replyMarkupAdapter = gson.getAdapter(InlineKeyboardMarkup.class);
+      entitiesAdapter = gson.getAdapter(MessageEntity[].class);
+      captionEntitiesAdapter = gson.getAdapter(new TypeToken<List<MessageEntity>>() {
+      });
+      photoAdapter = gson.getAdapter(PhotoSize[].class);
+    }
+    
+    @Override
+    public Message read(JsonReader in) throws IOException {
+      return read(in, Message.class);
+    }
+    
+    /**
+     * Reads a message of the specified type. Like the reflective adapter of Gson, a subclass
+     * of {@link Message} is built from the fields of the message even if they belong to another type.
+     *
+     * @param in   the reader
+     * @param type the type of the message
+     * @return the message, or <code>null</code> if the value is null
+     * @throws IOException if an I/O error occurs
+     */
+    private Message read(JsonReader in, Class<?> type) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      MessageFields fields = new MessageFields();
+      String replyToMessage = null;
+      String replyMarkup = null;
+      boolean forward = false;
+      int priority = MESSAGE_TYPES.size();
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        if (in.peek() == JsonToken.NULL) {
+          in.nextNull();
+          continue;
+        }
+        Integer fieldPriority = PRIORITIES.get(name);
+        if (fieldPriority != null && fieldPriority < priority) {
+          priority = fieldPriority;
+        }
+        switch (name) {
+          case Message.ID_FIELD:
+            fields.id = in.nextLong();
+            break;
+          case Message.SENDER_FIELD:
+            fields.sender = userAdapter.read(in);
+            break;
+          case Message.DATE_FIELD:
+            fields.date = in.nextLong();
+            break;
+          case Message.CHAT_FIELD:
+            fields.chat = chatAdapter.read(in);
+            break;
+          case Message.REPLY_TO_MESSAGE_FIELD:
+            if (lazyDecoding) {
+              replyToMessage = readRaw(in);
+            } else {
+              fields.replyToMessage = read(in);
+            }
+            break;
+          case Message.EDIT_DATE_FIELD:
+            fields.editDate = in.nextLong();
+            break;
+          case Message.AUTHOR_SIGNATURE_FIELD:
+            fields.authorSignature = in.nextString();
+            break;
+          case Message.REPLY_MARKUP_FIELD:
+            if (lazyDecoding) {
+              replyMarkup = readRaw(in);
+            } else {
+              fields.replyMarkup = replyMarkupAdapter.read(in);
+            }
+            break;
+          case Forward.FORWARD_MESSAGE_SENDER_FIELD:
+            forward = true;
+            fields.forwardFrom = userAdapter.read(in);
+            break;
+          case Forward.FORWARD_MESSAGE_SENDER_NAME_FIELD:
+            forward = true;
+            in.skipValue();
+            break;
+          case Forward.FORWARD_MESSAGE_CHAT_FIELD:
+            fields.forwardFromChat = chatAdapter.read(in);
+            break;
+          case Forward.FORWARD_MESSAGE_ID_FIELD:
+            fields.forwardFromMessageId = in.nextLong();
+            break;
+          case Forward.FORWARD_MESSAGE_DATE_FIELD:
+            fields.forwardDate = in.nextLong();
+            break;
+          case Forward.FORWARD_SIGNATURE_FIELD:
+            fields.forwardSignature = in.nextString();
+            break;
+          case TextMessage.TEXT_FIELD:
+            fields.text = in.nextString();
+            break;
+          case TextMessage.ENTITIES_FIELD:
+            fields.entities = entitiesAdapter.read(in);
+            break;
+          case PhotoMessage.CAPTION_FIELD:
+            fields.caption = in.nextString();
+            break;
+          case PhotoMessage.CAPTION_ENTITIES:
+            fields.captionEntities = captionEntitiesAdapter.read(in);
+            break;
+          case AudioMessage.AUDIO_FIELD:
+            fields.audio = readValue(in, Audio.class);
+            break;
+          case AnimationMessage.ANIMATION_FIELD:
+            fields.animation = readValue(in, Animation.class);
+            break;
+          case DocumentMessage.DOCUMENT_FIELD:
+            fields.document = readValue(in, Document.class);
+            break;
+          case GameMessage.GAME_FIELD:
+            fields.game = readValue(in, Game.class);
+            break;
+          case PhotoMessage.PHOTO_FIELD:
+            fields.photo = photoAdapter.read(in);
+            break;
+          case StickerMessage.STICKER_FIELD:
+            fields.sticker = readValue(in, Sticker.class);
+            break;
+          case VideoMessage.VIDEO_FIELD:
+            fields.video = readValue(in, Video.class);
+            break;
+          case VoiceMessage.VOICE_FIELD:
+            fields.voice = readValue(in, Voice.class);
+            break;
+          case VideoNoteMessage.VIDEO_NOTE_FIELD:
+            fields.videoNote = readValue(in, VideoNote.class);
+            break;
+          case NewChatMembersMessage.NEW_CHAT_MEMBERS_FIELD:
+            fields.newChatMembers = readValue(in, User[].class);
+            break;
+          case ContactMessage.CONTACT_FIELD:
+            fields.contact = readValue(in, Contact.class);
+            break;
+          case LocationMessage.LOCATION_FIELD:
+            fields.location = readValue(in, Location.class);
+            break;
+          case VenueMessage.VENUE_FIELD:
+            fields.venue = readValue(in, Venue.class);
+            break;
+          case LeftChatMemberMessage.LEFT_CHAT_MEMBER_FIELD:
+            fields.leftChatMember = userAdapter.read(in);
+            break;
+          case NewChatTitleMessage.NEW_CHAT_TITLE_FIELD:
+            fields.newChatTitle = in.nextString();
+            break;
+          case NewChatPhotoMessage.NEW_CHAT_PHOTO_FIELD:
+            fields.newChatPhoto = photoAdapter.read(in);
+            break;
+          case DeleteChatPhotoMessage.DELETE_CHAT_PHOTO_FIELD:
+            fields.deleteChatPhoto = in.nextBoolean();
+            break;
+          case ChatCreatedMessage.GROUP_CHAT_CREATED_FIELD:
+            fields.groupChatCreated = in.nextBoolean();
+            break;
+          case ChatCreatedMessage.SUPERGROUP_CHAT_CREATED_FIELD:
+            fields.supergroupChatCreated = in.nextBoolean();
+            break;
+          case ChatCreatedMessage.CHANNEL_CHAT_CREATED_FIELD:
+            fields.channelChatCreated = in.nextBoolean();
+            break;
+          case MigrateFromChatIdMessage.MIGRATE_FROM_CHAT_ID_FIELD:
+            fields.migrateFromChatId = in.nextLong();
+            break;
+          case MigrateToChatIdMessage.MIGRATE_TO_CHAT_ID_FIELD:
+            fields.migrateToChatId = in.nextLong();
+            break;
+          case MessagePinnedMessage.PINNED_MESSAGE_FIELD:
+            fields.pinnedMessage = read(in);
+            break;
+          case InvoiceMessage.INVOICE_FIELD:
+            fields.invoice = readValue(in, Invoice.class);
+            break;
+          case SuccessfulPaymentMessage.SUCCESSFUL_PAYMENT_FIELD:
+            fields.successfulPayment = readValue(in, SuccessfulPayment.class);
+            break;
+          case ConnectedWebsiteMessage.CONNECTED_WEBSITE_FIELD:
+            fields.connectedWebsite = in.nextString();
+            break;
+          case PollMessage.POLL_FIELD:
+            fields.poll = readValue(in, Poll.class);
+            break;
+          case DiceMessage.DICE_FIELD:
+            fields.dice = readValue(in, Dice.class);
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      if (type == Forward.class) {
+        forward = true;
+      } else if (type != Message.class) {
+        forward = false;
+        priority = TYPE_PRIORITIES.get(type);
+      }
+      if (!forward) {
+        return newMessage(priority, fields, replyToMessage, replyMarkup);
+      }
+      long id = fields.id;
+      User sender = fields.sender;
+      long date = fields.date;
+      Chat chat = fields.chat;
+      // the replied message and the reply markup belong to the forwarded message
+      fields.forward();
+      Message forwardedMessage = newMessage(priority, fields, replyToMessage, replyMarkup);
+      return new Forward<>(id, sender, date, chat, forwardedMessage);
+    }
+    
+    private Message newMessage(int priority, MessageFields fields, String replyToMessage, String replyMarkup) {
+      Message message;
+      if (priority < MESSAGE_TYPES.size()) {
+        message = MESSAGE_TYPES.get(priority).apply(fields);
+      } else {
+        message = new Message(fields) {
+        };
+      }
+      if (replyToMessage != null || replyMarkup != null) {
+        message.setLazyFields(replyToMessage, replyMarkup, gson);
+      }
+      return message;
+    }
+    
+    private <T> T readValue(JsonReader in, Class<T> type) throws IOException {
+      return gson.getAdapter(type).read(in);
+    }
+    
+    /**
+     * Reads the next value as compact JSON text, without building its tree.
+     *
+     * @param in the reader
+     * @return the JSON text of the value, or <code>null</code> if the value is null
+     * @throws IOException if an I/O error occurs
+     */
+    private static String readRaw(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      StringWriter raw = new StringWriter();
+      copy(in, new JsonWriter(raw));
+      return raw.toString();
+    }
+    
+    private static void copy(JsonReader in, JsonWriter out) throws IOException {
+      switch (in.peek()) {
+        case BEGIN_ARRAY:
+          in.beginArray();
+          out.beginArray();
+          while (in.hasNext()) {
+            copy(in, out);
+          }
+          in.endArray();
+          out.endArray();
+          break;
+        case BEGIN_OBJECT:
+          in.beginObject();
+          out.beginObject();
+          while (in.hasNext()) {
+            out.name(in.nextName());
+            copy(in, out);
+          }
+          in.endObject();
+          out.endObject();
+          break;
+        case STRING:
+          out.value(in.nextString());
+          break;
+        case NUMBER:
+          out.jsonValue(in.nextString());
+          break;
+        case BOOLEAN:
+          out.value(in.nextBoolean());
+          break;
+        case NULL:
+          in.nextNull();
+          out.nullValue();
+          break;
+        default:
+          throw new IllegalStateException("Unexpected token: " + in.peek());
+      }
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public void write(JsonWriter out, Message message) throws IOException {
+      if (message == null) {
+        out.nullValue();
+        return;
+      }
+      if (!isHandWritten(message.getClass())) {
+        TypeAdapter<Message> adapter = (TypeAdapter<Message>) gson.getAdapter(message.getClass());
+        adapter.write(out, message);
+        return;
+      }
+      MessageFields fields = fields(message);
+      out.beginObject();
+      out.name(Message.ID_FIELD).value(fields.id);
+      writeField(out, Message.SENDER_FIELD, userAdapter, fields.sender);
+      out.name(Message.DATE_FIELD).value(fields.date);
+      writeField(out, Message.CHAT_FIELD, chatAdapter, fields.chat);
+      if (message instanceof Forward) {
+        // the other fields belong to the forwarded message
+        fields = fields(((Forward<?>) message).getForwardedMessage());
+        writeField(out, Forward.FORWARD_MESSAGE_SENDER_FIELD, userAdapter, fields.sender);
+        writeField(out, Forward.FORWARD_MESSAGE_CHAT_FIELD, chatAdapter, fields.chat);
+        if (fields.chat != null) {
+          out.name(Forward.FORWARD_MESSAGE_ID_FIELD).value(fields.id);
+        }
+        out.name(Forward.FORWARD_MESSAGE_DATE_FIELD).value(fields.date);
+        writeString(out, Forward.FORWARD_SIGNATURE_FIELD, fields.authorSignature);
+      } else {
+        writeString(out, Message.AUTHOR_SIGNATURE_FIELD, fields.authorSignature);
+      }
+      writeField(out, Message.REPLY_TO_MESSAGE_FIELD, this, fields.replyToMessage);
+      writeField(out, Message.EDIT_DATE_FIELD, fields.editDate);
+      writeField(out, Message.REPLY_MARKUP_FIELD, fields.replyMarkup);
+      writeString(out, TextMessage.TEXT_FIELD, fields.text);
+      writeField(out, TextMessage.ENTITIES_FIELD, entitiesAdapter, fields.entities);
+      writeString(out, PhotoMessage.CAPTION_FIELD, fields.caption);
+      writeField(out, PhotoMessage.CAPTION_ENTITIES, captionEntitiesAdapter, fields.captionEntities);
+      writeField(out, AudioMessage.AUDIO_FIELD, fields.audio);
+      writeField(out, AnimationMessage.ANIMATION_FIELD, fields.animation);
+      writeField(out, DocumentMessage.DOCUMENT_FIELD, fields.document);
+      writeField(out, GameMessage.GAME_FIELD, fields.game);
+      writeField(out, PhotoMessage.PHOTO_FIELD, photoAdapter, fields.photo);
+      writeField(out, StickerMessage.STICKER_FIELD, fields.sticker);
+      writeField(out, VideoMessage.VIDEO_FIELD, fields.video);
+      writeField(out, VoiceMessage.VOICE_FIELD, fields.voice);
+      writeField(out, VideoNoteMessage.VIDEO_NOTE_FIELD, fields.videoNote);
+      writeField(out, NewChatMembersMessage.NEW_CHAT_MEMBERS_FIELD, fields.newChatMembers);
+      writeField(out, ContactMessage.CONTACT_FIELD, fields.contact);
+      writeField(out, LocationMessage.LOCATION_FIELD, fields.location);
+      writeField(out, VenueMessage.VENUE_FIELD, fields.venue);
+      writeField(out, LeftChatMemberMessage.LEFT_CHAT_MEMBER_FIELD, userAdapter, fields.leftChatMember);
+      writeString(out, NewChatTitleMessage.NEW_CHAT_TITLE_FIELD, fields.newChatTitle);
+      writeField(out, NewChatPhotoMessage.NEW_CHAT_PHOTO_FIELD, photoAdapter, fields.newChatPhoto);
+      writeFlag(out, DeleteChatPhotoMessage.DELETE_CHAT_PHOTO_FIELD, fields.deleteChatPhoto);
+      writeFlag(out, ChatCreatedMessage.GROUP_CHAT_CREATED_FIELD, fields.groupChatCreated);
+      writeFlag(out, ChatCreatedMessage.SUPERGROUP_CHAT_CREATED_FIELD, fields.supergroupChatCreated);
+      writeFlag(out, ChatCreatedMessage.CHANNEL_CHAT_CREATED_FIELD, fields.channelChatCreated);
+      writeField(out, MigrateFromChatIdMessage.MIGRATE_FROM_CHAT_ID_FIELD, fields.migrateFromChatId);
+      writeField(out, MigrateToChatIdMessage.MIGRATE_TO_CHAT_ID_FIELD, fields.migrateToChatId);
+      writeField(out, MessagePinnedMessage.PINNED_MESSAGE_FIELD, this, fields.pinnedMessage);
+      writeField(out, InvoiceMessage.INVOICE_FIELD, fields.invoice);
+      writeField(out, SuccessfulPaymentMessage.SUCCESSFUL_PAYMENT_FIELD, fields.successfulPayment);
+      writeString(out, ConnectedWebsiteMessage.CONNECTED_WEBSITE_FIELD, fields.connectedWebsite);
+      writeField(out, PollMessage.POLL_FIELD, fields.poll);
+      writeField(out, DiceMessage.DICE_FIELD, fields.dice);
+      out.endObject();
+    }
+    
+    /**
+     * Returns whether the messages of the specified class are encoded by this adapter: the
+     * registered types of message, the forwarded messages and the messages of unknown type.
+     * The other subclasses of {@link Message} are encoded with reflection.
+     */
+    private static boolean isHandWritten(Class<?> type) {
+      return type == Forward.class || TYPE_PRIORITIES.containsKey(type) ||
+          type.isAnonymousClass() && type.getEnclosingClass() == Adapter.class;
+    }
+    
+    private static MessageFields fields(Message message) {
+      message.decodeLazyFields();
+      MessageFields fields = new MessageFields();
+      message.copyFields(fields);
+      return fields;
+    }
+    
+    private static void writeString(JsonWriter out, String name, String value) throws IOException {
+      if (value != null) {
+        out.name(name).value(value);
+      }
+    }
+    
+    private static void writeFlag(JsonWriter out, String name, boolean value) throws IOException {
+      if (value) {
+        out.name(name).value(true);
+      }
+    }
+    
+    private static <V> void writeField(JsonWriter out, String name, TypeAdapter<V> adapter, V value)
+        throws IOException {
+      if (value != null) {
+        out.name(name);
+        adapter.write(out, value);
+      }
+    }
+    
+    /**
+     * Writes a field with the adapter of the runtime class of its value.
+     */
+    @SuppressWarnings("unchecked")
+    private void writeField(JsonWriter out, String name, Object value) throws IOException {
+      if (value != null) {
+        out.name(name);
+        ((TypeAdapter<Object>) gson.getAdapter(value.getClass())).write(out, value);
+      }
+    }
+  
+  }
+  
+  /**
+   * Adapter of a type of message registered in {@link MessageAdapter}, or of the forwarded messages.
+   */
+  private static final class SubtypeAdapter<T> extends TypeAdapter<T> {
+    
+    private final Adapter adapter;
+    private final Class<? super T> type;
+    
+    private SubtypeAdapter(Adapter adapter, Class<? super T> type) {
+      this.adapter = adapter;
+      this.type = type;
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public T read(JsonReader in) throws IOException {
+      return (T) adapter.read(in, type);
+    }
+    
+    @Override
+    public void write(JsonWriter out, T value) throws IOException {
+      adapter.write(out, (Message) value);
+    }
+  
+  }
+  
+  /**
+   * Adapter of a subclass of {@link Message} unknown to {@link MessageAdapter},
+   * that decodes the lazy fields of a message before encoding it with reflection.
+   */
+  private static final class DelegateAdapter<T> extends TypeAdapter<T> {
+    
+    private final TypeAdapter<T> delegate;
+    
+    private DelegateAdapter(TypeAdapter<T> delegate) {
+      this.delegate = delegate;
+    }
+    
+    @Override
+    public T read(JsonReader in) throws IOException {
+      return delegate.read(in);
+    }
+    
+    @Override
+    public void write(JsonWriter out, T value) throws IOException {
+      if (value != null) {
+        ((Message) value).decodeLazyFields();
+      }
+      delegate.write(out, value);
+    }
+  
   }
   
 }
@@ -0,0 +1,88 @@
+package io.github.ageofwar.telejam.messages;
+
+import io.github.ageofwar.telejam.chats.Chat;
+import io.github.ageofwar.telejam.contacts.Contact;
+import io.github.ageofwar.telejam.games.Game;
+import io.github.ageofwar.telejam.media.*;
+import io.github.ageofwar.telejam.payments.Invoice;
+import io.github.ageofwar.telejam.payments.SuccessfulPayment;
+import io.github.ageofwar.telejam.replymarkups.InlineKeyboardMarkup;
+import io.github.ageofwar.telejam.stickers.Sticker;
+import io.github.ageofwar.telejam.users.User;
+
+import java.util.List;
+
+/**
+ * Fields of a message decoded or encoded by {@link MessageAdapter}, before
+ * the type of the message is known.
+ * Every type of message registered in {@link MessageAdapter} has a package-private
+ * constructor that copies its fields from this object, without validating them,
+ * as the reflective adapter of Gson used to do, and copies them back to this object
+ * with {@link Message#copyFields(MessageFields)}.
+ * The fields that do not belong to the message keep their default value.
+ *
+ * @author Michi Palazzo
+ */
+final class MessageFields {
+  
+  long id;
+  User sender;
+  long date;
+  Chat chat;
+  Message replyToMessage;
+  Long editDate;
+  String authorSignature;
+  InlineKeyboardMarkup replyMarkup;
+  
+  User forwardFrom;
+  Chat forwardFromChat;
+  long forwardFromMessageId;
+  long forwardDate;
+  String forwardSignature;
+  
+  String text;
+  MessageEntity[] entities;
+  String caption;
+  List<MessageEntity> captionEntities;
+  Audio audio;
+  Animation animation;
+  Document document;
+  Game game;
+  PhotoSize[] photo;
+  Sticker sticker;
+  Video video;
+  Voice voice;
+  VideoNote videoNote;
+  User[] newChatMembers;
+  Contact contact;
+  Location location;
+  Venue venue;
+  User leftChatMember;
+  String newChatTitle;
+  PhotoSize[] newChatPhoto;
+  Long migrateFromChatId;
+  Long migrateToChatId;
+  Message pinnedMessage;
+  Invoice invoice;
+  SuccessfulPayment successfulPayment;
+  String connectedWebsite;
+  Poll poll;
+  Dice dice;
+  boolean groupChatCreated;
+  boolean supergroupChatCreated;
+  boolean channelChatCreated;
+  boolean deleteChatPhoto;
+  
+  /**
+   * Replaces the header of the message with the one of the forwarded message.
+   * The replied message, the edit date and the reply markup belong to the forwarded message.
+   */
+  void forward() {
+    id = forwardFromMessageId;
+    sender = forwardFrom;
+    date = forwardDate;
+    chat = forwardFromChat;
+    authorSignature = forwardSignature;
+  }
+  
+}
@@ -33,6 +33,17 @@ public class MessagePinnedMessage extends Message {
     this.pinnedMessage = Objects.requireNonNull(pinnedMessage);
   }
   
+  MessagePinnedMessage(MessageFields fields) {
+    super(fields);
+    pinnedMessage = fields.pinnedMessage;
+  }
+  
+  @Override
+  void copyFields(MessageFields fields) {
+    super.copyFields(fields);
+    fields.pinnedMessage = pinnedMessage;
+  }
+  
   
   /**
    * Getter for property {@link #pinnedMessage}.
@@ -29,6 +29,17 @@ public class MigrateFromChatIdMessage extends Message {
     this.oldChatId = oldChatId;
   }
   
+  MigrateFromChatIdMessage(MessageFields fields) {
+    super(fields);
+    oldChatId = fields.migrateFromChatId;
+  }
+  
+  @Override
+  void copyFields(MessageFields fields) {
+    super.copyFields(fields);
+    fields.migrateFromChatId = oldChatId;
+  }
+  
   
   /**
    * Getter for property {@link #oldChatId}.
@@ -29,6 +29,17 @@ public class MigrateToChatIdMessage extends Message {
     this.newChatId = newChatId;
   }
   
+  MigrateToChatIdMessage(MessageFields fields) {
+    super(fields);
+    newChatId = fields.migrateToChatId;
+  }
+  
+  @Override
+  void copyFields(MessageFields fields) {
+    super.copyFields(fields);
+    fields.migrateToChatId = newChatId;
+  }
+  
   
   /**
    * Getter for property {@link #newChatId}.
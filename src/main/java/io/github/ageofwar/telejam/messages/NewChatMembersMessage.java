@@ -32,6 +32,17 @@ public class NewChatMembersMessage extends Message {
     this.newChatMembers = Objects.requireNonNull(newChatMembers);
   }
   
+  NewChatMembersMessage(MessageFields fields) {
+    super(fields);
+    newChatMembers = fields.newChatMembers;
+  }
+  
+  @Override
+  void copyFields(MessageFields fields) {
+    super.copyFields(fields);
+    fields.newChatMembers = newChatMembers;
+  }
+  
   
   /**
    * Getter for property {@link #newChatMembers}.
@@ -32,6 +32,17 @@ public class NewChatPhotoMessage extends Message {
     this.newChatPhoto = Objects.requireNonNull(newChatPhoto);
   }
   
+  NewChatPhotoMessage(MessageFields fields) {
+    super(fields);
+    newChatPhoto = fields.newChatPhoto;
+  }
+  
+  @Override
+  void copyFields(MessageFields fields) {
+    super.copyFields(fields);
+    fields.newChatPhoto = newChatPhoto;
+  }
+  
   
   /**
    * Getter for property {@link #newChatPhoto}.
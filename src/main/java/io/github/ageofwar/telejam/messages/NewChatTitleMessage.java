@@ -29,6 +29,17 @@ public class NewChatTitleMessage extends Message {
     this.newChatTitle = newChatTitle;
   }
   
+  NewChatTitleMessage(MessageFields fields) {
+    super(fields);
+    newChatTitle = fields.newChatTitle;
+  }
+  
+  @Override
+  void copyFields(MessageFields fields) {
+    super.copyFields(fields);
+    fields.newChatTitle = newChatTitle;
+  }
+  
   
   /**
    * Getter for property {@link #newChatTitle}.
@@ -59,6 +59,21 @@ public class PhotoMessage extends Message {
     captionEntities = caption != null ? caption.getEntities() : null;
   }
   
+  PhotoMessage(MessageFields fields) {
+    super(fields);
+    photo = fields.photo;
+    caption = fields.caption;
+    captionEntities = fields.captionEntities;
+  }
+  
+  @Override
+  void copyFields(MessageFields fields) {
+    super.copyFields(fields);
+    fields.photo = photo;
+    fields.caption = caption;
+    fields.captionEntities = captionEntities;
+  }
+  
   
   /**
    * Getter for property {@link #photo}.
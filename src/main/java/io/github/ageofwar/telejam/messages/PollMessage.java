@@ -35,6 +35,17 @@ public class PollMessage extends Message {
     this.poll = Objects.requireNonNull(poll);
   }
   
+  PollMessage(MessageFields fields) {
+    super(fields);
+    poll = fields.poll;
+  }
+  
+  @Override
+  void copyFields(MessageFields fields) {
+    super.copyFields(fields);
+    fields.poll = poll;
+  }
+  
   public Poll getPoll() {
     return poll;
   }
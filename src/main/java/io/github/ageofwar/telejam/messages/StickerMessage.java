@@ -34,6 +34,17 @@ public class StickerMessage extends Message {
     this.sticker = Objects.requireNonNull(sticker);
   }
   
+  StickerMessage(MessageFields fields) {
+    super(fields);
+    sticker = fields.sticker;
+  }
+  
+  @Override
+  void copyFields(MessageFields fields) {
+    super.copyFields(fields);
+    fields.sticker = sticker;
+  }
+  
   
   /**
    * Getter for property {@link #sticker}.
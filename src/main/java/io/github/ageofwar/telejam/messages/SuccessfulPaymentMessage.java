@@ -37,6 +37,17 @@ public class SuccessfulPaymentMessage extends Message {
     this.successfulPayment = Objects.requireNonNull(successfulPayment);
   }
   
+  SuccessfulPaymentMessage(MessageFields fields) {
+    super(fields);
+    successfulPayment = fields.successfulPayment;
+  }
+  
+  @Override
+  void copyFields(MessageFields fields) {
+    super.copyFields(fields);
+    fields.successfulPayment = successfulPayment;
+  }
+  
   
   /**
    * Getter for property {@link #successfulPayment}.
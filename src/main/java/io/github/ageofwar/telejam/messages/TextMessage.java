@@ -46,6 +46,19 @@ public class TextMessage extends Message {
     entities = text.getEntities().toArray(new MessageEntity[0]);
   }
   
+  TextMessage(MessageFields fields) {
+    super(fields);
+    text = fields.text;
+    entities = fields.entities;
+  }
+  
+  @Override
+  void copyFields(MessageFields fields) {
+    super.copyFields(fields);
+    fields.text = text;
+    fields.entities = entities;
+  }
+  
   
   /**
    * Returns whether or not this message is a command.
@@ -35,6 +35,17 @@ public class VenueMessage extends Message {
     this.venue = Objects.requireNonNull(venue);
   }
   
+  VenueMessage(MessageFields fields) {
+    super(fields);
+    venue = fields.venue;
+  }
+  
+  @Override
+  void copyFields(MessageFields fields) {
+    super.copyFields(fields);
+    fields.venue = venue;
+  }
+  
   
   /**
    * Getter for property {@link #venue}.
@@ -58,6 +58,21 @@ public class VideoMessage extends Message {
     captionEntities = caption != null ? caption.getEntities() : null;
   }
   
+  VideoMessage(MessageFields fields) {
+    super(fields);
+    video = fields.video;
+    caption = fields.caption;
+    captionEntities = fields.captionEntities;
+  }
+  
+  @Override
+  void copyFields(MessageFields fields) {
+    super.copyFields(fields);
+    fields.video = video;
+    fields.caption = caption;
+    fields.captionEntities = captionEntities;
+  }
+  
   
   /**
    * Getter for property {@link #video}.
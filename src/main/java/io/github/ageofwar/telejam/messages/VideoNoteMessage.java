@@ -36,6 +36,17 @@ public class VideoNoteMessage extends Message {
     this.videoNote = Objects.requireNonNull(videoNote);
   }
   
+  VideoNoteMessage(MessageFields fields) {
+    super(fields);
+    videoNote = fields.videoNote;
+  }
+  
+  @Override
+  void copyFields(MessageFields fields) {
+    super.copyFields(fields);
+    fields.videoNote = videoNote;
+  }
+  
   
   /**
    * Getter for property {@link #videoNote}.
@@ -58,6 +58,21 @@ public class VoiceMessage extends Message {
     captionEntities = caption != null ? caption.getEntities() : null;
   }
   
+  VoiceMessage(MessageFields fields) {
+    super(fields);
+    voice = fields.voice;
+    caption = fields.caption;
+    captionEntities = fields.captionEntities;
+  }
+  
+  @Override
+  void copyFields(MessageFields fields) {
+    super.copyFields(fields);
+    fields.voice = voice;
+    fields.caption = caption;
+    fields.captionEntities = captionEntities;
+  }
+  
   
   /**
    * Getter for property {@link #voice}.
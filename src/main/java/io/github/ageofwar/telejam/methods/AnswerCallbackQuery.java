@@ -1,9 +1,13 @@
 package io.github.ageofwar.telejam.methods;
 
 import io.github.ageofwar.telejam.callbacks.CallbackQuery;
+import io.github.ageofwar.telejam.json.JsonOutput;
 
+import java.io.IOException;
 import java.util.Map;
+import java.util.Optional;
 
+import static io.github.ageofwar.telejam.methods.JsonParameters.put;
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
 /**
@@ -113,6 +117,22 @@ public class AnswerCallbackQuery implements TelegramMethod<Boolean> {
     );
   }
   
+  @Override
+  public void writeParameters(JsonOutput writer) throws IOException {
+    writer.beginObject();
+    put(writer, CALLBACK_QUERY_ID_FIELD, callbackQueryId);
+    put(writer, TEXT_FIELD, text);
+    put(writer, SHOW_ALERT_FIELD, showAlert);
+    put(writer, URL_FIELD, url);
+    put(writer, CACHE_TIME_FIELD, cacheTime);
+    writer.endObject();
+  }
+  
+  @Override
+  public Optional<String> getChatId() {
+    return Optional.empty();
+  }
+  
   @Override
   public Class<Boolean> getReturnType() {
     return Boolean.class;
@@ -3,6 +3,7 @@ package io.github.ageofwar.telejam.methods;
 import io.github.ageofwar.telejam.chats.Chat;
 
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -63,6 +64,11 @@ public class DeleteChatPhoto implements TelegramMethod<Boolean> {
     return mapOf(CHAT_ID_FIELD, chatId != null ? chatId : chatUsername);
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Class<Boolean> getReturnType() {
     return Boolean.class;
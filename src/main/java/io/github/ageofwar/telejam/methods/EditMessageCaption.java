@@ -8,6 +8,7 @@ import io.github.ageofwar.telejam.text.Text;
 
 import java.io.Serializable;
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -147,6 +148,11 @@ public class EditMessageCaption implements TelegramMethod<Serializable> {
     );
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Class<? extends Serializable> getReturnType() {
     return inlineMessageId == null ? Message.class : Boolean.class;
@@ -9,6 +9,7 @@ import io.github.ageofwar.telejam.messages.Message;
 
 import java.io.Serializable;
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -161,6 +162,11 @@ public class EditMessageLiveLocation implements TelegramMethod<Serializable> {
     );
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Class<? extends Serializable> getReturnType() {
     return inlineMessageId == null ? LocationMessage.class : Boolean.class;
@@ -10,6 +10,7 @@ import io.github.ageofwar.telejam.connection.UploadFile;
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -150,6 +151,11 @@ public class EditMessageMedia implements TelegramMethod<Serializable> {
     return files;
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Class<? extends Serializable> getReturnType() {
     return inlineMessageId == null ? Message.class : Boolean.class;
@@ -7,6 +7,7 @@ import io.github.ageofwar.telejam.messages.Message;
 
 import java.io.Serializable;
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -128,6 +129,11 @@ public class EditMessageReplyMarkup implements TelegramMethod<Serializable> {
     );
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Class<? extends Serializable> getReturnType() {
     return inlineMessageId == null ? Message.class : Boolean.class;
@@ -2,13 +2,17 @@ package io.github.ageofwar.telejam.methods;
 
 import io.github.ageofwar.telejam.callbacks.CallbackQuery;
 import io.github.ageofwar.telejam.chats.Chat;
+import io.github.ageofwar.telejam.json.JsonOutput;
 import io.github.ageofwar.telejam.replymarkups.InlineKeyboardMarkup;
 import io.github.ageofwar.telejam.messages.Message;
 import io.github.ageofwar.telejam.text.Text;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Map;
+import java.util.Optional;
 
+import static io.github.ageofwar.telejam.methods.JsonParameters.put;
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
 /**
@@ -163,6 +167,28 @@ public class EditMessageText implements TelegramMethod<Serializable> {
     );
   }
   
+  @Override
+  public void writeParameters(JsonOutput writer) throws IOException {
+    writer.beginObject();
+    if (chatId != null) {
+      put(writer, CHAT_ID_FIELD, chatId);
+    } else {
+      put(writer, CHAT_ID_FIELD, chatUsername);
+    }
+    put(writer, MESSAGE_ID_FIELD, messageId);
+    put(writer, INLINE_MESSAGE_ID_FIELD, inlineMessageId);
+    put(writer, TEXT_FIELD, text.toHtmlString());
+    put(writer, PARSE_MODE_FIELD, "HTML");
+    put(writer, DISABLE_WEB_PAGE_PREVIEW_FIELD, disableWebPagePreview);
+    put(writer, REPLY_MARKUP_FIELD, replyMarkup);
+    writer.endObject();
+  }
+  
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Class<? extends Serializable> getReturnType() {
     return inlineMessageId == null ? Message.class : Boolean.class;
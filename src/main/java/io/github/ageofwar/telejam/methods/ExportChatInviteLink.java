@@ -3,6 +3,7 @@ package io.github.ageofwar.telejam.methods;
 import io.github.ageofwar.telejam.chats.Chat;
 
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -59,6 +60,11 @@ public class ExportChatInviteLink implements TelegramMethod<String> {
     return mapOf(CHAT_ID_FIELD, chatId != null ? chatId : chatUsername);
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Class<String> getReturnType() {
     return String.class;
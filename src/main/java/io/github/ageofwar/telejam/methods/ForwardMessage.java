@@ -6,6 +6,7 @@ import io.github.ageofwar.telejam.messages.Message;
 
 import java.lang.reflect.Type;
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.json.Json.genericTypeOf;
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
@@ -131,6 +132,11 @@ public class ForwardMessage implements TelegramMethod<Forward<?>> {
     );
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Type getReturnType() {
     return genericTypeOf(Forward.class, Message.class);
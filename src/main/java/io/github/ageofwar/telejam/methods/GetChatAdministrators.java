@@ -4,6 +4,7 @@ import io.github.ageofwar.telejam.chats.Chat;
 import io.github.ageofwar.telejam.users.ChatMember;
 
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -61,6 +62,11 @@ public class GetChatAdministrators implements TelegramMethod<ChatMember[]> {
     return mapOf(CHAT_ID_FIELD, chatId != null ? chatId : chatUsername);
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Class<? extends ChatMember[]> getReturnType() {
     return ChatMember[].class;
@@ -5,6 +5,7 @@ import io.github.ageofwar.telejam.users.ChatMember;
 import io.github.ageofwar.telejam.users.User;
 
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -78,6 +79,11 @@ public class GetChatMember implements TelegramMethod<ChatMember> {
     );
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Class<? extends ChatMember> getReturnType() {
     return ChatMember.class;
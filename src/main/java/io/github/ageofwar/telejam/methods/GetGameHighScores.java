@@ -5,6 +5,7 @@ import io.github.ageofwar.telejam.messages.Message;
 import io.github.ageofwar.telejam.users.User;
 
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -98,6 +99,11 @@ public class GetGameHighScores implements TelegramMethod<GameHighScore[]> {
     );
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.empty();
+  }
+  
   @Override
   public Class<? extends GameHighScore[]> getReturnType() {
     return GameHighScore[].class;
@@ -2,7 +2,9 @@ package io.github.ageofwar.telejam.methods;
 
 import io.github.ageofwar.telejam.updates.Update;
 
+import java.time.Duration;
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -21,6 +23,11 @@ public class GetUpdates implements TelegramMethod<Update[]> {
   static final String TIMEOUT_FIELD = "timeout";
   static final String ALLOWED_UPDATES_FIELD = "allowed_updates";
   
+  /**
+   * Time added to the long polling timeout before the request times out.
+   */
+  static final Duration TIMEOUT_MARGIN = Duration.ofSeconds(10);
+  
   /**
    * Identifier of the first update to be returned.
    * Must be greater by one than the highest among the identifiers of previously received updates.
@@ -95,6 +102,14 @@ public class GetUpdates implements TelegramMethod<Update[]> {
     );
   }
   
+  @Override
+  public Optional<Duration> getRequestTimeout() {
+    if (timeout == null || timeout <= 0) {
+      return Optional.empty();
+    }
+    return Optional.of(Duration.ofSeconds(timeout).plus(TIMEOUT_MARGIN));
+  }
+  
   @Override
   public Class<? extends Update[]> getReturnType() {
     return Update[].class;
@@ -0,0 +1,43 @@
+package io.github.ageofwar.telejam.methods;
+
+import io.github.ageofwar.telejam.json.JsonOutput;
+
+import java.io.IOException;
+
+/**
+ * Utility methods that write method parameters to a {@link JsonOutput},
+ * skipping the <code>null</code> values like {@link Maps} does.
+ *
+ * @author Michi Palazzo
+ */
+final class JsonParameters {
+  
+  private JsonParameters() {
+    throw new AssertionError();
+  }
+  
+  static void put(JsonOutput writer, String name, String value) throws IOException {
+    if (value != null) {
+      writer.name(name).value(value);
+    }
+  }
+  
+  static void put(JsonOutput writer, String name, Number value) throws IOException {
+    if (value != null) {
+      writer.name(name).value(value);
+    }
+  }
+  
+  static void put(JsonOutput writer, String name, Boolean value) throws IOException {
+    if (value != null) {
+      writer.name(name).value(value);
+    }
+  }
+  
+  static void put(JsonOutput writer, String name, Object value) throws IOException {
+    if (value != null) {
+      writer.name(name).value(value, value.getClass());
+    }
+  }
+  
+}
@@ -4,6 +4,7 @@ import io.github.ageofwar.telejam.chats.Chat;
 import io.github.ageofwar.telejam.users.User;
 
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -95,6 +96,11 @@ public class KickChatMember implements TelegramMethod<Boolean> {
     );
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Class<Boolean> getReturnType() {
     return Boolean.class;
@@ -5,6 +5,7 @@ import io.github.ageofwar.telejam.chats.ChatPermissions;
 import io.github.ageofwar.telejam.users.User;
 
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -107,6 +108,11 @@ public class RestrictChatMember implements TelegramMethod<Boolean> {
     );
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Class<Boolean> getReturnType() {
     return Boolean.class;
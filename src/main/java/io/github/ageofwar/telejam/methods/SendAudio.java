@@ -7,6 +7,7 @@ import io.github.ageofwar.telejam.chats.Chat;
 import io.github.ageofwar.telejam.text.Text;
 
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -200,6 +201,11 @@ public class SendAudio implements TelegramMethod<AudioMessage> {
     return mapOf(AUDIO_FIELD, newAudio);
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Class<? extends AudioMessage> getReturnType() {
     return AudioMessage.class;
@@ -7,6 +7,7 @@ import io.github.ageofwar.telejam.chats.Chat;
 
 
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -173,6 +174,11 @@ public class SendContact implements TelegramMethod<ContactMessage> {
     );
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Class<? extends ContactMessage> getReturnType() {
     return ContactMessage.class;
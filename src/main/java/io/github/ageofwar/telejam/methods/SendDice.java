@@ -8,6 +8,7 @@ import io.github.ageofwar.telejam.messages.Message;
 import io.github.ageofwar.telejam.replymarkups.ReplyMarkup;
 
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -100,6 +101,11 @@ public class SendDice implements TelegramMethod<DiceMessage> {
     );
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.empty();
+  }
+  
   @Override
   public Class<? extends DiceMessage> getReturnType() {
     return DiceMessage.class;
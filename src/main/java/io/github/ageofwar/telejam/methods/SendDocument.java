@@ -8,6 +8,7 @@ import io.github.ageofwar.telejam.chats.Chat;
 import io.github.ageofwar.telejam.text.Text;
 
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -162,6 +163,11 @@ public class SendDocument implements TelegramMethod<DocumentMessage> {
     return mapOf(FILE_FIELD, newFile);
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Class<? extends DocumentMessage> getReturnType() {
     return DocumentMessage.class;
@@ -6,6 +6,7 @@ import io.github.ageofwar.telejam.replymarkups.InlineKeyboardMarkup;
 import io.github.ageofwar.telejam.messages.Message;
 
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -111,6 +112,11 @@ public class SendGame implements TelegramMethod<GameMessage> {
     );
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.empty();
+  }
+  
   @Override
   public Class<? extends GameMessage> getReturnType() {
     return GameMessage.class;
@@ -8,6 +8,7 @@ import io.github.ageofwar.telejam.messages.InvoiceMessage;
 import io.github.ageofwar.telejam.payments.LabeledPrice;
 
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -340,6 +341,11 @@ public class SendInvoice implements TelegramMethod<InvoiceMessage> {
     );
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.empty();
+  }
+  
   @Override
   public Class<? extends InvoiceMessage> getReturnType() {
     return InvoiceMessage.class;
@@ -6,6 +6,7 @@ import io.github.ageofwar.telejam.messages.*;
 import io.github.ageofwar.telejam.chats.Chat;
 
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -153,6 +154,11 @@ public class SendLocation implements TelegramMethod<LocationMessage> {
     );
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Class<? extends LocationMessage> getReturnType() {
     return LocationMessage.class;
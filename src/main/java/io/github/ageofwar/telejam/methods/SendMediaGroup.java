@@ -7,6 +7,7 @@ import io.github.ageofwar.telejam.connection.UploadFile;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -121,6 +122,11 @@ public class SendMediaGroup implements TelegramMethod<Message[]> {
     return files;
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Class<? extends Message[]> getReturnType() {
     return Message[].class;
@@ -1,13 +1,17 @@
 package io.github.ageofwar.telejam.methods;
 
 import io.github.ageofwar.telejam.chats.Chat;
+import io.github.ageofwar.telejam.json.JsonOutput;
 import io.github.ageofwar.telejam.messages.Message;
 import io.github.ageofwar.telejam.replymarkups.ReplyMarkup;
 import io.github.ageofwar.telejam.messages.TextMessage;
 import io.github.ageofwar.telejam.text.Text;
 
+import java.io.IOException;
 import java.util.Map;
+import java.util.Optional;
 
+import static io.github.ageofwar.telejam.methods.JsonParameters.put;
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
 /**
@@ -147,6 +151,28 @@ public class SendMessage implements TelegramMethod<TextMessage> {
     );
   }
   
+  @Override
+  public void writeParameters(JsonOutput writer) throws IOException {
+    writer.beginObject();
+    if (chatId != null) {
+      put(writer, CHAT_ID_FIELD, chatId);
+    } else {
+      put(writer, CHAT_ID_FIELD, chatUsername);
+    }
+    put(writer, TEXT_FIELD, text.toHtmlString());
+    put(writer, PARSE_MODE_FIELD, "HTML");
+    put(writer, DISABLE_NOTIFICATION_FIELD, disableNotification);
+    put(writer, REPLY_TO_MESSAGE_ID_FIELD, replyToMessageId);
+    put(writer, REPLY_MARKUP_FIELD, replyMarkup);
+    put(writer, DISABLE_WEB_PAGE_PREVIEW_FIELD, disableWebPagePreview);
+    writer.endObject();
+  }
+  
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Class<? extends TextMessage> getReturnType() {
     return TextMessage.class;
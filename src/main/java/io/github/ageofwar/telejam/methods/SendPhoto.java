@@ -7,6 +7,7 @@ import io.github.ageofwar.telejam.chats.Chat;
 import io.github.ageofwar.telejam.text.Text;
 
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -156,6 +157,11 @@ public class SendPhoto implements TelegramMethod<PhotoMessage> {
     return mapOf(PHOTO_FIELD, newPhoto);
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Class<? extends PhotoMessage> getReturnType() {
     return PhotoMessage.class;
@@ -6,6 +6,7 @@ import io.github.ageofwar.telejam.messages.PollMessage;
 import io.github.ageofwar.telejam.replymarkups.ReplyMarkup;
 
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -211,6 +212,11 @@ public class SendPoll implements TelegramMethod<PollMessage> {
     );
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Class<? extends PollMessage> getReturnType() {
     return PollMessage.class;
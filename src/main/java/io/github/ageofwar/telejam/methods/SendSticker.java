@@ -7,6 +7,7 @@ import io.github.ageofwar.telejam.chats.Chat;
 
 
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -140,6 +141,11 @@ public class SendSticker implements TelegramMethod<StickerMessage> {
     return mapOf(STICKER_FIELD, newSticker);
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Class<? extends StickerMessage> getReturnType() {
     return StickerMessage.class;
@@ -8,6 +8,7 @@ import io.github.ageofwar.telejam.chats.Chat;
 
 
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -200,6 +201,11 @@ public class SendVenue implements TelegramMethod<VenueMessage> {
     );
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Class<? extends VenueMessage> getReturnType() {
     return VenueMessage.class;
@@ -7,6 +7,7 @@ import io.github.ageofwar.telejam.chats.Chat;
 import io.github.ageofwar.telejam.text.Text;
 
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -204,6 +205,11 @@ public class SendVideo implements TelegramMethod<VideoMessage> {
     return mapOf(VIDEO_FIELD, newVideo);
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Class<? extends VideoMessage> getReturnType() {
     return VideoMessage.class;
@@ -6,6 +6,7 @@ import io.github.ageofwar.telejam.messages.*;
 import io.github.ageofwar.telejam.chats.Chat;
 
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -164,6 +165,11 @@ public class SendVideoNote implements TelegramMethod<VideoNoteMessage> {
     return mapOf(VIDEO_FIELD, newVideo);
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Class<? extends VideoNoteMessage> getReturnType() {
     return VideoNoteMessage.class;
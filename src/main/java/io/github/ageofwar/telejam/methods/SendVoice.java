@@ -8,6 +8,7 @@ import io.github.ageofwar.telejam.chats.Chat;
 import io.github.ageofwar.telejam.text.Text;
 
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -178,6 +179,11 @@ public class SendVoice implements TelegramMethod<VoiceMessage> {
     return mapOf(VOICE_FIELD, newVoice);
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Class<? extends VoiceMessage> getReturnType() {
     return VoiceMessage.class;
@@ -5,6 +5,7 @@ import io.github.ageofwar.telejam.users.User;
 
 import java.lang.reflect.Type;
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -89,6 +90,11 @@ public class SetChatAdministratorCustomTitle implements TelegramMethod<Boolean>
     );
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Type getReturnType() {
     return Boolean.class;
@@ -5,6 +5,7 @@ import io.github.ageofwar.telejam.chats.ChatPermissions;
 
 import java.lang.reflect.Type;
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -66,6 +67,11 @@ public class SetChatPermissions implements TelegramMethod<Boolean> {
     );
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Type getReturnType() {
     return Boolean.class;
@@ -8,6 +8,7 @@ import io.github.ageofwar.telejam.users.User;
 
 import java.io.Serializable;
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -153,6 +154,11 @@ public class SetGameScore implements TelegramMethod<Serializable> {
     );
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.empty();
+  }
+  
   @Override
   public Class<? extends Serializable> getReturnType() {
     return inlineMessageId == null ? GameMessage.class : Boolean.class;
@@ -28,6 +28,7 @@ public class SetWebhook implements TelegramMethod<Boolean> {
   static final String CERTIFICATE_FIELD = "certificate";
   static final String MAX_CONNECTIONS_FIELD = "max_connections";
   static final String ALLOWED_UPDATES_FIELD = "allowed_updates";
+  static final String SECRET_TOKEN_FIELD = "secret_token";
 
   /**
    * HTTPS url to send updates to.
@@ -62,6 +63,13 @@ public class SetWebhook implements TelegramMethod<Boolean> {
    */
   private String[] allowedUpdates;
 
+  /**
+   * A secret token to be sent in the header "X-Telegram-Bot-Api-Secret-Token"
+   * in every webhook request, 1-256 characters.
+   * Only characters A-Z, a-z, 0-9, _ and - are allowed.
+   */
+  private String secretToken;
+
 
   public SetWebhook url(String url) {
     this.url = url;
@@ -83,6 +91,11 @@ public class SetWebhook implements TelegramMethod<Boolean> {
     return this;
   }
 
+  public SetWebhook secretToken(String secretToken) {
+    this.secretToken = secretToken;
+    return this;
+  }
+
   @Override
   public String getName() {
     return NAME;
@@ -93,7 +106,8 @@ public class SetWebhook implements TelegramMethod<Boolean> {
     return mapOf(
         URL_FIELD, url,
         MAX_CONNECTIONS_FIELD, maxConnections,
-        ALLOWED_UPDATES_FIELD, allowedUpdates
+        ALLOWED_UPDATES_FIELD, allowedUpdates,
+        SECRET_TOKEN_FIELD, secretToken
     );
   }
   
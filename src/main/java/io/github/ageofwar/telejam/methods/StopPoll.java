@@ -6,6 +6,7 @@ import io.github.ageofwar.telejam.messages.Poll;
 import io.github.ageofwar.telejam.replymarkups.ReplyMarkup;
 
 import java.util.Map;
+import java.util.Optional;
 
 import static io.github.ageofwar.telejam.methods.Maps.mapOf;
 
@@ -92,6 +93,11 @@ public class StopPoll implements TelegramMethod<Poll> {
     );
   }
   
+  @Override
+  public Optional<String> getChatId() {
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.ofNullable(chatUsername);
+  }
+  
   @Override
   public Class<? extends Poll> getReturnType() {
     return Poll.class;
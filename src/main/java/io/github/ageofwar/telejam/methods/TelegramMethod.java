@@ -1,11 +1,17 @@
 package io.github.ageofwar.telejam.methods;
 
 import io.github.ageofwar.telejam.connection.UploadFile;
+import io.github.ageofwar.telejam.json.JsonOutput;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.lang.reflect.Type;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.Map;
+import java.util.Optional;
+
+import static io.github.ageofwar.telejam.json.Json.genericTypeOf;
 
 /**
  * A method of Telegram Bots API.
@@ -28,6 +34,19 @@ public interface TelegramMethod<T extends Serializable> {
    * @return the parameters of the method
    */
   Map<String, Object> getParameters();
+  
+  /**
+   * Writes the parameters of the method as a JSON object to the specified writer.
+   * The default implementation serializes the map returned by {@link #getParameters()};
+   * methods that are invoked often can override it to write their fields directly,
+   * without creating the intermediate map.
+   *
+   * @param writer the writer
+   * @throws IOException if an I/O error occurs
+   */
+  default void writeParameters(JsonOutput writer) throws IOException {
+    writer.value(getParameters(), genericTypeOf(Map.class, String.class, Object.class));
+  }
 
   /**
    * Returns the return type of the method.
@@ -44,5 +63,31 @@ public interface TelegramMethod<T extends Serializable> {
   default Map<String, UploadFile> getFiles() {
     return Collections.emptyMap();
   }
+  
+  /**
+   * Returns the unique identifier or the username of the chat the method acts on.
+   * The default implementation looks up the <code>chat_id</code> parameter in the map
+   * returned by {@link #getParameters()}; methods that are invoked often can override it
+   * to return their field directly.
+   *
+   * @return the identifier or the username of the chat of the method, or an empty
+   * optional if the method does not act on a chat
+   */
+  default Optional<String> getChatId() {
+    Object chatId = getParameters().get("chat_id");
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.empty();
+  }
+  
+  /**
+   * Returns the maximum time to wait for the response of the method, from when the
+   * request has been sent until the whole response has been received: a response
+   * received too slowly is aborted even if data keeps arriving.
+   * If empty, the default read timeout of the transport is used.
+   *
+   * @return the timeout of the method invocation
+   */
+  default Optional<Duration> getRequestTimeout() {
+    return Optional.empty();
+  }
 
 }
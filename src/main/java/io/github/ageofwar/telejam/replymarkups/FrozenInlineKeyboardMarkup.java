@@ -0,0 +1,207 @@
+package io.github.ageofwar.telejam.replymarkups;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.internal.Streams;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import io.github.ageofwar.telejam.inline.InlineKeyboardButton;
+import io.github.ageofwar.telejam.json.Json;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable inline keyboard that is serialized only once.
+ * Its Json representation is written verbatim in the body of the methods that contain it,
+ * so that sending the same keyboard many times does not serialize it again.
+ * <p>
+ * Frozen keyboards are cached by content: freezing a keyboard equal to one frozen recently
+ * returns the same instance, so that identical keyboards sent to many chats share
+ * a single serialized copy.
+ *
+ * @author Michi Palazzo
+ */
+@JsonAdapter(FrozenInlineKeyboardMarkup.Adapter.class)
+public final class FrozenInlineKeyboardMarkup extends InlineKeyboardMarkup {
+  
+  /**
+   * Maximum number of frozen keyboards cached.
+   */
+  public static final int CACHE_SIZE = 1024;
+  
+  private static final Map<Key, FrozenInlineKeyboardMarkup> CACHE = Collections.synchronizedMap(
+      new LinkedHashMap<Key, FrozenInlineKeyboardMarkup>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, FrozenInlineKeyboardMarkup> eldest) {
+          return size() > CACHE_SIZE;
+        }
+      }
+  );
+  
+  /**
+   * Json representation of the keyboard.
+   */
+  private transient String json;
+  
+  private FrozenInlineKeyboardMarkup(InlineKeyboardButton[][] inlineKeyboard, String json) {
+    super(inlineKeyboard);
+    this.json = json;
+  }
+  
+  /**
+   * Returns the frozen form of the specified keyboard.
+   *
+   * @param markup the keyboard to freeze
+   * @return the frozen keyboard
+   */
+  public static FrozenInlineKeyboardMarkup of(InlineKeyboardMarkup markup) {
+    if (markup instanceof FrozenInlineKeyboardMarkup) {
+      return (FrozenInlineKeyboardMarkup) markup;
+    }
+    Key key = new Key(copy(markup.getInlineKeyboard()));
+    FrozenInlineKeyboardMarkup frozen = CACHE.get(key);
+    if (frozen == null) {
+      String json = Json.toJson(new InlineKeyboardMarkup(key.inlineKeyboard));
+      frozen = new FrozenInlineKeyboardMarkup(key.inlineKeyboard, json);
+      CACHE.put(key, frozen);
+    }
+    return frozen;
+  }
+  
+  /**
+   * Returns the frozen form of a keyboard.
+   *
+   * @param inlineKeyboard the buttons of the keyboard
+   * @return the frozen keyboard
+   */
+  public static FrozenInlineKeyboardMarkup of(InlineKeyboardButton[][] inlineKeyboard) {
+    return of(new InlineKeyboardMarkup(inlineKeyboard));
+  }
+  
+  /**
+   * Returns the number of frozen keyboards cached.
+   *
+   * @return the size of the cache
+   */
+  public static int getCachedKeyboards() {
+    return CACHE.size();
+  }
+  
+  /**
+   * Returns a copy of the buttons of this keyboard.
+   *
+   * @return the buttons of this keyboard
+   */
+  @Override
+  public InlineKeyboardButton[][] getInlineKeyboard() {
+    return copy(super.getInlineKeyboard());
+  }
+  
+  /**
+   * Returns the Json representation of this keyboard.
+   *
+   * @return the Json representation of this keyboard
+   */
+  public String toJson() {
+    String json = this.json;
+    if (json == null) {
+      json = Json.toJson(new InlineKeyboardMarkup(super.getInlineKeyboard()));
+      this.json = json;
+    }
+    return json;
+  }
+  
+  private static InlineKeyboardButton[][] copy(InlineKeyboardButton[][] inlineKeyboard) {
+    InlineKeyboardButton[][] copy = new InlineKeyboardButton[inlineKeyboard.length][];
+    for (int i = 0; i < inlineKeyboard.length; i++) {
+      copy[i] = inlineKeyboard[i].clone();
+    }
+    return copy;
+  }
+  
+  /**
+   * Key of the cache, that considers two keyboards equal only if their
+   * buttons are equal and of the same class.
+   */
+  private static final class Key {
+    
+    private final InlineKeyboardButton[][] inlineKeyboard;
+    private final int hashCode;
+    
+    private Key(InlineKeyboardButton[][] inlineKeyboard) {
+      this.inlineKeyboard = inlineKeyboard;
+      int hashCode = 1;
+      for (InlineKeyboardButton[] row : inlineKeyboard) {
+        hashCode = 31 * hashCode + row.length;
+        for (InlineKeyboardButton button : row) {
+          hashCode = 31 * hashCode + button.getClass().hashCode();
+          hashCode = 31 * hashCode + button.hashCode();
+        }
+      }
+      this.hashCode = hashCode;
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) obj;
+      if (hashCode != key.hashCode || inlineKeyboard.length != key.inlineKeyboard.length) {
+        return false;
+      }
+      for (int i = 0; i < inlineKeyboard.length; i++) {
+        InlineKeyboardButton[] row = inlineKeyboard[i];
+        InlineKeyboardButton[] otherRow = key.inlineKeyboard[i];
+        if (row.length != otherRow.length) {
+          return false;
+        }
+        for (int j = 0; j < row.length; j++) {
+          if (row[j].getClass() != otherRow[j].getClass() || !row[j].equals(otherRow[j])) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+    
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+    
+  }
+  
+  /**
+   * Adapter that writes the Json representation of a frozen keyboard verbatim.
+   */
+  static final class Adapter extends TypeAdapter<FrozenInlineKeyboardMarkup> {
+    
+    @Override
+    public void write(JsonWriter out, FrozenInlineKeyboardMarkup value) throws IOException {
+      if (value == null) {
+        out.nullValue();
+      } else if (out.getClass() == JsonWriter.class) {
+        out.jsonValue(value.toJson());
+      } else {
+        Streams.write(new JsonParser().parse(value.toJson()), out);
+      }
+    }
+    
+    @Override
+    public FrozenInlineKeyboardMarkup read(JsonReader in) throws IOException {
+      JsonElement json = Streams.parse(in);
+      return json.isJsonNull() ? null : of(Json.fromJson(json.toString(), InlineKeyboardMarkup.class));
+    }
+    
+  }
+  
+}
@@ -3,15 +3,18 @@ package io.github.ageofwar.telejam.updates;
 import com.google.gson.annotations.SerializedName;
 import io.github.ageofwar.telejam.messages.PollAnswer;
 
+import java.util.Objects;
+
 public class PollAnswerUpdate extends Update {
   
   static final String POLL_ANSWER_FIELD = "poll_answer";
   
   @SerializedName(POLL_ANSWER_FIELD)
-  private PollAnswer pollAnswer;
+  private final PollAnswer pollAnswer;
   
   public PollAnswerUpdate(long id, PollAnswer pollAnswer) {
     super(id);
+    this.pollAnswer = Objects.requireNonNull(pollAnswer);
   }
   
   public PollAnswer getPollAnswer() {
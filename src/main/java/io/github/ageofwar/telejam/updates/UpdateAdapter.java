@@ -1,57 +1,164 @@
 package io.github.ageofwar.telejam.updates;
 
-import com.google.gson.*;
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import io.github.ageofwar.telejam.callbacks.CallbackQuery;
+import io.github.ageofwar.telejam.inline.ChosenInlineResult;
+import io.github.ageofwar.telejam.inline.InlineQuery;
+import io.github.ageofwar.telejam.messages.Message;
+import io.github.ageofwar.telejam.messages.Poll;
 import io.github.ageofwar.telejam.messages.PollAnswer;
+import io.github.ageofwar.telejam.payments.PreCheckoutQuery;
+import io.github.ageofwar.telejam.payments.ShippingQuery;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
 
 /**
  * JSON Adapter for class {@link Update}.
+ * Updates are decoded in a single pass: the type of the update is looked up
+ * by the name of its field, and the content of the field is read directly
+ * from the stream.
  *
  * @author Michi Palazzo
  */
-public final class UpdateAdapter implements JsonDeserializer<Update>, JsonSerializer<Update> {
+public final class UpdateAdapter implements TypeAdapterFactory {
   
   public static final UpdateAdapter INSTANCE = new UpdateAdapter();
   
+  private static final Map<String, UpdateType<?>> UPDATE_TYPES = new HashMap<>();
+  private static final Map<Class<? extends Update>, String> UPDATE_FIELDS = new HashMap<>();
+  
+  static {
+    register(MessageUpdate.MESSAGE_FIELD, MessageUpdate.class, Message.class, MessageUpdate::new);
+    register(EditedMessageUpdate.EDITED_MESSAGE_FIELD, EditedMessageUpdate.class, Message.class, EditedMessageUpdate::new);
+    register(ChannelPostUpdate.CHANNEL_POST_FIELD, ChannelPostUpdate.class, Message.class, ChannelPostUpdate::new);
+    register(EditedChannelPostUpdate.EDITED_CHANNEL_POST_FIELD, EditedChannelPostUpdate.class, Message.class, EditedChannelPostUpdate::new);
+    register(InlineQueryUpdate.INLINE_QUERY_FIELD, InlineQueryUpdate.class, InlineQuery.class, InlineQueryUpdate::new);
+    register(ChosenInlineResultUpdate.CHOSEN_INLINE_RESULT_FIELD, ChosenInlineResultUpdate.class, ChosenInlineResult.class, ChosenInlineResultUpdate::new);
+    register(CallbackQueryUpdate.CALLBACK_QUERY_FIELD, CallbackQueryUpdate.class, CallbackQuery.class, CallbackQueryUpdate::new);
+    register(ShippingQueryUpdate.SHIPPING_QUERY_FIELD, ShippingQueryUpdate.class, ShippingQuery.class, ShippingQueryUpdate::new);
+    register(PreCheckoutQueryUpdate.PRE_CHECKOUT_QUERY_FIELD, PreCheckoutQueryUpdate.class, PreCheckoutQuery.class, PreCheckoutQueryUpdate::new);
+    register(PollUpdate.POLL_FIELD, PollUpdate.class, Poll.class, PollUpdate::new);
+    register(PollAnswerUpdate.POLL_ANSWER_FIELD, PollAnswerUpdate.class, PollAnswer.class, PollAnswerUpdate::new);
+  }
+  
   private UpdateAdapter() {
   }
   
   @Override
-  public Update deserialize(JsonElement src, Type type, JsonDeserializationContext context) throws JsonParseException {
-    JsonObject object = src.getAsJsonObject();
-    if (object.has(MessageUpdate.MESSAGE_FIELD)) {
-      return context.deserialize(src, MessageUpdate.class);
-    } else if (object.has(EditedMessageUpdate.EDITED_MESSAGE_FIELD)) {
-      return context.deserialize(src, EditedMessageUpdate.class);
-    } else if (object.has(ChannelPostUpdate.CHANNEL_POST_FIELD)) {
-      return context.deserialize(src, ChannelPostUpdate.class);
-    } else if (object.has(EditedChannelPostUpdate.EDITED_CHANNEL_POST_FIELD)) {
-      return context.deserialize(src, EditedChannelPostUpdate.class);
-    } else if (object.has(InlineQueryUpdate.INLINE_QUERY_FIELD)) {
-      return context.deserialize(src, InlineQueryUpdate.class);
-    } else if (object.has(ChosenInlineResultUpdate.CHOSEN_INLINE_RESULT_FIELD)) {
-      return context.deserialize(src, ChosenInlineResultUpdate.class);
-    } else if (object.has(CallbackQueryUpdate.CALLBACK_QUERY_FIELD)) {
-      return context.deserialize(src, CallbackQueryUpdate.class);
-    } else if (object.has(ShippingQueryUpdate.SHIPPING_QUERY_FIELD)) {
-      return context.deserialize(src, ShippingQueryUpdate.class);
-    } else if (object.has(PreCheckoutQueryUpdate.PRE_CHECKOUT_QUERY_FIELD)) {
-      return context.deserialize(src, PreCheckoutQueryUpdate.class);
-    } else if (object.has(PollUpdate.POLL_FIELD)) {
-      return context.deserialize(src, PollUpdate.class);
-    } else if (object.has(PollAnswerUpdate.POLL_ANSWER_FIELD)) {
-      return context.deserialize(src, PollAnswer.class);
+  @SuppressWarnings("unchecked")
+  public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+    if (type.getRawType() != Update.class) {
+      return null;
     }
-    return new Update(
-        context.deserialize(object.get(Update.ID_FIELD), Long.class)
-    ) {
-    };
+    return (TypeAdapter<T>) new Adapter(gson);
   }
   
-  @Override
-  public JsonElement serialize(Update update, Type type, JsonSerializationContext context) {
-    return context.serialize(update, update.getClass());
+  /**
+   * Returns the name of the field that contains the value of the updates
+   * of the specified type, as used in the allowed updates of
+   * {@link io.github.ageofwar.telejam.methods.GetUpdates} and
+   * {@link io.github.ageofwar.telejam.methods.SetWebhook}.
+   *
+   * @param updateType the type of the updates
+   * @return the name of the field of the updates, or an empty optional if the type is unknown
+   */
+  public static Optional<String> getField(Class<? extends Update> updateType) {
+    return Optional.ofNullable(UPDATE_FIELDS.get(updateType));
+  }
+  
+  private static <T> void register(String field,
+                                   Class<? extends Update> updateType,
+                                   Class<T> valueType,
+                                   UpdateConstructor<T> constructor) {
+    UPDATE_TYPES.put(field, new UpdateType<>(valueType, constructor));
+    UPDATE_FIELDS.put(updateType, field);
+  }
+  
+  private static final class Adapter extends TypeAdapter<Update> {
+    
+    private final Gson gson;
+    private final Map<String, TypeAdapter<?>> valueAdapters = new HashMap<>();
+    
+    private Adapter(Gson gson) {
+      this.gson = gson;
+      for (Map.Entry<String, UpdateType<?>> entry : UPDATE_TYPES.entrySet()) {
+        valueAdapters.put(entry.getKey(), gson.getAdapter(entry.getValue().valueType));
+      }
+    }
+    
+    @Override
+    public Update read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      long id = 0;
+      String updateField = null;
+      Object value = null;
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        TypeAdapter<?> valueAdapter;
+        if (Update.ID_FIELD.equals(name)) {
+          id = in.nextLong();
+        } else if (updateField == null && (valueAdapter = valueAdapters.get(name)) != null) {
+          updateField = name;
+          value = valueAdapter.read(in);
+        } else {
+          in.skipValue();
+        }
+      }
+      in.endObject();
+      if (value == null) {
+        return new Update(id) {
+        };
+      }
+      return UPDATE_TYPES.get(updateField).newUpdate(id, value);
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public void write(JsonWriter out, Update update) throws IOException {
+      if (update == null) {
+        out.nullValue();
+        return;
+      }
+      TypeAdapter<Update> adapter = (TypeAdapter<Update>) gson.getAdapter(update.getClass());
+      adapter.write(out, update);
+    }
+    
+  }
+  
+  private static final class UpdateType<T> {
+    
+    private final Class<T> valueType;
+    private final UpdateConstructor<T> constructor;
+    
+    private UpdateType(Class<T> valueType, UpdateConstructor<T> constructor) {
+      this.valueType = valueType;
+      this.constructor = constructor;
+    }
+    
+    private Update newUpdate(long id, Object value) {
+      return constructor.newUpdate(id, valueType.cast(value));
+    }
+    
+  }
+  
+  @FunctionalInterface
+  private interface UpdateConstructor<T> {
+    
+    Update newUpdate(long id, T value);
+    
   }
   
 }
@@ -1,7 +1,7 @@
 package io.github.ageofwar.telejam.updates;
 
 import io.github.ageofwar.telejam.Bot;
-import io.github.ageofwar.telejam.TelegramException;
+import io.github.ageofwar.telejam.json.JsonSyntaxException;
 import io.github.ageofwar.telejam.methods.GetUpdates;
 
 import java.io.IOException;
@@ -9,34 +9,115 @@ import java.util.Collections;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.LongUnaryOperator;
+import java.util.function.Supplier;
 
 /**
  * Utility class that reads new updates received from a bot.
+ * Updates are received using long polling: when there are no new updates,
+ * Telegram holds the request open until an update arrives or the timeout expires.
+ * <p>
+ * If a buffer size is specified, the reader prefetches updates in a background thread:
+ * the next request is sent while the updates already received are being handled.
+ * When the buffer is full, no more requests are sent until some updates are read.
+ * Note that prefetched updates are confirmed to Telegram before being read, so
+ * updates still buffered when the reader is closed are lost.
+ * <p>
+ * When the received updates cannot be decoded, the first of them is skipped, so that
+ * the reader does not request the same malformed update forever. After any other error,
+ * the same updates are requested again.
  *
  * @author Michi Palazzo
  */
 public final class UpdateReader implements AutoCloseable {
   
+  /**
+   * Default long polling timeout, in seconds.
+   */
+  public static final int DEFAULT_TIMEOUT = 30;
+  
+  /**
+   * Default maximum number of updates retrieved with one request.
+   */
+  public static final int DEFAULT_LIMIT = 100;
+  
   private final Bot bot;
   private final ConcurrentLinkedQueue<Update> updates;
+  private final int timeout;
+  private final int limit;
+  private final int bufferSize;
   private final LongUnaryOperator backOff;
-  private long lastUpdateId;
+  private final Object monitor;
+  private volatile Supplier<String[]> allowedUpdates;
+  private volatile long lastUpdateId;
+  private long failures;
+  private Thread prefetcher;
+  private Throwable prefetchFailure;
   
   /**
    * Constructs an UpdateReader.
+   * If the timeout is zero, short polling is used: when there are no new updates,
+   * the reader waits for the back off before sending another request.
+   * If the buffer size is positive, updates are prefetched in a background thread
+   * and at most <code>bufferSize</code> updates are kept in memory.
    *
-   * @param bot     the bot that receive updates
-   * @param backOff back off to be used when long polling fails
+   * @param bot        the bot that receive updates
+   * @param timeout    timeout in seconds for long polling
+   * @param limit      maximum number of updates retrieved with one request, between 1 and 100
+   * @param bufferSize maximum number of prefetched updates, or zero to disable prefetching
+   * @param backOff    back off to be used after a request fails, given the number of
+   *                   consecutive failed attempts
    */
-  public UpdateReader(Bot bot, LongUnaryOperator backOff) {
+  public UpdateReader(Bot bot, int timeout, int limit, int bufferSize, LongUnaryOperator backOff) {
+    if (timeout < 0) {
+      throw new IllegalArgumentException("timeout must not be negative");
+    }
+    if (limit < 1 || limit > 100) {
+      throw new IllegalArgumentException("limit must be between 1 and 100");
+    }
+    if (bufferSize < 0) {
+      throw new IllegalArgumentException("bufferSize must not be negative");
+    }
     this.bot = Objects.requireNonNull(bot);
+    this.timeout = timeout;
+    this.limit = limit;
+    this.bufferSize = bufferSize;
     this.backOff = Objects.requireNonNull(backOff);
     updates = new ConcurrentLinkedQueue<>();
+    monitor = new Object();
+    allowedUpdates = () -> new String[0];
     lastUpdateId = -1;
   }
   
   /**
    * Constructs an UpdateReader.
+   * If the timeout is zero, short polling is used: when there are no new updates,
+   * the reader waits for the back off before sending another request.
+   *
+   * @param bot     the bot that receive updates
+   * @param timeout timeout in seconds for long polling
+   * @param limit   maximum number of updates retrieved with one request, between 1 and 100
+   * @param backOff back off to be used after a request fails, given the number of
+   *                consecutive failed attempts
+   */
+  public UpdateReader(Bot bot, int timeout, int limit, LongUnaryOperator backOff) {
+    this(bot, timeout, limit, 0, backOff);
+  }
+  
+  /**
+   * Constructs an UpdateReader that uses long polling with
+   * 30 seconds of timeout and retrieves up to 100 updates at once.
+   *
+   * @param bot     the bot that receive updates
+   * @param backOff back off to be used after a request fails, given the number of
+   *                consecutive failed attempts
+   */
+  public UpdateReader(Bot bot, LongUnaryOperator backOff) {
+    this(bot, DEFAULT_TIMEOUT, DEFAULT_LIMIT, backOff);
+  }
+  
+  /**
+   * Constructs an UpdateReader that uses long polling with
+   * 30 seconds of timeout and 500 milliseconds of back off.
    *
    * @param bot the bot that receive updates
    */
@@ -44,6 +125,18 @@ public final class UpdateReader implements AutoCloseable {
     this(bot, a -> 500L);
   }
   
+  /**
+   * Sets the types of the updates to receive, that are requested again before
+   * every request, so that they can change while updates are being read.
+   * An empty array makes Telegram send updates of all types.
+   *
+   * @param allowedUpdates the supplier of the names of the types of the updates to receive
+   * @see io.github.ageofwar.telejam.events.EventRegistry#getAllowedUpdates()
+   */
+  public void setAllowedUpdates(Supplier<String[]> allowedUpdates) {
+    this.allowedUpdates = Objects.requireNonNull(allowedUpdates);
+  }
+  
   /**
    * Returns the number of updates that can be read from this update reader without blocking by the
    * next invocation read method for this update reader. The next invocation
@@ -71,6 +164,9 @@ public final class UpdateReader implements AutoCloseable {
   
   /**
    * Reads one update from the stream.
+   * If the last request failed, waits for the back off before sending the next one.
+   * If prefetching is enabled, the first invocation starts the background thread and
+   * the exceptions thrown by the background requests are rethrown by this method.
    *
    * @return the read update
    * @throws IOException          if an I/O Exception occurs
@@ -78,9 +174,16 @@ public final class UpdateReader implements AutoCloseable {
    *                              thread while waiting for updates
    */
   public Update read() throws IOException, InterruptedException {
-    if (!ready()) {
-      for (long attempts = 0; getUpdates() == 0; attempts++) {
-        Thread.sleep(backOff.applyAsLong(attempts));
+    if (bufferSize > 0) {
+      return readPrefetched();
+    }
+    long emptyResponses = 0;
+    while (!ready()) {
+      if (failures > 0) {
+        Thread.sleep(backOff.applyAsLong(failures - 1));
+      }
+      if (getUpdates() == 0 && timeout == 0) {
+        Thread.sleep(backOff.applyAsLong(emptyResponses++));
       }
     }
     return updates.remove();
@@ -88,51 +191,154 @@ public final class UpdateReader implements AutoCloseable {
   
   /**
    * Retrieves new updates received from the bot.
+   * This method must not be used when prefetching is enabled.
    *
    * @return number of updates received
    * @throws IOException if an I/O Exception occurs
    */
   public int getUpdates() throws IOException {
-    try {
-      Update[] newUpdates = getUpdates(lastUpdateId + 1);
-      Collections.addAll(updates, newUpdates);
-      if (newUpdates.length > 0) {
-        lastUpdateId = newUpdates[newUpdates.length - 1].getId();
-      }
-      return newUpdates.length;
-    } catch (Throwable e) {
-      if (!(e instanceof TelegramException)) {
-        lastUpdateId++;
-      }
-      throw e;
-    }
+    Update[] newUpdates = fetch(limit);
+    enqueue(newUpdates);
+    return newUpdates.length;
   }
   
   /**
    * Discards buffered updates and all received updates.
+   * This method must be invoked before the first update is read
+   * when prefetching is enabled.
    *
    * @throws IOException if an I/O Exception occurs
    */
   public void discardAll() throws IOException {
-    Update[] newUpdate = getUpdates(-1);
+    synchronized (monitor) {
+      if (prefetcher != null) {
+        throw new IllegalStateException("Updates are being prefetched");
+      }
+    }
+    Update[] newUpdate = bot.execute(newGetUpdates(-1));
     if (newUpdate.length == 1) {
       lastUpdateId = newUpdate[0].getId();
     }
     updates.clear();
   }
   
-  private Update[] getUpdates(long offset) throws IOException {
-    GetUpdates getUpdates = new GetUpdates()
+  private Update readPrefetched() throws IOException, InterruptedException {
+    synchronized (monitor) {
+      if (prefetcher == null) {
+        prefetcher = new Thread(this::prefetch, "telejam-update-reader");
+        prefetcher.setDaemon(true);
+        prefetcher.start();
+      }
+      while (updates.isEmpty()) {
+        if (prefetchFailure != null) {
+          Throwable failure = prefetchFailure;
+          prefetchFailure = null;
+          if (failure instanceof IOException) {
+            throw (IOException) failure;
+          } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+          }
+          throw (Error) failure;
+        }
+        monitor.wait();
+      }
+      Update update = updates.remove();
+      monitor.notifyAll();
+      return update;
+    }
+  }
+  
+  private void prefetch() {
+    long emptyResponses = 0;
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        int capacity;
+        synchronized (monitor) {
+          while ((capacity = bufferSize - updates.size()) <= 0) {
+            monitor.wait();
+          }
+        }
+        if (failures > 0) {
+          Thread.sleep(backOff.applyAsLong(failures - 1));
+        }
+        Update[] newUpdates;
+        try {
+          newUpdates = fetch(Math.min(limit, capacity));
+        } catch (Throwable e) {
+          synchronized (monitor) {
+            prefetchFailure = e;
+            monitor.notifyAll();
+          }
+          continue;
+        }
+        synchronized (monitor) {
+          if (Thread.currentThread().isInterrupted()) {
+            return;
+          }
+          enqueue(newUpdates);
+          monitor.notifyAll();
+        }
+        if (newUpdates.length > 0) {
+          emptyResponses = 0;
+        } else if (timeout == 0) {
+          Thread.sleep(backOff.applyAsLong(emptyResponses++));
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+  
+  private Update[] fetch(int limit) throws IOException {
+    try {
+      Update[] newUpdates = bot.execute(newGetUpdates(lastUpdateId + 1).limit(limit).timeout(timeout));
+      failures = 0;
+      return newUpdates;
+    } catch (Throwable e) {
+      failures++;
+      if (isDecodeFailure(e)) {
+        // the update that cannot be decoded would be received again at every request
+        lastUpdateId++;
+      }
+      throw e;
+    }
+  }
+  
+  private static boolean isDecodeFailure(Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof JsonSyntaxException) {
+        return true;
+      }
+    }
+    return false;
+  }
+  
+  private void enqueue(Update[] newUpdates) {
+    Collections.addAll(updates, newUpdates);
+    if (newUpdates.length > 0) {
+      lastUpdateId = newUpdates[newUpdates.length - 1].getId();
+    }
+  }
+  
+  private GetUpdates newGetUpdates(long offset) {
+    return new GetUpdates()
         .offset(offset)
-        .allowedUpdates();
-    return bot.execute(getUpdates);
+        .allowedUpdates(allowedUpdates.get());
   }
   
   @Override
   public void close() throws IOException {
-    try {
+    long offset;
+    synchronized (monitor) {
+      if (prefetcher != null) {
+        prefetcher.interrupt();
+        prefetcher = null;
+      }
       Update nextUpdate = updates.peek();
-      getUpdates(nextUpdate != null ? nextUpdate.getId() : lastUpdateId + 1);
+      offset = nextUpdate != null ? nextUpdate.getId() : lastUpdateId + 1;
+    }
+    try {
+      bot.execute(newGetUpdates(offset));
       lastUpdateId = -1;
       updates.clear();
     } catch (IOException e) {
@@ -116,6 +116,26 @@ public class User implements TelegramObject {
     supportsInlineQueries = null;
   }
   
+  User(long id,
+       String firstName,
+       String lastName,
+       String username,
+       Locale locale,
+       boolean isBot,
+       Boolean canJoinGroups,
+       Boolean canReadAllGroupMessages,
+       Boolean supportsInlineQueries) {
+    this.id = id;
+    this.firstName = Objects.requireNonNull(firstName);
+    this.lastName = lastName;
+    this.username = username;
+    this.locale = locale;
+    this.isBot = isBot;
+    this.canJoinGroups = canJoinGroups;
+    this.canReadAllGroupMessages = canReadAllGroupMessages;
+    this.supportsInlineQueries = supportsInlineQueries;
+  }
+  
   
   /**
    * Getter for property {@link #id}.
@@ -211,6 +231,67 @@ public class User implements TelegramObject {
     return supportsInlineQueries;
   }
   
+  /**
+   * Returns whether the fields of this user are equal to the specified values.
+   *
+   * @return <code>true</code> if the fields are equal to the specified values
+   */
+  boolean hasFields(long id,
+                    String firstName,
+                    String lastName,
+                    String username,
+                    Locale locale,
+                    boolean isBot,
+                    Boolean canJoinGroups,
+                    Boolean canReadAllGroupMessages,
+                    Boolean supportsInlineQueries) {
+    return this.id == id &&
+        this.isBot == isBot &&
+        this.firstName.equals(firstName) &&
+        Objects.equals(this.lastName, lastName) &&
+        Objects.equals(this.username, username) &&
+        Objects.equals(this.locale, locale) &&
+        Objects.equals(this.canJoinGroups, canJoinGroups) &&
+        Objects.equals(this.canReadAllGroupMessages, canReadAllGroupMessages) &&
+        Objects.equals(this.supportsInlineQueries, supportsInlineQueries);
+  }
+  
+  /**
+   * Returns the locale of this user, or <code>null</code> if it is unknown.
+   *
+   * @return the locale of this user, or <code>null</code>
+   */
+  Locale localeOrNull() {
+    return locale;
+  }
+  
+  /**
+   * Returns the property {@link #canJoinGroups}, or <code>null</code> if this user is not a bot.
+   *
+   * @return the property {@link #canJoinGroups}, or <code>null</code>
+   */
+  Boolean canJoinGroupsOrNull() {
+    return canJoinGroups;
+  }
+  
+  /**
+   * Returns the property {@link #canReadAllGroupMessages}, or <code>null</code> if this user is not a bot.
+   *
+   * @return the property {@link #canReadAllGroupMessages}, or <code>null</code>
+   */
+  Boolean canReadAllGroupMessagesOrNull() {
+    return canReadAllGroupMessages;
+  }
+  
+  /**
+   * Returns the property {@link #supportsInlineQueries}, or <code>null</code> if this user is not a bot.
+   *
+   * @return the property {@link #supportsInlineQueries}, or <code>null</code>
+   */
+  Boolean supportsInlineQueriesOrNull() {
+    return supportsInlineQueries;
+  }
+  
   @Override
   public boolean equals(Object obj) {
     if (this == obj) {
@@ -0,0 +1,174 @@
+package io.github.ageofwar.telejam.users;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import io.github.ageofwar.telejam.InternTable;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * JSON Adapter for class {@link User}.
+ * Users are contained in almost every update, so they are decoded and encoded
+ * without reflection, calling the constructor directly.
+ * <p>
+ * When interning is enabled, decoded users are kept in an {@link InternTable}: a user
+ * whose fields are equal to the ones of the user with the same id in the table is not
+ * allocated again, and the user in the table is returned.
+ *
+ * @author Michi Palazzo
+ */
+public final class UserAdapter implements TypeAdapterFactory {
+  
+  public static final UserAdapter INSTANCE = new UserAdapter(0);
+  
+  private final InternTable<User> internTable;
+  
+  /**
+   * Constructs a UserAdapter.
+   *
+   * @param internCapacity maximum number of users kept, or <code>0</code> to disable interning
+   */
+  public UserAdapter(int internCapacity) {
+    internTable = internCapacity > 0 ? new InternTable<>(internCapacity, User::getId) : null;
+  }
+  
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+    if (type.getRawType() != User.class) {
+      return null;
+    }
+    return (TypeAdapter<T>) new Adapter(gson.getAdapter(Locale.class), internTable);
+  }
+  
+  private static final class Adapter extends TypeAdapter<User> {
+    
+    private final TypeAdapter<Locale> localeAdapter;
+    private final InternTable<User> internTable;
+    
+    private Adapter(TypeAdapter<Locale> localeAdapter, InternTable<User> internTable) {
+      this.localeAdapter = localeAdapter;
+      this.internTable = internTable;
+    }
+    
+    @Override
+    public User read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      long id = 0;
+      String firstName = null;
+      String lastName = null;
+      String username = null;
+      Locale locale = null;
+      boolean isBot = false;
+      Boolean canJoinGroups = null;
+      Boolean canReadAllGroupMessages = null;
+      Boolean supportsInlineQueries = null;
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        if (in.peek() == JsonToken.NULL) {
+          in.nextNull();
+          continue;
+        }
+        switch (name) {
+          case User.ID_FIELD:
+            id = in.nextLong();
+            break;
+          case User.FIRST_NAME_FIELD:
+            firstName = in.nextString();
+            break;
+          case User.LAST_NAME_FIELD:
+            lastName = in.nextString();
+            break;
+          case User.USERNAME_FIELD:
+            username = in.nextString();
+            break;
+          case User.LANGUAGE_CODE_FIELD:
+            locale = localeAdapter.read(in);
+            break;
+          case User.IS_BOT_FIELD:
+            isBot = in.nextBoolean();
+            break;
+          case User.CAN_JOIN_GROUPS_FIELD:
+            canJoinGroups = in.nextBoolean();
+            break;
+          case User.CAN_READ_ALL_GROUP_MESSAGES_FIELD:
+            canReadAllGroupMessages = in.nextBoolean();
+            break;
+          case User.SUPPORTS_INLINE_QUERIES_FIELD:
+            supportsInlineQueries = in.nextBoolean();
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      if (firstName == null) {
+        throw new JsonParseException("Missing field " + User.FIRST_NAME_FIELD);
+      }
+      if (internTable != null) {
+        User user = internTable.get(id);
+        if (user != null && user.hasFields(
+            id, firstName, lastName, username, locale, isBot,
+            canJoinGroups, canReadAllGroupMessages, supportsInlineQueries
+        )) {
+          return user;
+        }
+      }
+      User user = new User(
+          id, firstName, lastName, username, locale, isBot,
+          canJoinGroups, canReadAllGroupMessages, supportsInlineQueries
+      );
+      if (internTable != null) {
+        internTable.put(user);
+      }
+      return user;
+    }
+    
+    @Override
+    public void write(JsonWriter out, User user) throws IOException {
+      if (user == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      out.name(User.ID_FIELD).value(user.getId());
+      out.name(User.FIRST_NAME_FIELD).value(user.getFirstName());
+      writeField(out, User.LAST_NAME_FIELD, user.getLastName().orElse(null));
+      writeField(out, User.USERNAME_FIELD, user.getUsername().orElse(null));
+      if (user.localeOrNull() != null) {
+        out.name(User.LANGUAGE_CODE_FIELD);
+        localeAdapter.write(out, user.localeOrNull());
+      }
+      out.name(User.IS_BOT_FIELD).value(user.isBot());
+      writeField(out, User.CAN_JOIN_GROUPS_FIELD, user.canJoinGroupsOrNull());
+      writeField(out, User.CAN_READ_ALL_GROUP_MESSAGES_FIELD, user.canReadAllGroupMessagesOrNull());
+      writeField(out, User.SUPPORTS_INLINE_QUERIES_FIELD, user.supportsInlineQueriesOrNull());
+      out.endObject();
+    }
+    
+    private static void writeField(JsonWriter out, String name, String value) throws IOException {
+      if (value != null) {
+        out.name(name).value(value);
+      }
+    }
+    
+    private static void writeField(JsonWriter out, String name, Boolean value) throws IOException {
+      if (value != null) {
+        out.name(name).value(value);
+      }
+    }
+    
+  }
+  
+}
@@ -0,0 +1,44 @@
+package io.github.ageofwar.telejam;
+
+import io.github.ageofwar.telejam.connection.Transport;
+import io.github.ageofwar.telejam.methods.GetMe;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+public final class BotFixture {
+  
+  public static final String GET_ME = "{\"ok\":true,\"result\":{\"id\":1,\"first_name\":\"Bot\",\"username\":\"bot\",\"is_bot\":true}}";
+  public static final String TRUE = "{\"ok\":true,\"result\":true}";
+  public static final String MESSAGE = "{\"ok\":true,\"result\":{\"message_id\":1,\"date\":0,\"text\":\"hi\"," +
+      "\"chat\":{\"id\":1,\"first_name\":\"User\",\"type\":\"private\"}}}";
+  
+  private BotFixture() {
+  }
+  
+  /**
+   * Creates a bot that answers getMe by itself and sends the other methods to the specified transport.
+   */
+  public static Bot newBot(Transport transport) throws IOException {
+    return Bot.fromApiUrl("http://localhost/bot", "http://localhost/file", (url, method) -> {
+      if (method.getName().equals(GetMe.NAME)) {
+        return response(GET_ME);
+      }
+      return transport.post(url, method);
+    });
+  }
+  
+  /**
+   * Creates a bot whose methods, other than getMe, always return <code>true</code>.
+   */
+  public static Bot newBot() throws IOException {
+    return newBot((url, method) -> response(TRUE));
+  }
+  
+  public static InputStream response(String json) {
+    return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+  }
+  
+}
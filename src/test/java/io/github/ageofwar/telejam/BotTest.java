@@ -0,0 +1,59 @@
+package io.github.ageofwar.telejam;
+
+import io.github.ageofwar.telejam.methods.SendMessage;
+import io.github.ageofwar.telejam.methods.TelegramMethod;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.ageofwar.telejam.BotFixture.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BotTest {
+  
+  private static final String NOT_FOUND = "{\"ok\":false,\"error_code\":400," +
+      "\"description\":\"Bad Request: chat not found\"}";
+  
+  @Test
+  public void reportsTimeOfEveryInvocation() throws Exception {
+    Bot bot = newBot((url, method) -> {
+      if (method.getChatId().get().equals("2")) {
+        return response(NOT_FOUND);
+      }
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        throw new AssertionError(e);
+      }
+      return response(MESSAGE);
+    });
+    List<TelegramMethod<?>> methods = Collections.synchronizedList(new ArrayList<>());
+    List<Duration> transferTimes = Collections.synchronizedList(new ArrayList<>());
+    bot.setInvocationListener((method, transferTime, decodeTime) -> {
+      methods.add(method);
+      transferTimes.add(transferTime);
+      assertTrue(!decodeTime.isNegative());
+    });
+    long decodedResults = bot.getDecodedResults();
+    SendMessage first = new SendMessage().chat(1L).text("hi");
+    SendMessage second = new SendMessage().chat(2L).text("hi");
+    bot.execute(first);
+    assertThrows(TelegramException.class, () -> bot.execute(second));
+    bot.executeAsync(first).get(10, TimeUnit.SECONDS);
+    assertEquals(3, methods.size());
+    assertSame(first, methods.get(0));
+    assertSame(second, methods.get(1));
+    assertSame(first, methods.get(2));
+    assertTrue(transferTimes.get(0).toMillis() >= 50);
+    assertTrue(transferTimes.get(2).toMillis() >= 50);
+    assertEquals(decodedResults + 3, bot.getDecodedResults());
+  }
+  
+}
@@ -0,0 +1,240 @@
+package io.github.ageofwar.telejam;
+
+import io.github.ageofwar.telejam.methods.SendMessage;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static io.github.ageofwar.telejam.BotFixture.*;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BroadcastTest {
+  
+  private static final String NOT_FOUND = "{\"ok\":false,\"error_code\":400," +
+      "\"description\":\"Bad Request: chat not found\"}";
+  private static final String EMPTY_TEXT = "{\"ok\":false,\"error_code\":400," +
+      "\"description\":\"Bad Request: message text is empty\"}";
+  private static final String BLOCKED = "{\"ok\":false,\"error_code\":403," +
+      "\"description\":\"Forbidden: bot was blocked by the user\"}";
+  
+  @Test
+  public void skipsBlockedChatsAndResumesFromCheckpoint() throws Exception {
+    Set<String> sent = ConcurrentHashMap.newKeySet();
+    Bot bot = newBot((url, method) -> {
+      String chatId = method.getChatId().orElseThrow(AssertionError::new);
+      assertTrue(sent.add(chatId), "Message sent twice to " + chatId);
+      return response(chatId.equals("3") ? BLOCKED : MESSAGE);
+    });
+    Path checkpoint = Files.createTempFile("broadcast", ".checkpoint");
+    Files.delete(checkpoint);
+    try {
+      long[] chatIds = {1, 2, 3, 4, 5};
+      Broadcast broadcast = new Broadcast(bot, chatIds, id -> new SendMessage().chat(id).text("hi"), checkpoint, 1000);
+      broadcast.run();
+      assertEquals(5, broadcast.getCompleted());
+      assertEquals(4, broadcast.getSent());
+      assertEquals(1, broadcast.getBlocked());
+      assertEquals(0, broadcast.getFailed());
+      assertTrue(broadcast.getThroughput() > 0);
+      
+      Broadcast resumed = new Broadcast(bot, chatIds, id -> new SendMessage().chat(id).text("hi"), checkpoint, 1000);
+      resumed.run();
+      assertEquals(5, resumed.getCompleted());
+      assertEquals(0, resumed.getSent());
+      assertEquals(5, sent.size());
+    } finally {
+      Files.deleteIfExists(checkpoint);
+    }
+  }
+  
+  @Test
+  public void resumesPartialCheckpoint() throws Exception {
+    Set<String> sent = ConcurrentHashMap.newKeySet();
+    Bot bot = newBot((url, method) -> {
+      sent.add(method.getChatId().orElseThrow(AssertionError::new));
+      return response(MESSAGE);
+    });
+    Path checkpoint = Files.createTempFile("broadcast", ".checkpoint");
+    try {
+      Files.write(checkpoint, Arrays.asList("telejam-broadcast 5", "2", "3"), StandardCharsets.UTF_8);
+      Broadcast broadcast = new Broadcast(bot, new long[]{10, 20, 30, 40, 50}, id -> new SendMessage().chat(id).text("hi"), checkpoint);
+      broadcast.run();
+      assertEquals(2, broadcast.getSent());
+      assertEquals(5, broadcast.getCompleted());
+      assertEquals(2, sent.size());
+      assertTrue(sent.containsAll(Arrays.asList("30", "50")));
+      List<String> lines = Files.readAllLines(checkpoint, StandardCharsets.UTF_8);
+      assertEquals(Arrays.asList("telejam-broadcast 5", "5"), lines);
+    } finally {
+      Files.deleteIfExists(checkpoint);
+    }
+  }
+  
+  @Test
+  public void checkpointsOnlyPermanentFailures() throws Exception {
+    Set<String> failing = ConcurrentHashMap.newKeySet();
+    Collections.addAll(failing, "2", "4");
+    List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    Bot bot = newBot((url, method) -> {
+      String chatId = method.getChatId().orElseThrow(AssertionError::new);
+      sent.add(chatId);
+      if (chatId.equals("2") && failing.contains(chatId)) {
+        throw new IOException("Connection reset");
+      }
+      if (chatId.equals("4")) {
+        return response(NOT_FOUND);
+      }
+      return response(MESSAGE);
+    });
+    Path checkpoint = Files.createTempFile("broadcast", ".checkpoint");
+    Files.delete(checkpoint);
+    try {
+      long[] chatIds = {1, 2, 3, 4, 5};
+      Broadcast broadcast = new Broadcast(bot, chatIds, id -> new SendMessage().chat(id).text("hi"), checkpoint, 1000);
+      broadcast.run();
+      assertEquals(4, broadcast.getCompleted());
+      assertEquals(2, broadcast.getFailed());
+      
+      failing.clear();
+      sent.clear();
+      Broadcast resumed = new Broadcast(bot, chatIds, id -> new SendMessage().chat(id).text("hi"), checkpoint, 1000);
+      resumed.run();
+      assertEquals(Collections.singletonList("2"), sent);
+      assertEquals(5, resumed.getCompleted());
+    } finally {
+      Files.deleteIfExists(checkpoint);
+    }
+  }
+  
+  @Test
+  public void stopsOnErrorsUnrelatedToTheChat() throws Exception {
+    Set<String> sent = ConcurrentHashMap.newKeySet();
+    Bot bot = newBot((url, method) -> response(EMPTY_TEXT));
+    Path checkpoint = Files.createTempFile("broadcast", ".checkpoint");
+    Files.delete(checkpoint);
+    try {
+      long[] chatIds = {1, 2, 3, 4, 5};
+      Broadcast broadcast = new Broadcast(bot, chatIds, id -> new SendMessage().chat(id).text(""), checkpoint, 1000);
+      TelegramException e = assertThrows(TelegramException.class, broadcast::run);
+      assertEquals(400, e.getErrorCode());
+      assertEquals(0, broadcast.getCompleted());
+      assertEquals(Arrays.asList("telejam-broadcast 5", "0"), Files.readAllLines(checkpoint, StandardCharsets.UTF_8));
+      
+      Bot fixed = newBot((url, method) -> {
+        sent.add(method.getChatId().orElseThrow(AssertionError::new));
+        return response(MESSAGE);
+      });
+      Broadcast resumed = new Broadcast(fixed, chatIds, id -> new SendMessage().chat(id).text("hi"), checkpoint, 1000);
+      resumed.run();
+      assertEquals(5, resumed.getSent());
+      assertEquals(5, sent.size());
+    } finally {
+      Files.deleteIfExists(checkpoint);
+    }
+  }
+  
+  @Test
+  public void checkpointsMessagesInFlightWhenInterrupted() throws Exception {
+    CountDownLatch sending = new CountDownLatch(1);
+    CountDownLatch interrupted = new CountDownLatch(1);
+    List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    Bot bot = newBot((url, method) -> {
+      String chatId = method.getChatId().orElseThrow(AssertionError::new);
+      sent.add(chatId);
+      if (chatId.equals("2")) {
+        sending.countDown();
+        try {
+          interrupted.await();
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException();
+        }
+      }
+      return response(MESSAGE);
+    });
+    Path checkpoint = Files.createTempFile("broadcast", ".checkpoint");
+    Files.delete(checkpoint);
+    try {
+      long[] chatIds = {1, 2, 3};
+      Broadcast broadcast = new Broadcast(bot, chatIds, id -> new SendMessage().chat(id).text("hi"), checkpoint, 1);
+      AtomicReference<Throwable> failure = new AtomicReference<>();
+      Thread runner = new Thread(() -> {
+        try {
+          broadcast.run();
+        } catch (Throwable e) {
+          failure.set(e);
+        }
+      });
+      runner.start();
+      assertTrue(sending.await(10, TimeUnit.SECONDS));
+      runner.interrupt();
+      runner.join(100);
+      assertTrue(runner.isAlive(), "The checkpoint was written before the message in flight was sent");
+      interrupted.countDown();
+      runner.join(10000);
+      assertTrue(failure.get() instanceof InterruptedException);
+      assertEquals(2, broadcast.getSent());
+      
+      sent.clear();
+      Broadcast resumed = new Broadcast(bot, chatIds, id -> new SendMessage().chat(id).text("hi"), checkpoint, 1000);
+      resumed.run();
+      assertEquals(Collections.singletonList("3"), sent);
+    } finally {
+      Files.deleteIfExists(checkpoint);
+    }
+  }
+  
+  @Test
+  public void stopsWhenInterruptedWhilePacing() throws Exception {
+    CountDownLatch sending = new CountDownLatch(1);
+    Bot bot = newBot((url, method) -> {
+      sending.countDown();
+      return response(MESSAGE);
+    });
+    Broadcast broadcast = new Broadcast(bot, new long[]{1, 2, 3}, id -> new SendMessage().chat(id).text("hi"), null, 2);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    Thread runner = new Thread(() -> {
+      try {
+        broadcast.run();
+      } catch (Throwable e) {
+        failure.set(e);
+      }
+    });
+    runner.start();
+    assertTrue(sending.await(10, TimeUnit.SECONDS));
+    Thread.sleep(100);
+    runner.interrupt();
+    runner.join(3000);
+    assertFalse(runner.isAlive(), "The broadcast did not stop after being interrupted");
+    assertTrue(failure.get() instanceof InterruptedException);
+    assertEquals(1, broadcast.getSent());
+  }
+  
+  @Test
+  public void readsChatIds() throws Exception {
+    Path file = Files.createTempFile("chats", ".txt");
+    try {
+      Files.write(file, Arrays.asList("1", "", " -100123 ", "42"), StandardCharsets.UTF_8);
+      assertArrayEquals(new long[]{1, -100123, 42}, Broadcast.readChatIds(file));
+    } finally {
+      Files.delete(file);
+    }
+  }
+  
+}
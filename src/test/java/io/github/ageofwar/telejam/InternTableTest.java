@@ -0,0 +1,37 @@
+package io.github.ageofwar.telejam;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class InternTableTest {
+  
+  @Test
+  public void storesAndEvictsByKey() {
+    InternTable<long[]> table = new InternTable<>(5, value -> value[0]);
+    assertEquals(8, table.getCapacity());
+    long[] first = {42};
+    table.put(first);
+    assertSame(first, table.get(42));
+    assertNull(table.get(43));
+    long[] replacement = {42};
+    table.put(replacement);
+    assertSame(replacement, table.get(42));
+    for (long key = 0; key < 1000; key++) {
+      table.put(new long[]{key});
+    }
+    int stored = 0;
+    for (long key = 0; key < 1000; key++) {
+      long[] value = table.get(key);
+      if (value != null) {
+        assertEquals(key, value[0]);
+        stored++;
+      }
+    }
+    assertTrue(stored > 0 && stored <= table.getCapacity());
+  }
+  
+}
@@ -0,0 +1,122 @@
+package io.github.ageofwar.telejam;
+
+import io.github.ageofwar.telejam.connection.UploadFile;
+import io.github.ageofwar.telejam.methods.SendDocument;
+import io.github.ageofwar.telejam.methods.SendMessage;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.ageofwar.telejam.BotFixture.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RetryPolicyTest {
+  
+  private static final String MESSAGE = "{\"ok\":true,\"result\":{\"message_id\":1,\"date\":0,\"text\":\"hi\"," +
+      "\"chat\":{\"id\":-100,\"title\":\"Group\",\"type\":\"supergroup\"}}}";
+  private static final String FLOOD = "{\"ok\":false,\"error_code\":429,\"description\":\"Too Many Requests\"," +
+      "\"parameters\":{\"retry_after\":0}}";
+  private static final String MIGRATED = "{\"ok\":false,\"error_code\":400,\"description\":\"Migrated\"," +
+      "\"parameters\":{\"migrate_to_chat_id\":-100}}";
+  private static final String NOT_FOUND = "{\"ok\":false,\"error_code\":400,\"description\":\"Bad Request: chat not found\"}";
+  private static final String DOCUMENT = "{\"ok\":true,\"result\":{\"message_id\":1,\"date\":0," +
+      "\"document\":{\"file_id\":\"a\",\"file_unique_id\":\"b\"}," +
+      "\"chat\":{\"id\":-100,\"title\":\"Group\",\"type\":\"supergroup\"}}}";
+  
+  @Test
+  public void retriesAfterFloodControl() throws Exception {
+    List<String> responses = Collections.synchronizedList(new ArrayList<>());
+    Bot bot = newBot(responses, new ArrayList<>());
+    RetryPolicy retryPolicy = new RetryPolicy(2, Duration.ofSeconds(1), 0.1, 16);
+    bot.setRetryPolicy(retryPolicy);
+    Collections.addAll(responses, FLOOD, FLOOD, MESSAGE);
+    bot.execute(new SendMessage().chat(5L).text("hi"));
+    assertEquals(2, retryPolicy.getRetries());
+    Collections.addAll(responses, FLOOD, FLOOD, MESSAGE);
+    bot.executeAsync(new SendMessage().chat(5L).text("hi")).get(10, TimeUnit.SECONDS);
+    assertEquals(4, retryPolicy.getRetries());
+    Collections.addAll(responses, FLOOD, FLOOD, FLOOD);
+    assertThrows(TelegramException.class, () -> bot.execute(new SendMessage().chat(5L).text("hi")));
+    assertEquals(1, retryPolicy.getExhaustedRetries());
+  }
+  
+  @Test
+  public void rewritesMigratedChats() throws Exception {
+    List<String> responses = Collections.synchronizedList(new ArrayList<>());
+    List<Object> chats = Collections.synchronizedList(new ArrayList<>());
+    Bot bot = newBot(responses, chats);
+    RetryPolicy retryPolicy = new RetryPolicy();
+    bot.setRetryPolicy(retryPolicy);
+    Collections.addAll(responses, MIGRATED, MESSAGE, MESSAGE);
+    bot.execute(new SendMessage().chat(-5L).text("hi"));
+    bot.execute(new SendMessage().chat(-5L).text("hi"));
+    assertEquals(-100L, retryPolicy.getMigratedChatId("-5").getAsLong());
+    assertEquals(3, chats.size());
+    assertEquals(-5L, ((Number) chats.get(0)).longValue());
+    assertEquals(-100L, ((Number) chats.get(1)).longValue());
+    assertEquals(-100L, ((Number) chats.get(2)).longValue());
+  }
+  
+  @Test
+  public void doesNotRetryMultipartMethods() throws Exception {
+    List<String> responses = Collections.synchronizedList(new ArrayList<>());
+    List<Object> chats = Collections.synchronizedList(new ArrayList<>());
+    Bot bot = newBot(responses, chats);
+    RetryPolicy retryPolicy = new RetryPolicy();
+    bot.setRetryPolicy(retryPolicy);
+    Collections.addAll(responses, FLOOD, FLOOD, MIGRATED, DOCUMENT);
+    assertThrows(TelegramException.class, () -> bot.execute(newSendDocument(-5L)));
+    ExecutionException e = assertThrows(
+        ExecutionException.class,
+        () -> bot.executeAsync(newSendDocument(-5L)).get(10, TimeUnit.SECONDS)
+    );
+    assertTrue(e.getCause() instanceof TelegramException);
+    assertThrows(TelegramException.class, () -> bot.execute(newSendDocument(-5L)));
+    bot.execute(newSendDocument(-5L));
+    assertEquals(0, retryPolicy.getRetries());
+    assertEquals(0, retryPolicy.getExhaustedRetries());
+    assertEquals(Arrays.asList(-5L, -5L, -5L, -100L), chats);
+  }
+  
+  @Test
+  public void countsOnlyRetryableInvocationsAsExhausted() throws Exception {
+    List<String> responses = Collections.synchronizedList(new ArrayList<>());
+    Bot bot = newBot(responses, new ArrayList<>());
+    RetryPolicy retryPolicy = new RetryPolicy(0, Duration.ofSeconds(1), 0.1, 16);
+    bot.setRetryPolicy(retryPolicy);
+    Collections.addAll(responses, FLOOD, NOT_FOUND, FLOOD);
+    assertThrows(TelegramException.class, () -> bot.execute(newSendDocument(5L)));
+    assertThrows(TelegramException.class, () -> bot.execute(new SendMessage().chat(5L).text("hi")));
+    assertEquals(0, retryPolicy.getExhaustedRetries());
+    assertThrows(TelegramException.class, () -> bot.execute(new SendMessage().chat(5L).text("hi")));
+    assertEquals(1, retryPolicy.getExhaustedRetries());
+  }
+  
+  private static SendDocument newSendDocument(long chatId) {
+    InputStream content = new ByteArrayInputStream("content".getBytes(StandardCharsets.UTF_8));
+    return new SendDocument().chat(chatId).document(new UploadFile("file.txt", content));
+  }
+  
+  private static Bot newBot(List<String> responses, List<Object> chats) throws Exception {
+    return BotFixture.newBot((url, method) -> {
+      chats.add(method.getParameters().get("chat_id"));
+      for (UploadFile file : method.getFiles().values()) {
+        // a real transport consumes the content of the files
+        assertTrue(file.getInputStream().skip(Long.MAX_VALUE) > 0, "File uploaded twice");
+      }
+      return response(responses.remove(0));
+    });
+  }
+  
+}
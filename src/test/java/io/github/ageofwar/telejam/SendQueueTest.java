@@ -0,0 +1,65 @@
+package io.github.ageofwar.telejam;
+
+import io.github.ageofwar.telejam.methods.AnswerCallbackQuery;
+import io.github.ageofwar.telejam.methods.SendMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.ageofwar.telejam.BotFixture.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SendQueueTest {
+  
+  
+  @Test
+  public void sendsByPriorityAndFairlyAcrossChats() throws Exception {
+    List<String> sent = Collections.synchronizedList(new ArrayList<>());
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Bot bot = newBot((url, method) -> {
+      if (method.getName().equals(AnswerCallbackQuery.NAME)) {
+        sent.add("answer");
+        return response(TRUE);
+      }
+      String text = (String) method.getParameters().get("text");
+      sent.add(text);
+      if (text.equals("first")) {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return response(MESSAGE);
+    });
+    try (SendQueue queue = new SendQueue(bot, 1)) {
+      queue.submit(new SendMessage().chat(9L).text("first"), SendQueue.Priority.BULK);
+      assertTrue(started.await(10, TimeUnit.SECONDS));
+      List<CompletableFuture<?>> results = new ArrayList<>();
+      results.add(queue.submit(new SendMessage().chat(-1L).text("a1"), SendQueue.Priority.BULK));
+      results.add(queue.submit(new SendMessage().chat(-1L).text("a2"), SendQueue.Priority.BULK));
+      results.add(queue.submit(new SendMessage().chat(-1L).text("a3"), SendQueue.Priority.BULK));
+      results.add(queue.submit(new SendMessage().chat(-2L).text("b1"), SendQueue.Priority.BULK));
+      results.add(queue.submit(new SendMessage().chat(3L).text("reply")));
+      results.add(queue.submit(new AnswerCallbackQuery().callbackQuery("id")));
+      assertEquals(4, queue.getQueueLength(SendQueue.Priority.BULK));
+      assertEquals(1, queue.getQueueLength(SendQueue.Priority.INTERACTIVE));
+      release.countDown();
+      CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+      assertEquals(Arrays.asList("first", "answer", "reply", "a1", "b1", "a2", "a3"), sent);
+      assertEquals(0, queue.getQueueLength(SendQueue.Priority.BULK));
+      assertEquals(5, queue.getSentInvocations(SendQueue.Priority.BULK));
+      assertTrue(queue.getAverageLatency(SendQueue.Priority.BULK).toNanos() > 0);
+    }
+  }
+  
+}
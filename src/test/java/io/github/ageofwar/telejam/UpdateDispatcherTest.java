@@ -0,0 +1,106 @@
+package io.github.ageofwar.telejam;
+
+import io.github.ageofwar.telejam.updates.MessageUpdate;
+import io.github.ageofwar.telejam.updates.Update;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.ageofwar.telejam.json.Json.fromJson;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UpdateDispatcherTest {
+  
+  @Test
+  public void preservesOrderOfChats() throws Exception {
+    Map<Long, List<Long>> handled = new ConcurrentHashMap<>();
+    CountDownLatch done = new CountDownLatch(40);
+    try (UpdateDispatcher dispatcher = new UpdateDispatcher(update -> {
+      long chat = ((MessageUpdate) update).getMessage().getChat().getId();
+      handled.computeIfAbsent(chat, c -> Collections.synchronizedList(new ArrayList<>())).add(update.getId());
+      Thread.sleep(1);
+      done.countDown();
+    }, Throwable::printStackTrace, 4, 4)) {
+      for (long i = 0; i < 40; i++) {
+        dispatcher.onUpdate(update(i, i % 2));
+      }
+      assertTrue(done.await(10, TimeUnit.SECONDS));
+      assertEquals(0, dispatcher.getQueuedUpdates());
+    }
+    for (long chat = 0; chat < 2; chat++) {
+      List<Long> updates = handled.get(chat);
+      assertEquals(20, updates.size());
+      for (int i = 0; i < updates.size(); i++) {
+        assertEquals(i * 2 + chat, (long) updates.get(i));
+      }
+    }
+  }
+  
+  @Test
+  public void boundsQueues() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    try (UpdateDispatcher dispatcher = new UpdateDispatcher(update -> release.await(), Throwable::printStackTrace, 2, 2)) {
+      dispatcher.onUpdate(update(0, 7));
+      while (dispatcher.getQueueDepth(7) > 0) {
+        Thread.sleep(1);
+      }
+      dispatcher.onUpdate(update(1, 7));
+      dispatcher.onUpdate(update(2, 7));
+      Thread producer = new Thread(() -> {
+        try {
+          dispatcher.onUpdate(update(3, 7));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      producer.start();
+      producer.join(200);
+      assertTrue(producer.isAlive());
+      assertEquals(2, dispatcher.getQueueDepth(7));
+      assertEquals(1, dispatcher.getBlockedDispatches());
+      release.countDown();
+      producer.join(10000);
+      assertFalse(producer.isAlive());
+    }
+  }
+  
+  @Test
+  public void handlesQueuedUpdatesAfterClose() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(4);
+    List<Long> handled = Collections.synchronizedList(new ArrayList<>());
+    UpdateDispatcher dispatcher = new UpdateDispatcher(update -> {
+      started.countDown();
+      release.await();
+      handled.add(update.getId());
+      done.countDown();
+    }, Throwable::printStackTrace, 2, 4);
+    dispatcher.onUpdate(update(0, 7));
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    for (long i = 1; i < 4; i++) {
+      dispatcher.onUpdate(update(i, 7));
+    }
+    assertEquals(3, dispatcher.getQueueDepth(7));
+    dispatcher.close();
+    release.countDown();
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList(0L, 1L, 2L, 3L), handled);
+    assertEquals(0, dispatcher.getQueuedUpdates());
+  }
+  
+  private static Update update(long id, long chat) {
+    return fromJson("{\"update_id\": " + id + ", \"message\": {\"message_id\": " + id + ", \"date\": 0, " +
+        "\"text\": \"hi\", \"chat\": {\"id\": " + chat + ", \"first_name\": \"User\", \"type\": \"private\"}}}", Update.class);
+  }
+  
+}
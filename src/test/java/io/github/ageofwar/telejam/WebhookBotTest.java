@@ -0,0 +1,133 @@
+package io.github.ageofwar.telejam;
+
+import com.sun.net.httpserver.HttpServer;
+import io.github.ageofwar.telejam.updates.Update;
+import io.github.ageofwar.telejam.updates.UpdateHandler;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.ageofwar.telejam.BotFixture.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WebhookBotTest {
+  
+  private static final String UPDATE = "{\"update_id\": 7, \"message\": {\"message_id\": 1, \"date\": 0, " +
+      "\"text\": \"hi\", \"chat\": {\"id\": 3, \"first_name\": \"User\", \"type\": \"private\"}}}";
+  
+  @Test
+  public void respondsBeforeHandling() throws Exception {
+    CountDownLatch received = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    try (WebhookBot webhookBot = newWebhookBot(update -> {
+      assertEquals(7, update.getId());
+      received.countDown();
+      release.await();
+    })) {
+      start(webhookBot);
+      assertEquals(200, post(webhookBot, "/webhook", "secret", UPDATE));
+      assertTrue(received.await(10, TimeUnit.SECONDS));
+      release.countDown();
+    }
+  }
+  
+  @Test
+  public void rejectsInvalidRequests() throws Exception {
+    try (WebhookBot webhookBot = newWebhookBot(update -> {
+      throw new AssertionError("Unexpected update");
+    })) {
+      start(webhookBot);
+      assertEquals(403, post(webhookBot, "/webhook", "wrong", UPDATE));
+      assertEquals(403, post(webhookBot, "/webhook", null, UPDATE));
+      assertEquals(404, post(webhookBot, "/webhook/other", "secret", UPDATE));
+      assertEquals(400, post(webhookBot, "/webhook", "secret", "{"));
+    }
+  }
+  
+  @Test
+  public void rejectsUpdatesWhenClosed() throws Exception {
+    try (WebhookBot webhookBot = newWebhookBot(update -> {
+      throw new AssertionError("Unexpected update");
+    })) {
+      start(webhookBot);
+      webhookBot.getDispatcher().close();
+      assertEquals(503, post(webhookBot, "/webhook", "secret", UPDATE));
+    }
+  }
+  
+  @Test
+  public void closeWaitsForReceivedUpdates() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    List<Long> handled = Collections.synchronizedList(new ArrayList<>());
+    WebhookBot webhookBot = newWebhookBot(update -> {
+      release.await();
+      handled.add(update.getId());
+    });
+    start(webhookBot);
+    for (int i = 1; i <= 3; i++) {
+      assertEquals(200, post(webhookBot, "/webhook", "secret", UPDATE.replace("\"update_id\": 7", "\"update_id\": " + i)));
+    }
+    Thread closer = new Thread(webhookBot::close);
+    closer.start();
+    closer.join(200);
+    assertTrue(closer.isAlive(), "The bot was closed before handling the received updates");
+    release.countDown();
+    closer.join(10000);
+    assertFalse(closer.isAlive());
+    assertEquals(Arrays.asList(1L, 2L, 3L), handled);
+  }
+  
+  private static WebhookBot newWebhookBot(UpdateHandler handler) throws IOException {
+    Bot bot = newBot();
+    HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    return new WebhookBot(bot, server, "/webhook", "secret", 4, 2, null) {
+      @Override
+      public void onUpdate(Update update) throws Throwable {
+        handler.onUpdate(update);
+      }
+    };
+  }
+  
+  private static void start(WebhookBot webhookBot) {
+    Thread thread = new Thread(webhookBot);
+    thread.setDaemon(true);
+    thread.start();
+  }
+  
+  private static int post(WebhookBot webhookBot, String path, String secretToken, String body) throws IOException {
+    InetSocketAddress address = webhookBot.getAddress();
+    URL url = new URL("http", address.getHostString(), address.getPort(), path);
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setRequestMethod("POST");
+    connection.setDoOutput(true);
+    connection.setConnectTimeout(5000);
+    connection.setReadTimeout(5000);
+    connection.setRequestProperty("Content-Type", "application/json");
+    if (secretToken != null) {
+      connection.setRequestProperty(WebhookBot.SECRET_TOKEN_HEADER, secretToken);
+    }
+    try (OutputStream output = connection.getOutputStream()) {
+      output.write(body.getBytes(StandardCharsets.UTF_8));
+    }
+    try {
+      return connection.getResponseCode();
+    } finally {
+      connection.disconnect();
+    }
+  }
+  
+}
@@ -0,0 +1,38 @@
+package io.github.ageofwar.telejam.callbacks;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CallbackPayloadTest {
+  
+  @Test
+  public void encodesArguments() {
+    long[] args = {0, 1, -1, 300, Long.MAX_VALUE, Long.MIN_VALUE, -123456789012L};
+    String data = CallbackPayload.encode("button", args);
+    int nameEnd = CallbackRouter.nameEnd(data);
+    assertEquals("button", data.substring(0, nameEnd));
+    assertArrayEquals(args, CallbackPayload.decode(CallbackRouter.args(data, nameEnd)));
+    assertEquals("start", CallbackPayload.encode("start"));
+  }
+  
+  @Test
+  public void rejectsInvalidData() {
+    assertThrows(IllegalArgumentException.class, () -> CallbackPayload.encode("a b", 1));
+    assertThrows(IllegalArgumentException.class, () -> CallbackPayload.encode("x", Long.MIN_VALUE, Long.MIN_VALUE,
+        Long.MIN_VALUE, Long.MIN_VALUE, Long.MIN_VALUE));
+    assertThrows(IllegalArgumentException.class, () -> CallbackPayload.decode("gA"));
+  }
+  
+  @Test
+  public void splitsCallbackData() {
+    String data = "name \t args with spaces";
+    int nameEnd = CallbackRouter.nameEnd(data);
+    assertEquals("name", data.substring(0, nameEnd));
+    assertEquals("args with spaces", CallbackRouter.args(data, nameEnd));
+    assertEquals("", CallbackRouter.args("name", CallbackRouter.nameEnd("name")));
+  }
+  
+}
@@ -0,0 +1,102 @@
+package io.github.ageofwar.telejam.connection;
+
+import com.sun.net.httpserver.HttpExchange;
+import io.github.ageofwar.telejam.methods.TelegramMethod;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+
+final class ConnectionFixture {
+  
+  static final String RESPONSE = "{\"ok\":true,\"result\":true}";
+  
+  /**
+   * Sends the response one byte every 50 milliseconds, so that a read timeout never expires.
+   */
+  static void respondSlowly(HttpExchange exchange) throws IOException {
+    byte[] response = RESPONSE.getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(200, response.length);
+    try (OutputStream output = exchange.getResponseBody()) {
+      for (byte b : response) {
+        output.write(b);
+        output.flush();
+        Thread.sleep(50);
+      }
+    } catch (InterruptedException | IOException e) {
+      exchange.close();
+    }
+  }
+  
+  static String read(InputStream response) throws IOException {
+    try (InputStream input = response) {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      byte[] buffer = new byte[256];
+      int read;
+      while ((read = input.read(buffer)) != -1) {
+        output.write(buffer, 0, read);
+      }
+      return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+  
+  static TelegramMethod<Boolean> timedMethod(Duration timeout) {
+    return new TelegramMethod<Boolean>() {
+      @Override
+      public String getName() {
+        return "test";
+      }
+      
+      @Override
+      public Map<String, Object> getParameters() {
+        return Collections.emptyMap();
+      }
+      
+      @Override
+      public Type getReturnType() {
+        return Boolean.class;
+      }
+      
+      @Override
+      public Optional<Duration> getRequestTimeout() {
+        return Optional.of(timeout);
+      }
+    };
+  }
+  
+  static TelegramMethod<Boolean> uploadMethod(UploadFile file) {
+    return new TelegramMethod<Boolean>() {
+      @Override
+      public String getName() {
+        return "test";
+      }
+      
+      @Override
+      public Map<String, Object> getParameters() {
+        return Collections.emptyMap();
+      }
+      
+      @Override
+      public Map<String, UploadFile> getFiles() {
+        return Collections.singletonMap("document", file);
+      }
+      
+      @Override
+      public Type getReturnType() {
+        return Boolean.class;
+      }
+    };
+  }
+  
+  private ConnectionFixture() {
+    throw new AssertionError();
+  }
+  
+}
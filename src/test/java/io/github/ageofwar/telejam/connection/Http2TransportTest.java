@@ -0,0 +1,319 @@
+package io.github.ageofwar.telejam.connection;
+
+import com.sun.net.httpserver.HttpServer;
+import io.github.ageofwar.telejam.methods.GetMe;
+import io.github.ageofwar.telejam.methods.TelegramMethod;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.tls.HandshakeCertificates;
+import okhttp3.tls.HeldCertificate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static io.github.ageofwar.telejam.connection.ConnectionFixture.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Http2TransportTest {
+  
+  private final AtomicInteger activeRequests = new AtomicInteger();
+  private final AtomicInteger maxActiveRequests = new AtomicInteger();
+  private volatile long responseDelay;
+  private ExecutorService serverExecutor;
+  private HttpServer server;
+  private String url;
+  
+  @BeforeEach
+  public void startServer() throws IOException {
+    serverExecutor = Executors.newCachedThreadPool();
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.setExecutor(serverExecutor);
+    server.createContext("/", exchange -> {
+      int active = activeRequests.incrementAndGet();
+      maxActiveRequests.accumulateAndGet(active, Math::max);
+      try {
+        Thread.sleep(responseDelay);
+        byte[] response = RESPONSE.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+          output.write(response);
+        }
+      } catch (InterruptedException | IOException e) {
+        exchange.close();
+      } finally {
+        activeRequests.decrementAndGet();
+      }
+    });
+    server.createContext("/slow", ConnectionFixture::respondSlowly);
+    server.start();
+    url = "http://127.0.0.1:" + server.getAddress().getPort() + "/bot/getMe";
+  }
+  
+  @AfterEach
+  public void stopServer() {
+    server.stop(0);
+    serverExecutor.shutdownNow();
+  }
+  
+  @Test
+  public void postsOverHttp1() throws IOException {
+    try (Http2Transport transport = new Http2Transport()) {
+      for (int i = 0; i < 3; i++) {
+        assertEquals(RESPONSE, read(transport.post(url, GetMe.INSTANCE)));
+      }
+      assertEquals(1, transport.getConnectionCount());
+    }
+  }
+  
+  @Test
+  public void postsAsynchronously() throws Exception {
+    try (Http2Transport transport = new Http2Transport()) {
+      CompletableFuture<InputStream> response = transport.postAsync(url, GetMe.INSTANCE, runnable -> fail());
+      assertEquals(RESPONSE, read(response.get(5, TimeUnit.SECONDS)));
+    }
+  }
+  
+  @Test
+  public void timesOut() throws Exception {
+    responseDelay = 2000;
+    TelegramMethod<Boolean> method = timedMethod(Duration.ofMillis(200));
+    try (Http2Transport transport = new Http2Transport()) {
+      assertThrows(SocketTimeoutException.class, () -> transport.post(url, method));
+      ExecutionException e = assertThrows(
+          ExecutionException.class,
+          () -> transport.postAsync(url, method, Runnable::run).get(5, TimeUnit.SECONDS)
+      );
+      assertTrue(e.getCause() instanceof SocketTimeoutException);
+    }
+  }
+  
+  @Test
+  public void abortsSlowResponses() throws Exception {
+    String slowUrl = url.replace("/bot/", "/slow/");
+    TelegramMethod<Boolean> method = timedMethod(Duration.ofMillis(300));
+    try (Http2Transport transport = new Http2Transport()) {
+      assertThrows(SocketTimeoutException.class, () -> read(transport.post(slowUrl, method)));
+      InputStream response = transport.postAsync(slowUrl, method, Runnable::run).get(5, TimeUnit.SECONDS);
+      assertThrows(SocketTimeoutException.class, () -> read(response));
+    }
+  }
+  
+  @Test
+  public void limitsSynchronousAndAsynchronousStreamsTogether() throws Exception {
+    responseDelay = 100;
+    ExecutorService clients = Executors.newFixedThreadPool(4);
+    try (Http2Transport transport = new Http2Transport(2)) {
+      List<CompletableFuture<String>> responses = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        responses.add(CompletableFuture.supplyAsync(() -> {
+          try {
+            return read(transport.post(url, GetMe.INSTANCE));
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }, clients));
+        responses.add(transport.postAsync(url, GetMe.INSTANCE, Runnable::run).thenApply(response -> {
+          try {
+            return read(response);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }));
+      }
+      for (CompletableFuture<String> response : responses) {
+        assertEquals(RESPONSE, response.get(10, TimeUnit.SECONDS));
+      }
+      assertEquals(2, maxActiveRequests.get());
+    } finally {
+      clients.shutdownNow();
+    }
+  }
+  
+  @Test
+  public void reusesConnectionsOfHttp1Fallback() throws Exception {
+    responseDelay = 200;
+    try (Http2Transport transport = new Http2Transport(4)) {
+      postConcurrently(transport, url, 4);
+      assertEquals(4, maxActiveRequests.get());
+      assertEquals(4, transport.getConnectionCount());
+      postConcurrently(transport, url, 4);
+      assertEquals(4, transport.getConnectionCount());
+    }
+  }
+  
+  @Test
+  public void multiplexesOverHttp2WithPriorKnowledge() throws Exception {
+    responseDelay = 200;
+    try (MockWebServer server = startHttp2Server(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+         Http2Transport transport = newTransport(8, priorKnowledge())) {
+      postConcurrently(transport, server.url("/bot/getMe").toString(), 8);
+      assertEquals(8, maxActiveRequests.get());
+      assertEquals(1, transport.getConnectionCount());
+      assertSingleConnection(server, 8);
+    }
+  }
+  
+  @Test
+  public void negotiatesHttp2WithTls() throws Exception {
+    responseDelay = 200;
+    HeldCertificate certificate = new HeldCertificate.Builder().addSubjectAlternativeName("localhost").build();
+    try (MockWebServer server = startHttpsServer(certificate, Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+         Http2Transport transport = newTransport(8, trusting(certificate))) {
+      postConcurrently(transport, server.url("/bot/getMe").toString(), 8);
+      assertEquals(8, maxActiveRequests.get());
+      assertEquals(1, transport.getConnectionCount());
+      assertSingleConnection(server, 8);
+    }
+  }
+  
+  @Test
+  public void fallsBackToHttp1WithTls() throws Exception {
+    responseDelay = 200;
+    HeldCertificate certificate = new HeldCertificate.Builder().addSubjectAlternativeName("localhost").build();
+    try (MockWebServer server = startHttpsServer(certificate, Collections.singletonList(Protocol.HTTP_1_1));
+         Http2Transport transport = newTransport(4, trusting(certificate))) {
+      postConcurrently(transport, server.url("/bot/getMe").toString(), 4);
+      assertEquals(4, maxActiveRequests.get());
+      assertEquals(4, transport.getConnectionCount());
+    }
+  }
+  
+  @Test
+  public void limitsStreamsOverHttp2() throws Exception {
+    responseDelay = 100;
+    try (MockWebServer server = startHttp2Server(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+         Http2Transport transport = newTransport(2, priorKnowledge())) {
+      String url = server.url("/bot/getMe").toString();
+      List<CompletableFuture<String>> responses = new ArrayList<>();
+      for (int i = 0; i < 6; i++) {
+        responses.add(transport.postAsync(url, GetMe.INSTANCE, Runnable::run).thenApply(response -> {
+          try {
+            return read(response);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }));
+      }
+      for (CompletableFuture<String> response : responses) {
+        assertEquals(RESPONSE, response.get(10, TimeUnit.SECONDS));
+      }
+      assertEquals(2, maxActiveRequests.get());
+      assertEquals(1, transport.getConnectionCount());
+    }
+  }
+  
+  private MockWebServer startHttp2Server(List<Protocol> protocols) throws IOException {
+    MockWebServer server = new MockWebServer();
+    server.setProtocols(protocols);
+    server.setDispatcher(new StubDispatcher());
+    server.start(InetAddress.getByName("localhost"), 0);
+    return server;
+  }
+  
+  private MockWebServer startHttpsServer(HeldCertificate certificate, List<Protocol> protocols) throws IOException {
+    HandshakeCertificates certificates = new HandshakeCertificates.Builder().heldCertificate(certificate).build();
+    MockWebServer server = new MockWebServer();
+    server.useHttps(certificates.sslSocketFactory(), false);
+    server.setProtocols(protocols);
+    server.setDispatcher(new StubDispatcher());
+    server.start(InetAddress.getByName("localhost"), 0);
+    return server;
+  }
+  
+  private static Http2Transport newTransport(int maxConcurrentStreams, Consumer<OkHttpClient.Builder> configuration) {
+    return new Http2Transport(maxConcurrentStreams, Duration.ofSeconds(10), Duration.ofSeconds(60), configuration);
+  }
+  
+  private static Consumer<OkHttpClient.Builder> priorKnowledge() {
+    return builder -> builder.protocols(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+  }
+  
+  private static Consumer<OkHttpClient.Builder> trusting(HeldCertificate certificate) {
+    HandshakeCertificates certificates = new HandshakeCertificates.Builder()
+        .addTrustedCertificate(certificate.certificate())
+        .build();
+    return builder -> builder.sslSocketFactory(certificates.sslSocketFactory(), certificates.trustManager());
+  }
+  
+  /**
+   * Asserts that the server received the specified number of requests on a single connection.
+   */
+  private static void assertSingleConnection(MockWebServer server, int requests) throws InterruptedException {
+    Set<Integer> sequenceNumbers = new HashSet<>();
+    for (int i = 0; i < requests; i++) {
+      sequenceNumbers.add(server.takeRequest().getSequenceNumber());
+    }
+    for (int i = 0; i < requests; i++) {
+      assertTrue(sequenceNumbers.contains(i));
+    }
+  }
+  
+  private static void postConcurrently(Http2Transport transport, String url, int requests) throws Exception {
+    ExecutorService clients = Executors.newFixedThreadPool(requests);
+    try {
+      List<CompletableFuture<String>> responses = new ArrayList<>();
+      for (int i = 0; i < requests; i++) {
+        responses.add(CompletableFuture.supplyAsync(() -> {
+          try {
+            return read(transport.post(url, GetMe.INSTANCE));
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }, clients));
+      }
+      for (CompletableFuture<String> response : responses) {
+        assertEquals(RESPONSE, response.get(10, TimeUnit.SECONDS));
+      }
+    } finally {
+      clients.shutdownNow();
+    }
+  }
+  
+  /**
+   * Answers every request after {@link #responseDelay}, counting the requests in progress.
+   */
+  private final class StubDispatcher extends Dispatcher {
+    
+    @Override
+    public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+      int active = activeRequests.incrementAndGet();
+      maxActiveRequests.accumulateAndGet(active, Math::max);
+      try {
+        Thread.sleep(responseDelay);
+        return new MockResponse().setHeader("Content-Type", "application/json").setBody(RESPONSE);
+      } finally {
+        activeRequests.decrementAndGet();
+      }
+    }
+    
+  }
+  
+}
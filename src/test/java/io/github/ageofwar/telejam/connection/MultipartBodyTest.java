@@ -0,0 +1,49 @@
+package io.github.ageofwar.telejam.connection;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MultipartBodyTest {
+  
+  @Test
+  public void contentLength() throws IOException {
+    File file = File.createTempFile("telejam", ".txt");
+    file.deleteOnExit();
+    Files.write(file.toPath(), "Hello, world!".getBytes(StandardCharsets.UTF_8));
+    Map<String, UploadFile> files = new HashMap<>();
+    files.put("document", UploadFile.fromFile(file));
+    files.put("thumb", new UploadFile("thumb.jpg", new ByteArrayInputStream(new byte[]{1, 2, 3})));
+    MultipartBody body = new MultipartBody(Collections.singletonMap("chat_id", 42L), files);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    body.writeTo(output);
+    String content = new String(output.toByteArray(), StandardCharsets.UTF_8);
+    assertEquals(body.getContentLength(), output.size());
+    assertTrue(content.contains("\r\n\r\nHello, world!\r\n"));
+    assertTrue(content.contains("name=\"chat_id\""));
+  }
+  
+  @Test
+  public void writeToChannel() throws IOException {
+    Map<String, UploadFile> files = Collections.singletonMap(
+        "photo", new UploadFile("photo.png", new ByteArrayInputStream(new byte[]{4, 5, 6}))
+    );
+    MultipartBody body = new MultipartBody(Collections.emptyMap(), files);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    body.writeTo(Channels.newChannel(output));
+    assertEquals(body.getContentLength(), output.size());
+  }
+  
+}
@@ -0,0 +1,152 @@
+package io.github.ageofwar.telejam.connection;
+
+import com.sun.net.httpserver.HttpServer;
+import io.github.ageofwar.telejam.methods.GetMe;
+import io.github.ageofwar.telejam.methods.TelegramMethod;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.ageofwar.telejam.connection.ConnectionFixture.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PooledTransportTest {
+  
+  private HttpServer server;
+  private String url;
+  private volatile String transferEncoding;
+  private volatile byte[] requestBody;
+  
+  @BeforeEach
+  public void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", exchange -> {
+      byte[] response = RESPONSE.getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, response.length);
+      try (OutputStream output = exchange.getResponseBody()) {
+        output.write(response);
+      }
+    });
+    server.createContext("/slow", ConnectionFixture::respondSlowly);
+    server.createContext("/echo", exchange -> {
+      transferEncoding = exchange.getRequestHeaders().getFirst("Transfer-Encoding");
+      try (InputStream input = exchange.getRequestBody()) {
+        requestBody = read(input).getBytes(StandardCharsets.ISO_8859_1);
+      }
+      byte[] response = RESPONSE.getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, response.length);
+      try (OutputStream output = exchange.getResponseBody()) {
+        output.write(response);
+      }
+    });
+    server.start();
+    url = "http://127.0.0.1:" + server.getAddress().getPort() + "/bot/getMe";
+  }
+  
+  @AfterEach
+  public void stopServer() {
+    server.stop(0);
+  }
+  
+  @Test
+  public void reusesConnections() throws IOException {
+    try (PooledTransport transport = new PooledTransport()) {
+      for (int i = 0; i < 3; i++) {
+        assertEquals(RESPONSE, post(transport));
+      }
+      assertEquals(1, transport.getCreatedConnections());
+      assertEquals(2, transport.getReusedConnections());
+      assertEquals(1, transport.getIdleConnections());
+    }
+  }
+  
+  @Test
+  public void evictsIdleConnections() throws IOException {
+    try (PooledTransport transport = new PooledTransport(1, 0, TimeUnit.SECONDS)) {
+      assertEquals(RESPONSE, post(transport));
+      assertEquals(RESPONSE, post(transport));
+      assertEquals(2, transport.getCreatedConnections());
+      assertEquals(0, transport.getReusedConnections());
+      assertEquals(2, transport.getEvictedConnections());
+      assertEquals(0, transport.getIdleConnections());
+    }
+  }
+  
+  @Test
+  public void evictsIdleConnectionsInBackground() throws IOException, InterruptedException {
+    try (PooledTransport transport = new PooledTransport(1, 100, TimeUnit.MILLISECONDS)) {
+      assertEquals(RESPONSE, post(transport));
+      assertEquals(1, transport.getIdleConnections());
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (transport.getIdleConnections() > 0 && System.nanoTime() < deadline) {
+        Thread.sleep(20);
+      }
+      assertEquals(0, transport.getIdleConnections());
+      assertEquals(1, transport.getEvictedConnections());
+    }
+  }
+  
+  @Test
+  public void timesOutWhenPoolIsExhausted() throws IOException {
+    Duration timeout = Duration.ofMillis(100);
+    try (PooledTransport transport = new PooledTransport(1, 30, TimeUnit.SECONDS, timeout, timeout)) {
+      InputStream busy = transport.post(url, GetMe.INSTANCE);
+      try {
+        assertThrows(SocketTimeoutException.class, () -> transport.post(url, GetMe.INSTANCE));
+      } finally {
+        busy.close();
+      }
+      assertEquals(RESPONSE, post(transport));
+    }
+  }
+  
+  @Test
+  public void abortsSlowResponses() throws IOException {
+    String slowUrl = url.replace("/bot/", "/slow/");
+    try (PooledTransport transport = new PooledTransport()) {
+      TelegramMethod<Boolean> method = timedMethod(Duration.ofMillis(300));
+      assertThrows(SocketTimeoutException.class, () -> read(transport.post(slowUrl, method)));
+      assertEquals(0, transport.getIdleConnections());
+      assertEquals(RESPONSE, post(transport));
+    }
+  }
+  
+  @Test
+  public void streamsBodiesOfUnknownLength() throws IOException {
+    String echoUrl = url.replace("/bot/", "/echo/");
+    byte[] file = new byte[20000];
+    for (int i = 0; i < file.length; i++) {
+      file[i] = (byte) ('a' + i % 26);
+    }
+    TelegramMethod<Boolean> method = uploadMethod(
+        new UploadFile("file.txt", new BufferedInputStream(new ByteArrayInputStream(file)))
+    );
+    try (PooledTransport transport = new PooledTransport()) {
+      assertEquals(RESPONSE, read(transport.post(echoUrl, method)));
+      assertEquals("chunked", transferEncoding);
+      assertTrue(new String(requestBody, StandardCharsets.ISO_8859_1)
+          .contains(new String(file, StandardCharsets.ISO_8859_1)));
+      assertEquals(RESPONSE, post(transport));
+      assertEquals(1, transport.getCreatedConnections());
+    }
+  }
+  
+  private String post(Transport transport) throws IOException {
+    return read(transport.post(url, GetMe.INSTANCE));
+  }
+  
+}
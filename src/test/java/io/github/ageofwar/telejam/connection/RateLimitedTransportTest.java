@@ -0,0 +1,74 @@
+package io.github.ageofwar.telejam.connection;
+
+import io.github.ageofwar.telejam.TelegramException;
+import io.github.ageofwar.telejam.methods.GetUpdates;
+import io.github.ageofwar.telejam.methods.SendMessage;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RateLimitedTransportTest {
+  
+  @Test
+  public void failsFastWhenLimitIsExceeded() throws Exception {
+    AtomicInteger requests = new AtomicInteger();
+    RateLimitedTransport transport = new RateLimitedTransport((url, method) -> {
+      requests.incrementAndGet();
+      return new ByteArrayInputStream(new byte[0]);
+    }, RateLimitedTransport.Mode.FAIL_FAST);
+    transport.post("url", new SendMessage().chat(5L).text("hi"));
+    TelegramException e = assertThrows(TelegramException.class,
+        () -> transport.post("url", new SendMessage().chat(5L).text("hi")));
+    assertEquals(429, e.getErrorCode());
+    assertEquals(1, e.getResponseParameters().get().getRetryAfter().getAsInt());
+    transport.post("url", new SendMessage().chat(6L).text("hi"));
+    for (int i = 0; i < 19; i++) {
+      transport.post("url", new SendMessage().chat(-7L).text("hi"));
+    }
+    transport.post("url", new GetUpdates());
+    transport.post("url", new GetUpdates());
+    assertEquals(23, requests.get());
+    assertEquals(1, transport.getRejectedRequests());
+    assertEquals(0, transport.getQueuedRequests());
+  }
+  
+  @Test
+  public void queuesWhenLimitIsExceeded() throws Exception {
+    AtomicInteger requests = new AtomicInteger();
+    RateLimitedTransport transport = new RateLimitedTransport((url, method) -> {
+      requests.incrementAndGet();
+      return new ByteArrayInputStream(new byte[0]);
+    }, RateLimitedTransport.Mode.QUEUE, 2, 10, 20);
+    long start = System.nanoTime();
+    for (int i = 0; i < 3; i++) {
+      transport.post("url", new SendMessage().chat(5L + i).text("hi"));
+    }
+    long elapsed = System.nanoTime() - start;
+    assertEquals(3, requests.get());
+    assertEquals(1, transport.getQueuedRequests());
+    assertEquals(0, transport.getRejectedRequests());
+    assertTrue(elapsed >= 400_000_000L, "elapsed " + elapsed);
+    assertTrue(transport.getQueueWaitTime().toMillis() >= 400);
+  }
+  
+  @Test
+  public void removesIdleChats() throws Exception {
+    RateLimitedTransport transport = new RateLimitedTransport(
+        (url, method) -> new ByteArrayInputStream(new byte[0]),
+        RateLimitedTransport.Mode.FAIL_FAST, 1_000_000, 1000, 20
+    );
+    for (int i = 1; i < 1024; i++) {
+      transport.post("url", new SendMessage().chat((long) i).text("hi"));
+    }
+    assertEquals(1023, transport.getTrackedChats());
+    Thread.sleep(10);
+    transport.post("url", new SendMessage().chat(1L).text("hi"));
+    assertEquals(1, transport.getTrackedChats());
+  }
+  
+}
@@ -0,0 +1,115 @@
+package io.github.ageofwar.telejam.connection;
+
+import com.sun.net.httpserver.HttpServer;
+import io.github.ageofwar.telejam.methods.GetMe;
+import io.github.ageofwar.telejam.methods.SendMessage;
+import io.github.ageofwar.telejam.methods.TelegramMethod;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+
+import static io.github.ageofwar.telejam.connection.ConnectionFixture.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UrlConnectionTransportTest {
+  
+  private HttpServer server;
+  private String url;
+  private volatile String transferEncoding;
+  
+  @BeforeEach
+  public void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", exchange -> {
+      byte[] response = RESPONSE.getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, response.length);
+      try (OutputStream output = exchange.getResponseBody()) {
+        output.write(response);
+      }
+    });
+    server.createContext("/slow", ConnectionFixture::respondSlowly);
+    server.createContext("/echo", exchange -> {
+      transferEncoding = exchange.getRequestHeaders().getFirst("Transfer-Encoding");
+      byte[] request = read(exchange.getRequestBody()).getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, request.length);
+      try (OutputStream output = exchange.getResponseBody()) {
+        output.write(request);
+      }
+    });
+    server.start();
+    url = "http://127.0.0.1:" + server.getAddress().getPort() + "/bot/getMe";
+  }
+  
+  @AfterEach
+  public void stopServer() {
+    server.stop(0);
+  }
+  
+  @Test
+  public void posts() throws IOException {
+    assertEquals(RESPONSE, read(new UrlConnectionTransport().post(url, GetMe.INSTANCE)));
+  }
+  
+  @Test
+  public void writesParametersWithoutMap() throws IOException {
+    SendMessage sendMessage = new SendMessage() {
+      @Override
+      public Map<String, Object> getParameters() {
+        throw new AssertionError("parameters map created");
+      }
+    }.chat(42L).text("hi");
+    String echoUrl = url.replace("/bot/", "/echo/");
+    String body = read(new UrlConnectionTransport().post(echoUrl, sendMessage));
+    assertEquals("{\"chat_id\":42,\"text\":\"hi\",\"parse_mode\":\"HTML\"}", body);
+  }
+  
+  @Test
+  public void streamsBodiesOfUnknownLength() throws IOException {
+    String echoUrl = url.replace("/bot/", "/echo/");
+    byte[] file = new byte[20000];
+    for (int i = 0; i < file.length; i++) {
+      file[i] = (byte) ('a' + i % 26);
+    }
+    TelegramMethod<Boolean> method = uploadMethod(
+        new UploadFile("file.txt", new BufferedInputStream(new ByteArrayInputStream(file)))
+    );
+    String body = read(new UrlConnectionTransport().post(echoUrl, method));
+    assertEquals("chunked", transferEncoding);
+    assertTrue(body.contains(new String(file, StandardCharsets.UTF_8)));
+    read(new UrlConnectionTransport().post(echoUrl, new SendMessage().chat(42L).text("hi")));
+    assertEquals("chunked", transferEncoding);
+  }
+  
+  @Test
+  public void abortsSlowResponses() {
+    String slowUrl = url.replace("/bot/", "/slow/");
+    TelegramMethod<Boolean> method = timedMethod(Duration.ofMillis(300));
+    Transport transport = new UrlConnectionTransport();
+    assertThrows(SocketTimeoutException.class, () -> read(transport.post(slowUrl, method)));
+  }
+  
+  @Test
+  public void convertsTimeoutsToMillis() {
+    assertEquals(0, Http.toMillis(Duration.ZERO));
+    assertEquals(1, Http.toMillis(Duration.ofNanos(1)));
+    assertEquals(2, Http.toMillis(Duration.of(1500, ChronoUnit.MICROS)));
+    assertEquals(1500, Http.toMillis(Duration.ofMillis(1500)));
+    assertEquals(Integer.MAX_VALUE, Http.toMillis(Duration.ofDays(365)));
+    assertEquals(Integer.MAX_VALUE, Http.toMillis(Duration.ofSeconds(Long.MAX_VALUE)));
+    assertThrows(IllegalArgumentException.class, () -> Http.toMillis(Duration.ofMillis(-1)));
+  }
+  
+}
@@ -0,0 +1,254 @@
+package io.github.ageofwar.telejam.events;
+
+import io.github.ageofwar.telejam.Bot;
+import io.github.ageofwar.telejam.callbacks.CallbackDataHandler;
+import io.github.ageofwar.telejam.callbacks.CallbackQueryHandler;
+import io.github.ageofwar.telejam.commands.CommandHandler;
+import io.github.ageofwar.telejam.inline.InlineQueryHandler;
+import io.github.ageofwar.telejam.messages.Message;
+import io.github.ageofwar.telejam.messages.MessageHandler;
+import io.github.ageofwar.telejam.messages.TextMessageHandler;
+import io.github.ageofwar.telejam.updates.MessageUpdate;
+import io.github.ageofwar.telejam.updates.Update;
+import io.github.ageofwar.telejam.updates.UpdateHandler;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
+
+import static io.github.ageofwar.telejam.BotFixture.*;
+import static io.github.ageofwar.telejam.json.Json.fromJson;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EventRegistryTest {
+  
+  private static final String CHAT = "\"chat\": {\"id\": 3, \"first_name\": \"User\", \"type\": \"private\"}";
+  
+  @Test
+  public void routesUpdatesByType() throws Throwable {
+    List<String> handled = new ArrayList<>();
+    EventRegistry events = new EventRegistry(newBot());
+    events.registerUpdateHandler(update -> handled.add("update " + update.getId()));
+    events.registerUpdateHandler((MessageHandler) message -> handled.add("message " + message.getId()));
+    events.registerUpdateHandler((TextMessageHandler) message -> handled.add("text " + message.getId()));
+    events.registerUpdateHandler((CallbackQueryHandler) callbackQuery -> handled.add("callback " + callbackQuery.getId()));
+    events.onUpdate(update("{\"update_id\": 1, \"message\": {\"message_id\": 1, \"date\": 0, \"text\": \"hi\", " + CHAT + "}}"));
+    events.onUpdate(update("{\"update_id\": 2, \"message\": {\"message_id\": 2, \"date\": 0, " +
+        "\"new_chat_members\": [{\"id\": 4, \"first_name\": \"Member\", \"is_bot\": false}], " + CHAT + "}}"));
+    events.onUpdate(update("{\"update_id\": 3, \"callback_query\": {\"id\": \"c\", \"chat_instance\": \"i\", \"data\": \"d\", " +
+        "\"from\": {\"id\": 4, \"first_name\": \"User\", \"is_bot\": false}}}"));
+    events.onUpdate(update("{\"update_id\": 4, \"message\": {\"message_id\": 4, \"date\": 0, \"text\": \"hey\", " + CHAT + "}}"));
+    assertEquals(Arrays.asList(
+        "update 1", "message 1", "text 1",
+        "update 2", "message 2",
+        "update 3", "callback c",
+        "update 4", "message 4", "text 4"
+    ), handled);
+  }
+  
+  @Test
+  public void handlersOverridingDefaultMethodsReceiveEveryUpdate() throws Throwable {
+    List<Long> handled = new ArrayList<>();
+    EventRegistry events = new EventRegistry(newBot());
+    MessageHandler handler = new MessageHandler() {
+      @Override
+      public void onMessage(Message message) {
+      }
+      
+      @Override
+      public void onUpdate(Update update) {
+        handled.add(update.getId());
+      }
+    };
+    events.registerUpdateHandler(handler);
+    events.onUpdate(update("{\"update_id\": 1, \"callback_query\": {\"id\": \"c\", \"chat_instance\": \"i\", " +
+        "\"from\": {\"id\": 4, \"first_name\": \"User\", \"is_bot\": false}}}"));
+    events.unregisterUpdateHandler(handler);
+    events.onUpdate(update("{\"update_id\": 2, \"message\": {\"message_id\": 2, \"date\": 0, \"text\": \"hi\", " + CHAT + "}}"));
+    assertEquals(Collections.singletonList(1L), handled);
+  }
+  
+  @Test
+  public void routesCommands() throws Throwable {
+    List<String> handled = new ArrayList<>();
+    EventRegistry events = new EventRegistry(newBot());
+    events.registerCommand((command, message) -> handled.add("start " + command.getArgs()), "start", "begin");
+    CommandHandler help = events.registerCommand((command, message) -> handled.add(command.getName()), "help");
+    events.onUpdate(command(1, "/start now"));
+    events.onUpdate(command(2, "/begin@bot later"));
+    events.onUpdate(command(3, "/help@otherbot"));
+    events.onUpdate(command(4, "/help"));
+    events.unregisterUpdateHandler(help);
+    events.onUpdate(command(5, "/help"));
+    assertEquals(Arrays.asList("start now", "start later", "help"), handled);
+  }
+  
+  @Test
+  public void registersCommandsConcurrently() throws Throwable {
+    List<String> handled = Collections.synchronizedList(new ArrayList<>());
+    EventRegistry events = new EventRegistry(newBot());
+    registerConcurrently(8, i -> events.registerCommand((command, message) -> handled.add(command.getName()), "c" + i));
+    for (int i = 0; i < 8; i++) {
+      events.onUpdate(command(i, "/c" + i));
+    }
+    assertEquals(Arrays.asList("c0", "c1", "c2", "c3", "c4", "c5", "c6", "c7"), handled);
+  }
+  
+  @Test
+  public void routesCallbackData() throws Throwable {
+    List<String> handled = new ArrayList<>();
+    EventRegistry events = new EventRegistry(newBot());
+    CallbackDataHandler start = events.registerCallbackDataHandler((query, name, args) -> handled.add(name + " " + args), "start");
+    events.registerCallbackDataHandler((query, name, args) -> handled.add(name + " " + args), "button");
+    events.onUpdate(callback(1, "start"));
+    events.onUpdate(callback(2, "button  1 2"));
+    events.onUpdate(callback(3, "other"));
+    events.unregisterUpdateHandler(start);
+    events.onUpdate(callback(4, "start"));
+    assertEquals(Arrays.asList("start ", "button 1 2"), handled);
+  }
+  
+  @Test
+  public void registersCallbackDataHandlersConcurrently() throws Throwable {
+    List<String> handled = Collections.synchronizedList(new ArrayList<>());
+    EventRegistry events = new EventRegistry(newBot());
+    registerConcurrently(8, i -> events.registerCallbackDataHandler((query, name, args) -> handled.add(name), "b" + i));
+    for (int i = 0; i < 8; i++) {
+      events.onUpdate(callback(i, "b" + i));
+    }
+    assertEquals(Arrays.asList("b0", "b1", "b2", "b3", "b4", "b5", "b6", "b7"), handled);
+  }
+  
+  @Test
+  public void derivesAllowedUpdates() throws Exception {
+    EventRegistry events = new EventRegistry(newBot());
+    assertArrayEquals(new String[0], events.getAllowedUpdates());
+    events.registerCommand((command, message) -> {
+    }, "start");
+    events.registerCallbackDataHandler((query, name, args) -> {
+    }, "button");
+    events.registerUpdateHandler((TextMessageHandler) message -> {
+    });
+    assertArrayEquals(new String[]{"message", "callback_query"}, events.getAllowedUpdates());
+    UpdateHandler handler = events.registerUpdateHandler(update -> {
+    });
+    assertArrayEquals(new String[0], events.getAllowedUpdates());
+    events.unregisterUpdateHandler(handler);
+    assertArrayEquals(new String[]{"message", "callback_query"}, events.getAllowedUpdates());
+  }
+  
+  @Test
+  public void ignoresEmptyRoutersInAllowedUpdates() throws Exception {
+    EventRegistry events = new EventRegistry(newBot());
+    CommandHandler command = events.registerCommand((c, message) -> {
+    }, "start");
+    CallbackDataHandler callback = events.registerCallbackDataHandler((query, name, args) -> {
+    }, "button");
+    events.registerUpdateHandler((InlineQueryHandler) inlineQuery -> {
+    });
+    events.unregisterUpdateHandler(command);
+    assertArrayEquals(new String[]{"callback_query", "inline_query", "chosen_inline_result"}, events.getAllowedUpdates());
+    events.unregisterUpdateHandler(callback);
+    assertArrayEquals(new String[]{"inline_query", "chosen_inline_result"}, events.getAllowedUpdates());
+    events.registerCommand((c, message) -> {
+    }, "help");
+    assertArrayEquals(new String[]{"message", "inline_query", "chosen_inline_result"}, events.getAllowedUpdates());
+  }
+  
+  @Test
+  public void routesHandlersRegisteredWhileRouting() throws Throwable {
+    List<String> handled = Collections.synchronizedList(new ArrayList<>());
+    EventRegistry events = new EventRegistry(newBot());
+    events.registerUpdateHandler((TextMessageHandler) message -> handled.add("first"));
+    MessageUpdate update = (MessageUpdate) update("{\"update_id\": 1, \"message\": {\"message_id\": 1, \"date\": 0, " +
+        "\"text\": \"hi\", " + CHAT + "}}");
+    CountDownLatch routing = new CountDownLatch(1);
+    CountDownLatch registered = new CountDownLatch(1);
+    MessageUpdate slowUpdate = new MessageUpdate(update.getId(), update.getMessage()) {
+      private int calls;
+      
+      @Override
+      public Message getMessage() {
+        // the first invocation looks the route up, the second one computes it
+        if (++calls == 2) {
+          routing.countDown();
+          try {
+            registered.await();
+          } catch (InterruptedException e) {
+            throw new AssertionError(e);
+          }
+        }
+        return super.getMessage();
+      }
+    };
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    Thread dispatcher = new Thread(() -> {
+      try {
+        events.onUpdate(slowUpdate);
+      } catch (Throwable e) {
+        failure.set(e);
+      }
+    });
+    dispatcher.start();
+    assertTrue(routing.await(10, TimeUnit.SECONDS));
+    events.registerUpdateHandler((TextMessageHandler) message -> handled.add("second"));
+    registered.countDown();
+    dispatcher.join();
+    assertNull(failure.get());
+    handled.clear();
+    events.onUpdate(update);
+    assertEquals(Arrays.asList("first", "second"), handled);
+  }
+  
+  private static void registerConcurrently(int threads, IntConsumer registration) throws InterruptedException {
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> registrations = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      int index = i;
+      Thread thread = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        registration.accept(index);
+      });
+      thread.start();
+      registrations.add(thread);
+    }
+    start.countDown();
+    for (Thread thread : registrations) {
+      thread.join();
+    }
+  }
+  
+  private static Update callback(long id, String data) {
+    return update("{\"update_id\": " + id + ", \"callback_query\": {\"id\": \"c\", \"chat_instance\": \"i\", " +
+        "\"data\": \"" + data + "\", \"from\": {\"id\": 4, \"first_name\": \"User\", \"is_bot\": false}}}");
+  }
+  
+  private static Update command(long id, String text) {
+    int length = text.indexOf(' ') < 0 ? text.length() : text.indexOf(' ');
+    return update("{\"update_id\": " + id + ", \"message\": {\"message_id\": " + id + ", \"date\": 0, " +
+        "\"text\": \"" + text + "\", \"entities\": [{\"type\": \"bot_command\", \"offset\": 0, \"length\": " + length + "}], " +
+        CHAT + "}}");
+  }
+  
+  private static Update update(String json) {
+    return fromJson(json, Update.class);
+  }
+  
+  private static Bot bot() throws Exception {
+    return newBot();
+  }
+  
+}
@@ -1,9 +1,16 @@
 package io.github.ageofwar.telejam.inline;
 
+import io.github.ageofwar.telejam.json.Json;
+import io.github.ageofwar.telejam.methods.EditMessageText;
+import io.github.ageofwar.telejam.replymarkups.FrozenInlineKeyboardMarkup;
 import io.github.ageofwar.telejam.replymarkups.InlineKeyboardMarkup;
 import org.junit.jupiter.api.Test;
 
+import java.util.Collections;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 public class InlineKeyboardMarkupTest {
   
@@ -23,4 +30,27 @@ public class InlineKeyboardMarkupTest {
     assertEquals(keyboard1, keyboard2);
   }
   
+  @Test
+  public void freeze() {
+    InlineKeyboardButton[][] buttons = {{new CallbackDataInlineKeyboardButton("a", "1")}, {new UrlInlineKeyboardButton("b", "https://t.me")}};
+    InlineKeyboardMarkup keyboard = new InlineKeyboardMarkup(buttons);
+    FrozenInlineKeyboardMarkup frozen = FrozenInlineKeyboardMarkup.of(keyboard);
+    assertEquals(keyboard, frozen);
+    assertEquals(Json.toJson(keyboard), frozen.toJson());
+    assertEquals(Json.toJson(keyboard), Json.toJson(frozen));
+    assertSame(frozen, FrozenInlineKeyboardMarkup.of(new InlineKeyboardMarkup(buttons)));
+    buttons[0][0] = new CallbackDataInlineKeyboardButton("c", "3");
+    assertEquals("a", frozen.getInlineKeyboard()[0][0].getText());
+    assertNotSame(frozen, FrozenInlineKeyboardMarkup.of(new InlineKeyboardMarkup(new CallbackDataInlineKeyboardButton("a", "2"))));
+    assertNotSame(
+        FrozenInlineKeyboardMarkup.of(new InlineKeyboardMarkup(new PayInlineKeyboardButton("p"))),
+        FrozenInlineKeyboardMarkup.of(new InlineKeyboardMarkup(new CallbackGameInlineKeyboardButton("p")))
+    );
+    EditMessageText edit = new EditMessageText().inlineMessage("1").text("hi").replyMarkup(frozen);
+    assertEquals(
+        "{\"reply_markup\":" + frozen.toJson() + "}",
+        Json.toJson(Collections.singletonMap("reply_markup", edit.getParameters().get("reply_markup")))
+    );
+  }
+  
 }
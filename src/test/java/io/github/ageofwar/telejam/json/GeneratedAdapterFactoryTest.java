@@ -0,0 +1,82 @@
+package io.github.ageofwar.telejam.json;
+
+import io.github.ageofwar.telejam.callbacks.CallbackQuery;
+import io.github.ageofwar.telejam.chats.Group;
+import io.github.ageofwar.telejam.connection.ResponseParameters;
+import io.github.ageofwar.telejam.inline.InlineQuery;
+import io.github.ageofwar.telejam.media.PhotoSize;
+import io.github.ageofwar.telejam.messages.Poll;
+import io.github.ageofwar.telejam.messages.TextMessage;
+import io.github.ageofwar.telejam.payments.ShippingQuery;
+import io.github.ageofwar.telejam.replymarkups.InlineKeyboardMarkup;
+import io.github.ageofwar.telejam.replymarkups.ReplyKeyboardMarkup;
+import io.github.ageofwar.telejam.stickers.Sticker;
+import io.github.ageofwar.telejam.users.User;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GeneratedAdapterFactoryTest {
+  
+  private static final GsonCodec GENERATED = new GsonCodec(false, 0, true);
+  private static final GsonCodec REFLECTIVE = new GsonCodec(false, 0, false);
+  private static final String USER = "{\"id\":8437262,\"is_bot\":false,\"first_name\":\"AgeOfWar\"}";
+  
+  @Test
+  public void types() {
+    assertTrue(GeneratedAdapterFactory.getTypes().contains(PhotoSize.class));
+    assertTrue(GeneratedAdapterFactory.getTypes().contains(Poll.class));
+    assertTrue(GeneratedAdapterFactory.getTypes().contains(ShippingQuery.class));
+    assertTrue(GeneratedAdapterFactory.getTypes().contains(CallbackQuery.class));
+    assertTrue(GeneratedAdapterFactory.getTypes().contains(InlineKeyboardMarkup.class));
+    assertFalse(GeneratedAdapterFactory.getTypes().contains(TextMessage.class));
+    assertFalse(GeneratedAdapterFactory.getTypes().contains(User.class));
+  }
+  
+  @Test
+  public void sameJsonAsReflection() throws IOException {
+    assertSameJson("{\"file_id\":\"f\",\"file_unique_id\":\"u\",\"width\":90,\"height\":60,\"file_size\":1000}",
+        PhotoSize.class);
+    assertSameJson("{\"file_id\":\"f\",\"file_unique_id\":\"u\",\"width\":512,\"height\":512,\"is_animated\":false," +
+        "\"emoji\":\"x\",\"set_name\":\"set\",\"thumb\":{\"file_id\":\"t\",\"file_unique_id\":\"v\",\"width\":1,\"height\":1}," +
+        "\"mask_position\":{\"point\":\"eyes\",\"x_shift\":0.5,\"y_shift\":-1.0,\"scale\":2.0}}", Sticker.class);
+    assertSameJson("{\"id\":\"1\",\"question\":\"?\",\"options\":[{\"text\":\"a\",\"voter_count\":2}," +
+        "{\"text\":\"b\",\"voter_count\":0}],\"total_voter_count\":2,\"is_closed\":true,\"is_anonymous\":true," +
+        "\"type\":\"quiz\",\"allows_multiple_answers\":false,\"correct_option_id\":[0]}", Poll.class);
+    assertSameJson("{\"keyboard\":[[{\"text\":\"a\"},{\"text\":\"b\",\"request_contact\":true}]]," +
+        "\"resize_keyboard\":true}", ReplyKeyboardMarkup.class);
+    assertSameJson("{\"id\":\"1\",\"from\":" + USER + ",\"invoice_payload\":\"p\",\"shipping_address\":" +
+        "{\"country_code\":\"IT\",\"state\":\"\",\"city\":\"Rome\",\"street_line1\":\"Via Roma\"," +
+        "\"street_line2\":\"\",\"post_code\":\"00100\"}}", ShippingQuery.class);
+    assertSameJson("{\"id\":\"1\",\"from\":" + USER + ",\"query\":\"q\",\"offset\":\"\"," +
+        "\"location\":{\"latitude\":41.9,\"longitude\":12.5}}", InlineQuery.class);
+    assertSameJson("{\"id\":\"1\",\"from\":" + USER + ",\"message\":{\"message_id\":2,\"date\":0," +
+        "\"chat\":{\"id\":-5,\"type\":\"group\",\"title\":\"G\"},\"text\":\"hi\"}," +
+        "\"chat_instance\":\"c\",\"data\":\"d\"}", CallbackQuery.class);
+    assertSameJson("{\"inline_keyboard\":[[{\"text\":\"a\",\"callback_data\":\"x\"}]]}", InlineKeyboardMarkup.class);
+    assertSameJson("{\"id\":-5,\"type\":\"group\",\"title\":\"G\"}", Group.class);
+    assertSameJson("{\"retry_after\":3}", ResponseParameters.class);
+  }
+  
+  @Test
+  public void missingRequiredField() {
+    assertThrows(JsonSyntaxException.class, () -> GENERATED.fromJson("{\"width\":90,\"height\":60}", PhotoSize.class));
+    assertThrows(JsonSyntaxException.class, () -> GENERATED.fromJson("{\"file_id\":[]}", PhotoSize.class));
+  }
+  
+  private static void assertSameJson(String json, Class<?> type) throws IOException {
+    Object generated = GENERATED.fromJson(json, type);
+    Object reflective = REFLECTIVE.fromJson(json, type);
+    assertEquals(reflective.getClass(), generated.getClass());
+    assertEquals(toJson(REFLECTIVE, reflective, type), toJson(GENERATED, generated, type));
+  }
+  
+  private static String toJson(JsonCodec codec, Object src, Class<?> type) throws IOException {
+    StringBuilder json = new StringBuilder();
+    codec.toJson(src, type, json, false);
+    return json.toString();
+  }
+  
+}
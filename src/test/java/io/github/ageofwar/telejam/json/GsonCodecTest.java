@@ -0,0 +1,10 @@
+package io.github.ageofwar.telejam.json;
+
+public class GsonCodecTest extends JsonCodecConformanceTest {
+  
+  @Override
+  protected JsonCodec codec() {
+    return GsonCodec.INSTANCE;
+  }
+  
+}
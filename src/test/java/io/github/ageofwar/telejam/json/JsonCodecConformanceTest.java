@@ -0,0 +1,252 @@
+package io.github.ageofwar.telejam.json;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import io.github.ageofwar.telejam.chats.Channel;
+import io.github.ageofwar.telejam.chats.Chat;
+import io.github.ageofwar.telejam.chats.PrivateChat;
+import io.github.ageofwar.telejam.chats.SuperGroup;
+import io.github.ageofwar.telejam.inline.*;
+import io.github.ageofwar.telejam.keyboards.KeyboardButton;
+import io.github.ageofwar.telejam.keyboards.RequestContactKeyboardButton;
+import io.github.ageofwar.telejam.media.InputMedia;
+import io.github.ageofwar.telejam.media.InputMediaPhoto;
+import io.github.ageofwar.telejam.messages.*;
+import io.github.ageofwar.telejam.replymarkups.*;
+import io.github.ageofwar.telejam.updates.MessageUpdate;
+import io.github.ageofwar.telejam.updates.Update;
+import io.github.ageofwar.telejam.users.User;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests that every {@link JsonCodec} must pass. A backend is tested by extending
+ * this class and implementing {@link #codec()}.
+ */
+public abstract class JsonCodecConformanceTest {
+  
+  private static final JsonParser PARSER = new JsonParser();
+  private static final String USER = "{\"id\":8437262,\"is_bot\":false,\"first_name\":\"AgeOfWar\",\"language_code\":\"it\"}";
+  private static final String PRIVATE_CHAT = "{\"id\":8437262,\"type\":\"private\",\"first_name\":\"AgeOfWar\"}";
+  private static final String TEXT_MESSAGE = "{\"message_id\":2,\"from\":" + USER + ",\"date\":0," +
+      "\"chat\":" + PRIVATE_CHAT + ",\"text\":\"/start hi\"," +
+      "\"entities\":[{\"type\":\"bot_command\",\"offset\":0,\"length\":6}]}";
+  
+  /**
+   * Returns the codec under test.
+   *
+   * @return the codec under test
+   */
+  protected abstract JsonCodec codec();
+  
+  @Test
+  public void locale() {
+    assertEquals(Locale.ITALIAN, codec().fromJson("\"it\"", Locale.class));
+    assertEquals("\"it\"", toJson(Locale.ITALIAN, Locale.class));
+  }
+  
+  @Test
+  public void user() {
+    User user = roundTrip(USER, User.class);
+    assertEquals(8437262L, user.getId());
+    assertEquals("AgeOfWar", user.getFirstName());
+    assertEquals(Locale.ITALIAN, user.getLocale());
+    assertEquals(PARSER.parse(USER), PARSER.parse(toJson(user, User.class)));
+    String bot = "{\"id\":1,\"is_bot\":true,\"first_name\":\"Bot\",\"username\":\"bot\"," +
+        "\"can_join_groups\":true,\"can_read_all_group_messages\":false,\"supports_inline_queries\":true}";
+    assertEquals(PARSER.parse(bot), PARSER.parse(toJson(roundTrip(bot, User.class), User.class)));
+  }
+  
+  @Test
+  public void chats() {
+    assertTrue(roundTrip(PRIVATE_CHAT, Chat.class) instanceof PrivateChat);
+    assertTrue(roundTrip("{\"id\":-1001,\"type\":\"supergroup\",\"title\":\"Group\"}", Chat.class) instanceof SuperGroup);
+    Chat channel = roundTrip("{\"id\":-1002,\"type\":\"channel\",\"title\":\"Times\",\"username\":\"times\"}", Chat.class);
+    assertTrue(channel instanceof Channel);
+    assertEquals(-1002L, channel.getId());
+  }
+  
+  @Test
+  public void messages() {
+    Message message = roundTrip(TEXT_MESSAGE, Message.class);
+    assertTrue(message instanceof TextMessage);
+    assertTrue(((TextMessage) message).isCommand());
+    assertEquals(PARSER.parse(TEXT_MESSAGE), PARSER.parse(toJson(message, Message.class)));
+  }
+  
+  @Test
+  public void messageTypes() {
+    String header = "\"message_id\":4,\"date\":1,\"chat\":" + PRIVATE_CHAT + ",";
+    String photo = "[{\"file_id\":\"f\",\"file_unique_id\":\"u\",\"width\":90,\"height\":60}]";
+    assertMessage(PhotoMessage.class, "{" + header + "\"photo\":" + photo + ",\"caption\":\"nice\"," +
+        "\"caption_entities\":[{\"type\":\"bold\",\"offset\":0,\"length\":4}]}");
+    Message animation = codec().fromJson("{" + header + "\"document\":{\"file_id\":\"d\",\"file_unique_id\":\"v\"}," +
+        "\"animation\":{\"file_id\":\"a\",\"file_unique_id\":\"w\"}}", Message.class);
+    assertEquals(AnimationMessage.class, animation.getClass());
+    assertMessage(NewChatMembersMessage.class, "{" + header + "\"new_chat_members\":[" + USER + "]}");
+    assertMessage(MigrateToChatIdMessage.class, "{" + header + "\"migrate_to_chat_id\":-1001}");
+    assertMessage(MessagePinnedMessage.class, "{" + header + "\"pinned_message\":" + TEXT_MESSAGE + "}");
+    assertMessage(TextMessage.class, "{" + header + "\"from\":" + USER + ",\"text\":\"re\",\"edit_date\":3," +
+        "\"reply_to_message\":" + TEXT_MESSAGE + "," +
+        "\"reply_markup\":{\"inline_keyboard\":[[{\"text\":\"a\",\"callback_data\":\"x\"}]]}}");
+    String group = "{\"id\":-5,\"type\":\"group\",\"title\":\"G\"}";
+    assertMessage(ChatCreatedMessage.class, "{\"message_id\":4,\"date\":1,\"chat\":" + group + ",\"group_chat_created\":true}");
+    assertMessage(DeleteChatPhotoMessage.class, "{" + header + "\"delete_chat_photo\":true}");
+    Message unknown = codec().fromJson("{" + header + "\"unknown_content\":{\"a\":[1,2]}}", Message.class);
+    assertEquals(4L, unknown.getId());
+    assertTrue(unknown.getClass().isAnonymousClass());
+    assertEquals(PARSER.parse("{" + header.substring(0, header.length() - 1) + "}"), PARSER.parse(toJson(unknown, Message.class)));
+    assertEquals(TextMessage.class, codec().fromJson(TEXT_MESSAGE, TextMessage.class).getClass());
+    assertEquals(PhotoMessage.class, codec().fromJson("{" + header + "\"photo\":" + photo + "}", PhotoMessage.class).getClass());
+  }
+  
+  @Test
+  public void forwardedMessages() {
+    String json = "{\"message_id\":3,\"from\":" + USER + ",\"date\":10,\"chat\":" + PRIVATE_CHAT + "," +
+        "\"forward_from\":{\"id\":1,\"is_bot\":false,\"first_name\":\"Other\"},\"forward_date\":5,\"text\":\"hi\"}";
+    Message message = codec().fromJson(json, Message.class);
+    assertTrue(message instanceof Forward);
+    Message forwarded = ((Forward<?>) message).getForwardedMessage();
+    assertTrue(forwarded instanceof TextMessage);
+    assertEquals(1L, forwarded.getSender().getId());
+    assertEquals(5L, forwarded.getDate());
+    assertEquals(PARSER.parse(json), PARSER.parse(toJson(message, Message.class)));
+    Forward<?> forward = codec().fromJson(json, Forward.class);
+    assertEquals(3L, forward.getId());
+    assertEquals(PARSER.parse(json), PARSER.parse(toJson(forward, Forward.class)));
+  }
+  
+  @Test
+  public void updates() {
+    Update update = roundTrip("{\"update_id\":7,\"message\":" + TEXT_MESSAGE + "}", Update.class);
+    assertTrue(update instanceof MessageUpdate);
+    assertEquals(7L, update.getId());
+    assertEquals(2L, ((MessageUpdate) update).getMessage().getId());
+  }
+  
+  @Test
+  public void keyboardButtons() {
+    assertEquals(KeyboardButton.class, roundTrip("{\"text\":\"a\"}", KeyboardButton.class).getClass());
+    assertTrue(roundTrip("{\"text\":\"a\",\"request_contact\":true}", KeyboardButton.class) instanceof RequestContactKeyboardButton);
+  }
+  
+  @Test
+  public void inlineKeyboardButtons() {
+    assertTrue(roundTrip("{\"text\":\"a\",\"callback_data\":\"x\"}", InlineKeyboardButton.class) instanceof CallbackDataInlineKeyboardButton);
+    assertTrue(roundTrip("{\"text\":\"a\",\"url\":\"https://t.me\"}", InlineKeyboardButton.class) instanceof UrlInlineKeyboardButton);
+  }
+  
+  @Test
+  public void inlineQueryResults() {
+    String json = "{\"type\":\"article\",\"id\":\"1\",\"title\":\"Title\",\"input_message_content\":{\"message_text\":\"hi\"}}";
+    InlineQueryResult result = roundTrip(json, InlineQueryResult.class);
+    assertTrue(result instanceof InlineQueryResultArticle);
+  }
+  
+  @Test
+  public void inputMessageContents() {
+    assertTrue(roundTrip("{\"message_text\":\"hi\"}", InputMessageContent.class) instanceof InputTextMessageContent);
+  }
+  
+  @Test
+  public void inputMedia() {
+    assertTrue(roundTrip("{\"type\":\"photo\",\"media\":\"file\"}", InputMedia.class) instanceof InputMediaPhoto);
+  }
+  
+  @Test
+  public void replyMarkups() {
+    String keyboard = "{\"inline_keyboard\":[[{\"text\":\"a\",\"callback_data\":\"x\"}]]}";
+    assertTrue(roundTrip(keyboard, ReplyMarkup.class) instanceof InlineKeyboardMarkup);
+    assertTrue(roundTrip("{\"remove_keyboard\":true}", ReplyMarkup.class) instanceof ReplyKeyboardRemove);
+    assertTrue(roundTrip("{\"force_reply\":true}", ReplyMarkup.class) instanceof ForceReply);
+  }
+  
+  @Test
+  public void frozenReplyMarkups() {
+    String keyboard = "{\"inline_keyboard\":[[{\"text\":\"a\",\"callback_data\":\"x\"}]]}";
+    InlineKeyboardMarkup markup = codec().fromJson(keyboard, InlineKeyboardMarkup.class);
+    FrozenInlineKeyboardMarkup frozen = FrozenInlineKeyboardMarkup.of(markup);
+    assertEquals(PARSER.parse(keyboard), PARSER.parse(toJson(frozen, FrozenInlineKeyboardMarkup.class)));
+    assertEquals(PARSER.parse(keyboard), PARSER.parse(toJson(frozen, ReplyMarkup.class)));
+    assertEquals(frozen, roundTrip(keyboard, FrozenInlineKeyboardMarkup.class));
+  }
+  
+  @Test
+  public void inputs() throws IOException {
+    byte[] bytes = ("  " + TEXT_MESSAGE).getBytes(StandardCharsets.UTF_8);
+    Message fromBytes = codec().fromJson(bytes, 2, bytes.length - 2, Message.class);
+    Message fromReader = codec().fromJson(new StringReader(TEXT_MESSAGE), Message.class);
+    assertEquals(fromReader, fromBytes);
+    assertEquals("café", codec().fromJson("\"caf\\u00e9\"", String.class));
+    assertNull(codec().fromJson("null", Message.class));
+  }
+  
+  @Test
+  public void malformedJson() {
+    assertThrows(JsonSyntaxException.class, () -> codec().fromJson("{\"update_id\":", Update.class));
+    assertThrows(JsonSyntaxException.class, () -> codec().fromJson(new StringReader("[1,"), int[].class));
+    byte[] bytes = "\"text".getBytes(StandardCharsets.UTF_8);
+    assertThrows(JsonSyntaxException.class, () -> codec().fromJson(bytes, 0, bytes.length, String.class));
+  }
+  
+  @Test
+  public void prettyPrinting() throws IOException {
+    StringBuilder json = new StringBuilder();
+    codec().toJson(codec().fromJson(USER, User.class), User.class, json, true);
+    assertTrue(json.indexOf("\n") >= 0);
+    assertEquals(PARSER.parse(USER), PARSER.parse(json.toString()));
+  }
+  
+  @Test
+  public void outputs() throws IOException {
+    StringWriter json = new StringWriter();
+    try (JsonOutput output = codec().newOutput(json)) {
+      output.beginObject()
+          .name("chat_id").value(42L)
+          .name("text").value("<b>hi</b>")
+          .name("disable_notification").value(true)
+          .name("reply_to_message_id").nullValue()
+          .name("user").value(codec().fromJson(USER, User.class), User.class)
+          .name("options").beginArray().value("a").value((String) null).endArray()
+          .endObject();
+    }
+    assertEquals(PARSER.parse("{\"chat_id\":42,\"text\":\"<b>hi</b>\",\"disable_notification\":true," +
+        "\"reply_to_message_id\":null,\"user\":" + USER + ",\"options\":[\"a\",null]}"), PARSER.parse(json.toString()));
+  }
+  
+  private void assertMessage(Class<? extends Message> type, String json) {
+    Message message = codec().fromJson(json, Message.class);
+    assertEquals(type, message.getClass());
+    assertEquals(PARSER.parse(json), PARSER.parse(toJson(message, Message.class)));
+  }
+  
+  private <T> T roundTrip(String json, Class<T> type) {
+    T value = codec().fromJson(json, type);
+    assertNotNull(value);
+    String encoded = toJson(value, type);
+    T decoded = codec().fromJson(encoded, type);
+    assertEquals(value.getClass(), decoded.getClass());
+    JsonElement reencoded = PARSER.parse(toJson(decoded, type));
+    assertEquals(PARSER.parse(encoded), reencoded);
+    return value;
+  }
+  
+  private String toJson(Object src, Type type) {
+    StringBuilder json = new StringBuilder();
+    try {
+      codec().toJson(src, type, json, false);
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+    return json.toString();
+  }
+  
+}
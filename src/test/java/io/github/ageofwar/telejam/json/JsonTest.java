@@ -5,16 +5,27 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import io.github.ageofwar.telejam.media.Audio;
 import io.github.ageofwar.telejam.chats.Channel;
+import io.github.ageofwar.telejam.chats.SuperGroup;
+import io.github.ageofwar.telejam.updates.MessageUpdate;
+import io.github.ageofwar.telejam.updates.PollAnswerUpdate;
+import io.github.ageofwar.telejam.updates.Update;
 import io.github.ageofwar.telejam.users.User;
+import io.github.ageofwar.telejam.chats.Chat;
 import io.github.ageofwar.telejam.messages.*;
 import io.github.ageofwar.telejam.text.Text;
 import org.junit.jupiter.api.Test;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Locale;
 
 import static io.github.ageofwar.telejam.json.Json.fromJson;
 import static io.github.ageofwar.telejam.json.Json.toJson;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class JsonTest {
   
@@ -81,4 +92,95 @@ public class JsonTest {
     assertEquals(new User(8437262L, "AgeOfWar", null, "AgeOfWar01", Locale.ROOT, false), fromJson(json, User.class));
   }
   
+  @Test
+  public void deserializeBot() {
+    String json = "{\"id\": 1, \"first_name\": \"Bot\", \"is_bot\": true, \"language_code\": \"it\", " +
+        "\"can_join_groups\": true, \"can_read_all_group_messages\": false, \"supports_inline_queries\": true}";
+    User bot = fromJson(json, User.class);
+    assertEquals(Locale.ITALIAN, bot.getLocale());
+    assertTrue(bot.isBot());
+    assertTrue(bot.canJoinGroups());
+    assertFalse(bot.canReadAllGroupMessages());
+    assertTrue(bot.supportsInlineQueries());
+    assertEquals(PARSER.parse(json), PARSER.parse(toJson(bot)));
+  }
+  
+  @Test
+  public void deserializeUpdates() {
+    String json = "[" +
+        "{\"update_id\": 1, \"message\": {\"message_id\": 10, \"date\": 0, \"text\": \"hello\", " +
+        "\"chat\": {\"id\": -1001, \"title\": \"Group\", \"username\": \"group\", \"type\": \"supergroup\"}}}," +
+        "{\"update_id\": 2, \"message\": {\"message_id\": 11, \"date\": 0, " +
+        "\"chat\": {\"id\": 5, \"first_name\": \"AgeOfWar\", \"type\": \"private\"}, " +
+        "\"document\": {\"file_id\": \"a\", \"file_unique_id\": \"b\"}, " +
+        "\"animation\": {\"file_id\": \"a\", \"file_unique_id\": \"b\", \"width\": 1, \"height\": 1, \"duration\": 1}}}," +
+        "{\"unknown\": {\"a\": [1, 2]}, \"poll_answer\": {\"poll_id\": \"p\", \"option_ids\": [0, 2]}, \"update_id\": 3}" +
+        "]";
+    Update[] updates = fromJson(json, Update[].class);
+    assertEquals(3, updates.length);
+    
+    Message message = ((MessageUpdate) updates[0]).getMessage();
+    assertEquals("hello", ((TextMessage) message).getText().toString());
+    assertEquals(new SuperGroup(-1001, "Group", "group"), message.getChat());
+    assertEquals("group", ((SuperGroup) message.getChat()).getUsername().orElse(null));
+    
+    assertTrue(((MessageUpdate) updates[1]).getMessage() instanceof AnimationMessage);
+    
+    assertEquals(3, updates[2].getId());
+    PollAnswer pollAnswer = ((PollAnswerUpdate) updates[2]).getPollAnswer();
+    assertEquals("p", pollAnswer.getPollId());
+    assertArrayEquals(new int[]{0, 2}, pollAnswer.getOptionIds());
+  }
+  
+  @Test
+  public void lazilyDecodeReplyToMessage() {
+    String json = "{\"message_id\":2,\"date\":0,\"text\":\"reply\"," +
+        "\"chat\":{\"id\":1,\"first_name\":\"User\",\"type\":\"private\"}," +
+        "\"reply_to_message\":{\"message_id\":1,\"date\":0,\"text\":\"hi\"," +
+        "\"chat\":{\"id\":1,\"first_name\":\"User\",\"type\":\"private\"}}}";
+    GsonCodec codec = new GsonCodec(true);
+    Message message = codec.fromJson(json, Message.class);
+    assertEquals(PARSER.parse(json), PARSER.parse(toJson(message)));
+    Message lazy = codec.fromJson(json, Message.class);
+    Message reply = lazy.getReplyToMessage().orElseThrow(AssertionError::new);
+    assertTrue(reply instanceof TextMessage);
+    assertEquals("hi", ((TextMessage) reply).getText().toString());
+    assertEquals(1, reply.getId());
+    assertEquals(PARSER.parse(json), PARSER.parse(toJson(lazy)));
+    Message forward = codec.fromJson(json.replace("\"text\":\"reply\"",
+        "\"text\":\"reply\",\"forward_date\":0,\"forward_from\":{\"id\":2,\"is_bot\":false,\"first_name\":\"Other\"}"), Message.class);
+    assertTrue(forward instanceof Forward);
+    Message forwarded = ((Forward<?>) forward).getForwardedMessage();
+    assertEquals(1, forwarded.getReplyToMessage().orElseThrow(AssertionError::new).getId());
+  }
+  
+  @Test
+  public void deserializeUtf8Bytes() {
+    String text = "caf\u00e9 \u20ac \ud83d\ude00";
+    byte[] json = ("  \"" + text + "\"").getBytes(StandardCharsets.UTF_8);
+    assertEquals(text, Json.<String>fromJson(json, 2, json.length - 2, String.class));
+    byte[] malformed = {'"', (byte) 0xC3, '"'};
+    assertEquals("\ufffd", Json.<String>fromJson(malformed, 0, malformed.length, String.class));
+  }
+  
+  @Test
+  public void internUsersAndChats() {
+    String user = "{\"id\":1,\"is_bot\":false,\"first_name\":\"User\"}";
+    String renamedUser = "{\"id\":1,\"is_bot\":false,\"first_name\":\"Renamed\"}";
+    String chat = "{\"id\":-100,\"type\":\"supergroup\",\"title\":\"Group\"}";
+    assertNotSame(fromJson(user, User.class), fromJson(user, User.class));
+    GsonCodec codec = new GsonCodec(false, 16);
+    User first = codec.fromJson(user, User.class);
+    assertSame(first, codec.fromJson(user, User.class));
+    assertNotSame(first, new GsonCodec(false, 16).fromJson(user, User.class));
+    User renamed = codec.fromJson(renamedUser, User.class);
+    assertNotSame(first, renamed);
+    assertEquals("Renamed", renamed.getFirstName());
+    assertSame(renamed, codec.fromJson(renamedUser, User.class));
+    Chat group = codec.fromJson(chat, Chat.class);
+    assertSame(group, codec.fromJson(chat, Chat.class));
+    assertTrue(group instanceof SuperGroup);
+    assertNotSame(group, fromJson(chat, Chat.class));
+  }
+  
 }
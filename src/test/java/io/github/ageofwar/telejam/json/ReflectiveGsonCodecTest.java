@@ -0,0 +1,12 @@
+package io.github.ageofwar.telejam.json;
+
+public class ReflectiveGsonCodecTest extends JsonCodecConformanceTest {
+  
+  private static final GsonCodec CODEC = new GsonCodec(false, 0, false);
+  
+  @Override
+  protected JsonCodec codec() {
+    return CODEC;
+  }
+  
+}
@@ -0,0 +1,83 @@
+package io.github.ageofwar.telejam.methods;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import io.github.ageofwar.telejam.inline.CallbackDataInlineKeyboardButton;
+import io.github.ageofwar.telejam.json.JsonOutput;
+import io.github.ageofwar.telejam.replymarkups.InlineKeyboardMarkup;
+import io.github.ageofwar.telejam.text.Text;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Optional;
+
+import static io.github.ageofwar.telejam.json.Json.newOutput;
+import static io.github.ageofwar.telejam.json.Json.toJson;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class WriteParametersTest {
+  
+  @Test
+  public void sendMessage() throws IOException {
+    SendMessage sendMessage = new SendMessage()
+        .chat(42L)
+        .text(Text.bold("hello <world>"))
+        .replyMarkup(new InlineKeyboardMarkup(new CallbackDataInlineKeyboardButton("hi", "data")))
+        .disableNotification();
+    assertEquals(parametersOf(sendMessage), writtenParametersOf(sendMessage));
+    assertEquals(chatIdParameterOf(sendMessage), sendMessage.getChatId());
+  }
+  
+  @Test
+  public void editMessageText() throws IOException {
+    EditMessageText editMessageText = new EditMessageText()
+        .inlineMessage("inline")
+        .text("edited")
+        .disableWebPagePreview();
+    assertEquals(parametersOf(editMessageText), writtenParametersOf(editMessageText));
+    assertEquals(chatIdParameterOf(editMessageText), editMessageText.getChatId());
+  }
+  
+  @Test
+  public void answerCallbackQuery() throws IOException {
+    AnswerCallbackQuery answerCallbackQuery = new AnswerCallbackQuery()
+        .callbackQuery("id")
+        .text("è ok")
+        .cacheTime(5);
+    assertEquals(parametersOf(answerCallbackQuery), writtenParametersOf(answerCallbackQuery));
+    assertEquals(chatIdParameterOf(answerCallbackQuery), answerCallbackQuery.getChatId());
+  }
+  
+  @Test
+  public void chatId() {
+    TelegramMethod<?>[] methods = {
+        new SendPhoto().chat("@channel").photo("file"),
+        new SendDice().chat(42L),
+        new EditMessageText().chat(-100L).message(1L).text("edited"),
+        new GetGameHighScores().user(7L).inlineMessage("inline"),
+        new SendChatAction().chat(42L).action("typing")
+    };
+    for (TelegramMethod<?> method : methods) {
+      assertEquals(chatIdParameterOf(method), method.getChatId());
+    }
+  }
+  
+  private static Optional<String> chatIdParameterOf(TelegramMethod<?> method) {
+    Object chatId = method.getParameters().get("chat_id");
+    return chatId != null ? Optional.of(chatId.toString()) : Optional.empty();
+  }
+  
+  private static JsonElement parametersOf(TelegramMethod<?> method) {
+    return new JsonParser().parse(toJson(method.getParameters()));
+  }
+  
+  private static JsonElement writtenParametersOf(TelegramMethod<?> method) throws IOException {
+    StringWriter output = new StringWriter();
+    JsonOutput writer = newOutput(output);
+    method.writeParameters(writer);
+    writer.flush();
+    return new JsonParser().parse(output.toString());
+  }
+  
+}
@@ -0,0 +1,112 @@
+package io.github.ageofwar.telejam.updates;
+
+import io.github.ageofwar.telejam.Bot;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static io.github.ageofwar.telejam.BotFixture.*;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UpdateReaderTest {
+  
+  private static final String UPDATES = "{\"ok\":true,\"result\":[{\"update_id\":7}]}";
+  
+  @Test
+  public void usesLongPolling() throws Exception {
+    List<Map<String, Object>> requests = new ArrayList<>();
+    Bot bot = newBot((url, method) -> {
+      requests.add(method.getParameters());
+      return response(UPDATES);
+    });
+    List<Long> backOffs = new ArrayList<>();
+    UpdateReader reader = new UpdateReader(bot, 25, 50, attempts -> {
+      backOffs.add(attempts);
+      return 0;
+    });
+    reader.setAllowedUpdates(() -> new String[]{"message"});
+    assertEquals(7, reader.read().getId());
+    assertEquals(1, requests.size());
+    assertEquals(25, requests.get(0).get("timeout"));
+    assertEquals(50, requests.get(0).get("limit"));
+    assertArrayEquals(new String[]{"message"}, (String[]) requests.get(0).get("allowed_updates"));
+    assertTrue(backOffs.isEmpty());
+  }
+  
+  @Test
+  public void backsOffAfterErrors() throws Exception {
+    List<Object> offsets = new ArrayList<>();
+    Bot bot = newBot((url, method) -> {
+      offsets.add(method.getParameters().get("offset"));
+      if (offsets.size() <= 2) {
+        throw new IOException("Connection reset");
+      }
+      return response(UPDATES);
+    });
+    List<Long> backOffs = new ArrayList<>();
+    UpdateReader reader = new UpdateReader(bot, attempts -> {
+      backOffs.add(attempts);
+      return 0;
+    });
+    assertThrows(IOException.class, reader::read);
+    assertThrows(IOException.class, reader::read);
+    assertEquals(7, reader.read().getId());
+    assertEquals(2, backOffs.size());
+    assertEquals(0L, (long) backOffs.get(0));
+    assertEquals(1L, (long) backOffs.get(1));
+    assertEquals(Arrays.asList(0L, 0L, 0L), offsets);
+  }
+  
+  @Test
+  public void skipsUpdatesThatCannotBeDecoded() throws Exception {
+    List<Object> offsets = new ArrayList<>();
+    Bot bot = newBot((url, method) -> {
+      offsets.add(method.getParameters().get("offset"));
+      if (offsets.size() == 1) {
+        return response("{\"ok\":true,\"result\":[{\"update_id\":0,\"message\":[]}]}");
+      }
+      return response(UPDATES);
+    });
+    UpdateReader reader = new UpdateReader(bot, attempts -> 0);
+    assertThrows(IOException.class, reader::read);
+    assertEquals(7, reader.read().getId());
+    assertEquals(Arrays.asList(0L, 1L), offsets);
+  }
+  
+  @Test
+  public void prefetchesUpdates() throws Exception {
+    List<Integer> limits = Collections.synchronizedList(new ArrayList<>());
+    Bot bot = newBot((url, method) -> {
+      Map<String, Object> parameters = method.getParameters();
+      if (!parameters.containsKey("limit")) {
+        return response("{\"ok\":true,\"result\":[]}");
+      }
+      long offset = (Long) parameters.get("offset");
+      int limit = (Integer) parameters.get("limit");
+      limits.add(limit);
+      StringBuilder json = new StringBuilder("{\"ok\":true,\"result\":[");
+      for (int i = 0; i < limit; i++) {
+        json.append(i > 0 ? "," : "").append("{\"update_id\":").append(offset + i).append('}');
+      }
+      return response(json.append("]}").toString());
+    });
+    UpdateReader reader = new UpdateReader(bot, 30, 100, 3, attempts -> 0);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(i, reader.read().getId());
+      assertTrue(reader.available() <= 3);
+    }
+    reader.close();
+    for (int limit : limits) {
+      assertTrue(limit >= 1 && limit <= 3);
+    }
+  }
+  
+}